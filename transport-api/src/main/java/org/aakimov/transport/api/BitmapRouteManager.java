@@ -0,0 +1,117 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Route data manager that keeps a compressed bitmap of route indexes for every stop.
+ *
+ * Direct route check is a single AND of two bitmaps that stops on the first common route.
+ * Most of the stops belong to a small fraction of routes, so their bitmaps are stored as sorted arrays
+ * of 16-bit values (half of the size of integer postings). Popular stops switch to plain bitmaps
+ * or runs automatically, so the memory footprint is always lower than the one of the route data array.
+ *
+ * @see RouteBitmap
+ * @author aakimov
+ */
+@Named
+@Singleton
+public class BitmapRouteManager implements RouteManager {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(BitmapRouteManager.class);
+
+    /**
+     * Minimal stop ID (stop bitmaps are addressed relative to it)
+     */
+    private final int minStopId;
+
+    /**
+     * Route bitmaps addressed by stop ID minus minimal stop ID (null for unknown stops)
+     */
+    private final RouteBitmap[] stopBitmaps;
+
+    /**
+     * Route IDs addressed by route index
+     */
+    private final int[] routeIds;
+
+    /**
+     * @param routeData route data with sorted stop IDs segments
+     */
+    public BitmapRouteManager(
+        int[] routeData
+    ) {
+        StopRouteIndex stopRouteIndex = StopRouteIndex.build(routeData);
+        int[] stopRoutes = stopRouteIndex.getStopRoutes();
+        this.minStopId = stopRouteIndex.getMinStopId();
+        this.stopBitmaps = new RouteBitmap[stopRouteIndex.getStopIdRange()];
+        this.routeIds = stopRouteIndex.getRouteIds();
+
+        long bitmapSize = 4L * this.stopBitmaps.length + 4L * this.routeIds.length;
+        for (int stopIndex = 0; stopIndex < this.stopBitmaps.length; stopIndex++) {
+            int stopId = this.minStopId + stopIndex;
+            int postingStart = stopRouteIndex.getPostingStart(stopId);
+            int postingEnd = stopRouteIndex.getPostingEnd(stopId);
+            if (postingStart < postingEnd) {
+                this.stopBitmaps[stopIndex] = RouteBitmap.of(stopRoutes, postingStart, postingEnd);
+                bitmapSize += this.stopBitmaps[stopIndex].getSizeInBytes();
+            }
+        }
+
+        LOGGER.info(
+            "Route bitmaps for {} stop IDs are built. Bitmap size is about {} bytes.",
+            this.stopBitmaps.length,
+            bitmapSize
+        );
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        RouteBitmap departureBitmap = this.getStopBitmap(departureStopId);
+        if (departureBitmap == null) {
+            return false;
+        }
+        RouteBitmap arrivalBitmap = this.getStopBitmap(arrivalStopId);
+        return arrivalBitmap != null && departureBitmap.intersects(arrivalBitmap);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector.validateLimit(limit);
+        RouteBitmap departureBitmap = this.getStopBitmap(departureStopId);
+        RouteBitmap arrivalBitmap = this.getStopBitmap(arrivalStopId);
+        if (departureBitmap == null || arrivalBitmap == null) {
+            return new int[0];
+        }
+
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        departureBitmap.collectIntersection(arrivalBitmap, this.routeIds, routeIdCollector);
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Retrieve route bitmap of the given stop
+     *
+     * @param stopId stop ID
+     * @return route bitmap or null if stop is unknown
+     */
+    private RouteBitmap getStopBitmap(int stopId) {
+        long stopIndex = (long)stopId - this.minStopId;
+        if (stopIndex < 0 || stopIndex >= this.stopBitmaps.length) {
+            return null;
+        }
+        return this.stopBitmaps[(int)stopIndex];
+    }
+}
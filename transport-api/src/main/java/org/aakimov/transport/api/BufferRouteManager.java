@@ -0,0 +1,200 @@
+package org.aakimov.transport.api;
+
+import java.nio.IntBuffer;
+
+/**
+ * Route data manager that uses route data stored in int buffers (e.g. memory mapped snapshot).
+ *
+ * Every buffer contains whole route blocks without leading route count:
+ * [route ID1][stop count of route ID1][stop ID1][stop ID2]...[route ID2][stop count of route ID2]...
+ * Buffers are not modified, so the same buffers can be shared between several managers.
+ *
+ * @see SnapshotRouteDataReader
+ * @author aakimov
+ */
+public class BufferRouteManager implements RouteManager {
+
+    /**
+     * Route data segments with sorted stop IDs segments
+     */
+    private final IntBuffer[] segments;
+
+    /**
+     * @param segments route data segments
+     */
+    public BufferRouteManager(
+        IntBuffer... segments
+    ) {
+        this.segments = segments;
+    }
+
+    /**
+     * Check if direct route is available between given stops.
+     *
+     * This method uses the same algorithm as MemoryRouteManager, but reads route data using
+     * absolute buffer access (buffer positions are never changed).
+     * <b>If stop segments are not sorted, the results are undefined.</b>
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if direct route is available or false otherwise
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        for (IntBuffer segment : this.segments) {
+            int segmentLength = segment.limit();
+            int currentRouteDataIndex = 0;
+            while (currentRouteDataIndex < segmentLength) {
+                int stopCount = segment.get(currentRouteDataIndex + 1);
+                int firstStopIndex = currentRouteDataIndex + 2;
+                int nextRouteDataIndex = firstStopIndex + stopCount;
+
+                int arrivalIndex = BufferRouteManager.binarySearch(
+                    segment,
+                    firstStopIndex,
+                    nextRouteDataIndex,
+                    arrivalStopId
+                );
+                if (arrivalIndex >= 0) {
+                    // search only one part of the stop list (not the entire one)
+                    int departureIndex = (arrivalStopId > departureStopId)
+                        ? BufferRouteManager.binarySearch(segment, firstStopIndex, arrivalIndex, departureStopId)
+                        : BufferRouteManager.binarySearch(segment, arrivalIndex, nextRouteDataIndex, departureStopId);
+                    if (departureIndex >= 0) {
+                        return true;
+                    }
+                }
+
+                currentRouteDataIndex = nextRouteDataIndex;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find IDs of the routes that serve both given stops (see MemoryRouteManager).
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes (in order of route data) or empty array if there is no direct route
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        for (IntBuffer segment : this.segments) {
+            int segmentLength = segment.limit();
+            int currentRouteDataIndex = 0;
+            while (currentRouteDataIndex < segmentLength && !routeIdCollector.isFull()) {
+                int stopCount = segment.get(currentRouteDataIndex + 1);
+                int firstStopIndex = currentRouteDataIndex + 2;
+                int nextRouteDataIndex = firstStopIndex + stopCount;
+
+                int arrivalIndex = BufferRouteManager.binarySearch(
+                    segment,
+                    firstStopIndex,
+                    nextRouteDataIndex,
+                    arrivalStopId
+                );
+                if (arrivalIndex >= 0) {
+                    int departureIndex = (arrivalStopId > departureStopId)
+                        ? BufferRouteManager.binarySearch(segment, firstStopIndex, arrivalIndex, departureStopId)
+                        : BufferRouteManager.binarySearch(segment, arrivalIndex, nextRouteDataIndex, departureStopId);
+                    if (departureIndex >= 0) {
+                        routeIdCollector.add(segment.get(currentRouteDataIndex));
+                    }
+                }
+
+                currentRouteDataIndex = nextRouteDataIndex;
+            }
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Check if direct routes are available between given pairs of stops.
+     *
+     * All the pairs are checked in a single pass over the route data (see MemoryRouteManager).
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        DirectRouteBatch directRouteBatch = new DirectRouteBatch(departureStopIds, arrivalStopIds);
+        for (IntBuffer segment : this.segments) {
+            int segmentLength = segment.limit();
+            int currentRouteDataIndex = 0;
+            while (currentRouteDataIndex < segmentLength && directRouteBatch.isPending()) {
+                int stopCount = segment.get(currentRouteDataIndex + 1);
+                int firstStopIndex = currentRouteDataIndex + 2;
+                int nextRouteDataIndex = firstStopIndex + stopCount;
+
+                BufferRouteManager.markRouteStops(segment, firstStopIndex, nextRouteDataIndex, directRouteBatch);
+                directRouteBatch.completeRoute();
+
+                currentRouteDataIndex = nextRouteDataIndex;
+            }
+        }
+        return directRouteBatch.getResults();
+    }
+
+    /**
+     * Mark all the stops of the batch served by the route
+     *
+     * @param segment route data segment
+     * @param firstStopIndex index of the first stop of the route
+     * @param nextRouteDataIndex index next to the last stop of the route
+     * @param directRouteBatch batch query
+     */
+    private static void markRouteStops(
+        IntBuffer segment,
+        int firstStopIndex,
+        int nextRouteDataIndex,
+        DirectRouteBatch directRouteBatch
+    ) {
+        int[] stopIds = directRouteBatch.getStopIds();
+        int searchStartIndex = firstStopIndex;
+        for (int stopIndex = 0; stopIndex < stopIds.length && searchStartIndex < nextRouteDataIndex; stopIndex++) {
+            int foundIndex = BufferRouteManager.binarySearch(
+                segment,
+                searchStartIndex,
+                nextRouteDataIndex,
+                stopIds[stopIndex]
+            );
+            if (foundIndex >= 0) {
+                directRouteBatch.markStop(stopIndex);
+                searchStartIndex = foundIndex + 1;
+            } else {
+                searchStartIndex = -foundIndex - 1;
+            }
+        }
+    }
+
+    /**
+     * Search the given value in the sorted range of the buffer (same contract as Arrays.binarySearch)
+     *
+     * @param buffer target buffer
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param value value to search
+     * @return index of the value or negative number if value is not found
+     */
+    static int binarySearch(IntBuffer buffer, int from, int to, int value) {
+        int low = from;
+        int high = to - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleValue = buffer.get(middle);
+            if (middleValue < value) {
+                low = middle + 1;
+            } else if (middleValue > value) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+}
@@ -0,0 +1,385 @@
+package org.aakimov.transport.api;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Route manager decorator that caches results of the direct route checks.
+ *
+ * Departure and arrival stop IDs are packed into a single long key, so the cache is a set of primitive arrays
+ * without any boxing. Cache is set-associative: every key is mapped to a set of 8 slots, so lookup is a scan
+ * of a few adjacent array elements. Full sets evict entries with CLOCK (second chance) policy: entries that
+ * were hit since the last pass of the clock hand survive, so popular pairs of stops stay in the cache.
+ *
+ * Every entry is stamped with the version of the route data it is computed for (see RouteManager.getDataVersion).
+ * Entries of other versions are ignored, so reload or update of the route data invalidates the whole cache
+ * at once without any coordination with the decorated route manager.
+ *
+ * Sets are guarded by striped locks, so concurrent requests rarely wait for each other.
+ *
+ * @author aakimov
+ */
+public class CachingRouteManager implements RouteManager {
+
+    /**
+     * Number of slots in a set
+     */
+    private static final int SET_SIZE = 8;
+
+    /**
+     * Number of locks that guard the sets
+     */
+    private static final int LOCK_COUNT = 64;
+
+    /**
+     * Slot state flag: slot is occupied
+     */
+    private static final byte STATE_OCCUPIED = 1;
+
+    /**
+     * Slot state flag: direct route is available
+     */
+    private static final byte STATE_AVAILABLE = 2;
+
+    /**
+     * Slot state flag: entry was hit since the last pass of the clock hand
+     */
+    private static final byte STATE_REFERENCED = 4;
+
+    /**
+     * Decorated route manager
+     */
+    private final RouteManager routeManager;
+
+    /**
+     * Mask of the set index
+     */
+    private final int setMask;
+
+    /**
+     * Keys of the slots (departure stop ID in the high 32 bits, arrival stop ID in the low 32 bits)
+     */
+    private final long[] keys;
+
+    /**
+     * Route data versions of the slots
+     */
+    private final long[] versions;
+
+    /**
+     * States of the slots
+     */
+    private final byte[] states;
+
+    /**
+     * Clock hands of the sets
+     */
+    private final byte[] clockHands;
+
+    /**
+     * Locks that guard the sets
+     */
+    private final Object[] locks = new Object[CachingRouteManager.LOCK_COUNT];
+
+    /**
+     * Number of cache hits
+     */
+    private final LongAdder hitCount = new LongAdder();
+
+    /**
+     * Number of cache misses
+     */
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * Number of evicted entries
+     */
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param routeManager decorated route manager
+     * @param maxSize maximum number of cached entries (rounded up to the power of two, at least 8)
+     */
+    public CachingRouteManager(
+        RouteManager routeManager,
+        int maxSize
+    ) {
+        if (maxSize < 1 || maxSize > (1 << 30)) {
+            throw new IllegalArgumentException("Cache size should be between 1 and 2^30.");
+        }
+
+        int capacity = Math.max(
+            CachingRouteManager.SET_SIZE,
+            (maxSize == 1) ? 1 : Integer.highestOneBit(maxSize - 1) << 1
+        );
+        int setCount = capacity / CachingRouteManager.SET_SIZE;
+        this.routeManager = routeManager;
+        this.setMask = setCount - 1;
+        this.keys = new long[setCount * CachingRouteManager.SET_SIZE];
+        this.versions = new long[this.keys.length];
+        this.states = new byte[this.keys.length];
+        this.clockHands = new byte[setCount];
+        for (int lockIndex = 0; lockIndex < this.locks.length; lockIndex++) {
+            this.locks[lockIndex] = new Object();
+        }
+    }
+
+    /**
+     * Check if direct route is available between given stops (cached result is returned if available)
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if direct route is available or false otherwise
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        long key = CachingRouteManager.getKey(departureStopId, arrivalStopId);
+        // version is read before the route data, so the result is never older than the version
+        long version = this.routeManager.getDataVersion();
+        int result = this.get(key, version);
+        if (result >= 0) {
+            return result == 1;
+        }
+
+        boolean isAvailable = this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+        this.put(key, version, isAvailable);
+        return isAvailable;
+    }
+
+    /**
+     * Check if direct routes are available between given pairs of stops.
+     *
+     * Cached results are used where available, all the other pairs are checked by a single batch call
+     * of the decorated route manager.
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        DirectRouteBatch.validate(departureStopIds, arrivalStopIds);
+        long version = this.routeManager.getDataVersion();
+        boolean[] results = new boolean[departureStopIds.length];
+        int[] uncachedIndexes = new int[departureStopIds.length];
+        int uncachedCount = 0;
+        for (int pairIndex = 0; pairIndex < results.length; pairIndex++) {
+            int result = this.get(
+                CachingRouteManager.getKey(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                version
+            );
+            if (result >= 0) {
+                results[pairIndex] = result == 1;
+            } else {
+                uncachedIndexes[uncachedCount++] = pairIndex;
+            }
+        }
+        if (uncachedCount == 0) {
+            return results;
+        }
+
+        int[] uncachedDepartureStopIds = new int[uncachedCount];
+        int[] uncachedArrivalStopIds = new int[uncachedCount];
+        for (int uncachedIndex = 0; uncachedIndex < uncachedCount; uncachedIndex++) {
+            uncachedDepartureStopIds[uncachedIndex] = departureStopIds[uncachedIndexes[uncachedIndex]];
+            uncachedArrivalStopIds[uncachedIndex] = arrivalStopIds[uncachedIndexes[uncachedIndex]];
+        }
+        boolean[] uncachedResults = this.routeManager.areDirectRoutesAvailable(
+            uncachedDepartureStopIds,
+            uncachedArrivalStopIds
+        );
+        for (int uncachedIndex = 0; uncachedIndex < uncachedCount; uncachedIndex++) {
+            int pairIndex = uncachedIndexes[uncachedIndex];
+            results[pairIndex] = uncachedResults[uncachedIndex];
+            this.put(
+                CachingRouteManager.getKey(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                version,
+                uncachedResults[uncachedIndex]
+            );
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        return this.routeManager.findDirectRoutes(departureStopId, arrivalStopId, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findTransferStops(int departureStopId, int arrivalStopId, int maxTransfers) {
+        return this.routeManager.findTransferStops(departureStopId, arrivalStopId, maxTransfers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDataVersion() {
+        return this.routeManager.getDataVersion();
+    }
+
+    /**
+     * Retrieve decorated route manager
+     *
+     * @return route manager
+     */
+    public RouteManager getRouteManager() {
+        return this.routeManager;
+    }
+
+    /**
+     * Close decorated route manager
+     *
+     * @throws IOException if decorated route manager cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.routeManager.close();
+    }
+
+    /**
+     * Retrieve maximum number of cached entries
+     *
+     * @return cache capacity
+     */
+    public int getCapacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Retrieve number of cache hits
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return this.hitCount.sum();
+    }
+
+    /**
+     * Retrieve number of cache misses
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return this.missCount.sum();
+    }
+
+    /**
+     * Retrieve number of evicted entries (entries of outdated route data versions are not counted)
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.sum();
+    }
+
+    /**
+     * Find cached result
+     *
+     * @param key cache key
+     * @param version route data version
+     * @return 1 if direct route is available, 0 if it is not or -1 if result is not cached
+     */
+    private int get(long key, long version) {
+        int setIndex = this.getSetIndex(key);
+        int slotStart = setIndex * CachingRouteManager.SET_SIZE;
+        synchronized (this.locks[setIndex & (CachingRouteManager.LOCK_COUNT - 1)]) {
+            for (int slotIndex = slotStart; slotIndex < slotStart + CachingRouteManager.SET_SIZE; slotIndex++) {
+                byte state = this.states[slotIndex];
+                if (
+                    (state & CachingRouteManager.STATE_OCCUPIED) != 0
+                    && this.keys[slotIndex] == key
+                    && this.versions[slotIndex] == version
+                ) {
+                    this.states[slotIndex] = (byte)(state | CachingRouteManager.STATE_REFERENCED);
+                    this.hitCount.increment();
+                    return ((state & CachingRouteManager.STATE_AVAILABLE) != 0) ? 1 : 0;
+                }
+            }
+        }
+        this.missCount.increment();
+        return -1;
+    }
+
+    /**
+     * Store result in the cache.
+     *
+     * Slot of the same key or outdated version is reused first. Otherwise clock hand of the set skips
+     * (and clears) referenced entries and evicts the first entry that is not referenced.
+     *
+     * @param key cache key
+     * @param version route data version
+     * @param isAvailable flag that shows if direct route is available
+     */
+    private void put(long key, long version, boolean isAvailable) {
+        int setIndex = this.getSetIndex(key);
+        int slotStart = setIndex * CachingRouteManager.SET_SIZE;
+        byte newState = (byte)(
+            isAvailable
+                ? CachingRouteManager.STATE_OCCUPIED | CachingRouteManager.STATE_AVAILABLE
+                : CachingRouteManager.STATE_OCCUPIED
+        );
+        synchronized (this.locks[setIndex & (CachingRouteManager.LOCK_COUNT - 1)]) {
+            int targetSlotIndex = -1;
+            for (int slotIndex = slotStart; slotIndex < slotStart + CachingRouteManager.SET_SIZE; slotIndex++) {
+                if (
+                    (this.states[slotIndex] & CachingRouteManager.STATE_OCCUPIED) == 0
+                    || this.keys[slotIndex] == key
+                    || this.versions[slotIndex] != version
+                ) {
+                    targetSlotIndex = slotIndex;
+                    break;
+                }
+            }
+
+            if (targetSlotIndex < 0) {
+                int clockHand = this.clockHands[setIndex];
+                while ((this.states[slotStart + clockHand] & CachingRouteManager.STATE_REFERENCED) != 0) {
+                    this.states[slotStart + clockHand] &= ~CachingRouteManager.STATE_REFERENCED;
+                    clockHand = (clockHand + 1) & (CachingRouteManager.SET_SIZE - 1);
+                }
+                targetSlotIndex = slotStart + clockHand;
+                this.clockHands[setIndex] = (byte)((clockHand + 1) & (CachingRouteManager.SET_SIZE - 1));
+                this.evictionCount.increment();
+            }
+
+            this.keys[targetSlotIndex] = key;
+            this.versions[targetSlotIndex] = version;
+            this.states[targetSlotIndex] = newState;
+        }
+    }
+
+    /**
+     * Find set of the key
+     *
+     * @param key cache key
+     * @return set index
+     */
+    private int getSetIndex(long key) {
+        // murmur3 finalizer spreads close stop IDs over all the sets
+        long hash = key;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return (int)hash & this.setMask;
+    }
+
+    /**
+     * Pack stop IDs into a cache key
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return cache key
+     */
+    private static long getKey(int departureStopId, int arrivalStopId) {
+        return ((long)departureStopId << 32) | (arrivalStopId & 0xFFFFFFFFL);
+    }
+}
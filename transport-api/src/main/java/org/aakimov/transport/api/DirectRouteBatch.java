@@ -0,0 +1,192 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+
+/**
+ * State of the batch direct route query that is resolved in a single pass over all the routes.
+ *
+ * All the distinct stop IDs of the batch are sorted once (see getStopIds). For every route the manager
+ * marks the batch stops served by the route (markStop) and then completes the route (completeRoute),
+ * which resolves all the pending pairs whose both stops were marked. Resolved pairs are removed from
+ * the pending list, so the pass can stop as soon as all the pairs are resolved.
+ *
+ * One instance should be used by a single thread only.
+ *
+ * @author aakimov
+ */
+final class DirectRouteBatch {
+
+    /**
+     * Sorted distinct stop IDs of the batch
+     */
+    private final int[] stopIds;
+
+    /**
+     * Index of the departure stop (in stopIds) of every pair
+     */
+    private final int[] departureStopIndexes;
+
+    /**
+     * Index of the arrival stop (in stopIds) of every pair
+     */
+    private final int[] arrivalStopIndexes;
+
+    /**
+     * Route stamp of every stop (stop is served by the current route if its stamp equals to the current stamp)
+     */
+    private final int[] stopStamps;
+
+    /**
+     * Indexes of the pairs that are not resolved yet (only first pendingPairCount elements are valid)
+     */
+    private final int[] pendingPairs;
+
+    /**
+     * Number of pairs that are not resolved yet
+     */
+    private int pendingPairCount;
+
+    /**
+     * Stamp of the current route
+     */
+    private int currentStamp = 1;
+
+    /**
+     * Results of the batch
+     */
+    private final boolean[] results;
+
+    /**
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     */
+    DirectRouteBatch(
+        int[] departureStopIds,
+        int[] arrivalStopIds
+    ) {
+        DirectRouteBatch.validate(departureStopIds, arrivalStopIds);
+        int pairCount = departureStopIds.length;
+
+        int[] allStopIds = Arrays.copyOf(departureStopIds, pairCount * 2);
+        System.arraycopy(arrivalStopIds, 0, allStopIds, pairCount, pairCount);
+        Arrays.sort(allStopIds);
+        int stopCount = 0;
+        for (int stopId : allStopIds) {
+            if (stopCount == 0 || allStopIds[stopCount - 1] != stopId) {
+                allStopIds[stopCount++] = stopId;
+            }
+        }
+        this.stopIds = Arrays.copyOf(allStopIds, stopCount);
+
+        this.departureStopIndexes = new int[pairCount];
+        this.arrivalStopIndexes = new int[pairCount];
+        this.pendingPairs = new int[pairCount];
+        for (int pairIndex = 0; pairIndex < pairCount; pairIndex++) {
+            this.departureStopIndexes[pairIndex] = Arrays.binarySearch(this.stopIds, departureStopIds[pairIndex]);
+            this.arrivalStopIndexes[pairIndex] = Arrays.binarySearch(this.stopIds, arrivalStopIds[pairIndex]);
+            this.pendingPairs[pairIndex] = pairIndex;
+        }
+        this.pendingPairCount = pairCount;
+        this.stopStamps = new int[stopCount];
+        this.results = new boolean[pairCount];
+    }
+
+    /**
+     * Validate batch arguments
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers
+     */
+    static void validate(int[] departureStopIds, int[] arrivalStopIds) {
+        if (departureStopIds.length != arrivalStopIds.length) {
+            throw new IllegalArgumentException("Number of departure and arrival stops should be the same.");
+        }
+    }
+
+    /**
+     * Retrieve sorted distinct stop IDs of the batch
+     *
+     * @return stop IDs
+     */
+    int[] getStopIds() {
+        return this.stopIds;
+    }
+
+    /**
+     * Check if there are pairs that are not resolved yet
+     *
+     * @return true if at least one pair is not resolved or false otherwise
+     */
+    boolean isPending() {
+        return this.pendingPairCount > 0;
+    }
+
+    /**
+     * Resolve pending pairs of hot stops by the hot stop matrix, so only the other pairs need a pass
+     * over the route data
+     *
+     * @param hotStopMatrix direct connectivity of the hot stops
+     * @return true if there are pairs that are not resolved yet or false otherwise
+     */
+    boolean resolveHotStopPairs(HotStopMatrix hotStopMatrix) {
+        int[] hotStopIndexes = new int[this.stopIds.length];
+        for (int stopIndex = 0; stopIndex < this.stopIds.length; stopIndex++) {
+            hotStopIndexes[stopIndex] = hotStopMatrix.getHotStopIndex(this.stopIds[stopIndex]);
+        }
+
+        int remainingPairCount = 0;
+        for (int pendingIndex = 0; pendingIndex < this.pendingPairCount; pendingIndex++) {
+            int pairIndex = this.pendingPairs[pendingIndex];
+            int departureHotStopIndex = hotStopIndexes[this.departureStopIndexes[pairIndex]];
+            int arrivalHotStopIndex = hotStopIndexes[this.arrivalStopIndexes[pairIndex]];
+            if (departureHotStopIndex >= 0 && arrivalHotStopIndex >= 0) {
+                this.results[pairIndex] = hotStopMatrix.isConnected(departureHotStopIndex, arrivalHotStopIndex);
+            } else {
+                this.pendingPairs[remainingPairCount++] = pairIndex;
+            }
+        }
+        this.pendingPairCount = remainingPairCount;
+        return this.isPending();
+    }
+
+    /**
+     * Mark stop as served by the current route
+     *
+     * @param stopIndex index of the stop in getStopIds()
+     */
+    void markStop(int stopIndex) {
+        this.stopStamps[stopIndex] = this.currentStamp;
+    }
+
+    /**
+     * Resolve all the pending pairs served by the current route and move to the next route
+     *
+     * @return true if there are pairs that are not resolved yet or false otherwise
+     */
+    boolean completeRoute() {
+        int remainingPairCount = 0;
+        for (int pendingIndex = 0; pendingIndex < this.pendingPairCount; pendingIndex++) {
+            int pairIndex = this.pendingPairs[pendingIndex];
+            if (
+                this.stopStamps[this.departureStopIndexes[pairIndex]] == this.currentStamp
+                && this.stopStamps[this.arrivalStopIndexes[pairIndex]] == this.currentStamp
+            ) {
+                this.results[pairIndex] = true;
+            } else {
+                this.pendingPairs[remainingPairCount++] = pairIndex;
+            }
+        }
+        this.pendingPairCount = remainingPairCount;
+        this.currentStamp++;
+        return this.isPending();
+    }
+
+    /**
+     * Retrieve results of the batch (pairs that are not resolved are not connected by a direct route)
+     *
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    boolean[] getResults() {
+        return this.results;
+    }
+}
@@ -0,0 +1,177 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Route data manager that takes the direction of travel into account.
+ *
+ * Route data uses ORDERED layout (see RouteDataLayout and MappedRouteDataReader.readOrdered), so every route
+ * keeps sorted stop IDs for binary search together with the original positions of the stops.
+ * Direct route is available only if the route visits the departure stop before the arrival stop.
+ *
+ * @author aakimov
+ */
+@Named
+@Singleton
+public class DirectionalRouteManager implements RouteManager {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectionalRouteManager.class);
+
+    /**
+     * Route data with sorted stop IDs segments followed by stop positions
+     */
+    private final int[] routeData;
+
+    /**
+     * @param routeData route data in ORDERED layout
+     */
+    public DirectionalRouteManager(
+        int[] routeData
+    ) {
+        this.routeData = routeData;
+
+        long positionSize = 0;
+        int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = routeData[currentRouteDataIndex + 1];
+            positionSize += 4L * RouteDataLayout.getPositionLength(stopCount);
+            currentRouteDataIndex += RouteDataLayout.ORDERED.getBlockLength(stopCount);
+        }
+        LOGGER.info(
+            "Directional route data for {} routes is loaded. Stop positions take {} of {} bytes.",
+            routeCount,
+            positionSize,
+            4L * routeData.length
+        );
+    }
+
+    /**
+     * Check if direct route is available from the departure stop to the arrival stop.
+     *
+     * Stops of every route are sorted by stop ID and then by position, so the first occurrence of the departure
+     * stop has the earliest position and the last occurrence of the arrival stop has the latest position.
+     * Both are found with binary search, so the cost per route is the same as the one of MemoryRouteManager.
+     * Routes that visit a stop more than once (loops) are handled as well.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if some route visits departure stop before arrival stop or false otherwise
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        if (this.routeData.length == 0) {
+            return false;
+        }
+
+        int routeCount = this.routeData[0];
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = this.routeData[currentRouteDataIndex + 1];
+            if (this.isRouteDirect(currentRouteDataIndex, stopCount, departureStopId, arrivalStopId)) {
+                return true;
+            }
+            currentRouteDataIndex += RouteDataLayout.ORDERED.getBlockLength(stopCount);
+        }
+        return false;
+    }
+
+    /**
+     * Find IDs of the routes that go from the departure stop to the arrival stop.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes (in order of route data) or empty array if there is no direct route
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        if (this.routeData.length == 0 || routeIdCollector.isFull()) {
+            return routeIdCollector.toArray();
+        }
+
+        int routeCount = this.routeData[0];
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = this.routeData[currentRouteDataIndex + 1];
+            if (
+                this.isRouteDirect(currentRouteDataIndex, stopCount, departureStopId, arrivalStopId)
+                && !routeIdCollector.add(this.routeData[currentRouteDataIndex])
+            ) {
+                break;
+            }
+            currentRouteDataIndex += RouteDataLayout.ORDERED.getBlockLength(stopCount);
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Check if the route visits departure stop before arrival stop
+     *
+     * @param routeDataIndex index of the route block
+     * @param stopCount number of stops in the route
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if route goes from departure stop to arrival stop or false otherwise
+     */
+    private boolean isRouteDirect(int routeDataIndex, int stopCount, int departureStopId, int arrivalStopId) {
+        int firstStopIndex = routeDataIndex + 2;
+        int positionStart = firstStopIndex + stopCount;
+
+        // first occurrence of the departure stop
+        int departureIndex = DirectionalRouteManager.lowerBound(
+            this.routeData,
+            firstStopIndex,
+            positionStart,
+            departureStopId
+        );
+        if (departureIndex == positionStart || this.routeData[departureIndex] != departureStopId) {
+            return false;
+        }
+
+        // last occurrence of the arrival stop
+        int arrivalIndex = DirectionalRouteManager.lowerBound(
+            this.routeData,
+            firstStopIndex,
+            positionStart,
+            arrivalStopId + 1L
+        ) - 1;
+        if (arrivalIndex < firstStopIndex || this.routeData[arrivalIndex] != arrivalStopId) {
+            return false;
+        }
+
+        return RouteDataLayout.getPosition(this.routeData, positionStart, stopCount, departureIndex - firstStopIndex)
+            < RouteDataLayout.getPosition(this.routeData, positionStart, stopCount, arrivalIndex - firstStopIndex);
+    }
+
+    /**
+     * Find index of the first element that is not less than the given value
+     *
+     * @param array sorted array
+     * @param fromIndex index of the first element to search (inclusive)
+     * @param toIndex index of the last element to search (exclusive)
+     * @param value value to search
+     * @return index of the first element that is not less than the value or toIndex if there is no such element
+     */
+    private static int lowerBound(int[] array, int fromIndex, int toIndex, long value) {
+        int low = fromIndex;
+        int high = toIndex;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (array[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
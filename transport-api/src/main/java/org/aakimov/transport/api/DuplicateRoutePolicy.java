@@ -0,0 +1,25 @@
+package org.aakimov.transport.api;
+
+/**
+ * Policy of route data readers for routes that share the same route ID.
+ *
+ * @author aakimov
+ */
+public enum DuplicateRoutePolicy {
+
+    /**
+     * All the routes are kept as they are (routes with the same ID are only counted)
+     */
+    KEEP,
+
+    /**
+     * Stops of the routes with the same ID are appended to the stops of the first one (in file order)
+     * and the merged route is moved after all the other routes
+     */
+    MERGE,
+
+    /**
+     * Only the first route with the given ID is kept, the following ones are dropped
+     */
+    REJECT
+}
@@ -78,6 +78,53 @@ public class FileRouteManager implements RouteManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(
+        int departureStopId,
+        int arrivalStopId,
+        int limit
+    ) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        if (routeIdCollector.isFull()) {
+            return routeIdCollector.toArray();
+        }
+        try (Stream<String> routeDataStream = Files.lines(Paths.get(this.fileName))) {
+            Predicate<String> isDepartureAndArrivalStopPresent = new RouteDataPredicate(
+                departureStopId,
+                arrivalStopId,
+                this.fileName
+            );
+
+            // scan is stopped as soon as the limit is reached
+            routeDataStream
+                .skip(1)
+                .filter(isDepartureAndArrivalStopPresent)
+                .anyMatch(routeData -> !routeIdCollector.add(FileRouteManager.parseRouteId(routeData)));
+        } catch (IOException exception) {
+            FileRouteManager.LOGGER.error(
+                "Route data file '{}' is not available or invalid.",
+                this.fileName,
+                exception
+            );
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Parse route ID of the route data line that is accepted by RouteDataPredicate
+     *
+     * @param routeData route data
+     * @return route ID
+     */
+    private static int parseRouteId(String routeData) {
+        try (Scanner routeDataScanner = new Scanner(routeData)) {
+            return routeDataScanner.nextInt();
+        }
+    }
+
     /**
      * Predicate that can be used to check if given string contains departure and arrival stop IDs.
      *
@@ -0,0 +1,334 @@
+package org.aakimov.transport.api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Precomputed direct connectivity of all the pairs of hot stops.
+ *
+ * Hot stops are either the stops served by the most routes or the given stop IDs. Every hot stop gets an index
+ * (position in the sorted hot stop IDs) and the matrix keeps a bit per pair of indexes in rows of 64-bit words,
+ * so a request between two hot stops takes two binary searches in a small array and a single read of the matrix
+ * instead of a pass over the route data. Matrix of 4096 hot stops takes 2Mb.
+ *
+ * Matrix is built in two parallel passes: the first one collects hot stop indexes of every route (chunks
+ * of routes are processed in parallel), the second one sets the bits of all the pairs of every route
+ * (ranges of rows are processed in parallel, so tasks never write the same word).
+ *
+ * @author aakimov
+ */
+final class HotStopMatrix {
+
+    /**
+     * Maximum number of hot stops (matrix takes 128Mb)
+     */
+    static final int MAX_HOT_STOP_COUNT = 32768;
+
+    /**
+     * Maximum supported range of stop IDs (maximum array size supported by most of the JVMs)
+     */
+    private static final long MAX_STOP_ID_RANGE = Integer.MAX_VALUE - 8L;
+
+    /**
+     * Number of tasks per thread (several tasks per thread help to balance the load)
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /**
+     * Sorted hot stop IDs (index of the stop ID is the index of the matrix row and column)
+     */
+    private final int[] hotStopIds;
+
+    /**
+     * Number of words in a matrix row
+     */
+    private final int rowLength;
+
+    /**
+     * Matrix rows (bit of the column is set if the stops are served by the same route)
+     */
+    private final long[] rows;
+
+    /**
+     * @param hotStopIds sorted hot stop IDs
+     */
+    private HotStopMatrix(
+        int[] hotStopIds
+    ) {
+        this.hotStopIds = hotStopIds;
+        this.rowLength = (hotStopIds.length + 63) >>> 6;
+        this.rows = new long[hotStopIds.length * this.rowLength];
+    }
+
+    /**
+     * Build the matrix for the route data
+     *
+     * @param routeData route data with sorted stop IDs segments
+     * @param hotStopCount maximum number of hot stops
+     * @param candidateStopIds hot stop IDs in order of priority (null selects the stops served by the most routes)
+     * @param parallelism number of threads used to build the matrix (1 means single-threaded mode)
+     * @return hot stop matrix
+     * @throws IllegalArgumentException if number of hot stops is out of range or range of stop IDs is too large
+     */
+    static HotStopMatrix build(int[] routeData, int hotStopCount, int[] candidateStopIds, int parallelism) {
+        if (hotStopCount < 1 || hotStopCount > HotStopMatrix.MAX_HOT_STOP_COUNT) {
+            throw new IllegalArgumentException("Number of hot stops should be between 1 and 32768.");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be positive.");
+        }
+
+        int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+        int[] routeStarts = new int[routeCount + 1];
+        long minStopId = Integer.MAX_VALUE;
+        long maxStopId = Integer.MIN_VALUE;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            routeStarts[routeIndex] = currentRouteDataIndex;
+            int stopCount = routeData[currentRouteDataIndex + 1];
+            if (stopCount > 0) {
+                minStopId = Math.min(minStopId, routeData[currentRouteDataIndex + 2]);
+                maxStopId = Math.max(maxStopId, routeData[currentRouteDataIndex + 1 + stopCount]);
+            }
+            currentRouteDataIndex += stopCount + 2;
+        }
+        routeStarts[routeCount] = currentRouteDataIndex;
+        if (minStopId > maxStopId) {
+            minStopId = 0;
+            maxStopId = -1;
+        }
+        if (maxStopId - minStopId + 1 > HotStopMatrix.MAX_STOP_ID_RANGE) {
+            throw new IllegalArgumentException("Range of stop IDs is too large to build the hot stop matrix.");
+        }
+
+        // stop ID (minus minimal stop ID) to hot stop index, -1 for the other stops
+        int stopIdOffset = (int)minStopId;
+        int[] hotStopIndexes = new int[(int)(maxStopId - minStopId + 1)];
+        int[] hotStopIds = (candidateStopIds == null)
+            ? HotStopMatrix.selectBusiestStops(routeData, routeCount, stopIdOffset, hotStopIndexes, hotStopCount)
+            : Arrays.stream(candidateStopIds).distinct().limit(hotStopCount).sorted().toArray();
+        Arrays.fill(hotStopIndexes, -1);
+        for (int hotStopIndex = 0; hotStopIndex < hotStopIds.length; hotStopIndex++) {
+            long stopIndex = (long)hotStopIds[hotStopIndex] - stopIdOffset;
+            if (stopIndex >= 0 && stopIndex < hotStopIndexes.length) {
+                hotStopIndexes[(int)stopIndex] = hotStopIndex;
+            }
+        }
+
+        HotStopMatrix hotStopMatrix = new HotStopMatrix(hotStopIds);
+        if (hotStopIds.length == 0 || routeCount == 0) {
+            return hotStopMatrix;
+        }
+
+        int taskCount = (parallelism == 1)
+            ? 1
+            : Math.min(routeCount, parallelism * HotStopMatrix.TASKS_PER_THREAD);
+        ForkJoinPool forkJoinPool = new ForkJoinPool(parallelism);
+        try {
+            // first pass: hot stop indexes of every route (ascending, because stop IDs of a route are sorted)
+            List<ForkJoinTask<int[][]>> routeTasks = new ArrayList<>(taskCount);
+            for (int taskIndex = 0; taskIndex < taskCount; taskIndex++) {
+                int fromRouteIndex = (int)((long)routeCount * taskIndex / taskCount);
+                int toRouteIndex = (int)((long)routeCount * (taskIndex + 1) / taskCount);
+                routeTasks.add(
+                    forkJoinPool.submit(
+                        () -> HotStopMatrix.collectHotStops(
+                            routeData, routeStarts, fromRouteIndex, toRouteIndex, stopIdOffset, hotStopIndexes
+                        )
+                    )
+                );
+            }
+            List<int[]> routeHotStops = new ArrayList<>();
+            for (ForkJoinTask<int[][]> routeTask : routeTasks) {
+                for (int[] hotStops : routeTask.join()) {
+                    if (hotStops.length > 0) {
+                        routeHotStops.add(hotStops);
+                    }
+                }
+            }
+
+            // second pass: bits of all the pairs, every task owns its own range of rows
+            int rowTaskCount = Math.min(hotStopIds.length, taskCount);
+            List<ForkJoinTask<?>> rowTasks = new ArrayList<>(rowTaskCount);
+            for (int taskIndex = 0; taskIndex < rowTaskCount; taskIndex++) {
+                int fromRow = (int)((long)hotStopIds.length * taskIndex / rowTaskCount);
+                int toRow = (int)((long)hotStopIds.length * (taskIndex + 1) / rowTaskCount);
+                rowTasks.add(forkJoinPool.submit(() -> hotStopMatrix.fillRows(routeHotStops, fromRow, toRow)));
+            }
+            for (ForkJoinTask<?> rowTask : rowTasks) {
+                rowTask.join();
+            }
+        } finally {
+            forkJoinPool.shutdown();
+        }
+        return hotStopMatrix;
+    }
+
+    /**
+     * Retrieve index of the hot stop
+     *
+     * @param stopId stop ID
+     * @return hot stop index or negative value if the stop is not hot
+     */
+    int getHotStopIndex(int stopId) {
+        return Arrays.binarySearch(this.hotStopIds, stopId);
+    }
+
+    /**
+     * Check if hot stops are served by the same route
+     *
+     * @param departureHotStopIndex hot stop index of the departure stop
+     * @param arrivalHotStopIndex hot stop index of the arrival stop
+     * @return true if direct route is available or false otherwise
+     */
+    boolean isConnected(int departureHotStopIndex, int arrivalHotStopIndex) {
+        long word = this.rows[departureHotStopIndex * this.rowLength + (arrivalHotStopIndex >>> 6)];
+        return (word & (1L << arrivalHotStopIndex)) != 0;
+    }
+
+    /**
+     * Retrieve number of hot stops
+     *
+     * @return number of hot stops
+     */
+    int getHotStopCount() {
+        return this.hotStopIds.length;
+    }
+
+    /**
+     * Retrieve memory size of the matrix and hot stop IDs
+     *
+     * @return size in bytes
+     */
+    long getSize() {
+        return this.rows.length * (long)Long.BYTES + this.hotStopIds.length * (long)Integer.BYTES;
+    }
+
+    /**
+     * Set bits of all the pairs of hot stops of every route for the given range of rows
+     *
+     * @param routeHotStops ascending hot stop indexes of the routes
+     * @param fromRow first row (inclusive)
+     * @param toRow last row (exclusive)
+     */
+    private void fillRows(List<int[]> routeHotStops, int fromRow, int toRow) {
+        for (int[] hotStops : routeHotStops) {
+            int firstPosition = Arrays.binarySearch(hotStops, fromRow);
+            if (firstPosition < 0) {
+                firstPosition = -firstPosition - 1;
+            }
+            for (int rowPosition = firstPosition; rowPosition < hotStops.length; rowPosition++) {
+                int row = hotStops[rowPosition];
+                if (row >= toRow) {
+                    break;
+                }
+                int rowStart = row * this.rowLength;
+                for (int column : hotStops) {
+                    this.rows[rowStart + (column >>> 6)] |= 1L << column;
+                }
+            }
+        }
+    }
+
+    /**
+     * Select stops served by the most routes (stops with the same number of routes are selected in order of IDs)
+     *
+     * @param routeData route data
+     * @param routeCount number of routes
+     * @param minStopId minimal stop ID
+     * @param routeCounts scratch array addressed by stop ID minus minimal stop ID (filled with route counts)
+     * @param hotStopCount maximum number of hot stops
+     * @return sorted hot stop IDs
+     */
+    private static int[] selectBusiestStops(
+        int[] routeData,
+        int routeCount,
+        int minStopId,
+        int[] routeCounts,
+        int hotStopCount
+    ) {
+        int maxRouteCount = 0;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int firstStopIndex = currentRouteDataIndex + 2;
+            int nextRouteDataIndex = firstStopIndex + routeData[currentRouteDataIndex + 1];
+            for (int stopIndex = firstStopIndex; stopIndex < nextRouteDataIndex; stopIndex++) {
+                // repeated stops of a route are adjacent and counted once
+                if (stopIndex == firstStopIndex || routeData[stopIndex] != routeData[stopIndex - 1]) {
+                    maxRouteCount = Math.max(maxRouteCount, ++routeCounts[routeData[stopIndex] - minStopId]);
+                }
+            }
+            currentRouteDataIndex = nextRouteDataIndex;
+        }
+
+        if (maxRouteCount == 0) {
+            return new int[0];
+        }
+
+        // the lowest number of routes that is still selected is found by a histogram of route counts
+        int[] stopCounts = new int[maxRouteCount + 1];
+        for (int stopRouteCount : routeCounts) {
+            stopCounts[stopRouteCount]++;
+        }
+        int threshold = maxRouteCount;
+        int aboveThresholdCount = 0;
+        while (threshold > 1 && aboveThresholdCount + stopCounts[threshold] < hotStopCount) {
+            aboveThresholdCount += stopCounts[threshold];
+            threshold--;
+        }
+        int thresholdSlots = Math.min(stopCounts[threshold], hotStopCount - aboveThresholdCount);
+
+        int[] hotStopIds = new int[aboveThresholdCount + thresholdSlots];
+        int hotStopIndex = 0;
+        for (int stopIndex = 0; stopIndex < routeCounts.length && hotStopIndex < hotStopIds.length; stopIndex++) {
+            int stopRouteCount = routeCounts[stopIndex];
+            if (stopRouteCount > threshold || (stopRouteCount == threshold && thresholdSlots-- > 0)) {
+                hotStopIds[hotStopIndex++] = stopIndex + minStopId;
+            }
+        }
+        return Arrays.copyOf(hotStopIds, hotStopIndex);
+    }
+
+    /**
+     * Collect hot stop indexes of the routes
+     *
+     * @param routeData route data
+     * @param routeStarts index of every route in the route data (and the end of the route data)
+     * @param fromRouteIndex first route index (inclusive)
+     * @param toRouteIndex last route index (exclusive)
+     * @param minStopId minimal stop ID
+     * @param hotStopIndexes hot stop index addressed by stop ID minus minimal stop ID
+     * @return ascending hot stop indexes of every route of the range
+     */
+    private static int[][] collectHotStops(
+        int[] routeData,
+        int[] routeStarts,
+        int fromRouteIndex,
+        int toRouteIndex,
+        int minStopId,
+        int[] hotStopIndexes
+    ) {
+        int[][] routeHotStops = new int[toRouteIndex - fromRouteIndex][];
+        int[] buffer = new int[16];
+        for (int routeIndex = fromRouteIndex; routeIndex < toRouteIndex; routeIndex++) {
+            int hotStopCount = 0;
+            int previousHotStopIndex = -1;
+            for (int stopIndex = routeStarts[routeIndex] + 2; stopIndex < routeStarts[routeIndex + 1]; stopIndex++) {
+                int hotStopIndex = hotStopIndexes[routeData[stopIndex] - minStopId];
+                // repeated stops of a route are adjacent, so they are skipped by comparing with the previous one
+                if (hotStopIndex >= 0 && hotStopIndex != previousHotStopIndex) {
+                    if (hotStopCount == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    buffer[hotStopCount++] = hotStopIndex;
+                    previousHotStopIndex = hotStopIndex;
+                }
+            }
+            routeHotStops[routeIndex - fromRouteIndex] = Arrays.copyOf(buffer, hotStopCount);
+        }
+        return routeHotStops;
+    }
+}
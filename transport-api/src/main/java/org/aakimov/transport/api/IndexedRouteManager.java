@@ -0,0 +1,188 @@
+package org.aakimov.transport.api;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Route data manager that uses inverted stop to route index to provide route information.
+ *
+ * Instead of searching both stops in every route, this one intersects two sorted lists of route indexes
+ * (one per stop). Each list is about (total number of stops in all routes / number of stops) long,
+ * so the query cost does not depend on the total number of routes anymore.
+ *
+ * Index is built once from the route data array (see MappedRouteDataReader) and does not keep a reference to it,
+ * so route data array can be garbage collected once the manager is created.
+ * Memory footprint of the index is about the same as the one of the route data array.
+ *
+ * @see StopRouteIndex
+ * @author aakimov
+ */
+@Named
+@Singleton
+public class IndexedRouteManager implements RouteManager {
+
+    /**
+     * Stop to route index
+     */
+    private final StopRouteIndex stopRouteIndex;
+
+    /**
+     * @param routeData route data with sorted stop IDs segments
+     */
+    public IndexedRouteManager(
+        int[] routeData
+    ) {
+        this.stopRouteIndex = StopRouteIndex.build(routeData);
+    }
+
+    /**
+     * Check if direct route is available between given stops.
+     *
+     * Postings of both stops are intersected starting from the shorter list.
+     * Longer list is searched using galloping (exponential) search, so significantly unbalanced lists
+     * (very popular stop versus rare one) are intersected in logarithmic time.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if direct route is available or false otherwise
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        int departureStart = this.stopRouteIndex.getPostingStart(departureStopId);
+        int departureEnd = this.stopRouteIndex.getPostingEnd(departureStopId);
+        int arrivalStart = this.stopRouteIndex.getPostingStart(arrivalStopId);
+        int arrivalEnd = this.stopRouteIndex.getPostingEnd(arrivalStopId);
+        if (departureStart == departureEnd || arrivalStart == arrivalEnd) {
+            return false;
+        }
+
+        return (departureEnd - departureStart <= arrivalEnd - arrivalStart)
+            ? this.intersects(departureStart, departureEnd, arrivalStart, arrivalEnd)
+            : this.intersects(arrivalStart, arrivalEnd, departureStart, departureEnd);
+    }
+
+    /**
+     * Find IDs of the routes that serve both given stops.
+     *
+     * Postings of both stops are intersected in the same way as in isDirectRouteAvailable,
+     * but the intersection continues until the end of the shorter list or until the limit is reached.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes (in order of route data) or empty array if there is no direct route
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        int departureStart = this.stopRouteIndex.getPostingStart(departureStopId);
+        int departureEnd = this.stopRouteIndex.getPostingEnd(departureStopId);
+        int arrivalStart = this.stopRouteIndex.getPostingStart(arrivalStopId);
+        int arrivalEnd = this.stopRouteIndex.getPostingEnd(arrivalStopId);
+        RouteIdCollector routeIdCollector = new RouteIdCollector(
+            limit,
+            Math.min(departureEnd - departureStart, arrivalEnd - arrivalStart)
+        );
+
+        if (departureEnd - departureStart <= arrivalEnd - arrivalStart) {
+            this.collectCommonRoutes(departureStart, departureEnd, arrivalStart, arrivalEnd, routeIdCollector);
+        } else {
+            this.collectCommonRoutes(arrivalStart, arrivalEnd, departureStart, departureEnd, routeIdCollector);
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Collect IDs of the routes that are present in both sorted posting ranges
+     *
+     * @param shortStart start of the shorter posting range
+     * @param shortEnd end of the shorter posting range
+     * @param longStart start of the longer posting range
+     * @param longEnd end of the longer posting range
+     * @param routeIdCollector route ID collector
+     */
+    private void collectCommonRoutes(
+        int shortStart,
+        int shortEnd,
+        int longStart,
+        int longEnd,
+        RouteIdCollector routeIdCollector
+    ) {
+        int[] stopRoutes = this.stopRouteIndex.getStopRoutes();
+        int longIndex = longStart;
+        for (int shortIndex = shortStart; shortIndex < shortEnd && !routeIdCollector.isFull(); shortIndex++) {
+            int routeIndex = stopRoutes[shortIndex];
+            longIndex = IndexedRouteManager.advance(stopRoutes, longIndex, longEnd, routeIndex);
+            if (longIndex == longEnd) {
+                return;
+            }
+            if (stopRoutes[longIndex] == routeIndex) {
+                routeIdCollector.add(this.stopRouteIndex.getRouteId(routeIndex));
+            }
+        }
+    }
+
+    /**
+     * Check if two sorted posting ranges have at least one common route index
+     *
+     * @param shortStart start of the shorter posting range
+     * @param shortEnd end of the shorter posting range
+     * @param longStart start of the longer posting range
+     * @param longEnd end of the longer posting range
+     * @return true if common route index exists or false otherwise
+     */
+    private boolean intersects(int shortStart, int shortEnd, int longStart, int longEnd) {
+        int[] stopRoutes = this.stopRouteIndex.getStopRoutes();
+        int longIndex = longStart;
+        for (int shortIndex = shortStart; shortIndex < shortEnd; shortIndex++) {
+            int routeIndex = stopRoutes[shortIndex];
+            longIndex = IndexedRouteManager.advance(stopRoutes, longIndex, longEnd, routeIndex);
+            if (longIndex == longEnd) {
+                return false;
+            }
+            if (stopRoutes[longIndex] == routeIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the first element of the sorted range that is not less than the given value.
+     *
+     * @param values sorted values
+     * @param fromIndex start of the range (inclusive)
+     * @param toIndex end of the range (exclusive)
+     * @param value value to find
+     * @return index of the first element that is not less than the value or toIndex if there is no such element
+     */
+    static int advance(int[] values, int fromIndex, int toIndex, int value) {
+        if (fromIndex >= toIndex || values[fromIndex] >= value) {
+            return fromIndex;
+        }
+
+        // gallop until the value is bracketed
+        int low = fromIndex;
+        int step = 1;
+        int high = fromIndex + step;
+        while (high < toIndex && values[high] < value) {
+            low = high;
+            step <<= 1;
+            high = fromIndex + step;
+        }
+        if (high > toIndex) {
+            high = toIndex;
+        }
+
+        // values[low] < value <= values[high] (if high is in range)
+        low++;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (values[middle] < value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
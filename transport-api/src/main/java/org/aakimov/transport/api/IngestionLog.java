@@ -0,0 +1,411 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mutable log of route data lines collected while route data is parsed (one instance per parsed chunk).
+ *
+ * Anomalies are only counted, so the size of the log does not depend on the number of lines. To truncate the log
+ * to the given number of lines, the last TAIL_ENTRY_COUNT anomalies are kept as packed longs (line index,
+ * number of released elements and kind). Messages and locations are kept for the first
+ * IngestionReport.MAX_ERROR_COUNT errors only.
+ *
+ * @author aakimov
+ */
+final class IngestionLog {
+
+    /**
+     * Error message for route data that ends before the declared number of routes
+     */
+    static final String MESSAGE_MISSING_ROUTES = "Route data ends before the declared number of routes.";
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataReader.class);
+
+    /**
+     * Maximum number of errors written to the log
+     */
+    private static final int LOGGED_ERROR_COUNT = 10;
+
+    /**
+     * Number of the last anomalies kept to truncate the log
+     */
+    private static final int TAIL_ENTRY_COUNT = 16;
+
+    /**
+     * Kind of the line that cannot be parsed
+     */
+    private static final int KIND_BAD_LINE = 0;
+
+    /**
+     * Kind of the route with less than 2 stops
+     */
+    private static final int KIND_SHORT_ROUTE = 1;
+
+    /**
+     * Kind of the route with duplicate stops
+     */
+    private static final int KIND_DUPLICATE_STOPS = 2;
+
+    /**
+     * Number of bits used by the kind in the packed entry
+     */
+    private static final int KIND_BITS = 2;
+
+    /**
+     * Number of bits used by the kind and the number of released elements in the packed entry
+     */
+    private static final int LINE_INDEX_SHIFT = 33;
+
+    /**
+     * Last anomalies in a ring in order of lines (high 31 bits are line index, next 31 bits are number of elements
+     * released by removal of duplicate stops, low KIND_BITS bits are kind)
+     */
+    private final long[] tailEntries = new long[IngestionLog.TAIL_ENTRY_COUNT];
+
+    /**
+     * Index of the ring slot next to the last anomaly
+     */
+    private int tailEnd;
+
+    /**
+     * Number of anomalies in the ring
+     */
+    private int tailEntryCount;
+
+    /**
+     * Line index of the last anomaly pushed out of the ring (-1 if there is no such anomaly)
+     */
+    private int droppedLineIndex = -1;
+
+    /**
+     * Number of processed route lines (loaded and skipped)
+     */
+    private int lineCount;
+
+    /**
+     * Number of skipped lines that cannot be parsed
+     */
+    private int badLineCount;
+
+    /**
+     * Number of skipped routes with less than 2 stops
+     */
+    private int shortRouteCount;
+
+    /**
+     * Number of loaded routes with duplicate stops
+     */
+    private int duplicateStopRouteCount;
+
+    /**
+     * Number of elements released by removal of duplicate stops
+     */
+    private long duplicateStopLength;
+
+    /**
+     * Line indexes of the first errors (-1 is the first line, 0 is the first route line)
+     */
+    private final int[] errorLineIndexes = new int[IngestionReport.MAX_ERROR_COUNT];
+
+    /**
+     * Byte offsets of the first errors
+     */
+    private final long[] errorOffsets = new long[IngestionReport.MAX_ERROR_COUNT];
+
+    /**
+     * Messages of the first errors
+     */
+    private final String[] errorMessages = new String[IngestionReport.MAX_ERROR_COUNT];
+
+    /**
+     * Number of the first errors
+     */
+    private int errorCount;
+
+    /**
+     * Number of routes declared in the first line
+     */
+    private int declaredRouteCount;
+
+    /**
+     * Number of routes with route ID of one of the previous routes
+     */
+    private int duplicateRouteCount;
+
+    /**
+     * Number of routes removed (or merged into other ones) because of duplicate route IDs
+     */
+    private int removedRouteCount;
+
+    /**
+     * Number of elements released by removal of the routes with duplicate route IDs
+     */
+    private long removedRouteLength;
+
+    /**
+     * Register loaded route
+     *
+     * @param duplicateStops flag that shows if the route contains duplicate stops
+     * @param releasedLength number of elements released by removal of duplicate stops
+     */
+    void addRoute(boolean duplicateStops, int releasedLength) {
+        if (duplicateStops) {
+            this.addEntry(this.lineCount, IngestionLog.KIND_DUPLICATE_STOPS, releasedLength);
+        }
+        this.lineCount++;
+    }
+
+    /**
+     * Register routes with duplicate route IDs
+     *
+     * @param duplicateRouteCount number of routes with route ID of one of the previous routes
+     * @param removedRouteCount number of removed (or merged) routes
+     * @param removedRouteLength number of released elements
+     */
+    void addDuplicateRoutes(int duplicateRouteCount, int removedRouteCount, long removedRouteLength) {
+        this.duplicateRouteCount += duplicateRouteCount;
+        this.removedRouteCount += removedRouteCount;
+        this.removedRouteLength += removedRouteLength;
+    }
+
+    /**
+     * Register skipped route line
+     *
+     * @param byteOffset offset of the line start
+     * @param exception format error of the line (ShortRouteException for routes with less than 2 stops)
+     */
+    void skipLine(long byteOffset, FileFormatException exception) {
+        this.addEntry(
+            this.lineCount,
+            (exception instanceof ShortRouteException) ? IngestionLog.KIND_SHORT_ROUTE : IngestionLog.KIND_BAD_LINE,
+            0
+        );
+        this.addError(this.lineCount, byteOffset, exception.getMessage());
+        this.lineCount++;
+    }
+
+    /**
+     * Register error of the route line that stops processing (the line is not counted)
+     *
+     * @param byteOffset offset of the line start
+     * @param message error message
+     */
+    void failLine(long byteOffset, String message) {
+        this.addError(this.lineCount, byteOffset, message);
+    }
+
+    /**
+     * Register error with location
+     *
+     * @param lineIndex line index (-1 is the first line, 0 is the first route line)
+     * @param byteOffset offset of the line start
+     * @param message error message
+     */
+    void addError(int lineIndex, long byteOffset, String message) {
+        if (this.errorCount < IngestionReport.MAX_ERROR_COUNT) {
+            this.errorLineIndexes[this.errorCount] = lineIndex;
+            this.errorOffsets[this.errorCount] = byteOffset;
+            this.errorMessages[this.errorCount] = message;
+            this.errorCount++;
+        }
+    }
+
+    /**
+     * Retrieve number of processed route lines
+     *
+     * @return number of loaded and skipped lines
+     */
+    int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * Retrieve number of loaded routes
+     *
+     * @return number of processed lines that are not skipped (without removed duplicate routes)
+     */
+    int getRouteCount() {
+        return this.lineCount - this.badLineCount - this.shortRouteCount - this.removedRouteCount;
+    }
+
+    /**
+     * Set number of routes declared in the first line
+     *
+     * @param declaredRouteCount number of declared routes
+     */
+    void setDeclaredRouteCount(int declaredRouteCount) {
+        this.declaredRouteCount = declaredRouteCount;
+    }
+
+    /**
+     * Forget all the lines after the given number of lines.
+     *
+     * Only the last TAIL_ENTRY_COUNT anomalies can be forgotten, so the log cannot be truncated if more of them
+     * happened after the given number of lines (the log should not be used then).
+     *
+     * @param maxLineCount maximum number of lines to keep
+     * @return true if the log is truncated or false if it should be collected again
+     */
+    boolean truncate(int maxLineCount) {
+        if (this.lineCount <= maxLineCount) {
+            return true;
+        }
+        while (this.tailEntryCount > 0) {
+            int lastSlot = (this.tailEnd + IngestionLog.TAIL_ENTRY_COUNT - 1) % IngestionLog.TAIL_ENTRY_COUNT;
+            long entry = this.tailEntries[lastSlot];
+            if (entry >>> IngestionLog.LINE_INDEX_SHIFT < maxLineCount) {
+                break;
+            }
+            this.countEntry(entry, -1);
+            this.tailEnd = lastSlot;
+            this.tailEntryCount--;
+        }
+        if (this.tailEntryCount == 0 && this.droppedLineIndex >= maxLineCount) {
+            return false;
+        }
+        this.lineCount = maxLineCount;
+        while (this.errorCount > 0 && this.errorLineIndexes[this.errorCount - 1] >= maxLineCount) {
+            this.errorCount--;
+        }
+        return true;
+    }
+
+    /**
+     * Append log of the next chunk (its lines follow the lines of this log)
+     *
+     * @param ingestionLog log of the next chunk
+     */
+    void append(IngestionLog ingestionLog) {
+        this.badLineCount += ingestionLog.badLineCount;
+        this.shortRouteCount += ingestionLog.shortRouteCount;
+        this.duplicateStopRouteCount += ingestionLog.duplicateStopRouteCount;
+        this.duplicateStopLength += ingestionLog.duplicateStopLength;
+        if (ingestionLog.droppedLineIndex >= 0) {
+            this.droppedLineIndex = this.lineCount + ingestionLog.droppedLineIndex;
+        }
+        int firstSlot = ingestionLog.tailEnd + IngestionLog.TAIL_ENTRY_COUNT - ingestionLog.tailEntryCount;
+        for (int entryIndex = 0; entryIndex < ingestionLog.tailEntryCount; entryIndex++) {
+            long entry = ingestionLog.tailEntries[(firstSlot + entryIndex) % IngestionLog.TAIL_ENTRY_COUNT];
+            this.pushEntry(entry + ((long)this.lineCount << IngestionLog.LINE_INDEX_SHIFT));
+        }
+        for (int errorIndex = 0; errorIndex < ingestionLog.errorCount; errorIndex++) {
+            this.addError(
+                this.lineCount + ingestionLog.errorLineIndexes[errorIndex],
+                ingestionLog.errorOffsets[errorIndex],
+                ingestionLog.errorMessages[errorIndex]
+            );
+        }
+        this.lineCount += ingestionLog.lineCount;
+        this.addDuplicateRoutes(
+            ingestionLog.duplicateRouteCount,
+            ingestionLog.removedRouteCount,
+            ingestionLog.removedRouteLength
+        );
+    }
+
+    /**
+     * Create immutable report of the log
+     *
+     * @param policy policy used to read route data
+     * @param failure reason of the route data rejection (null if route data is loaded)
+     * @return ingestion report
+     */
+    IngestionReport toReport(IngestionPolicy policy, String failure) {
+        List<IngestionReport.IngestionError> errors = new ArrayList<>(this.errorCount);
+        for (int errorIndex = 0; errorIndex < this.errorCount; errorIndex++) {
+            errors.add(
+                new IngestionReport.IngestionError(
+                    this.errorLineIndexes[errorIndex] + 2L,
+                    this.errorOffsets[errorIndex],
+                    this.errorMessages[errorIndex]
+                )
+            );
+        }
+        return new IngestionReport(
+            policy,
+            this.declaredRouteCount,
+            (failure == null) ? this.getRouteCount() : 0,
+            this.badLineCount + this.shortRouteCount,
+            this.shortRouteCount,
+            this.duplicateStopRouteCount,
+            this.duplicateRouteCount,
+            this.duplicateStopLength + this.removedRouteLength,
+            errors,
+            failure
+        );
+    }
+
+    /**
+     * Write summary of the report and its first errors to the log
+     *
+     * @param routeDataSource description of the route data source
+     * @param report ingestion report
+     */
+    static void log(Object routeDataSource, IngestionReport report) {
+        if (report.getErrors().isEmpty()) {
+            LOGGER.info("Route data {} ingestion summary: {}", routeDataSource, report);
+            return;
+        }
+        LOGGER.warn("Route data {} ingestion summary: {}", routeDataSource, report);
+        List<IngestionReport.IngestionError> errors = report.getErrors();
+        for (int errorIndex = 0; errorIndex < Math.min(errors.size(), IngestionLog.LOGGED_ERROR_COUNT); errorIndex++) {
+            LOGGER.warn("Route data {} error at {}", routeDataSource, errors.get(errorIndex));
+        }
+    }
+
+    /**
+     * Count anomaly of the given line and keep it in the ring of the last anomalies
+     *
+     * @param lineIndex line index
+     * @param kind kind of the anomaly
+     * @param releasedLength number of elements released by removal of duplicate stops
+     */
+    private void addEntry(int lineIndex, int kind, int releasedLength) {
+        long entry = ((long)lineIndex << IngestionLog.LINE_INDEX_SHIFT)
+            | ((long)releasedLength << IngestionLog.KIND_BITS)
+            | kind;
+        this.countEntry(entry, 1);
+        this.pushEntry(entry);
+    }
+
+    /**
+     * Put anomaly into the ring of the last anomalies (the oldest one is pushed out if the ring is full)
+     *
+     * @param entry packed anomaly
+     */
+    private void pushEntry(long entry) {
+        if (this.tailEntryCount == IngestionLog.TAIL_ENTRY_COUNT) {
+            this.droppedLineIndex = (int)(this.tailEntries[this.tailEnd] >>> IngestionLog.LINE_INDEX_SHIFT);
+        } else {
+            this.tailEntryCount++;
+        }
+        this.tailEntries[this.tailEnd] = entry;
+        this.tailEnd = (this.tailEnd + 1) % IngestionLog.TAIL_ENTRY_COUNT;
+    }
+
+    /**
+     * Add anomaly to the counters of its kind
+     *
+     * @param entry packed anomaly
+     * @param sign 1 to count the anomaly or -1 to forget it
+     */
+    private void countEntry(long entry, int sign) {
+        int kind = (int)(entry & ((1 << IngestionLog.KIND_BITS) - 1));
+        if (kind == IngestionLog.KIND_BAD_LINE) {
+            this.badLineCount += sign;
+        } else if (kind == IngestionLog.KIND_SHORT_ROUTE) {
+            this.shortRouteCount += sign;
+        } else {
+            this.duplicateStopRouteCount += sign;
+            this.duplicateStopLength += sign * ((entry & ((1L << IngestionLog.LINE_INDEX_SHIFT) - 1))
+                >>> IngestionLog.KIND_BITS);
+        }
+    }
+}
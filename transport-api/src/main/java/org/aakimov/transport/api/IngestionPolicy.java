@@ -0,0 +1,26 @@
+package org.aakimov.transport.api;
+
+/**
+ * Policy of route data readers for route data with format errors.
+ *
+ * @author aakimov
+ */
+public enum IngestionPolicy {
+
+    /**
+     * Route data with any format error is rejected as a whole (empty route data is returned)
+     */
+    STRICT,
+
+    /**
+     * Lines that cannot be parsed and routes with less than 2 stops are skipped and reported,
+     * all the other routes are loaded (route data that ends before the declared number of routes is loaded as well)
+     */
+    SKIP_BAD_LINES,
+
+    /**
+     * Route data with any format error is rejected and IllegalStateException is thrown,
+     * so the application does not start with empty route data
+     */
+    FAIL_STARTUP
+}
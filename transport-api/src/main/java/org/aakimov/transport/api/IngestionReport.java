@@ -0,0 +1,306 @@
+package org.aakimov.transport.api;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Report of a route data read.
+ *
+ * Contains numbers of loaded routes and skipped lines together with the locations of the first format errors
+ * (up to MAX_ERROR_COUNT of them), so the size of the report does not depend on the number of errors.
+ *
+ * @author aakimov
+ */
+public final class IngestionReport {
+
+    /**
+     * Maximum number of format errors with locations kept in the report
+     */
+    public static final int MAX_ERROR_COUNT = 100;
+
+    /**
+     * Policy used to read route data
+     */
+    private final IngestionPolicy policy;
+
+    /**
+     * Number of routes declared in the first line (0 if it cannot be parsed)
+     */
+    private final int declaredRouteCount;
+
+    /**
+     * Number of loaded routes
+     */
+    private final int routeCount;
+
+    /**
+     * Number of skipped lines (including routes with less than 2 stops)
+     */
+    private final int skippedLineCount;
+
+    /**
+     * Number of skipped routes with less than 2 stops
+     */
+    private final int shortRouteCount;
+
+    /**
+     * Number of loaded routes with duplicate stops (duplicate stops are removed)
+     */
+    private final int duplicateStopRouteCount;
+
+    /**
+     * Number of routes with route ID of one of the previous routes
+     */
+    private final int duplicateRouteCount;
+
+    /**
+     * Number of integers released by removal of duplicate stops and duplicate routes
+     */
+    private final long releasedLength;
+
+    /**
+     * First format errors in order of lines
+     */
+    private final List<IngestionError> errors;
+
+    /**
+     * Reason of the route data rejection (null if route data is loaded)
+     */
+    private final String failure;
+
+    /**
+     * @param policy policy used to read route data
+     * @param declaredRouteCount number of routes declared in the first line
+     * @param routeCount number of loaded routes
+     * @param skippedLineCount number of skipped lines
+     * @param shortRouteCount number of skipped routes with less than 2 stops
+     * @param duplicateStopRouteCount number of loaded routes with duplicate stops
+     * @param duplicateRouteCount number of routes with route ID of one of the previous routes
+     * @param releasedLength number of integers released by removal of duplicate stops and duplicate routes
+     * @param errors first format errors in order of lines
+     * @param failure reason of the route data rejection (null if route data is loaded)
+     */
+    IngestionReport(
+        IngestionPolicy policy,
+        int declaredRouteCount,
+        int routeCount,
+        int skippedLineCount,
+        int shortRouteCount,
+        int duplicateStopRouteCount,
+        int duplicateRouteCount,
+        long releasedLength,
+        List<IngestionError> errors,
+        String failure
+    ) {
+        this.policy = policy;
+        this.declaredRouteCount = declaredRouteCount;
+        this.routeCount = routeCount;
+        this.skippedLineCount = skippedLineCount;
+        this.shortRouteCount = shortRouteCount;
+        this.duplicateStopRouteCount = duplicateStopRouteCount;
+        this.duplicateRouteCount = duplicateRouteCount;
+        this.releasedLength = releasedLength;
+        this.errors = Collections.unmodifiableList(errors);
+        this.failure = failure;
+    }
+
+    /**
+     * Retrieve policy used to read route data
+     *
+     * @return ingestion policy
+     */
+    public IngestionPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Retrieve number of routes declared in the first line
+     *
+     * @return number of declared routes (0 if the first line cannot be parsed)
+     */
+    public int getDeclaredRouteCount() {
+        return this.declaredRouteCount;
+    }
+
+    /**
+     * Retrieve number of loaded routes
+     *
+     * @return number of routes (0 if route data is rejected)
+     */
+    public int getRouteCount() {
+        return this.routeCount;
+    }
+
+    /**
+     * Retrieve number of skipped lines (including routes with less than 2 stops)
+     *
+     * @return number of skipped lines
+     */
+    public int getSkippedLineCount() {
+        return this.skippedLineCount;
+    }
+
+    /**
+     * Retrieve number of skipped routes with less than 2 stops
+     *
+     * @return number of short routes
+     */
+    public int getShortRouteCount() {
+        return this.shortRouteCount;
+    }
+
+    /**
+     * Retrieve number of loaded routes with duplicate stops
+     *
+     * @return number of routes with duplicate stops
+     */
+    public int getDuplicateStopRouteCount() {
+        return this.duplicateStopRouteCount;
+    }
+
+    /**
+     * Retrieve number of routes with route ID of one of the previous routes (see DuplicateRoutePolicy)
+     *
+     * @return number of duplicate routes
+     */
+    public int getDuplicateRouteCount() {
+        return this.duplicateRouteCount;
+    }
+
+    /**
+     * Retrieve number of integers released by removal of duplicate stops and duplicate routes
+     *
+     * @return number of released integers (4 bytes each)
+     */
+    public long getReleasedLength() {
+        return this.releasedLength;
+    }
+
+    /**
+     * Retrieve first format errors (up to MAX_ERROR_COUNT of them)
+     *
+     * @return format errors in order of lines
+     */
+    public List<IngestionError> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Retrieve reason of the route data rejection
+     *
+     * @return error message (null if route data is loaded)
+     */
+    public String getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Check if route data is rejected as a whole
+     *
+     * @return true if route data is rejected or false if it is loaded
+     */
+    public boolean isRejected() {
+        return this.failure != null;
+    }
+
+    /**
+     * Format one line summary of the report
+     *
+     * @return report summary
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder()
+            .append(this.policy)
+            .append(": ")
+            .append(this.routeCount)
+            .append(" of ")
+            .append(this.declaredRouteCount)
+            .append(" declared routes loaded, ")
+            .append(this.skippedLineCount)
+            .append(" lines skipped (")
+            .append(this.shortRouteCount)
+            .append(" routes with less than 2 stops), ")
+            .append(this.duplicateStopRouteCount)
+            .append(" routes with duplicate stops, ")
+            .append(this.duplicateRouteCount)
+            .append(" duplicate route IDs, ")
+            .append(this.releasedLength)
+            .append(" ints released");
+        if (!this.errors.isEmpty()) {
+            builder.append(", first error: ").append(this.errors.get(0));
+        }
+        if (this.failure != null) {
+            builder.append(", rejected: ").append(this.failure);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Format error of a route data line
+     */
+    public static final class IngestionError {
+
+        /**
+         * Line number (starting from 1, the first line declares the number of routes)
+         */
+        private final long lineNumber;
+
+        /**
+         * Offset of the line start (in bytes of the uncompressed route data)
+         */
+        private final long byteOffset;
+
+        /**
+         * Error message
+         */
+        private final String message;
+
+        /**
+         * @param lineNumber line number (starting from 1)
+         * @param byteOffset offset of the line start (in bytes)
+         * @param message error message
+         */
+        IngestionError(
+            long lineNumber,
+            long byteOffset,
+            String message
+        ) {
+            this.lineNumber = lineNumber;
+            this.byteOffset = byteOffset;
+            this.message = message;
+        }
+
+        /**
+         * Retrieve line number
+         *
+         * @return line number (starting from 1)
+         */
+        public long getLineNumber() {
+            return this.lineNumber;
+        }
+
+        /**
+         * Retrieve offset of the line start
+         *
+         * @return offset (in bytes of the uncompressed route data)
+         */
+        public long getByteOffset() {
+            return this.byteOffset;
+        }
+
+        /**
+         * Retrieve error message
+         *
+         * @return error message
+         */
+        public String getMessage() {
+            return this.message;
+        }
+
+        @Override
+        public String toString() {
+            return "line " + this.lineNumber + " (byte " + this.byteOffset + "): " + this.message;
+        }
+    }
+}
@@ -6,13 +6,20 @@ import sun.misc.Cleaner;//NOSONAR
 import sun.nio.ch.DirectBuffer;//NOSONAR
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
 /**
  * Implementation of route data reader that performs fast mapped data read from the given file.
@@ -22,7 +29,24 @@ import java.util.Arrays;
  * [route count][route ID1][stop count of route ID1][stop ID1][stop ID2]...[route ID2][stop count of route ID2]...
  *
  * Stop ID segments of the array are sorted in the natural order.
- * Resulting array has a maximum memory footprint of 36 + 4 * 1002 * N bytes (where N is a number of routes)
+ * Resulting array has a memory footprint of 16 + 4 * (1 + 2 * N + S) bytes
+ * (where N is a number of routes and S is a total number of stops in all the routes).
+ *
+ * File is mapped in windows of limited size, so files of any size (including ones larger than 2Gb) are supported.
+ * Parsed routes are collected in a segmented store that grows on demand and are copied into the resulting array
+ * of the exact size at the end, so no assumptions about the number of stops per route are made.
+ *
+ * Route lines can be parsed in parallel. In this mode file is split into chunks aligned on line breaks,
+ * every chunk is parsed by a separate fork-join task into its own route data block and all the blocks are then
+ * stitched together. Result is exactly the same as the one of the single-threaded mode.
+ *
+ * Route data can also be read into direct (off-heap) buffers (see readOffHeap), in this case only the parser
+ * scratch space takes the heap. Original order of the stops can be kept as well (see readOrdered).
+ *
+ * Format errors are handled according to the ingestion policy (see IngestionPolicy), the report of the last read
+ * (numbers of loaded routes and skipped lines, locations of the first errors) is available via getReport.
+ * Duplicate stops are removed from every route and routes that share the same route ID are handled according
+ * to the duplicate route policy (see DuplicateRoutePolicy) before the chunks are stitched.
  *
  * @author aakimov
  */
@@ -34,174 +58,817 @@ public class MappedRouteDataReader implements RouteDataReader {
     private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataReader.class);
 
     /**
-     * Exception message for corrupted route data file
+     * Default minimum size of the chunk parsed by a single task in parallel mode (in bytes)
+     */
+    private static final int DEFAULT_MIN_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Default size of the mapped window (in bytes)
+     */
+    private static final int DEFAULT_WINDOW_SIZE = 1 << 26;
+
+    /**
+     * Number of chunks per thread in parallel mode (several chunks per thread help to balance the load)
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Maximum length of the route data array (maximum array size supported by most of the JVMs)
+     */
+    static final long MAX_ROUTE_DATA_LENGTH = Integer.MAX_VALUE - 8L;
+
+    /**
+     * Number of threads used to parse route lines
+     */
+    private final int parallelism;
+
+    /**
+     * Minimum size of the chunk parsed by a single task in parallel mode (in bytes)
+     */
+    private final int minChunkSize;
+
+    /**
+     * Size of the mapped window (in bytes)
+     */
+    private final int windowSize;
+
+    /**
+     * Policy for route data with format errors
+     */
+    private final IngestionPolicy policy;
+
+    /**
+     * Policy for routes that share the same route ID
+     */
+    private final DuplicateRoutePolicy duplicateRoutePolicy;
+
+    /**
+     * Report of the last read (null if nothing is read yet)
+     */
+    private volatile IngestionReport report;
+
+    /**
+     * Create single-threaded route data reader.
+     */
+    public MappedRouteDataReader() {
+        this(1);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     */
+    public MappedRouteDataReader(
+        int parallelism
+    ) {
+        this(parallelism, IngestionPolicy.STRICT);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     * @param policy policy for route data with format errors
+     */
+    public MappedRouteDataReader(
+        int parallelism,
+        IngestionPolicy policy
+    ) {
+        this(parallelism, policy, DuplicateRoutePolicy.KEEP);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     * @param policy policy for route data with format errors
+     * @param duplicateRoutePolicy policy for routes that share the same route ID
+     */
+    public MappedRouteDataReader(
+        int parallelism,
+        IngestionPolicy policy,
+        DuplicateRoutePolicy duplicateRoutePolicy
+    ) {
+        this(
+            parallelism,
+            MappedRouteDataReader.DEFAULT_MIN_CHUNK_SIZE,
+            MappedRouteDataReader.DEFAULT_WINDOW_SIZE,
+            policy,
+            duplicateRoutePolicy
+        );
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     * @param minChunkSize minimum size of the chunk parsed by a single task in parallel mode (in bytes)
+     * @param windowSize size of the mapped window (in bytes)
+     */
+    MappedRouteDataReader(
+        int parallelism,
+        int minChunkSize,
+        int windowSize
+    ) {
+        this(parallelism, minChunkSize, windowSize, IngestionPolicy.STRICT);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     * @param minChunkSize minimum size of the chunk parsed by a single task in parallel mode (in bytes)
+     * @param windowSize size of the mapped window (in bytes)
+     * @param policy policy for route data with format errors
      */
-    private static final String MESSAGE_UNEXPECTED_SYMBOL = "Route data file is corrupted. Unexpected symbol.";
+    MappedRouteDataReader(
+        int parallelism,
+        int minChunkSize,
+        int windowSize,
+        IngestionPolicy policy
+    ) {
+        this(parallelism, minChunkSize, windowSize, policy, DuplicateRoutePolicy.KEEP);
+    }
+
+    /**
+     * @param parallelism number of threads used to parse route lines (1 means single-threaded mode)
+     * @param minChunkSize minimum size of the chunk parsed by a single task in parallel mode (in bytes)
+     * @param windowSize size of the mapped window (in bytes)
+     * @param policy policy for route data with format errors
+     * @param duplicateRoutePolicy policy for routes that share the same route ID
+     */
+    MappedRouteDataReader(
+        int parallelism,
+        int minChunkSize,
+        int windowSize,
+        IngestionPolicy policy,
+        DuplicateRoutePolicy duplicateRoutePolicy
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be a positive number.");
+        }
+        this.parallelism = parallelism;
+        this.minChunkSize = Math.max(1, minChunkSize);
+        this.windowSize = Math.max(1, windowSize);
+        this.policy = policy;
+        this.duplicateRoutePolicy = duplicateRoutePolicy;
+    }
+
+    /**
+     * Retrieve report of the last read
+     *
+     * @return ingestion report (null if nothing is read yet)
+     */
+    public IngestionReport getReport() {
+        return this.report;
+    }
 
     /**
      * {@inheritDoc}
      */
     @Override
     public int[] read(Path routeDataPath) {
+        return this.readRouteData(
+            routeDataPath,
+            false,
+            RouteDataLayout.SORTED,
+            MappedRouteDataReader::stitchRouteChunks,
+            new int[0]
+        );
+    }
+
+    /**
+     * Read route data into direct (off-heap) buffers.
+     *
+     * Route blocks (without leading route count) are returned as a list of buffers in file order,
+     * every buffer contains whole route blocks only (see BufferRouteManager). Buffers are allocated
+     * using direct memory, so -XX:MaxDirectMemorySize should be large enough to fit the route data.
+     *
+     * @param routeDataPath route data location
+     * @return route data segments (empty array if file cannot be processed)
+     */
+    public IntBuffer[] readOffHeap(Path routeDataPath) {
+        return this.readSegments(routeDataPath, true);
+    }
+
+    /**
+     * Read route data into segments without stitching them into a single array.
+     *
+     * Segments are the parse buffers themselves, so peak memory is the size of the route data plus
+     * the unused tail of the last segment of every chunk (the array returned by read() needs twice
+     * the size of the route data for a short time while the segments are copied into it).
+     *
+     * @param routeDataPath route data location
+     * @param direct flag that shows if segments should be allocated outside of the heap
+     * @return route data segments (empty array if file cannot be processed)
+     */
+    public IntBuffer[] readSegments(Path routeDataPath, boolean direct) {
+        return this.readRouteData(
+            routeDataPath,
+            direct,
+            RouteDataLayout.SORTED,
+            MappedRouteDataReader::collectSegments,
+            new IntBuffer[0]
+        );
+    }
+
+    /**
+     * Read route data keeping the original order of the stops.
+     *
+     * Route data is returned in form of the integer array that uses ORDERED layout (see RouteDataLayout):
+     *
+     * [route count][route ID1][stop count of route ID1][sorted stop IDs][positions of the sorted stops]...
+     *
+     * @param routeDataPath route data location
+     * @return route data (empty array if file cannot be processed)
+     */
+    public int[] readOrdered(Path routeDataPath) {
+        return this.readRouteData(
+            routeDataPath,
+            false,
+            RouteDataLayout.ORDERED,
+            MappedRouteDataReader::stitchRouteChunks,
+            new int[0]
+        );
+    }
+
+    /**
+     * Read route data file and assemble the parsed chunks into the result
+     *
+     * @param routeDataPath route data location
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @param assembler function that assembles parsed chunks (in file order) into the result
+     * @param emptyResult result returned if file cannot be processed
+     * @param <T> type of the result
+     * @return assembled route data (empty result if file cannot be processed)
+     */
+    private <T> T readRouteData(
+        Path routeDataPath,
+        boolean direct,
+        RouteDataLayout layout,
+        Function<List<RouteChunk>, T> assembler,
+        T emptyResult
+    ) {
+        IngestionLog ingestionLog = new IngestionLog();
         try (
             FileChannel fileChannel = (FileChannel)Files.newByteChannel(routeDataPath, StandardOpenOption.READ)
         ) {
-            LOGGER.info("Route data file '{}' processing started.", routeDataPath);
-
-            /**
-             * Map the entire file directly into memory outside the heap and make everything super fast
-             * (much faster than hipster's Files.lines etc ;)
-             * This approach has a file size limitation.
-             * But the task requirements (100000 routes with 1000 stops per route) do not violate it .
-             */
-            long bufferLength = fileChannel.size();
-            MappedByteBuffer mappedByteBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, bufferLength);
-            mappedByteBuffer.load();
-
-            int declaredRouteCount = this.processFirstLine(mappedByteBuffer);
-            if (declaredRouteCount == 0) {
-                throw new FileFormatException("Route data file is empty.");
-            }
-
-            int[] routeData = this.processRouteLines(mappedByteBuffer, declaredRouteCount);
+            LOGGER.info("Route data file '{}' processing started ({} layout).", routeDataPath, layout);
 
-            // explicitly clean the mapped memory region
-            Cleaner cleaner = ((DirectBuffer)mappedByteBuffer).cleaner();
-            cleaner.clean();
+            List<RouteChunk> routeChunks = this.processRouteData(fileChannel, direct, layout, ingestionLog);
+            T routeData = assembler.apply(routeChunks);
 
             LOGGER.info("Route data file '{}' processing finished.", routeDataPath);
+            this.complete(routeDataPath, ingestionLog);
             return routeData;
+        } catch (UncheckedIOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception.getCause());
+            this.reject(routeDataPath, ingestionLog, exception.getCause());
+            return emptyResult;
         } catch (FileFormatException|IOException exception) {
             LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception);
-            return new int[0];
+            this.reject(routeDataPath, ingestionLog, exception);
+            return emptyResult;
         }
     }
 
     /**
-     * Process first line to retrieve the number of routes
+     * Process route data file
      *
-     * @param byteBuffer target byte buffer
-     * @return declared number of routes
+     * @param fileChannel file channel
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @param ingestionLog log of the processed lines
+     * @return parsed chunks that contain exactly the declared number of lines (in file order)
+     * @throws IOException if file cannot be read
      */
-    private int processFirstLine(ByteBuffer byteBuffer) {
-        int routeCount = 0;
-        while (byteBuffer.hasRemaining()) {
-            byte currentByte = byteBuffer.get();
-            if (currentByte >= '0' && currentByte <= '9') {
-                // accumulate current digit
-                routeCount = routeCount * 10 + (currentByte & 0xF);
-            } else if (currentByte == '\n') {
-                break;
-            } else if (currentByte != '\r') {
-                // ignore carriage return
-                throw new FileFormatException(MappedRouteDataReader.MESSAGE_UNEXPECTED_SYMBOL);
+    private List<RouteChunk> processRouteData(
+        FileChannel fileChannel,
+        boolean direct,
+        RouteDataLayout layout,
+        IngestionLog ingestionLog
+    ) throws IOException {
+        /**
+         * Map the file directly into memory outside the heap and make everything super fast
+         * (much faster than hipster's Files.lines etc ;)
+         * Mapping is done in windows, so there is no file size limitation.
+         */
+        long fileSize = fileChannel.size();
+        int declaredRouteCount;
+        long dataStart;
+        try (MappedWindow mappedWindow = new MappedWindow(fileChannel, fileSize, this.windowSize)) {
+            ByteBuffer firstWindow = mappedWindow.seek(0);
+            declaredRouteCount = RouteLineParser.parseRouteCount(firstWindow);
+            while (mappedWindow.getEnd() < fileSize && firstWindow.get(firstWindow.position() - 1) != '\n') {
+                // first line crosses the window boundary
+                mappedWindow.extend(0);
+                firstWindow = mappedWindow.seek(0);
+                declaredRouteCount = RouteLineParser.parseRouteCount(firstWindow);
             }
+            dataStart = firstWindow.position();
+        } catch (FileFormatException exception) {
+            ingestionLog.addError(-1, 0, exception.getMessage());
+            throw exception;
+        }
+        if (declaredRouteCount == 0) {
+            ingestionLog.addError(-1, 0, "Route data file is empty.");
+            throw new FileFormatException("Route data file is empty.");
         }
+        ingestionLog.setDeclaredRouteCount(declaredRouteCount);
 
-        return routeCount;
+        List<RouteChunk> routeChunks = this.processRouteLines(
+            fileChannel,
+            fileSize,
+            dataStart,
+            declaredRouteCount,
+            direct,
+            layout
+        );
+        List<RouteChunk> usedRouteChunks = this.selectRouteChunks(
+            routeChunks,
+            declaredRouteCount,
+            fileChannel,
+            fileSize,
+            dataStart,
+            direct,
+            layout,
+            ingestionLog
+        );
+        List<RouteDataBuffer> routeDataBuffers = new ArrayList<>(usedRouteChunks.size());
+        for (RouteChunk routeChunk : usedRouteChunks) {
+            routeDataBuffers.add(routeChunk.routeDataBuffer);
+        }
+        RouteIdDeduplicator.deduplicate(routeDataBuffers, layout, this.duplicateRoutePolicy, ingestionLog);
+        return usedRouteChunks;
     }
 
     /**
-     * Process route data lines
+     * Process route data lines (in parallel if it is allowed)
      *
-     * @param byteBuffer target byte buffer
-     * @param routeCount expected number of routes
-     * @return route data array
+     * @param fileChannel file channel
+     * @param fileSize file size
+     * @param dataStart position of the first route line
+     * @param routeCount expected number of route lines
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @return parsed chunks in file order
      */
-    private int[] processRouteLines(ByteBuffer byteBuffer, int routeCount) {
-        int routeDataIndex = 0;
-        // 1002: route ID + stop count + 1000 stops
-        int[] routeData = new int[routeCount * 1002 + 1];
-        routeData[routeDataIndex] = routeCount;
-        routeDataIndex++;
-        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
-            routeData[routeDataIndex] = this.processRouteId(byteBuffer);
-            int stopCount = this.processRouteStops(byteBuffer, routeData, routeDataIndex + 2);
-            routeData[routeDataIndex + 1] = stopCount;
-            routeDataIndex += stopCount + 2;
+    private List<RouteChunk> processRouteLines(
+        FileChannel fileChannel,
+        long fileSize,
+        long dataStart,
+        int routeCount,
+        boolean direct,
+        RouteDataLayout layout
+    ) {
+        long dataSize = fileSize - dataStart;
+        long chunkCount = (this.parallelism == 1)
+            ? 1
+            : Math.max(
+                1,
+                Math.min((long)this.parallelism * MappedRouteDataReader.CHUNKS_PER_THREAD, dataSize / this.minChunkSize)
+            );
+        if (chunkCount == 1) {
+            return Collections.singletonList(
+                this.processRouteChunk(
+                    fileChannel, fileSize, dataStart, dataStart, fileSize, routeCount, direct, layout
+                )
+            );
         }
 
-        final int routeDataAllowedLength = 100000 * 1002 + 1;
-        // do not waste memory if it is not needed
-        if (routeDataIndex < routeDataAllowedLength / 2) {
-            routeData = Arrays.copyOf(routeData, routeDataIndex);
+        long nominalChunkSize = (dataSize + chunkCount - 1) / chunkCount;
+        ForkJoinPool forkJoinPool = new ForkJoinPool(this.parallelism);
+        try {
+            List<ForkJoinTask<RouteChunk>> chunkTasks = new ArrayList<>();
+            for (long chunkStart = dataStart; chunkStart < fileSize; chunkStart += nominalChunkSize) {
+                long start = chunkStart;
+                long end = Math.min(fileSize, chunkStart + nominalChunkSize);
+                chunkTasks.add(
+                    forkJoinPool.submit(
+                        () -> this.processRouteChunk(
+                            fileChannel, fileSize, dataStart, start, end, routeCount, direct, layout
+                        )
+                    )
+                );
+            }
+
+            List<RouteChunk> routeChunks = new ArrayList<>(chunkTasks.size());
+            for (ForkJoinTask<RouteChunk> chunkTask : chunkTasks) {
+                routeChunks.add(chunkTask.join());
+            }
+            return routeChunks;
+        } finally {
+            forkJoinPool.shutdown();
         }
+    }
 
-        return routeData;
+    /**
+     * Process all route lines that start within the given chunk of the file.
+     *
+     * Format errors are not thrown but saved in the chunk, because they should be ignored
+     * if they happen after the declared number of routes. Lines with format errors are skipped
+     * (and the chunk goes on) if ingestion policy allows it.
+     *
+     * @param fileChannel file channel
+     * @param fileSize file size
+     * @param dataStart position of the first route line of the file
+     * @param chunkStart start of the chunk (may point to the middle of the line)
+     * @param chunkEnd end of the chunk (the last line of the chunk may end after it)
+     * @param maxRouteCount maximum number of route lines to process
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @return parsed chunk
+     */
+    private RouteChunk processRouteChunk(
+        FileChannel fileChannel,
+        long fileSize,
+        long dataStart,
+        long chunkStart,
+        long chunkEnd,
+        int maxRouteCount,
+        boolean direct,
+        RouteDataLayout layout
+    ) {
+        // every stop takes at least 2 bytes, so there is no need in segments larger than a half of the chunk
+        RouteChunk routeChunk = new RouteChunk(
+            chunkStart,
+            chunkEnd,
+            new RouteDataBuffer(
+                (int)Math.min(RouteDataBuffer.DEFAULT_SEGMENT_SIZE, (chunkEnd - chunkStart) / 2 + 64),
+                direct,
+                layout
+            )
+        );
+        RouteLineParser routeLineParser = new RouteLineParser();
+        try (MappedWindow mappedWindow = new MappedWindow(fileChannel, fileSize, this.windowSize)) {
+            long position = (chunkStart > dataStart) ? mappedWindow.findLineStart(chunkStart - 1) : chunkStart;
+            while (position < chunkEnd && routeChunk.ingestionLog.getLineCount() < maxRouteCount) {
+                try {
+                    ByteBuffer byteBuffer = mappedWindow.seek(position);
+                    boolean isLineBreakReached = routeLineParser.parseLine(byteBuffer);
+                    if (!isLineBreakReached && mappedWindow.getEnd() < fileSize) {
+                        // line crosses the window boundary, so parse it once again using a new window
+                        mappedWindow.extend(position);
+                        continue;
+                    }
+
+                    if (layout == RouteDataLayout.ORDERED) {
+                        routeLineParser.completeOrderedRoute();
+                    } else {
+                        routeLineParser.completeRoute();
+                    }
+                    routeChunk.routeDataBuffer.appendRoute(
+                        routeLineParser.getRouteId(),
+                        routeLineParser.getStops(),
+                        routeLineParser.getPositions(),
+                        routeLineParser.getStopCount()
+                    );
+                    routeChunk.ingestionLog.addRoute(
+                        routeLineParser.hasDuplicateStops(),
+                        layout.getBlockLength(routeLineParser.getParsedStopCount())
+                            - layout.getBlockLength(routeLineParser.getStopCount())
+                    );
+                    position = mappedWindow.getStart() + byteBuffer.position();
+                } catch (FileFormatException exception) {
+                    if (this.policy != IngestionPolicy.SKIP_BAD_LINES) {
+                        routeChunk.ingestionLog.failLine(position, exception.getMessage());
+                        throw exception;
+                    }
+                    routeChunk.ingestionLog.skipLine(position, exception);
+                    position = mappedWindow.findLineStart(position);
+                }
+            }
+        } catch (FileFormatException exception) {
+            routeChunk.error = exception;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        return routeChunk;
     }
 
     /**
-     * Process route identifier
+     * Select parsed chunks that contain the declared number of route lines.
      *
-     * @param byteBuffer target byte buffer
-     * @return parsed route ID
+     * Only first routeCount lines are used (exactly as in single-threaded mode) and format errors
+     * that happened after them are ignored. Logs of the used chunks are appended to the given log.
+     *
+     * The chunk that contains the last declared line is parsed once again up to this line
+     * if its log cannot be truncated (see IngestionLog.truncate).
+     *
+     * @param routeChunks parsed chunks in file order
+     * @param routeCount expected number of route lines
+     * @param fileChannel file channel
+     * @param fileSize file size
+     * @param dataStart position of the first route line
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @param ingestionLog log of the processed lines
+     * @return used chunks (truncated to the expected number of lines)
      */
-    private int processRouteId(ByteBuffer byteBuffer) {
-        int routeId = 0;
-        boolean isPreviousByteDigit = false;
-        while (byteBuffer.hasRemaining()) {
-            byte currentByte = byteBuffer.get();
-            if (currentByte >= '0' && currentByte <= '9') {
-                // accumulate current digit
-                routeId = routeId * 10 + (currentByte & 0xF);
-                isPreviousByteDigit = true;
-            } else if (currentByte == ' ' && isPreviousByteDigit) {
+    private List<RouteChunk> selectRouteChunks(
+        List<RouteChunk> routeChunks,
+        int routeCount,
+        FileChannel fileChannel,
+        long fileSize,
+        long dataStart,
+        boolean direct,
+        RouteDataLayout layout,
+        IngestionLog ingestionLog
+    ) {
+        List<RouteChunk> usedRouteChunks = new ArrayList<>(routeChunks.size());
+        int remainingLineCount = routeCount;
+        for (RouteChunk parsedRouteChunk : routeChunks) {
+            if (remainingLineCount == 0) {
                 break;
-            } else {
-                throw new FileFormatException(MappedRouteDataReader.MESSAGE_UNEXPECTED_SYMBOL);
+            }
+            RouteChunk routeChunk = parsedRouteChunk;
+            boolean isChunkIncomplete = routeChunk.ingestionLog.getLineCount() < remainingLineCount;
+            if (!routeChunk.ingestionLog.truncate(remainingLineCount)) {
+                routeChunk = this.processRouteChunk(
+                    fileChannel,
+                    fileSize,
+                    dataStart,
+                    routeChunk.start,
+                    routeChunk.end,
+                    remainingLineCount,
+                    direct,
+                    layout
+                );
+            }
+            IngestionLog chunkIngestionLog = routeChunk.ingestionLog;
+            ingestionLog.append(chunkIngestionLog);
+            if (isChunkIncomplete && routeChunk.error != null) {
+                throw routeChunk.error;
+            }
+            routeChunk.routeDataBuffer.truncate(chunkIngestionLog.getRouteCount());
+            remainingLineCount -= chunkIngestionLog.getLineCount();
+            usedRouteChunks.add(routeChunk);
+        }
+        if (remainingLineCount > 0) {
+            // file ends before the declared number of routes
+            ingestionLog.addError(ingestionLog.getLineCount(), fileSize, IngestionLog.MESSAGE_MISSING_ROUTES);
+            if (this.policy != IngestionPolicy.SKIP_BAD_LINES) {
+                throw new FileFormatException(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS);
             }
         }
+        return usedRouteChunks;
+    }
 
-        return routeId;
+    /**
+     * Save and log report of the loaded route data
+     *
+     * @param routeDataPath route data location
+     * @param ingestionLog log of the processed lines
+     */
+    private void complete(Path routeDataPath, IngestionLog ingestionLog) {
+        this.report = ingestionLog.toReport(this.policy, null);
+        IngestionLog.log("file '" + routeDataPath + "'", this.report);
     }
 
     /**
-     * Process route stops
+     * Save report of the rejected route data
      *
-     * @param byteBuffer target byte buffer
-     * @param routeData route data array to store processed stop IDs
-     * @param firstStopIndex index of the first stop ID in the data array
-     * @return number of stops that were processed
+     * @param routeDataPath route data location
+     * @param ingestionLog log of the processed lines
+     * @param exception reason of the rejection
+     * @throws IllegalStateException if ingestion policy requires startup failure
      */
-    private int processRouteStops(ByteBuffer byteBuffer, int[] routeData, final int firstStopIndex) {
-        int routeDataIndex = firstStopIndex;
-        int currentStopId = 0;
-        int stopCount = 0;
-        boolean isPreviousByteDigit = false;
-        while (byteBuffer.hasRemaining()) {
-            byte currentByte = byteBuffer.get();
+    private void reject(Path routeDataPath, IngestionLog ingestionLog, Exception exception) {
+        this.report = ingestionLog.toReport(this.policy, String.valueOf(exception.getMessage()));
+        if (this.policy == IngestionPolicy.FAIL_STARTUP) {
+            throw new IllegalStateException(
+                "Route data file '" + routeDataPath + "' is rejected: " + this.report,
+                exception
+            );
+        }
+    }
 
-            if (currentByte >= '0' && currentByte <= '9') {
-                // accumulate current digit
-                currentStopId = currentStopId * 10 + (currentByte & 0xF);
-                isPreviousByteDigit = true;
-            } else if (currentByte == ' ' && isPreviousByteDigit) {
-                routeData[routeDataIndex] = currentStopId;
-                currentStopId = 0;
-                routeDataIndex++;
-                stopCount++;
-                isPreviousByteDigit = false;
-            } else if (currentByte == '\n') {
-                break;
-            } else if (currentByte != '\r') {
-                // ignore carriage return
-                throw new FileFormatException(MappedRouteDataReader.MESSAGE_UNEXPECTED_SYMBOL);
+    /**
+     * Stitch parsed chunks into the resulting route data array
+     *
+     * @param routeChunks parsed chunks in file order
+     * @return route data array
+     */
+    private static int[] stitchRouteChunks(List<RouteChunk> routeChunks) {
+        long routeDataLength = 1;
+        int routeCount = 0;
+        for (RouteChunk routeChunk : routeChunks) {
+            routeDataLength += routeChunk.routeDataBuffer.getLength();
+            routeCount += routeChunk.routeDataBuffer.getRouteCount();
+        }
+        if (routeDataLength > MappedRouteDataReader.MAX_ROUTE_DATA_LENGTH) {
+            throw new FileFormatException("Route data is too large to fit into a single array.");
+        }
+
+        int[] routeData = new int[(int)routeDataLength];
+        routeData[0] = routeCount;
+        int routeDataIndex = 1;
+        for (RouteChunk routeChunk : routeChunks) {
+            routeDataIndex = routeChunk.routeDataBuffer.moveTo(routeData, routeDataIndex);
+        }
+
+        return routeData;
+    }
+
+    /**
+     * Collect segments of the parsed chunks without copying them
+     *
+     * @param routeChunks parsed chunks in file order
+     * @return route data segments
+     */
+    private static IntBuffer[] collectSegments(List<RouteChunk> routeChunks) {
+        List<IntBuffer> segments = new ArrayList<>();
+        for (RouteChunk routeChunk : routeChunks) {
+            routeChunk.routeDataBuffer.moveTo(segments);
+        }
+        return segments.toArray(new IntBuffer[segments.size()]);
+    }
+
+    /**
+     * Route data block parsed from a single chunk of the file
+     */
+    private static final class RouteChunk {
+
+        /**
+         * Start of the chunk
+         */
+        private final long start;
+
+        /**
+         * End of the chunk
+         */
+        private final long end;
+
+        /**
+         * Parsed routes
+         */
+        private final RouteDataBuffer routeDataBuffer;
+
+        /**
+         * Log of the processed lines
+         */
+        private final IngestionLog ingestionLog = new IngestionLog();
+
+        /**
+         * Format error that stopped chunk processing (if any)
+         */
+        private FileFormatException error;
+
+        /**
+         * @param start start of the chunk
+         * @param end end of the chunk
+         * @param routeDataBuffer store for parsed routes
+         */
+        private RouteChunk(
+            long start,
+            long end,
+            RouteDataBuffer routeDataBuffer
+        ) {
+            this.start = start;
+            this.end = end;
+            this.routeDataBuffer = routeDataBuffer;
+        }
+    }
+
+    /**
+     * Read-only window mapped over the part of the file
+     */
+    private static final class MappedWindow implements AutoCloseable {
+
+        /**
+         * Maximum size of the single mapping
+         */
+        private static final long MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+        /**
+         * File channel
+         */
+        private final FileChannel fileChannel;
+
+        /**
+         * File size
+         */
+        private final long fileSize;
+
+        /**
+         * Default window size
+         */
+        private final int windowSize;
+
+        /**
+         * Current mapping (null if nothing is mapped)
+         */
+        private MappedByteBuffer mappedByteBuffer;
+
+        /**
+         * File position of the current mapping
+         */
+        private long start;
+
+        /**
+         * @param fileChannel file channel
+         * @param fileSize file size
+         * @param windowSize default window size
+         */
+        private MappedWindow(FileChannel fileChannel, long fileSize, int windowSize) {
+            this.fileChannel = fileChannel;
+            this.fileSize = fileSize;
+            this.windowSize = windowSize;
+        }
+
+        /**
+         * Retrieve buffer positioned at the given file position (window is moved if needed)
+         *
+         * @param position file position
+         * @return mapped buffer
+         * @throws IOException if file cannot be mapped
+         */
+        private ByteBuffer seek(long position) throws IOException {
+            if (this.mappedByteBuffer == null || position < this.start || position >= this.getEnd()) {
+                this.map(position, this.windowSize);
+            }
+            this.mappedByteBuffer.position((int)(position - this.start));
+            return this.mappedByteBuffer;
+        }
+
+        /**
+         * Move the window to the given position making sure that it becomes larger if it already starts there
+         *
+         * @param position file position
+         * @throws IOException if file cannot be mapped
+         */
+        private void extend(long position) throws IOException {
+            long size = this.windowSize;
+            if (position == this.start) {
+                if (this.mappedByteBuffer.capacity() >= MappedWindow.MAX_WINDOW_SIZE) {
+                    throw new FileFormatException("Route data line is too long.");
+                }
+                size = Math.min(MappedWindow.MAX_WINDOW_SIZE, 2L * this.mappedByteBuffer.capacity());
+            }
+            this.map(position, size);
+        }
+
+        /**
+         * Find the start of the first line that follows the given position
+         *
+         * @param position file position
+         * @return position next to the first line break found (or file size if there is no line break)
+         * @throws IOException if file cannot be mapped
+         */
+        private long findLineStart(long position) throws IOException {
+            long currentPosition = position;
+            while (currentPosition < this.fileSize) {
+                ByteBuffer byteBuffer = this.seek(currentPosition);
+                for (int index = byteBuffer.position(); index < byteBuffer.limit(); index++) {
+                    if (byteBuffer.get(index) == '\n') {
+                        return this.start + index + 1;
+                    }
+                }
+                currentPosition = this.getEnd();
             }
+            return this.fileSize;
         }
 
-        // handle last stop ID in the line
-        if (isPreviousByteDigit) {
-            routeData[routeDataIndex] = currentStopId;
-            stopCount++;
+        /**
+         * Retrieve file position of the current mapping
+         *
+         * @return start of the window
+         */
+        private long getStart() {
+            return this.start;
         }
 
-        if (stopCount < 2) {
-            throw new FileFormatException("Route does not contain at least 2 stops.");
+        /**
+         * Retrieve file position next to the end of the current mapping
+         *
+         * @return end of the window
+         */
+        private long getEnd() {
+            return (this.mappedByteBuffer == null) ? this.start : this.start + this.mappedByteBuffer.capacity();
         }
 
-        // sort all the stops of the route
-        Arrays.sort(routeData, firstStopIndex, firstStopIndex + stopCount);
+        /**
+         * Map new window
+         *
+         * @param position file position
+         * @param size window size
+         * @throws IOException if file cannot be mapped
+         */
+        private void map(long position, long size) throws IOException {
+            this.close();
+            this.start = position;
+            this.mappedByteBuffer = this.fileChannel.map(
+                FileChannel.MapMode.READ_ONLY,
+                position,
+                Math.min(size, this.fileSize - position)
+            );
+            this.mappedByteBuffer.load();
+        }
 
-        return stopCount;
+        /**
+         * Explicitly clean the mapped memory region
+         */
+        @Override
+        public void close() {
+            if (this.mappedByteBuffer != null) {
+                Cleaner cleaner = ((DirectBuffer)this.mappedByteBuffer).cleaner();
+                if (cleaner != null) {
+                    cleaner.clean();
+                }
+                this.mappedByteBuffer = null;
+            }
+        }
     }
 }
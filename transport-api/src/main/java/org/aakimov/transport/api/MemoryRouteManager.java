@@ -1,8 +1,10 @@
 package org.aakimov.transport.api;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.inject.Named;
 import javax.inject.Singleton;
-import java.util.Arrays;
 
 /**
  * Route data manager that uses in-memory route data to provide route information.
@@ -13,27 +15,108 @@ import java.util.Arrays;
 @Singleton
 public class MemoryRouteManager implements RouteManager {
 
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryRouteManager.class);
+
     /**
      * Route data with sorted stop IDs segments
      */
     private final int[] routeData;
 
+    /**
+     * Search kernel for the stop ID segments
+     */
+    private final StopSearch stopSearch;
+
+    /**
+     * Bloom filters of the route stops (null if filters are disabled)
+     */
+    private final RouteFilter routeFilter;
+
+    /**
+     * Direct connectivity of the hot stops (null if the matrix is disabled)
+     */
+    private final HotStopMatrix hotStopMatrix;
+
     /**
      * @param routeData route data
      */
     public MemoryRouteManager(
         int[] routeData
+    ) {
+        this(routeData, StopSearch.BINARY);
+    }
+
+    /**
+     * @param routeData route data
+     * @param stopSearch search kernel for the stop ID segments
+     */
+    public MemoryRouteManager(
+        int[] routeData,
+        StopSearch stopSearch
+    ) {
+        this(routeData, stopSearch, 0);
+    }
+
+    /**
+     * @param routeData route data
+     * @param stopSearch search kernel for the stop ID segments
+     * @param filterBitsPerStop number of Bloom filter bits per stop (0 disables filters)
+     * @throws IllegalArgumentException if number of bits per stop is greater than 64
+     */
+    public MemoryRouteManager(
+        int[] routeData,
+        StopSearch stopSearch,
+        int filterBitsPerStop
+    ) {
+        this(routeData, stopSearch, filterBitsPerStop, 0, null);
+    }
+
+    /**
+     * @param routeData route data
+     * @param stopSearch search kernel for the stop ID segments
+     * @param filterBitsPerStop number of Bloom filter bits per stop (0 disables filters)
+     * @param hotStopCount maximum number of hot stops with precomputed connectivity (0 disables the matrix)
+     * @param hotStopIds hot stop IDs in order of priority (null selects the stops served by the most routes)
+     * @throws IllegalArgumentException if number of bits per stop is greater than 64
+     *     or number of hot stops is greater than 32768
+     */
+    public MemoryRouteManager(
+        int[] routeData,
+        StopSearch stopSearch,
+        int filterBitsPerStop,
+        int hotStopCount,
+        int[] hotStopIds
     ) {
         this.routeData = routeData;
+        this.stopSearch = stopSearch;
+        this.routeFilter = (filterBitsPerStop > 0) ? RouteFilter.build(routeData, filterBitsPerStop) : null;
+        if (this.routeFilter != null) {
+            LOGGER.info("Route filters take {} bytes.", this.routeFilter.getSize());
+        }
+        this.hotStopMatrix = (hotStopCount > 0)
+            ? HotStopMatrix.build(routeData, hotStopCount, hotStopIds, Runtime.getRuntime().availableProcessors())
+            : null;
+        if (this.hotStopMatrix != null) {
+            LOGGER.info(
+                "Connectivity of {} hot stops takes {} bytes.",
+                this.hotStopMatrix.getHotStopCount(),
+                this.hotStopMatrix.getSize()
+            );
+        }
     }
 
     /**
      * Check if direct route is available between given stops.
      *
      * This method assumes that stop ID segments of the route data array are sorted in natural order.
-     * This allows it to use efficient binary search to find arrival and departure stop IDs
+     * This allows it to use efficient binary search (see StopSearch) to find arrival and departure stop IDs
      * instead of looping through all the stops to check if match exists.
      * Once one of the stop IDs is found the other is searched using only remaining portion of the stop list.
+     * If route filters are enabled, routes that are rejected by the filters are not searched at all.
+     * If both stops are hot, the result is read from the hot stop matrix without a pass over the route data.
      * <b>If stop segments are not sorted, the results are undefined.</b>
      *
      * @param departureStopId departure stop identifier
@@ -45,30 +128,279 @@ public class MemoryRouteManager implements RouteManager {
         if (this.routeData.length == 0 ) {
             return false;
         }
+        if (this.hotStopMatrix != null) {
+            int departureHotStopIndex = this.hotStopMatrix.getHotStopIndex(departureStopId);
+            int arrivalHotStopIndex = (departureHotStopIndex < 0)
+                ? -1
+                : this.hotStopMatrix.getHotStopIndex(arrivalStopId);
+            if (arrivalHotStopIndex >= 0) {
+                return this.hotStopMatrix.isConnected(departureHotStopIndex, arrivalHotStopIndex);
+            }
+        }
+
+        StopPair stopPair = new StopPair(departureStopId, arrivalStopId, this.routeFilter);
+        int routeCount = this.routeData[0];
+        int currentRouteDataIndex = 1;
+        int filterIndex = 0;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            // route ID (routeData[currentRouteDataIndex]) is returned by findDirectRoutes
+            int stopCount = this.routeData[currentRouteDataIndex + 1];
+            int wordCount = this.getFilterWordCount(stopCount);
+            if (this.isRouteMatching(currentRouteDataIndex, filterIndex, wordCount, stopPair)) {
+                return true;
+            }
+            filterIndex += wordCount;
+            currentRouteDataIndex += stopCount + 2;
+        }
+        return false;
+    }
+
+    /**
+     * Find IDs of the routes that serve both given stops.
+     *
+     * Routes are checked in a single pass in the same way as in isDirectRouteAvailable,
+     * but the pass continues until the end of the route data or until the limit is reached.
+     * Pair of hot stops that are not connected is answered without the pass.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes (in order of route data) or empty array if there is no direct route
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        if (
+            this.routeData.length == 0
+            || routeIdCollector.isFull()
+            || (this.hotStopMatrix != null && this.isHotStopPairUnconnected(departureStopId, arrivalStopId))
+        ) {
+            return routeIdCollector.toArray();
+        }
 
+        StopPair stopPair = new StopPair(departureStopId, arrivalStopId, this.routeFilter);
         int routeCount = this.routeData[0];
         int currentRouteDataIndex = 1;
-        int nextRouteDataIndex;
+        int filterIndex = 0;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = this.routeData[currentRouteDataIndex + 1];
+            int wordCount = this.getFilterWordCount(stopCount);
+            if (
+                this.isRouteMatching(currentRouteDataIndex, filterIndex, wordCount, stopPair)
+                && !routeIdCollector.add(this.routeData[currentRouteDataIndex])
+            ) {
+                break;
+            }
+            filterIndex += wordCount;
+            currentRouteDataIndex += stopCount + 2;
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Check if direct routes are available between given pairs of stops.
+     *
+     * Pairs of hot stops are resolved by the hot stop matrix, all the other pairs are checked in a single pass
+     * over the route data. For every route all the distinct stops of the batch are searched in the stop list
+     * in ascending order (every search continues from the position of the previous one), so the route data
+     * is scanned once per batch instead of once per pair. If route filters are enabled, stops that are rejected
+     * by the filter of the route are not searched. The pass stops as soon as all the pairs are resolved.
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        DirectRouteBatch directRouteBatch = new DirectRouteBatch(departureStopIds, arrivalStopIds);
+        if (
+            this.routeData.length == 0
+            || !directRouteBatch.isPending()
+            || (this.hotStopMatrix != null && !directRouteBatch.resolveHotStopPairs(this.hotStopMatrix))
+        ) {
+            return directRouteBatch.getResults();
+        }
+
+        int[] stopIds = directRouteBatch.getStopIds();
+        RouteFilter currentRouteFilter = this.routeFilter;
+        long[] stopHashes = null;
+        long[] stopMasks = null;
+        if (currentRouteFilter != null) {
+            stopHashes = new long[stopIds.length];
+            stopMasks = new long[stopIds.length];
+            for (int stopIndex = 0; stopIndex < stopIds.length; stopIndex++) {
+                stopHashes[stopIndex] = RouteFilter.hash(stopIds[stopIndex]);
+                stopMasks[stopIndex] = currentRouteFilter.getMask(stopHashes[stopIndex]);
+            }
+        }
 
+        int routeCount = this.routeData[0];
+        int currentRouteDataIndex = 1;
+        int filterIndex = 0;
         for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
-            // Route ID (routeData[currentRouteDataIndex]) could be handled/returned in real life ;)
             int stopCount = this.routeData[currentRouteDataIndex + 1];
             int firstStopIndex = currentRouteDataIndex + 2;
-            nextRouteDataIndex = firstStopIndex + stopCount;
-
-            int arrivalIndex = Arrays.binarySearch(this.routeData, firstStopIndex, nextRouteDataIndex, arrivalStopId);
-            if (arrivalIndex > 0) {
-                // search only one part of the stop list (not the entire one)
-                int departureIndex = (arrivalStopId > departureStopId)
-                    ? Arrays.binarySearch(this.routeData, firstStopIndex, arrivalIndex, departureStopId)
-                    : Arrays.binarySearch(this.routeData, arrivalIndex, nextRouteDataIndex, departureStopId);
-                if (departureIndex > 0) {
-                    return true;
+            int nextRouteDataIndex = firstStopIndex + stopCount;
+            int wordCount = this.getFilterWordCount(stopCount);
+
+            int searchStartIndex = firstStopIndex;
+            for (int stopIndex = 0; stopIndex < stopIds.length && searchStartIndex < nextRouteDataIndex; stopIndex++) {
+                if (
+                    currentRouteFilter != null
+                    && !currentRouteFilter.mightContain(
+                        filterIndex,
+                        wordCount,
+                        stopHashes[stopIndex],
+                        stopMasks[stopIndex]
+                    )
+                ) {
+                    continue;
                 }
+                int foundIndex = this.stopSearch.search(
+                    this.routeData,
+                    searchStartIndex,
+                    nextRouteDataIndex,
+                    stopIds[stopIndex]
+                );
+                if (foundIndex >= 0) {
+                    directRouteBatch.markStop(stopIndex);
+                    searchStartIndex = foundIndex + 1;
+                } else {
+                    searchStartIndex = -foundIndex - 1;
+                }
+            }
+            if (!directRouteBatch.completeRoute()) {
+                break;
             }
 
+            filterIndex += wordCount;
             currentRouteDataIndex = nextRouteDataIndex;
         }
-        return false;
+        return directRouteBatch.getResults();
+    }
+
+    /**
+     * Check if the route serves both stops of the pair.
+     *
+     * If route filters are enabled, the route is searched only if both stops pass its filter (most routes contain
+     * neither of the stops and are skipped after one or two reads of the filter). Arrival stop is searched first,
+     * then departure stop is searched only in the part of the stop list on its side of the arrival stop.
+     *
+     * @param routeDataIndex index of the route in the route data (index of its route ID)
+     * @param filterIndex index of the first filter word of the route (ignored if filters are disabled)
+     * @param wordCount number of filter words of the route (ignored if filters are disabled)
+     * @param stopPair departure and arrival stops
+     * @return true if route serves both stops or false otherwise
+     */
+    private boolean isRouteMatching(int routeDataIndex, int filterIndex, int wordCount, StopPair stopPair) {
+        RouteFilter currentRouteFilter = this.routeFilter;
+        if (
+            currentRouteFilter != null
+            && (
+                !currentRouteFilter.mightContain(filterIndex, wordCount, stopPair.arrivalHash, stopPair.arrivalMask)
+                || !currentRouteFilter.mightContain(
+                    filterIndex,
+                    wordCount,
+                    stopPair.departureHash,
+                    stopPair.departureMask
+                )
+            )
+        ) {
+            return false;
+        }
+
+        int firstStopIndex = routeDataIndex + 2;
+        int nextRouteDataIndex = firstStopIndex + this.routeData[routeDataIndex + 1];
+        int arrivalIndex = this.stopSearch.search(
+            this.routeData,
+            firstStopIndex,
+            nextRouteDataIndex,
+            stopPair.arrivalStopId
+        );
+        if (arrivalIndex < 0) {
+            return false;
+        }
+        // search only one part of the stop list (not the entire one)
+        int departureIndex = (stopPair.arrivalStopId > stopPair.departureStopId)
+            ? this.stopSearch.search(this.routeData, firstStopIndex, arrivalIndex, stopPair.departureStopId)
+            : this.stopSearch.search(this.routeData, arrivalIndex, nextRouteDataIndex, stopPair.departureStopId);
+        return departureIndex >= 0;
+    }
+
+    /**
+     * Retrieve number of filter words of the route
+     *
+     * @param stopCount number of stops of the route
+     * @return number of words (0 if filters are disabled)
+     */
+    private int getFilterWordCount(int stopCount) {
+        return (this.routeFilter == null) ? 0 : this.routeFilter.getWordCount(stopCount);
+    }
+
+    /**
+     * Check if both stops are hot and the hot stop matrix shows that they are not connected
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if stops are known to be not connected or false otherwise
+     */
+    private boolean isHotStopPairUnconnected(int departureStopId, int arrivalStopId) {
+        int departureHotStopIndex = this.hotStopMatrix.getHotStopIndex(departureStopId);
+        int arrivalHotStopIndex = (departureHotStopIndex < 0) ? -1 : this.hotStopMatrix.getHotStopIndex(arrivalStopId);
+        return arrivalHotStopIndex >= 0 && !this.hotStopMatrix.isConnected(departureHotStopIndex, arrivalHotStopIndex);
+    }
+
+    /**
+     * Departure and arrival stops of a query together with their filter hashes and masks (computed once per query)
+     */
+    private static final class StopPair {
+
+        /**
+         * Departure stop identifier
+         */
+        private final int departureStopId;
+
+        /**
+         * Arrival stop identifier
+         */
+        private final int arrivalStopId;
+
+        /**
+         * Filter hash of the departure stop
+         */
+        private final long departureHash;
+
+        /**
+         * Filter hash of the arrival stop
+         */
+        private final long arrivalHash;
+
+        /**
+         * Filter bits of the departure stop (0 if filters are disabled)
+         */
+        private final long departureMask;
+
+        /**
+         * Filter bits of the arrival stop (0 if filters are disabled)
+         */
+        private final long arrivalMask;
+
+        /**
+         * @param departureStopId departure stop identifier
+         * @param arrivalStopId arrival stop identifier
+         * @param routeFilter route filters (null if filters are disabled)
+         */
+        private StopPair(
+            int departureStopId,
+            int arrivalStopId,
+            RouteFilter routeFilter
+        ) {
+            this.departureStopId = departureStopId;
+            this.arrivalStopId = arrivalStopId;
+            this.departureHash = RouteFilter.hash(departureStopId);
+            this.arrivalHash = RouteFilter.hash(arrivalStopId);
+            this.departureMask = (routeFilter == null) ? 0 : routeFilter.getMask(this.departureHash);
+            this.arrivalMask = (routeFilter == null) ? 0 : routeFilter.getMask(this.arrivalHash);
+        }
     }
 }
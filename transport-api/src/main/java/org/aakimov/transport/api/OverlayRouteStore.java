@@ -0,0 +1,360 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Immutable route data store that consists of the base route data and the overlay of updated routes.
+ *
+ * Base routes that are removed or replaced are masked by a bitmap of route indexes, routes that are added
+ * or replaced are kept in a small overlay route data array of the same structure as the base one.
+ * Overlay routes are kept in a sorted array of route IDs and a parallel array of their stops, which are copied
+ * once per batch of updates. Every update creates a new store that shares the base route data with the previous
+ * one, so the cost of the update depends on the size of the overlay only. Compaction merges the overlay into
+ * a new base.
+ *
+ * @author aakimov
+ */
+final class OverlayRouteStore {
+
+    /**
+     * Base route data with sorted stop IDs segments
+     */
+    private final int[] baseRouteData;
+
+    /**
+     * Base route IDs packed together with their route indexes (high 32 bits are route ID), sorted
+     */
+    private final long[] baseRouteIndex;
+
+    /**
+     * Bitmap of the masked (removed or replaced) base route indexes
+     */
+    private final long[] maskedRoutes;
+
+    /**
+     * Number of masked base routes
+     */
+    private final int maskedRouteCount;
+
+    /**
+     * Sorted IDs of the overlay routes (never modified once the store is created)
+     */
+    private final int[] overlayRouteIds;
+
+    /**
+     * Sorted stop IDs of the overlay routes in order of their route IDs (never modified once the store is created)
+     */
+    private final int[][] overlayStops;
+
+    /**
+     * Route manager of the overlay routes
+     */
+    private final MemoryRouteManager overlayRouteManager;
+
+    /**
+     * @param baseRouteData base route data
+     * @param baseRouteIndex sorted base route IDs packed together with their route indexes
+     * @param maskedRoutes bitmap of the masked base route indexes
+     * @param maskedRouteCount number of masked base routes
+     * @param overlayRouteIds sorted IDs of the overlay routes
+     * @param overlayStops sorted stop IDs of the overlay routes in order of their route IDs
+     */
+    private OverlayRouteStore(
+        int[] baseRouteData,
+        long[] baseRouteIndex,
+        long[] maskedRoutes,
+        int maskedRouteCount,
+        int[] overlayRouteIds,
+        int[][] overlayStops
+    ) {
+        this.baseRouteData = baseRouteData;
+        this.baseRouteIndex = baseRouteIndex;
+        this.maskedRoutes = maskedRoutes;
+        this.maskedRouteCount = maskedRouteCount;
+        this.overlayRouteIds = overlayRouteIds;
+        this.overlayStops = overlayStops;
+        this.overlayRouteManager = new MemoryRouteManager(
+            OverlayRouteStore.buildRouteData(overlayRouteIds, overlayStops)
+        );
+    }
+
+    /**
+     * Create store without overlay
+     *
+     * @param routeData route data with sorted stop IDs segments
+     * @return route store
+     */
+    static OverlayRouteStore of(int[] routeData) {
+        int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+        long[] baseRouteIndex = new long[routeCount];
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            baseRouteIndex[routeIndex] = ((long)routeData[currentRouteDataIndex] << 32) | routeIndex;
+            currentRouteDataIndex += routeData[currentRouteDataIndex + 1] + 2;
+        }
+        Arrays.sort(baseRouteIndex);
+
+        return new OverlayRouteStore(
+            routeData,
+            baseRouteIndex,
+            new long[(routeCount + 63) >>> 6],
+            0,
+            new int[0],
+            new int[0][]
+        );
+    }
+
+    /**
+     * Create store with the given updates applied
+     *
+     * @param routeUpdates route updates (in order of application)
+     * @return new route store
+     */
+    OverlayRouteStore apply(List<RouteUpdate> routeUpdates) {
+        long[] newMaskedRoutes = this.maskedRoutes;
+        int newMaskedRouteCount = this.maskedRouteCount;
+        // overlay arrays are copied once with room for all the routes of the batch
+        int newOverlayRouteCount = this.overlayRouteIds.length;
+        int[] newOverlayRouteIds = Arrays.copyOf(this.overlayRouteIds, newOverlayRouteCount + routeUpdates.size());
+        int[][] newOverlayStops = Arrays.copyOf(this.overlayStops, newOverlayRouteIds.length);
+        for (RouteUpdate routeUpdate : routeUpdates) {
+            int routeId = routeUpdate.getRouteId();
+            int indexPosition = this.findBaseRoute(routeId);
+            for (; indexPosition < this.baseRouteIndex.length; indexPosition++) {
+                long indexEntry = this.baseRouteIndex[indexPosition];
+                if ((int)(indexEntry >>> 32) != routeId) {
+                    break;
+                }
+                int routeIndex = (int)indexEntry;
+                long routeBit = 1L << routeIndex;
+                if ((newMaskedRoutes[routeIndex >>> 6] & routeBit) == 0) {
+                    if (newMaskedRoutes == this.maskedRoutes) {
+                        newMaskedRoutes = this.maskedRoutes.clone();
+                    }
+                    newMaskedRoutes[routeIndex >>> 6] |= routeBit;
+                    newMaskedRouteCount++;
+                }
+            }
+
+            int overlayPosition = Arrays.binarySearch(newOverlayRouteIds, 0, newOverlayRouteCount, routeId);
+            if (overlayPosition >= 0 && routeUpdate.isRemoval()) {
+                int tailPosition = overlayPosition + 1;
+                int tailLength = newOverlayRouteCount - tailPosition;
+                System.arraycopy(newOverlayRouteIds, tailPosition, newOverlayRouteIds, overlayPosition, tailLength);
+                System.arraycopy(newOverlayStops, tailPosition, newOverlayStops, overlayPosition, tailLength);
+                newOverlayRouteCount--;
+                newOverlayStops[newOverlayRouteCount] = null;
+            } else if (overlayPosition >= 0) {
+                newOverlayStops[overlayPosition] = routeUpdate.getStops();
+            } else if (!routeUpdate.isRemoval()) {
+                overlayPosition = -overlayPosition - 1;
+                int tailPosition = overlayPosition + 1;
+                int tailLength = newOverlayRouteCount - overlayPosition;
+                System.arraycopy(newOverlayRouteIds, overlayPosition, newOverlayRouteIds, tailPosition, tailLength);
+                System.arraycopy(newOverlayStops, overlayPosition, newOverlayStops, tailPosition, tailLength);
+                newOverlayRouteIds[overlayPosition] = routeId;
+                newOverlayStops[overlayPosition] = routeUpdate.getStops();
+                newOverlayRouteCount++;
+            }
+        }
+
+        return new OverlayRouteStore(
+            this.baseRouteData,
+            this.baseRouteIndex,
+            newMaskedRoutes,
+            newMaskedRouteCount,
+            Arrays.copyOf(newOverlayRouteIds, newOverlayRouteCount),
+            Arrays.copyOf(newOverlayStops, newOverlayRouteCount)
+        );
+    }
+
+    /**
+     * Merge overlay into the base route data
+     *
+     * @return route data with all the updates applied
+     */
+    int[] compact() {
+        int baseRouteCount = this.baseRouteIndex.length;
+        int[] overlayRouteData = OverlayRouteStore.buildRouteData(this.overlayRouteIds, this.overlayStops);
+        // overlay route data array already contains a slot for the route count
+        long length = overlayRouteData.length;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < baseRouteCount; routeIndex++) {
+            int blockLength = this.baseRouteData[currentRouteDataIndex + 1] + 2;
+            if (!this.isMasked(routeIndex)) {
+                length += blockLength;
+            }
+            currentRouteDataIndex += blockLength;
+        }
+        if (length > Integer.MAX_VALUE - 8L) {
+            throw new IllegalStateException("Route data is too large.");
+        }
+
+        int[] routeData = new int[(int)length];
+        routeData[0] = baseRouteCount - this.maskedRouteCount + this.overlayRouteIds.length;
+        int targetIndex = 1;
+        currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < baseRouteCount; routeIndex++) {
+            int blockLength = this.baseRouteData[currentRouteDataIndex + 1] + 2;
+            if (!this.isMasked(routeIndex)) {
+                System.arraycopy(this.baseRouteData, currentRouteDataIndex, routeData, targetIndex, blockLength);
+                targetIndex += blockLength;
+            }
+            currentRouteDataIndex += blockLength;
+        }
+        System.arraycopy(overlayRouteData, 1, routeData, targetIndex, overlayRouteData.length - 1);
+        return routeData;
+    }
+
+    /**
+     * Retrieve number of overlay routes
+     *
+     * @return number of added or replaced routes
+     */
+    int getOverlayRouteCount() {
+        return this.overlayRouteIds.length;
+    }
+
+    /**
+     * Retrieve number of masked base routes
+     *
+     * @return number of removed or replaced base routes
+     */
+    int getMaskedRouteCount() {
+        return this.maskedRouteCount;
+    }
+
+    /**
+     * Check if direct route is available between given stops (see MemoryRouteManager)
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if direct route is available or false otherwise
+     */
+    boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        int baseRouteCount = this.baseRouteIndex.length;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < baseRouteCount; routeIndex++) {
+            int stopCount = this.baseRouteData[currentRouteDataIndex + 1];
+            int firstStopIndex = currentRouteDataIndex + 2;
+            int nextRouteDataIndex = firstStopIndex + stopCount;
+            if (
+                !this.isMasked(routeIndex)
+                && this.isBaseRouteDirect(firstStopIndex, nextRouteDataIndex, departureStopId, arrivalStopId)
+            ) {
+                return true;
+            }
+            currentRouteDataIndex = nextRouteDataIndex;
+        }
+        return this.overlayRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+    }
+
+    /**
+     * Find IDs of the routes that serve both given stops (base routes first, then overlay routes)
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes
+     */
+    int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        int baseRouteCount = this.baseRouteIndex.length;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < baseRouteCount && !routeIdCollector.isFull(); routeIndex++) {
+            int stopCount = this.baseRouteData[currentRouteDataIndex + 1];
+            int firstStopIndex = currentRouteDataIndex + 2;
+            int nextRouteDataIndex = firstStopIndex + stopCount;
+            if (
+                !this.isMasked(routeIndex)
+                && this.isBaseRouteDirect(firstStopIndex, nextRouteDataIndex, departureStopId, arrivalStopId)
+            ) {
+                routeIdCollector.add(this.baseRouteData[currentRouteDataIndex]);
+            }
+            currentRouteDataIndex = nextRouteDataIndex;
+        }
+
+        if (!routeIdCollector.isFull()) {
+            for (int routeId : this.overlayRouteManager.findDirectRoutes(departureStopId, arrivalStopId, limit)) {
+                if (!routeIdCollector.add(routeId)) {
+                    break;
+                }
+            }
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Check if the base route serves both given stops
+     *
+     * @param firstStopIndex index of the first stop of the route
+     * @param nextRouteDataIndex index next to the last stop of the route
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if route serves both stops or false otherwise
+     */
+    private boolean isBaseRouteDirect(
+        int firstStopIndex,
+        int nextRouteDataIndex,
+        int departureStopId,
+        int arrivalStopId
+    ) {
+        int arrivalIndex = Arrays.binarySearch(this.baseRouteData, firstStopIndex, nextRouteDataIndex, arrivalStopId);
+        if (arrivalIndex < 0) {
+            return false;
+        }
+        // search only one part of the stop list (not the entire one)
+        int departureIndex = (arrivalStopId > departureStopId)
+            ? Arrays.binarySearch(this.baseRouteData, firstStopIndex, arrivalIndex, departureStopId)
+            : Arrays.binarySearch(this.baseRouteData, arrivalIndex, nextRouteDataIndex, departureStopId);
+        return departureIndex >= 0;
+    }
+
+    /**
+     * Check if the base route is masked
+     *
+     * @param routeIndex base route index
+     * @return true if route is removed or replaced or false otherwise
+     */
+    private boolean isMasked(int routeIndex) {
+        return (this.maskedRoutes[routeIndex >>> 6] & (1L << routeIndex)) != 0;
+    }
+
+    /**
+     * Find position of the first entry of the given route ID in the base route index
+     *
+     * @param routeId route ID
+     * @return position of the first entry (or position of the first greater route ID if there is no such entry)
+     */
+    private int findBaseRoute(int routeId) {
+        int position = Arrays.binarySearch(this.baseRouteIndex, (long)routeId << 32);
+        return (position >= 0) ? position : -position - 1;
+    }
+
+    /**
+     * Build route data array of the given routes
+     *
+     * @param routeIds route IDs
+     * @param routeStops sorted stop IDs of the routes in order of their route IDs
+     * @return route data
+     */
+    private static int[] buildRouteData(int[] routeIds, int[][] routeStops) {
+        int length = 1;
+        for (int[] stops : routeStops) {
+            length += stops.length + 2;
+        }
+
+        int[] routeData = new int[length];
+        routeData[0] = routeIds.length;
+        int routeDataIndex = 1;
+        for (int routePosition = 0; routePosition < routeIds.length; routePosition++) {
+            int[] stops = routeStops[routePosition];
+            routeData[routeDataIndex] = routeIds[routePosition];
+            routeData[routeDataIndex + 1] = stops.length;
+            System.arraycopy(stops, 0, routeData, routeDataIndex + 2, stops.length);
+            routeDataIndex += stops.length + 2;
+        }
+        return routeData;
+    }
+}
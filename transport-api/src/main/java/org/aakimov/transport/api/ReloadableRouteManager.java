@@ -0,0 +1,359 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Route manager that can replace its route data at runtime.
+ *
+ * All the requests are delegated to the current route manager. Reload builds a new route manager
+ * in the background (using the given loader) and atomically swaps it with the current one, so requests
+ * are served without interruption: every request reads the current route manager once and keeps using it
+ * till the end, even if a swap happens in the meantime. The previous route manager is closed right after
+ * the swap (see RouteManager.close), so it should keep serving the in-flight requests once it is closed
+ * (e.g. ShardedRouteManager checks shards on the request thread), and becomes unreachable once they are completed.
+ *
+ * Only one reload runs at a time and reload requests that arrive before it starts are merged into one,
+ * so route data is never held in more than two copies (current and new one). Loader should build
+ * the new route data without intermediate copies (e.g. see MappedRouteDataReader.readSegments) to keep
+ * the peak memory close to the size of these two copies. Reload that does not fit into the heap
+ * keeps the current route data.
+ *
+ * Route data file can be watched for changes (see watch), in this case reload starts once the file
+ * has not been changed for a quiet period. Files should be replaced atomically (written next to the
+ * route data file and then moved) to make sure that partially written data is never loaded.
+ *
+ * @author aakimov
+ */
+public class ReloadableRouteManager implements RouteManager, Closeable {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadableRouteManager.class);
+
+    /**
+     * Default period without route data file changes that should pass before reload (in milliseconds)
+     */
+    private static final long DEFAULT_QUIET_PERIOD = 1000;
+
+    /**
+     * Loader that builds a new route manager (returns null if route data cannot be loaded)
+     */
+    private final Supplier<RouteManager> routeManagerLoader;
+
+    /**
+     * Period without route data file changes that should pass before reload (in milliseconds)
+     */
+    private final long quietPeriod;
+
+    /**
+     * Single-threaded executor that runs reloads one by one
+     */
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(
+        runnable -> ReloadableRouteManager.createDaemonThread(runnable, "route-data-reload")
+    );
+
+    /**
+     * Lock that guards pending reload
+     */
+    private final Object reloadLock = new Object();
+
+    /**
+     * Current route manager
+     */
+    private volatile RouteManager routeManager;
+
+    /**
+     * Number of completed reloads
+     */
+    private volatile long reloadCount;
+
+    /**
+     * Reload that is scheduled but not started yet (null if there is no such reload)
+     */
+    private CompletableFuture<Boolean> pendingReload;
+
+    /**
+     * Watch service of the route data file (null if route data file is not watched)
+     */
+    private WatchService watchService;
+
+    /**
+     * @param routeManager initial route manager
+     * @param routeManagerLoader loader that builds a new route manager (returns null if route data cannot be loaded)
+     */
+    public ReloadableRouteManager(
+        RouteManager routeManager,
+        Supplier<RouteManager> routeManagerLoader
+    ) {
+        this(routeManager, routeManagerLoader, ReloadableRouteManager.DEFAULT_QUIET_PERIOD);
+    }
+
+    /**
+     * @param routeManager initial route manager
+     * @param routeManagerLoader loader that builds a new route manager (returns null if route data cannot be loaded)
+     * @param quietPeriod period without route data file changes that should pass before reload (in milliseconds)
+     */
+    ReloadableRouteManager(
+        RouteManager routeManager,
+        Supplier<RouteManager> routeManagerLoader,
+        long quietPeriod
+    ) {
+        this.routeManager = routeManager;
+        this.routeManagerLoader = routeManagerLoader;
+        this.quietPeriod = quietPeriod;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        return this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        return this.routeManager.findDirectRoutes(departureStopId, arrivalStopId, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findTransferStops(int departureStopId, int arrivalStopId, int maxTransfers) {
+        return this.routeManager.findTransferStops(departureStopId, arrivalStopId, maxTransfers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        return this.routeManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+    }
+
+    /**
+     * Retrieve version of the route data (changes on every reload and every change of the current route data)
+     *
+     * @return route data version
+     */
+    @Override
+    public long getDataVersion() {
+        return (this.reloadCount << 32) + this.routeManager.getDataVersion();
+    }
+
+    /**
+     * Retrieve current route manager
+     *
+     * @return route manager that serves new requests
+     */
+    public RouteManager getRouteManager() {
+        return this.routeManager;
+    }
+
+    /**
+     * Schedule reload of the route data.
+     *
+     * If reload is already scheduled but not started yet, no new reload is scheduled.
+     *
+     * @return future that is completed with true once the new route manager is in use
+     *     or with false if route data cannot be loaded (current route manager is kept in this case)
+     */
+    public CompletableFuture<Boolean> reload() {
+        synchronized (this.reloadLock) {
+            if (this.pendingReload == null) {
+                CompletableFuture<Boolean> reload = new CompletableFuture<>();
+                try {
+                    this.reloadExecutor.execute(() -> this.performReload(reload));
+                } catch (RejectedExecutionException exception) {
+                    LOGGER.warn("Route data cannot be reloaded after route manager is closed.");
+                    reload.complete(false);
+                    return reload;
+                }
+                this.pendingReload = reload;
+            }
+            return this.pendingReload;
+        }
+    }
+
+    /**
+     * Watch route data file and reload route data once it is changed
+     *
+     * @param routeDataPath route data location
+     * @throws IOException if route data directory cannot be watched
+     */
+    public void watch(Path routeDataPath) throws IOException {
+        Path directoryPath = routeDataPath.toAbsolutePath().getParent();
+        Path fileName = routeDataPath.getFileName();
+        WatchService currentWatchService;
+        synchronized (this.reloadLock) {
+            if (this.watchService != null) {
+                throw new IllegalStateException("Route data file is already watched.");
+            }
+            currentWatchService = directoryPath.getFileSystem().newWatchService();
+            directoryPath.register(
+                currentWatchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+            );
+            this.watchService = currentWatchService;
+        }
+
+        ReloadableRouteManager.createDaemonThread(
+            () -> this.watchRouteData(currentWatchService, fileName),
+            "route-data-watch"
+        ).start();
+        LOGGER.info("Route data file '{}' is watched for changes.", routeDataPath);
+    }
+
+    /**
+     * Stop watching route data file, cancel scheduled reloads and close current route manager
+     *
+     * @throws IOException if watch service or current route manager cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        // reload that is already running closes its route manager once it sees the executor is shut down
+        this.reloadExecutor.shutdownNow();
+        synchronized (this.reloadLock) {
+            if (this.watchService != null) {
+                this.watchService.close();
+            }
+        }
+        this.routeManager.close();
+    }
+
+    /**
+     * Load new route data and swap it with the current one
+     *
+     * @param reload future of the reload
+     */
+    private void performReload(CompletableFuture<Boolean> reload) {
+        synchronized (this.reloadLock) {
+            // changes that happen from now on should be picked up by the next reload
+            this.pendingReload = null;
+        }
+
+        try {
+            long startTime = System.nanoTime();
+            RouteManager newRouteManager = this.routeManagerLoader.get();
+            if (newRouteManager == null) {
+                LOGGER.warn("Route data cannot be reloaded. Current route data is kept.");
+                reload.complete(false);
+                return;
+            }
+
+            RouteManager previousRouteManager = this.routeManager;
+            this.routeManager = newRouteManager;
+            // new route data is published before the new version (see RouteManager.getDataVersion)
+            this.reloadCount++;
+            LOGGER.info(
+                "Route data is reloaded in {} ms.",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+            );
+            ReloadableRouteManager.closeRouteManager(previousRouteManager);
+            if (this.reloadExecutor.isShutdown()) {
+                ReloadableRouteManager.closeRouteManager(newRouteManager);
+            }
+            reload.complete(true);
+        } catch (RuntimeException exception) {
+            LOGGER.error("Route data cannot be reloaded. Current route data is kept.", exception);
+            reload.complete(false);
+        } catch (OutOfMemoryError error) { //NOSONAR
+            // partially built route data is released once the loader is unwound, so current route data still fits
+            LOGGER.error("Route data does not fit into the heap. Current route data is kept.", error);
+            reload.complete(false);
+        }
+    }
+
+    /**
+     * Close route manager that is no longer used for new requests
+     *
+     * @param routeManager route manager
+     */
+    private static void closeRouteManager(RouteManager routeManager) {
+        try {
+            routeManager.close();
+        } catch (IOException exception) {
+            LOGGER.warn("Replaced route manager cannot be closed.", exception);
+        }
+    }
+
+    /**
+     * Wait for route data file changes and schedule reloads
+     *
+     * @param currentWatchService watch service of the route data directory
+     * @param fileName name of the route data file
+     */
+    private void watchRouteData(WatchService currentWatchService, Path fileName) {
+        try {
+            while (true) {
+                boolean isChanged = ReloadableRouteManager.isChanged(currentWatchService.take(), fileName);
+
+                // file is usually changed by a series of events, so reload starts once it is quiet
+                WatchKey watchKey;
+                while ((watchKey = currentWatchService.poll(this.quietPeriod, TimeUnit.MILLISECONDS)) != null) {
+                    isChanged |= ReloadableRouteManager.isChanged(watchKey, fileName);
+                }
+
+                if (isChanged) {
+                    this.reload();
+                }
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException exception) {
+            LOGGER.debug("Route data watch is closed.");
+        }
+    }
+
+    /**
+     * Check if watch key contains changes of the route data file
+     *
+     * @param watchKey watch key of the route data directory
+     * @param fileName name of the route data file
+     * @return true if route data file is changed (or some events are lost) or false otherwise
+     */
+    private static boolean isChanged(WatchKey watchKey, Path fileName) {
+        boolean isChanged = false;
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            isChanged |= watchEvent.kind() == StandardWatchEventKinds.OVERFLOW
+                || fileName.equals(watchEvent.context());
+        }
+        watchKey.reset();
+        return isChanged;
+    }
+
+    /**
+     * Create daemon thread
+     *
+     * @param runnable thread task
+     * @param name thread name
+     * @return new thread
+     */
+    private static Thread createDaemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
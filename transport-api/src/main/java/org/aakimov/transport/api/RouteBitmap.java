@@ -0,0 +1,614 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed bitmap of route indexes.
+ *
+ * Route indexes are split into chunks by their high 16 bits. Every chunk is stored in one of three containers
+ * (whichever is the smallest one):
+ *
+ * - array container: sorted low 16 bits (2 bytes per route, used for sparse chunks)
+ * - bitmap container: 65536 bits (8Kb, used for dense chunks)
+ * - run container: pairs of [run start][run length - 1] (used for long sequences of consecutive routes)
+ *
+ * This is a simplified version of Roaring bitmaps that supports only the operations required
+ * for route lookups and does not need any third-party library.
+ *
+ * @author aakimov
+ */
+final class RouteBitmap {
+
+    /**
+     * Empty bitmap instance
+     */
+    static final RouteBitmap EMPTY = new RouteBitmap(new char[0], new Container[0]);
+
+    /**
+     * Maximum number of values stored in array container (array container is never larger than bitmap one)
+     */
+    private static final int ARRAY_CONTAINER_MAX_SIZE = 4096;
+
+    /**
+     * Number of long words in bitmap container
+     */
+    private static final int BITMAP_CONTAINER_WORD_COUNT = 1024;
+
+    /**
+     * Approximate size of object header and array header in bytes
+     */
+    private static final int OBJECT_OVERHEAD = 16;
+
+    /**
+     * High 16 bits of route indexes in natural order
+     */
+    private final char[] keys;
+
+    /**
+     * Containers of low 16 bits addressed in the same way as keys
+     */
+    private final Container[] containers;
+
+    /**
+     * @param keys high 16 bits of route indexes
+     * @param containers containers of low 16 bits
+     */
+    private RouteBitmap(char[] keys, Container[] containers) {
+        this.keys = keys;
+        this.containers = containers;
+    }
+
+    /**
+     * Create bitmap from the sorted range of non-negative values.
+     *
+     * Duplicated values are ignored.
+     *
+     * @param values sorted values
+     * @param fromIndex start of the range (inclusive)
+     * @param toIndex end of the range (exclusive)
+     * @return bitmap that contains all the values of the range
+     */
+    static RouteBitmap of(int[] values, int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return RouteBitmap.EMPTY;
+        }
+
+        int chunkCount = 1;
+        for (int index = fromIndex + 1; index < toIndex; index++) {
+            if ((values[index] >>> 16) != (values[index - 1] >>> 16)) {
+                chunkCount++;
+            }
+        }
+
+        char[] keys = new char[chunkCount];
+        Container[] containers = new Container[chunkCount];
+        int chunkStart = fromIndex;
+        for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+            int key = values[chunkStart] >>> 16;
+            int chunkEnd = chunkStart + 1;
+            while (chunkEnd < toIndex && (values[chunkEnd] >>> 16) == key) {
+                chunkEnd++;
+            }
+            keys[chunkIndex] = (char)key;
+            containers[chunkIndex] = RouteBitmap.createContainer(values, chunkStart, chunkEnd);
+            chunkStart = chunkEnd;
+        }
+
+        return new RouteBitmap(keys, containers);
+    }
+
+    /**
+     * Check if bitmap contains the given value
+     *
+     * @param value value to check
+     * @return true if value is present or false otherwise
+     */
+    boolean contains(int value) {
+        int chunkIndex = Arrays.binarySearch(this.keys, (char)(value >>> 16));
+        return chunkIndex >= 0 && this.containers[chunkIndex].contains((char)value);
+    }
+
+    /**
+     * Check if bitmaps have at least one common value.
+     *
+     * Containers are compared pairwise only for matching chunks and the check stops on the first common value.
+     *
+     * @param other other bitmap
+     * @return true if common value exists or false otherwise
+     */
+    boolean intersects(RouteBitmap other) {
+        int index = 0;
+        int otherIndex = 0;
+        while (index < this.keys.length && otherIndex < other.keys.length) {
+            char key = this.keys[index];
+            char otherKey = other.keys[otherIndex];
+            if (key < otherKey) {
+                index++;
+            } else if (key > otherKey) {
+                otherIndex++;
+            } else {
+                if (this.containers[index].intersects(other.containers[otherIndex])) {
+                    return true;
+                }
+                index++;
+                otherIndex++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Collect common values of both bitmaps in ascending order.
+     *
+     * For every pair of matching chunks the container with fewer values is iterated and every value
+     * is checked against the other container. Values are translated using the given array before collection.
+     *
+     * @param other other bitmap
+     * @param translation translation of values (value is used as an index)
+     * @param collector collector of translated values
+     */
+    void collectIntersection(RouteBitmap other, int[] translation, RouteIdCollector collector) {
+        int index = 0;
+        int otherIndex = 0;
+        while (index < this.keys.length && otherIndex < other.keys.length && !collector.isFull()) {
+            char key = this.keys[index];
+            char otherKey = other.keys[otherIndex];
+            if (key < otherKey) {
+                index++;
+            } else if (key > otherKey) {
+                otherIndex++;
+            } else {
+                Container container = this.containers[index];
+                Container otherContainer = other.containers[otherIndex];
+                if (container.getCardinality() <= otherContainer.getCardinality()) {
+                    container.collectCommon(otherContainer, key << 16, translation, collector);
+                } else {
+                    otherContainer.collectCommon(container, key << 16, translation, collector);
+                }
+                index++;
+                otherIndex++;
+            }
+        }
+    }
+
+    /**
+     * Retrieve number of values in the bitmap
+     *
+     * @return number of values
+     */
+    int getCardinality() {
+        int cardinality = 0;
+        for (Container container : this.containers) {
+            cardinality += container.getCardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Calculate approximate memory footprint of the bitmap
+     *
+     * @return approximate size in bytes
+     */
+    long getSizeInBytes() {
+        long size = 3L * RouteBitmap.OBJECT_OVERHEAD + 2L * this.keys.length + 4L * this.containers.length;
+        for (Container container : this.containers) {
+            size += container.getSizeInBytes();
+        }
+        return size;
+    }
+
+    /**
+     * Create the smallest container for the sorted chunk of values
+     *
+     * @param values sorted values with the same high 16 bits
+     * @param fromIndex start of the chunk (inclusive)
+     * @param toIndex end of the chunk (exclusive)
+     * @return container
+     */
+    private static Container createContainer(int[] values, int fromIndex, int toIndex) {
+        int cardinality = 1;
+        int runCount = 1;
+        for (int index = fromIndex + 1; index < toIndex; index++) {
+            int delta = values[index] - values[index - 1];
+            if (delta != 0) {
+                cardinality++;
+            }
+            if (delta > 1) {
+                runCount++;
+            }
+        }
+
+        long arraySize = 2L * cardinality;
+        long bitmapSize = 8L * RouteBitmap.BITMAP_CONTAINER_WORD_COUNT;
+        long runSize = 4L * runCount;
+        if (runSize < arraySize && runSize < bitmapSize) {
+            return RunContainer.of(values, fromIndex, toIndex, runCount);
+        }
+        if (cardinality <= RouteBitmap.ARRAY_CONTAINER_MAX_SIZE) {
+            return ArrayContainer.of(values, fromIndex, toIndex, cardinality);
+        }
+        return BitmapContainer.of(values, fromIndex, toIndex);
+    }
+
+    /**
+     * Container of low 16 bits of route indexes
+     */
+    private abstract static class Container {
+
+        /**
+         * @param value low 16 bits of the value
+         * @return true if value is present or false otherwise
+         */
+        abstract boolean contains(char value);
+
+        /**
+         * @param other other container
+         * @return true if containers have at least one common value or false otherwise
+         */
+        abstract boolean intersects(Container other);
+
+        /**
+         * Collect values of this container that are present in the other one (in ascending order)
+         *
+         * @param other other container
+         * @param high high 16 bits of the values
+         * @param translation translation of values (value is used as an index)
+         * @param collector collector of translated values
+         */
+        abstract void collectCommon(Container other, int high, int[] translation, RouteIdCollector collector);
+
+        /**
+         * @return number of values in the container
+         */
+        abstract int getCardinality();
+
+        /**
+         * @return approximate size of the container in bytes
+         */
+        abstract long getSizeInBytes();
+    }
+
+    /**
+     * Sorted array of values
+     */
+    private static final class ArrayContainer extends Container {
+
+        /**
+         * Sorted values
+         */
+        private final char[] values;
+
+        /**
+         * @param values sorted values
+         */
+        private ArrayContainer(char[] values) {
+            this.values = values;
+        }
+
+        /**
+         * @param source sorted source values
+         * @param fromIndex start of the chunk (inclusive)
+         * @param toIndex end of the chunk (exclusive)
+         * @param cardinality number of distinct values in the chunk
+         * @return array container
+         */
+        static ArrayContainer of(int[] source, int fromIndex, int toIndex, int cardinality) {
+            char[] values = new char[cardinality];
+            int valueIndex = 0;
+            values[valueIndex++] = (char)source[fromIndex];
+            for (int index = fromIndex + 1; index < toIndex; index++) {
+                if (source[index] != source[index - 1]) {
+                    values[valueIndex++] = (char)source[index];
+                }
+            }
+            return new ArrayContainer(values);
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(this.values, value) >= 0;
+        }
+
+        @Override
+        boolean intersects(Container other) {
+            if (other instanceof ArrayContainer) {
+                return this.intersectsArray(((ArrayContainer)other).values);
+            }
+            for (char value : this.values) {
+                if (other.contains(value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        void collectCommon(Container other, int high, int[] translation, RouteIdCollector collector) {
+            for (char value : this.values) {
+                if (other.contains(value) && !collector.add(translation[high | value])) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Merge two sorted arrays until the first common value
+         *
+         * @param otherValues other sorted values
+         * @return true if common value exists or false otherwise
+         */
+        private boolean intersectsArray(char[] otherValues) {
+            char[] values = this.values;
+            int index = 0;
+            int otherIndex = 0;
+            while (index < values.length && otherIndex < otherValues.length) {
+                char value = values[index];
+                char otherValue = otherValues[otherIndex];
+                if (value == otherValue) {
+                    return true;
+                }
+                // advance both cursors without unpredictable branches
+                index += (value < otherValue) ? 1 : 0;
+                otherIndex += (value > otherValue) ? 1 : 0;
+            }
+            return false;
+        }
+
+        @Override
+        int getCardinality() {
+            return this.values.length;
+        }
+
+        @Override
+        long getSizeInBytes() {
+            return 2L * RouteBitmap.OBJECT_OVERHEAD + 2L * this.values.length;
+        }
+    }
+
+    /**
+     * Plain bitmap of 65536 bits
+     */
+    private static final class BitmapContainer extends Container {
+
+        /**
+         * Bitmap words
+         */
+        private final long[] words;
+
+        /**
+         * Number of set bits
+         */
+        private final int cardinality;
+
+        /**
+         * @param words bitmap words
+         * @param cardinality number of set bits
+         */
+        private BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /**
+         * @param source sorted source values
+         * @param fromIndex start of the chunk (inclusive)
+         * @param toIndex end of the chunk (exclusive)
+         * @return bitmap container
+         */
+        static BitmapContainer of(int[] source, int fromIndex, int toIndex) {
+            long[] words = new long[RouteBitmap.BITMAP_CONTAINER_WORD_COUNT];
+            for (int index = fromIndex; index < toIndex; index++) {
+                char value = (char)source[index];
+                words[value >>> 6] |= 1L << value;
+            }
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            return new BitmapContainer(words, cardinality);
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (this.words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        boolean intersects(Container other) {
+            if (other instanceof BitmapContainer) {
+                long[] otherWords = ((BitmapContainer)other).words;
+                for (int wordIndex = 0; wordIndex < this.words.length; wordIndex++) {
+                    if ((this.words[wordIndex] & otherWords[wordIndex]) != 0) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            // array and run containers know how to check themselves against the bitmap
+            return other.intersects(this);
+        }
+
+        @Override
+        void collectCommon(Container other, int high, int[] translation, RouteIdCollector collector) {
+            for (int wordIndex = 0; wordIndex < this.words.length; wordIndex++) {
+                long word = this.words[wordIndex];
+                while (word != 0) {
+                    char value = (char)((wordIndex << 6) | Long.numberOfTrailingZeros(word));
+                    if (other.contains(value) && !collector.add(translation[high | value])) {
+                        return;
+                    }
+                    // clear the lowest set bit
+                    word &= word - 1;
+                }
+            }
+        }
+
+        /**
+         * Check if any bit of the given inclusive range is set
+         *
+         * @param start first bit of the range
+         * @param end last bit of the range
+         * @return true if at least one bit is set or false otherwise
+         */
+        boolean intersectsRange(int start, int end) {
+            int firstWord = start >>> 6;
+            int lastWord = end >>> 6;
+            long firstMask = -1L << start;
+            long lastMask = -1L >>> (63 - (end & 63));
+            if (firstWord == lastWord) {
+                return (this.words[firstWord] & firstMask & lastMask) != 0;
+            }
+            if ((this.words[firstWord] & firstMask) != 0 || (this.words[lastWord] & lastMask) != 0) {
+                return true;
+            }
+            for (int wordIndex = firstWord + 1; wordIndex < lastWord; wordIndex++) {
+                if (this.words[wordIndex] != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int getCardinality() {
+            return this.cardinality;
+        }
+
+        @Override
+        long getSizeInBytes() {
+            return 2L * RouteBitmap.OBJECT_OVERHEAD + 8L * this.words.length + 4;
+        }
+    }
+
+    /**
+     * Sorted runs of consecutive values
+     */
+    private static final class RunContainer extends Container {
+
+        /**
+         * Pairs of [run start][run length - 1]
+         */
+        private final char[] runs;
+
+        /**
+         * @param runs pairs of [run start][run length - 1]
+         */
+        private RunContainer(char[] runs) {
+            this.runs = runs;
+        }
+
+        /**
+         * @param source sorted source values
+         * @param fromIndex start of the chunk (inclusive)
+         * @param toIndex end of the chunk (exclusive)
+         * @param runCount number of runs in the chunk
+         * @return run container
+         */
+        static RunContainer of(int[] source, int fromIndex, int toIndex, int runCount) {
+            char[] runs = new char[2 * runCount];
+            int runIndex = 0;
+            int runStart = source[fromIndex];
+            int runEnd = runStart;
+            for (int index = fromIndex + 1; index < toIndex; index++) {
+                int value = source[index];
+                if (value > runEnd + 1) {
+                    runs[runIndex++] = (char)runStart;
+                    runs[runIndex++] = (char)(runEnd - runStart);
+                    runStart = value;
+                }
+                runEnd = value;
+            }
+            runs[runIndex++] = (char)runStart;
+            runs[runIndex] = (char)(runEnd - runStart);
+            return new RunContainer(runs);
+        }
+
+        @Override
+        boolean contains(char value) {
+            int low = 0;
+            int high = this.runs.length / 2 - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                char runStart = this.runs[2 * middle];
+                if (value < runStart) {
+                    high = middle - 1;
+                } else if (value > runStart + this.runs[2 * middle + 1]) {
+                    low = middle + 1;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        boolean intersects(Container other) {
+            if (other instanceof BitmapContainer) {
+                BitmapContainer bitmap = (BitmapContainer)other;
+                for (int runIndex = 0; runIndex < this.runs.length; runIndex += 2) {
+                    int runStart = this.runs[runIndex];
+                    if (bitmap.intersectsRange(runStart, runStart + this.runs[runIndex + 1])) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            if (other instanceof RunContainer) {
+                return this.intersectsRuns(((RunContainer)other).runs);
+            }
+            return other.intersects(this);
+        }
+
+        @Override
+        void collectCommon(Container other, int high, int[] translation, RouteIdCollector collector) {
+            for (int runIndex = 0; runIndex < this.runs.length; runIndex += 2) {
+                int runStart = this.runs[runIndex];
+                int runEnd = runStart + this.runs[runIndex + 1];
+                for (int value = runStart; value <= runEnd; value++) {
+                    if (other.contains((char)value) && !collector.add(translation[high | value])) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Check if two sorted run lists overlap
+         *
+         * @param otherRuns other runs
+         * @return true if runs overlap or false otherwise
+         */
+        private boolean intersectsRuns(char[] otherRuns) {
+            int index = 0;
+            int otherIndex = 0;
+            while (index < this.runs.length && otherIndex < otherRuns.length) {
+                int start = this.runs[index];
+                int end = start + this.runs[index + 1];
+                int otherStart = otherRuns[otherIndex];
+                int otherEnd = otherStart + otherRuns[otherIndex + 1];
+                if (end < otherStart) {
+                    index += 2;
+                } else if (otherEnd < start) {
+                    otherIndex += 2;
+                } else {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        int getCardinality() {
+            int cardinality = 0;
+            for (int runIndex = 1; runIndex < this.runs.length; runIndex += 2) {
+                cardinality += this.runs[runIndex] + 1;
+            }
+            return cardinality;
+        }
+
+        @Override
+        long getSizeInBytes() {
+            return 2L * RouteBitmap.OBJECT_OVERHEAD + 2L * this.runs.length;
+        }
+    }
+}
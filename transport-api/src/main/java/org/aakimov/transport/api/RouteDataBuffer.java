@@ -0,0 +1,342 @@
+package org.aakimov.transport.api;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Segmented growable store of route blocks.
+ *
+ * Route blocks ([route ID][stop count][stop ID1][stop ID2]...) are appended to fixed-size integer segments,
+ * so the store grows in small steps and never needs a worst-case preallocation or a copy of all the data
+ * when it grows. Every route block is kept within a single segment (segment is closed when the next block
+ * does not fit, routes longer than segment size get a dedicated segment).
+ *
+ * Segments are either heap buffers or direct (off-heap) buffers in native byte order.
+ * Route blocks are stored using the given layout (see RouteDataLayout).
+ *
+ * @author aakimov
+ */
+final class RouteDataBuffer {
+
+    /**
+     * Default segment size (4Mb)
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 20;
+
+    /**
+     * Segment size
+     */
+    private final int segmentSize;
+
+    /**
+     * Flag that shows if segments are allocated outside of the heap
+     */
+    private final boolean direct;
+
+    /**
+     * Layout of the route blocks
+     */
+    private final RouteDataLayout layout;
+
+    /**
+     * Segments
+     */
+    private final List<IntBuffer> segments = new ArrayList<>();
+
+    /**
+     * Number of used elements of every segment
+     */
+    private int[] segmentLengths = new int[16];
+
+    /**
+     * Total number of used elements
+     */
+    private long length;
+
+    /**
+     * Number of stored routes
+     */
+    private int routeCount;
+
+    /**
+     * @param segmentSize segment size
+     */
+    RouteDataBuffer(int segmentSize) {
+        this(segmentSize, false);
+    }
+
+    /**
+     * @param segmentSize segment size
+     * @param direct flag that shows if segments should be allocated outside of the heap
+     */
+    RouteDataBuffer(int segmentSize, boolean direct) {
+        this(segmentSize, direct, RouteDataLayout.SORTED);
+    }
+
+    /**
+     * @param segmentSize segment size
+     * @param direct flag that shows if segments should be allocated outside of the heap
+     * @param layout layout of the route blocks
+     */
+    RouteDataBuffer(int segmentSize, boolean direct, RouteDataLayout layout) {
+        this.segmentSize = segmentSize;
+        this.direct = direct;
+        this.layout = layout;
+    }
+
+    /**
+     * Append route block to the store
+     *
+     * @param routeId route ID
+     * @param stops stop IDs
+     * @param stopCount number of stops
+     */
+    void appendRoute(int routeId, int[] stops, int stopCount) {
+        this.appendRoute(routeId, stops, null, stopCount);
+    }
+
+    /**
+     * Append route block to the store
+     *
+     * @param routeId route ID
+     * @param stops stop IDs
+     * @param positions positions of the stops in the original route (used by ORDERED layout only)
+     * @param stopCount number of stops
+     */
+    void appendRoute(int routeId, int[] stops, int[] positions, int stopCount) {
+        int blockLength = this.layout.getBlockLength(stopCount);
+        int segmentIndex = this.segments.size() - 1;
+        if (segmentIndex < 0 || this.segmentLengths[segmentIndex] + blockLength > this.segments.get(segmentIndex).capacity()) {
+            segmentIndex = this.addSegment(Math.max(this.segmentSize, blockLength));
+        }
+
+        IntBuffer segment = this.segments.get(segmentIndex);
+        segment.position(this.segmentLengths[segmentIndex]);
+        segment.put(routeId).put(stopCount).put(stops, 0, stopCount);
+        if (this.layout == RouteDataLayout.ORDERED) {
+            RouteDataLayout.putPositions(positions, stopCount, segment);
+        }
+        this.segmentLengths[segmentIndex] += blockLength;
+        this.length += blockLength;
+        this.routeCount++;
+    }
+
+    /**
+     * Retrieve number of stored routes
+     *
+     * @return number of routes
+     */
+    int getRouteCount() {
+        return this.routeCount;
+    }
+
+    /**
+     * Retrieve total number of used elements
+     *
+     * @return number of used elements
+     */
+    long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Keep only the given number of first routes
+     *
+     * @param maxRouteCount number of routes to keep
+     */
+    void truncate(int maxRouteCount) {
+        if (maxRouteCount >= this.routeCount) {
+            return;
+        }
+
+        int remainingRouteCount = maxRouteCount;
+        long newLength = 0;
+        int segmentIndex = 0;
+        for (; segmentIndex < this.segments.size() && remainingRouteCount > 0; segmentIndex++) {
+            IntBuffer segment = this.segments.get(segmentIndex);
+            int blockStart = 0;
+            while (blockStart < this.segmentLengths[segmentIndex] && remainingRouteCount > 0) {
+                blockStart += this.layout.getBlockLength(segment.get(blockStart + 1));
+                remainingRouteCount--;
+            }
+            this.segmentLengths[segmentIndex] = blockStart;
+            newLength += blockStart;
+        }
+        while (this.segments.size() > segmentIndex) {
+            this.segments.remove(this.segments.size() - 1);
+        }
+
+        this.length = newLength;
+        this.routeCount = maxRouteCount;
+    }
+
+    /**
+     * Copy route IDs of all the stored routes into the target array (in store order)
+     *
+     * @param target target array
+     * @param offset offset in the target array
+     * @return offset next to the last copied route ID
+     */
+    int copyRouteIds(int[] target, int offset) {
+        int targetIndex = offset;
+        for (int segmentIndex = 0; segmentIndex < this.segments.size(); segmentIndex++) {
+            IntBuffer segment = this.segments.get(segmentIndex);
+            for (int blockStart = 0; blockStart < this.segmentLengths[segmentIndex]; targetIndex++) {
+                target[targetIndex] = segment.get(blockStart);
+                blockStart += this.layout.getBlockLength(segment.get(blockStart + 1));
+            }
+        }
+        return targetIndex;
+    }
+
+    /**
+     * Remove the given routes moving the following route blocks of the same segment in place
+     *
+     * @param removedRoutes indexes of the routes to remove
+     * @param firstRouteIndex index of the first route of this store
+     * @param consumer consumer of the removed route blocks (null if blocks are not needed)
+     * @return number of released elements
+     */
+    long removeRoutes(BitSet removedRoutes, int firstRouteIndex, RouteBlockConsumer consumer) {
+        long releasedLength = 0;
+        int routeIndex = firstRouteIndex;
+        for (int segmentIndex = 0; segmentIndex < this.segments.size(); segmentIndex++) {
+            IntBuffer segment = this.segments.get(segmentIndex);
+            int targetStart = 0;
+            for (int blockStart = 0; blockStart < this.segmentLengths[segmentIndex]; routeIndex++) {
+                int blockLength = this.layout.getBlockLength(segment.get(blockStart + 1));
+                if (removedRoutes.get(routeIndex)) {
+                    if (consumer != null) {
+                        consumer.accept(routeIndex, segment, blockStart);
+                    }
+                    releasedLength += blockLength;
+                    this.routeCount--;
+                } else {
+                    if (targetStart < blockStart) {
+                        IntBuffer block = segment.duplicate();
+                        block.limit(blockStart + blockLength).position(blockStart);
+                        segment.position(targetStart);
+                        segment.put(block);
+                    }
+                    targetStart += blockLength;
+                }
+                blockStart += blockLength;
+            }
+            this.segmentLengths[segmentIndex] = targetStart;
+        }
+        this.length -= releasedLength;
+        return releasedLength;
+    }
+
+    /**
+     * Move all the route blocks into the target array.
+     *
+     * Every segment is released right after it is copied, so the store is empty afterwards.
+     *
+     * @param target target array
+     * @param offset offset in the target array
+     * @return offset next to the last copied element
+     */
+    int moveTo(int[] target, int offset) {
+        int targetIndex = offset;
+        for (int segmentIndex = 0; segmentIndex < this.segments.size(); segmentIndex++) {
+            int segmentLength = this.segmentLengths[segmentIndex];
+            IntBuffer segment = this.segments.get(segmentIndex);
+            segment.position(0);
+            segment.get(target, targetIndex, segmentLength);
+            this.segments.set(segmentIndex, null);
+            targetIndex += segmentLength;
+        }
+
+        this.clear();
+        return targetIndex;
+    }
+
+    /**
+     * Move all the route blocks into the target list of buffers.
+     *
+     * Every non-empty segment is added to the list as a buffer that contains used elements only
+     * (segments that are less than half full are copied into a buffer of the exact size to release unused space),
+     * so the store is empty afterwards.
+     *
+     * @param target target list
+     */
+    void moveTo(List<IntBuffer> target) {
+        for (int segmentIndex = 0; segmentIndex < this.segments.size(); segmentIndex++) {
+            int segmentLength = this.segmentLengths[segmentIndex];
+            if (segmentLength > 0) {
+                IntBuffer segment = this.segments.get(segmentIndex);
+                segment.position(0);
+                segment.limit(segmentLength);
+                if (segmentLength < segment.capacity() / 2) {
+                    IntBuffer exactSegment = this.allocateSegment(segmentLength);
+                    exactSegment.put(segment);
+                    exactSegment.position(0);
+                    target.add(exactSegment);
+                } else {
+                    target.add(segment.slice());
+                }
+                this.segments.set(segmentIndex, null);
+            }
+        }
+
+        this.clear();
+    }
+
+    /**
+     * Remove all the segments
+     */
+    private void clear() {
+        this.segments.clear();
+        this.length = 0;
+        this.routeCount = 0;
+    }
+
+    /**
+     * Add new segment
+     *
+     * @param size segment size
+     * @return index of the new segment
+     */
+    private int addSegment(int size) {
+        int segmentIndex = this.segments.size();
+        if (segmentIndex == this.segmentLengths.length) {
+            this.segmentLengths = Arrays.copyOf(this.segmentLengths, segmentIndex * 2);
+        }
+        this.segments.add(this.allocateSegment(size));
+        this.segmentLengths[segmentIndex] = 0;
+        return segmentIndex;
+    }
+
+    /**
+     * Allocate segment buffer
+     *
+     * @param size segment size
+     * @return segment buffer
+     */
+    private IntBuffer allocateSegment(int size) {
+        return this.direct
+            ? ByteBuffer.allocateDirect(size * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+            : IntBuffer.allocate(size);
+    }
+
+    /**
+     * Consumer of the route blocks
+     */
+    interface RouteBlockConsumer {
+
+        /**
+         * Process route block
+         *
+         * @param routeIndex index of the route
+         * @param segment segment that contains the route block
+         * @param blockStart index of the first element of the route block in the segment
+         */
+        void accept(int routeIndex, IntBuffer segment, int blockStart);
+    }
+}
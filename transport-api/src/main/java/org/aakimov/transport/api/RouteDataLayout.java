@@ -0,0 +1,102 @@
+package org.aakimov.transport.api;
+
+import java.nio.IntBuffer;
+
+/**
+ * Layout of the route blocks in route data arrays and buffers.
+ *
+ * @author aakimov
+ */
+public enum RouteDataLayout {
+
+    /**
+     * [route ID][stop count][sorted stop IDs]
+     */
+    SORTED,
+
+    /**
+     * [route ID][stop count][sorted stop IDs][positions of the sorted stops in the original route]
+     *
+     * Positions are zero-based and packed two per integer (low 16 bits first) if the route has
+     * no more than 65536 stops or stored one per integer otherwise, so the original stop order costs
+     * 2 extra bytes per stop for all the real-life routes.
+     */
+    ORDERED;
+
+    /**
+     * Maximum number of stops in the route that allows 16-bit positions
+     */
+    static final int MAX_PACKED_STOP_COUNT = 1 << 16;
+
+    /**
+     * Calculate length of the route block
+     *
+     * @param stopCount number of stops in the route
+     * @return number of integers in the route block
+     */
+    public int getBlockLength(int stopCount) {
+        return (this == RouteDataLayout.SORTED)
+            ? stopCount + 2
+            : stopCount + 2 + RouteDataLayout.getPositionLength(stopCount);
+    }
+
+    /**
+     * Calculate number of integers used to store stop positions of the route (ORDERED layout only)
+     *
+     * @param stopCount number of stops in the route
+     * @return number of integers
+     */
+    static int getPositionLength(int stopCount) {
+        return (stopCount <= RouteDataLayout.MAX_PACKED_STOP_COUNT) ? (stopCount + 1) >>> 1 : stopCount;
+    }
+
+    /**
+     * Retrieve position of the stop in the original route (ORDERED layout only)
+     *
+     * @param routeData route data
+     * @param positionStart index of the first integer of the stop positions
+     * @param stopCount number of stops in the route
+     * @param stopIndex index of the stop in the sorted stop list
+     * @return zero-based position of the stop in the original route
+     */
+    static int getPosition(int[] routeData, int positionStart, int stopCount, int stopIndex) {
+        if (stopCount > RouteDataLayout.MAX_PACKED_STOP_COUNT) {
+            return routeData[positionStart + stopIndex];
+        }
+        return (routeData[positionStart + (stopIndex >>> 1)] >>> ((stopIndex & 1) << 4)) & 0xFFFF;
+    }
+
+    /**
+     * Retrieve position of the stop in the original route from the route data buffer (ORDERED layout only)
+     *
+     * @param routeData route data buffer
+     * @param positionStart index of the first integer of the stop positions
+     * @param stopCount number of stops in the route
+     * @param stopIndex index of the stop in the sorted stop list
+     * @return zero-based position of the stop in the original route
+     */
+    static int getPosition(IntBuffer routeData, int positionStart, int stopCount, int stopIndex) {
+        if (stopCount > RouteDataLayout.MAX_PACKED_STOP_COUNT) {
+            return routeData.get(positionStart + stopIndex);
+        }
+        return (routeData.get(positionStart + (stopIndex >>> 1)) >>> ((stopIndex & 1) << 4)) & 0xFFFF;
+    }
+
+    /**
+     * Store positions of the stops in the original route at the current position of the buffer (ORDERED layout only)
+     *
+     * @param positions positions of the sorted stops
+     * @param stopCount number of stops in the route
+     * @param target target buffer
+     */
+    static void putPositions(int[] positions, int stopCount, IntBuffer target) {
+        if (stopCount > RouteDataLayout.MAX_PACKED_STOP_COUNT) {
+            target.put(positions, 0, stopCount);
+            return;
+        }
+        for (int stopIndex = 0; stopIndex < stopCount; stopIndex += 2) {
+            int high = (stopIndex + 1 < stopCount) ? positions[stopIndex + 1] << 16 : 0;
+            target.put(high | positions[stopIndex]);
+        }
+    }
+}
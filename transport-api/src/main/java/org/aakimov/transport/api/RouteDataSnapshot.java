@@ -0,0 +1,234 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the route data array.
+ *
+ * Snapshot is a file that contains 32-byte header followed by the route data array (see MappedRouteDataReader).
+ * All the values are stored in little-endian byte order:
+ *
+ * [magic "TRNS" (4 bytes)][version (4 bytes)][header size (4 bytes)][content type (4 bytes)]
+ * [number of integers in the payload (8 bytes)][CRC32 checksum of the payload (8 bytes)]
+ * [route count][route ID1][stop count of route ID1][stop ID1][stop ID2]...
+ *
+ * Snapshot can be memory mapped and used without any parsing (see SnapshotRouteDataReader).
+ *
+ * @author aakimov
+ */
+public final class RouteDataSnapshot {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataSnapshot.class);
+
+    /**
+     * Magic number ("TRNS" in little-endian byte order)
+     */
+    static final int MAGIC = 0x534E5254;
+
+    /**
+     * Current format version
+     */
+    static final int VERSION = 1;
+
+    /**
+     * Header size in bytes
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Content type of the route data array
+     */
+    static final int CONTENT_TYPE_ROUTE_DATA = 0;
+
+    /**
+     * Size of the buffer used to write the payload
+     */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Instantiation of this class is not supported.
+     */
+    private RouteDataSnapshot() {
+        throw new UnsupportedOperationException("This class should not be instantiated.");
+    }
+
+    /**
+     * Write route data snapshot.
+     *
+     * Snapshot is written to a temporary file first and then moved to the target location,
+     * so readers never see partially written snapshots.
+     *
+     * @param routeData route data
+     * @param snapshotPath snapshot location
+     * @throws IOException if snapshot cannot be written
+     */
+    public static void write(int[] routeData, Path snapshotPath) throws IOException {
+        RouteDataSnapshot.write(snapshotPath, IntBuffer.wrap(routeData));
+    }
+
+    /**
+     * Write route data snapshot using route data segments (see BufferRouteManager)
+     *
+     * @param segments route data segments (route blocks without leading route count)
+     * @param snapshotPath snapshot location
+     * @throws IOException if snapshot cannot be written
+     */
+    public static void write(IntBuffer[] segments, Path snapshotPath) throws IOException {
+        int routeCount = 0;
+        for (IntBuffer segment : segments) {
+            int routeDataIndex = 0;
+            while (routeDataIndex < segment.limit()) {
+                routeDataIndex += segment.get(routeDataIndex + 1) + 2;
+                routeCount++;
+            }
+        }
+
+        IntBuffer[] payload = new IntBuffer[segments.length + 1];
+        payload[0] = IntBuffer.wrap(new int[] {routeCount});
+        System.arraycopy(segments, 0, payload, 1, segments.length);
+        RouteDataSnapshot.write(snapshotPath, payload);
+    }
+
+    /**
+     * Write route data snapshot that consists of the given parts of the payload
+     *
+     * @param snapshotPath snapshot location
+     * @param payload parts of the payload (all the elements from 0 to the limit of every buffer are written)
+     * @throws IOException if snapshot cannot be written
+     */
+    private static void write(Path snapshotPath, IntBuffer... payload) throws IOException {
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        try (
+            FileChannel fileChannel = FileChannel.open(
+                temporaryPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE
+            )
+        ) {
+            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(RouteDataSnapshot.WRITE_BUFFER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            IntBuffer intBuffer = byteBuffer.asIntBuffer();
+            CRC32 checksum = new CRC32();
+            long payloadLength = 0;
+            fileChannel.position(RouteDataSnapshot.HEADER_SIZE);
+            for (IntBuffer part : payload) {
+                // duplicate keeps position and limit of the source buffer untouched
+                IntBuffer source = part.duplicate();
+                source.position(0);
+                payloadLength += source.remaining();
+                while (source.hasRemaining()) {
+                    // bulk copy with byte order conversion
+                    int length = Math.min(intBuffer.capacity(), source.remaining());
+                    IntBuffer sourceChunk = source.slice();
+                    sourceChunk.limit(length);
+                    intBuffer.clear();
+                    intBuffer.put(sourceChunk);
+                    source.position(source.position() + length);
+                    byteBuffer.limit(length * Integer.BYTES);
+                    RouteDataSnapshot.flush(byteBuffer, fileChannel, checksum);
+                }
+            }
+
+            // header is written last to make sure that checksum is known
+            byteBuffer.putInt(RouteDataSnapshot.MAGIC)
+                .putInt(RouteDataSnapshot.VERSION)
+                .putInt(RouteDataSnapshot.HEADER_SIZE)
+                .putInt(RouteDataSnapshot.CONTENT_TYPE_ROUTE_DATA)
+                .putLong(payloadLength)
+                .putLong(checksum.getValue());
+            byteBuffer.flip();
+            fileChannel.position(0);
+            while (byteBuffer.hasRemaining()) {
+                fileChannel.write(byteBuffer);
+            }
+            fileChannel.force(false);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info("Route data snapshot '{}' is written.", snapshotPath);
+    }
+
+    /**
+     * Check if the given file is a route data snapshot (only magic number is checked)
+     *
+     * @param path file location
+     * @return true if file starts with the snapshot magic number or false otherwise
+     */
+    public static boolean isSnapshot(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer byteBuffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (byteBuffer.hasRemaining() && fileChannel.read(byteBuffer) >= 0) {
+                // read till the buffer is full or the end of the file
+            }
+            return !byteBuffer.hasRemaining() && byteBuffer.getInt(0) == RouteDataSnapshot.MAGIC;
+        } catch (IOException exception) {
+            LOGGER.warn("File '{}' cannot be checked.", path, exception);
+            return false;
+        }
+    }
+
+    /**
+     * Read and validate snapshot header
+     *
+     * @param fileChannel snapshot file channel
+     * @return number of integers in the payload and checksum of the payload
+     * @throws IOException if header cannot be read
+     */
+    static long[] readHeader(FileChannel fileChannel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RouteDataSnapshot.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining() && fileChannel.read(header, header.position()) >= 0) {
+            // read till the buffer is full or the end of the file
+        }
+        if (header.hasRemaining() || header.getInt(0) != RouteDataSnapshot.MAGIC) {
+            throw new FileFormatException("Route data snapshot header is invalid.");
+        }
+        if (header.getInt(4) != RouteDataSnapshot.VERSION || header.getInt(8) != RouteDataSnapshot.HEADER_SIZE) {
+            throw new FileFormatException("Route data snapshot version is not supported.");
+        }
+        if (header.getInt(12) != RouteDataSnapshot.CONTENT_TYPE_ROUTE_DATA) {
+            throw new FileFormatException("Route data snapshot content type is not supported.");
+        }
+
+        long payloadLength = header.getLong(16);
+        if (payloadLength < 0 || RouteDataSnapshot.HEADER_SIZE + Integer.BYTES * payloadLength != fileChannel.size()) {
+            throw new FileFormatException("Route data snapshot is truncated.");
+        }
+        return new long[] {payloadLength, header.getLong(24)};
+    }
+
+    /**
+     * Write buffer contents (from the start of the buffer to its limit) to the channel
+     *
+     * @param byteBuffer buffer
+     * @param fileChannel target channel
+     * @param checksum payload checksum
+     * @throws IOException if data cannot be written
+     */
+    private static void flush(ByteBuffer byteBuffer, FileChannel fileChannel, CRC32 checksum) throws IOException {
+        byteBuffer.position(0);
+        checksum.update(byteBuffer.duplicate());
+        while (byteBuffer.hasRemaining()) {
+            fileChannel.write(byteBuffer);
+        }
+        byteBuffer.clear();
+    }
+}
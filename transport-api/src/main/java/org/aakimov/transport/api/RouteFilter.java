@@ -0,0 +1,198 @@
+package org.aakimov.transport.api;
+
+/**
+ * Bloom filters of the stop IDs of every route stored in a single flat array.
+ *
+ * Filters are blocked: every stop ID sets all its bits in a single 64-bit word of the route filter,
+ * so a route that does not contain the stop ID is rejected with a single memory read. Filter of a route
+ * takes (stop count * bits per stop / 64 + 1) words and filters are stored in the order of routes,
+ * so the filter position is advanced together with the route data index.
+ *
+ * More bits per stop mean less false positives and more memory: 8 bits per stop take a quarter
+ * of the route data size and let through about 3% of the routes that do not contain the stop ID
+ * (4 bits - 15%, 12 bits - 1%, 16 bits - 0.6%).
+ *
+ * @author aakimov
+ */
+final class RouteFilter {
+
+    /**
+     * Maximum number of bits per stop
+     */
+    static final int MAX_BITS_PER_STOP = 64;
+
+    /**
+     * Maximum number of bits set by a stop ID (limited by the number of 6-bit chunks of the hash)
+     */
+    private static final int MAX_HASH_COUNT = 10;
+
+    /**
+     * Filter words of all the routes
+     */
+    private final long[] words;
+
+    /**
+     * Number of filter bits per stop
+     */
+    private final int bitsPerStop;
+
+    /**
+     * Number of bits set by a stop ID
+     */
+    private final int hashCount;
+
+    /**
+     * @param words filter words of all the routes
+     * @param bitsPerStop number of filter bits per stop
+     * @param hashCount number of bits set by a stop ID
+     */
+    private RouteFilter(
+        long[] words,
+        int bitsPerStop,
+        int hashCount
+    ) {
+        this.words = words;
+        this.bitsPerStop = bitsPerStop;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Build filters of all the routes of the route data
+     *
+     * @param routeData route data
+     * @param bitsPerStop number of filter bits per stop
+     * @return route filter
+     * @throws IllegalArgumentException if number of bits per stop is out of range or filters are too large
+     */
+    static RouteFilter build(int[] routeData, int bitsPerStop) {
+        if (bitsPerStop < 1 || bitsPerStop > RouteFilter.MAX_BITS_PER_STOP) {
+            throw new IllegalArgumentException("Number of filter bits per stop should be between 1 and 64.");
+        }
+
+        // classic filters set 0.7 bits per bit of a stop, but the bits of a single word collide more often
+        int hashCount = Math.max(1, Math.min(RouteFilter.MAX_HASH_COUNT, Math.round(bitsPerStop * 0.6f)));
+        int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+        long length = 0;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = routeData[currentRouteDataIndex + 1];
+            length += RouteFilter.getWordCount(stopCount, bitsPerStop);
+            currentRouteDataIndex += stopCount + 2;
+        }
+        if (length > Integer.MAX_VALUE - 8L) {
+            throw new IllegalArgumentException("Route filters are too large.");
+        }
+
+        RouteFilter routeFilter = new RouteFilter(new long[(int)length], bitsPerStop, hashCount);
+        int filterIndex = 0;
+        currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = routeData[currentRouteDataIndex + 1];
+            int firstStopIndex = currentRouteDataIndex + 2;
+            int wordCount = routeFilter.getWordCount(stopCount);
+            for (int stopIndex = firstStopIndex; stopIndex < firstStopIndex + stopCount; stopIndex++) {
+                long hash = RouteFilter.hash(routeData[stopIndex]);
+                routeFilter.words[filterIndex + RouteFilter.getWordIndex(hash, wordCount)] |= routeFilter.getMask(hash);
+            }
+            filterIndex += wordCount;
+            currentRouteDataIndex = firstStopIndex + stopCount;
+        }
+        return routeFilter;
+    }
+
+    /**
+     * Retrieve number of filter words of the route
+     *
+     * @param stopCount number of stops of the route
+     * @return number of words
+     */
+    int getWordCount(int stopCount) {
+        return RouteFilter.getWordCount(stopCount, this.bitsPerStop);
+    }
+
+    /**
+     * Calculate bits that are set by the stop ID
+     *
+     * @param hash hash of the stop ID
+     * @return mask of the bits
+     */
+    long getMask(long hash) {
+        // bits are selected by a hash of the hash, so they do not depend on the selected word
+        long bitHash = RouteFilter.mix(hash);
+        long mask = 0;
+        for (int hashIndex = 0; hashIndex < this.hashCount; hashIndex++) {
+            mask |= 1L << (bitHash >>> (hashIndex * 6));
+        }
+        return mask;
+    }
+
+    /**
+     * Check if the route may contain the stop ID
+     *
+     * @param filterIndex index of the first filter word of the route
+     * @param wordCount number of filter words of the route
+     * @param hash hash of the stop ID
+     * @param mask bits that are set by the stop ID
+     * @return false if route does not contain the stop ID or true if it may contain it
+     */
+    boolean mightContain(int filterIndex, int wordCount, long hash, long mask) {
+        return (this.words[filterIndex + RouteFilter.getWordIndex(hash, wordCount)] & mask) == mask;
+    }
+
+    /**
+     * Retrieve memory size of the filters
+     *
+     * @return size in bytes
+     */
+    long getSize() {
+        return this.words.length * (long)Long.BYTES;
+    }
+
+    /**
+     * Calculate hash of the stop ID
+     *
+     * @param stopId stop ID
+     * @return hash
+     */
+    static long hash(int stopId) {
+        return RouteFilter.mix(stopId);
+    }
+
+    /**
+     * Retrieve number of filter words of the route
+     *
+     * @param stopCount number of stops of the route
+     * @param bitsPerStop number of filter bits per stop
+     * @return number of words
+     */
+    private static int getWordCount(int stopCount, int bitsPerStop) {
+        return (int)(((long)stopCount * bitsPerStop) >>> 6) + 1;
+    }
+
+    /**
+     * Select filter word of the stop ID (multiply-shift range reduction instead of the modulo)
+     *
+     * @param hash hash of the stop ID
+     * @param wordCount number of filter words of the route
+     * @return word index relative to the first filter word of the route
+     */
+    private static int getWordIndex(long hash, int wordCount) {
+        return (int)(((hash & 0xFFFFFFFFL) * wordCount) >>> 32);
+    }
+
+    /**
+     * Mix bits of the value (murmur3 finalizer)
+     *
+     * @param value value
+     * @return mixed value
+     */
+    private static long mix(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
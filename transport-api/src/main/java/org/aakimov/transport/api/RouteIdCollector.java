@@ -0,0 +1,102 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+
+/**
+ * Growable collector of route IDs limited by the maximum number of routes.
+ *
+ * Route IDs are collected in a primitive array that grows on demand (never above the limit),
+ * so the only allocations are the buffer itself and the resulting array of the exact size.
+ *
+ * @author aakimov
+ */
+final class RouteIdCollector {
+
+    /**
+     * Initial capacity of the buffer
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * Maximum number of route IDs
+     */
+    private final int limit;
+
+    /**
+     * Collected route IDs (only first size elements are valid)
+     */
+    private int[] routeIds;
+
+    /**
+     * Number of collected route IDs
+     */
+    private int size;
+
+    /**
+     * @param limit maximum number of route IDs
+     * @param expectedSize expected number of route IDs (upper bound if it is known)
+     */
+    RouteIdCollector(
+        int limit,
+        int expectedSize
+    ) {
+        RouteIdCollector.validateLimit(limit);
+        this.limit = limit;
+        this.routeIds = new int[Math.max(0, Math.min(limit, expectedSize))];
+    }
+
+    /**
+     * @param limit maximum number of route IDs
+     */
+    RouteIdCollector(
+        int limit
+    ) {
+        this(limit, RouteIdCollector.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Validate maximum number of route IDs
+     *
+     * @param limit maximum number of route IDs
+     */
+    static void validateLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Maximum number of routes should not be negative.");
+        }
+    }
+
+    /**
+     * Add route ID
+     *
+     * @param routeId route ID
+     * @return true if more route IDs can be added or false if the limit is reached
+     */
+    boolean add(int routeId) {
+        if (this.size == this.routeIds.length) {
+            this.routeIds = Arrays.copyOf(
+                this.routeIds,
+                (int)Math.min(this.limit, Math.max(RouteIdCollector.INITIAL_CAPACITY, 2L * this.size))
+            );
+        }
+        this.routeIds[this.size++] = routeId;
+        return this.size < this.limit;
+    }
+
+    /**
+     * Check if the limit is reached
+     *
+     * @return true if no more route IDs can be added or false otherwise
+     */
+    boolean isFull() {
+        return this.size >= this.limit;
+    }
+
+    /**
+     * Retrieve collected route IDs
+     *
+     * @return route IDs in order of addition
+     */
+    int[] toArray() {
+        return (this.size == this.routeIds.length) ? this.routeIds : Arrays.copyOf(this.routeIds, this.size);
+    }
+}
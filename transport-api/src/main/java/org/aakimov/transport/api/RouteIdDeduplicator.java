@@ -0,0 +1,261 @@
+package org.aakimov.transport.api;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Ingestion stage that finds routes with the same route ID and merges or removes them (see DuplicateRoutePolicy).
+ *
+ * Route IDs are copied into a plain array and sorted, so duplicates are found with 4 bytes per route
+ * and without boxing. Route blocks are only touched if there are duplicates: removed blocks are squeezed out
+ * of their segments in place and merged routes are appended after all the other routes.
+ *
+ * @author aakimov
+ */
+final class RouteIdDeduplicator {
+
+    /**
+     * Utility class should not be instantiated
+     */
+    private RouteIdDeduplicator() {
+        throw new UnsupportedOperationException("This class should not be instantiated.");
+    }
+
+    /**
+     * Find and handle routes with duplicate route IDs
+     *
+     * @param routeDataBuffers parsed routes in file order
+     * @param layout layout of the route blocks
+     * @param policy policy for routes with the same route ID
+     * @param ingestionLog log of the processed lines
+     */
+    static void deduplicate(
+        List<RouteDataBuffer> routeDataBuffers,
+        RouteDataLayout layout,
+        DuplicateRoutePolicy policy,
+        IngestionLog ingestionLog
+    ) {
+        int routeCount = 0;
+        for (RouteDataBuffer routeDataBuffer : routeDataBuffers) {
+            routeCount += routeDataBuffer.getRouteCount();
+        }
+        if (routeCount < 2) {
+            return;
+        }
+
+        int[] routeIds = RouteIdDeduplicator.copyRouteIds(routeDataBuffers, new int[routeCount]);
+        Arrays.sort(routeIds);
+        int duplicateRouteCount = 0;
+        int duplicateIdCount = 0;
+        for (int routeIndex = 1; routeIndex < routeCount; routeIndex++) {
+            if (routeIds[routeIndex] == routeIds[routeIndex - 1]) {
+                duplicateRouteCount++;
+                if (routeIndex == 1 || routeIds[routeIndex - 2] != routeIds[routeIndex]) {
+                    routeIds[duplicateIdCount++] = routeIds[routeIndex];
+                }
+            }
+        }
+        if (duplicateRouteCount == 0 || policy == DuplicateRoutePolicy.KEEP) {
+            ingestionLog.addDuplicateRoutes(duplicateRouteCount, 0, 0);
+            return;
+        }
+
+        // duplicate IDs are collected in front of the sorted array in order, so they are still sorted
+        int[] duplicateIds = Arrays.copyOf(routeIds, duplicateIdCount);
+        RouteIdDeduplicator.copyRouteIds(routeDataBuffers, routeIds);
+        BitSet removedRoutes = new BitSet(routeCount);
+        BitSet seenIds = new BitSet(duplicateIdCount);
+        int[] groupIndexes = new int[duplicateIdCount];
+        int groupCount = 0;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int duplicateIdIndex = Arrays.binarySearch(duplicateIds, routeIds[routeIndex]);
+            if (duplicateIdIndex < 0) {
+                continue;
+            }
+            if (!seenIds.get(duplicateIdIndex)) {
+                seenIds.set(duplicateIdIndex);
+                groupIndexes[duplicateIdIndex] = groupCount++;
+                if (policy == DuplicateRoutePolicy.REJECT) {
+                    // first route with the given ID is kept
+                    continue;
+                }
+            }
+            removedRoutes.set(routeIndex);
+        }
+
+        RouteGroups routeGroups = (policy == DuplicateRoutePolicy.MERGE)
+            ? new RouteGroups(groupCount, layout, routeIds, duplicateIds, groupIndexes)
+            : null;
+        long releasedLength = 0;
+        int firstRouteIndex = 0;
+        for (RouteDataBuffer routeDataBuffer : routeDataBuffers) {
+            int bufferRouteCount = routeDataBuffer.getRouteCount();
+            releasedLength += routeDataBuffer.removeRoutes(removedRoutes, firstRouteIndex, routeGroups);
+            firstRouteIndex += bufferRouteCount;
+        }
+        if (routeGroups != null) {
+            releasedLength -= routeGroups.appendTo(routeDataBuffers.get(routeDataBuffers.size() - 1));
+        }
+        ingestionLog.addDuplicateRoutes(duplicateRouteCount, duplicateRouteCount, releasedLength);
+    }
+
+    /**
+     * Copy route IDs of all the routes (in file order)
+     *
+     * @param routeDataBuffers parsed routes in file order
+     * @param routeIds target array
+     * @return target array
+     */
+    private static int[] copyRouteIds(List<RouteDataBuffer> routeDataBuffers, int[] routeIds) {
+        int offset = 0;
+        for (RouteDataBuffer routeDataBuffer : routeDataBuffers) {
+            offset = routeDataBuffer.copyRouteIds(routeIds, offset);
+        }
+        return routeIds;
+    }
+
+    /**
+     * Stops of the routes with the same route ID collected for merge
+     */
+    private static final class RouteGroups implements RouteDataBuffer.RouteBlockConsumer {
+
+        /**
+         * Layout of the route blocks
+         */
+        private final RouteDataLayout layout;
+
+        /**
+         * Route IDs of all the routes (in file order)
+         */
+        private final int[] routeIds;
+
+        /**
+         * Sorted duplicate route IDs
+         */
+        private final int[] duplicateIds;
+
+        /**
+         * Group index of every duplicate route ID (groups are ordered by the first route)
+         */
+        private final int[] groupIndexes;
+
+        /**
+         * Route ID of every group
+         */
+        private final int[] groupRouteIds;
+
+        /**
+         * Collected stops of every group (high 32 bits are position in the merged route, low 32 bits are stop ID)
+         */
+        private final long[][] groupStops;
+
+        /**
+         * Number of collected stops of every group
+         */
+        private final int[] groupStopCounts;
+
+        /**
+         * Length of the merged original route of every group (positions of the next route start there)
+         */
+        private final int[] groupLengths;
+
+        /**
+         * @param groupCount number of groups
+         * @param layout layout of the route blocks
+         * @param routeIds route IDs of all the routes (in file order)
+         * @param duplicateIds sorted duplicate route IDs
+         * @param groupIndexes group index of every duplicate route ID
+         */
+        private RouteGroups(
+            int groupCount,
+            RouteDataLayout layout,
+            int[] routeIds,
+            int[] duplicateIds,
+            int[] groupIndexes
+        ) {
+            this.layout = layout;
+            this.routeIds = routeIds;
+            this.duplicateIds = duplicateIds;
+            this.groupIndexes = groupIndexes;
+            this.groupRouteIds = new int[groupCount];
+            this.groupStops = new long[groupCount][];
+            this.groupStopCounts = new int[groupCount];
+            this.groupLengths = new int[groupCount];
+        }
+
+        /**
+         * Collect stops of the removed route block (blocks come in file order)
+         *
+         * @param routeIndex index of the route
+         * @param segment segment that contains the route block
+         * @param blockStart index of the first element of the route block in the segment
+         */
+        @Override
+        public void accept(int routeIndex, IntBuffer segment, int blockStart) {
+            int routeId = this.routeIds[routeIndex];
+            int groupIndex = this.groupIndexes[Arrays.binarySearch(this.duplicateIds, routeId)];
+            int stopCount = segment.get(blockStart + 1);
+            int firstStopIndex = blockStart + 2;
+            long[] stops = this.groupStops[groupIndex];
+            int groupStopCount = this.groupStopCounts[groupIndex];
+            if (stops == null || stops.length < groupStopCount + stopCount) {
+                stops = Arrays.copyOf(
+                    (stops == null) ? new long[0] : stops,
+                    Math.max(2 * groupStopCount, groupStopCount + stopCount)
+                );
+                this.groupStops[groupIndex] = stops;
+            }
+
+            int maxPosition = 0;
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                int position = 0;
+                if (this.layout == RouteDataLayout.ORDERED) {
+                    position = RouteDataLayout.getPosition(segment, firstStopIndex + stopCount, stopCount, stopIndex);
+                    maxPosition = Math.max(maxPosition, position);
+                    position += this.groupLengths[groupIndex];
+                }
+                stops[groupStopCount++] = ((long)position << 32) | segment.get(firstStopIndex + stopIndex);
+            }
+            this.groupRouteIds[groupIndex] = routeId;
+            this.groupStopCounts[groupIndex] = groupStopCount;
+            this.groupLengths[groupIndex] += maxPosition + 1;
+        }
+
+        /**
+         * Append merged routes to the store
+         *
+         * @param routeDataBuffer target store
+         * @return number of appended elements
+         */
+        private long appendTo(RouteDataBuffer routeDataBuffer) {
+            long appendedLength = 0;
+            RouteLineParser routeLineParser = new RouteLineParser();
+            for (int groupIndex = 0; groupIndex < this.groupStops.length; groupIndex++) {
+                long[] stops = this.groupStops[groupIndex];
+                int stopCount = this.groupStopCounts[groupIndex];
+                // stops of the ORDERED layout are put in order of their positions in the merged original route
+                Arrays.sort(stops, 0, stopCount);
+                routeLineParser.startRoute(this.groupRouteIds[groupIndex]);
+                for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                    routeLineParser.addStop((int)stops[stopIndex]);
+                }
+                if (this.layout == RouteDataLayout.ORDERED) {
+                    routeLineParser.completeOrderedRoute();
+                } else {
+                    routeLineParser.completeRoute();
+                }
+                routeDataBuffer.appendRoute(
+                    routeLineParser.getRouteId(),
+                    routeLineParser.getStops(),
+                    routeLineParser.getPositions(),
+                    routeLineParser.getStopCount()
+                );
+                appendedLength += this.layout.getBlockLength(routeLineParser.getStopCount());
+                this.groupStops[groupIndex] = null;
+            }
+            return appendedLength;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package org.aakimov.transport.api;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Allocation-free parser of route data lines.
+ *
+ * Integer values are parsed directly from the bytes without Scanner/String.split overhead.
+ * Stop IDs of the current line are collected in the reusable array that grows on demand,
+ * so routes of any length are supported. Duplicate stops are removed in place once the stops are sorted.
+ *
+ * One instance should be used by a single thread only.
+ *
+ * @author aakimov
+ */
+final class RouteLineParser {
+
+    /**
+     * Exception message for corrupted route data file
+     */
+    static final String MESSAGE_UNEXPECTED_SYMBOL = "Route data file is corrupted. Unexpected symbol.";
+
+    /**
+     * Exception message for routes with less than 2 stops
+     */
+    static final String MESSAGE_NOT_ENOUGH_STOPS = "Route does not contain at least 2 stops.";
+
+    /**
+     * Initial capacity of the stop array
+     */
+    private static final int INITIAL_STOP_CAPACITY = 1024;
+
+    /**
+     * Route ID of the current line
+     */
+    private int routeId;
+
+    /**
+     * Stop IDs of the current line
+     */
+    private int[] stops = new int[RouteLineParser.INITIAL_STOP_CAPACITY];
+
+    /**
+     * Number of stops of the current line
+     */
+    private int stopCount;
+
+    /**
+     * Number of stops of the current line before duplicate stops are removed
+     */
+    private int parsedStopCount;
+
+    /**
+     * Flag that shows if the current line contains the same stop more than once
+     */
+    private boolean duplicateStops;
+
+    /**
+     * Positions of the sorted stops in the current line (see completeOrderedRoute)
+     */
+    private int[] positions = new int[0];
+
+    /**
+     * Stop IDs packed together with their positions (high 32 bits are stop ID, low 32 bits are position)
+     */
+    private long[] packedStops = new long[0];
+
+    /**
+     * Process first line to retrieve the number of routes
+     *
+     * @param byteBuffer target byte buffer
+     * @return declared number of routes
+     */
+    static int parseRouteCount(ByteBuffer byteBuffer) {
+        int routeCount = 0;
+        while (byteBuffer.hasRemaining()) {
+            byte currentByte = byteBuffer.get();
+            if (currentByte >= '0' && currentByte <= '9') {
+                // accumulate current digit
+                routeCount = routeCount * 10 + (currentByte & 0xF);
+            } else if (currentByte == '\n') {
+                break;
+            } else if (currentByte != '\r') {
+                // ignore carriage return
+                throw new FileFormatException(RouteLineParser.MESSAGE_UNEXPECTED_SYMBOL);
+            }
+        }
+
+        return routeCount;
+    }
+
+    /**
+     * Parse route line that starts at the current position of the buffer.
+     *
+     * If the buffer ends before the line break, the line is parsed partially and false is returned.
+     * It is up to the caller to decide if it is the end of the data (and the line is complete)
+     * or the line should be parsed again once more data is available.
+     *
+     * @param byteBuffer target byte buffer
+     * @return true if line break was reached or false if the buffer ended first
+     */
+    boolean parseLine(ByteBuffer byteBuffer) {
+        this.startRoute(0);
+
+        // route ID
+        boolean isPreviousByteDigit = false;
+        while (true) {
+            if (!byteBuffer.hasRemaining()) {
+                return false;
+            }
+            byte currentByte = byteBuffer.get();
+            if (currentByte >= '0' && currentByte <= '9') {
+                // accumulate current digit
+                this.routeId = this.routeId * 10 + (currentByte & 0xF);
+                isPreviousByteDigit = true;
+            } else if (currentByte == ' ' && isPreviousByteDigit) {
+                break;
+            } else {
+                throw new FileFormatException(RouteLineParser.MESSAGE_UNEXPECTED_SYMBOL);
+            }
+        }
+
+        // route stops
+        boolean isLineBreakReached = false;
+        int currentStopId = 0;
+        isPreviousByteDigit = false;
+        while (byteBuffer.hasRemaining()) {
+            byte currentByte = byteBuffer.get();
+
+            if (currentByte >= '0' && currentByte <= '9') {
+                // accumulate current digit
+                currentStopId = currentStopId * 10 + (currentByte & 0xF);
+                isPreviousByteDigit = true;
+            } else if (currentByte == ' ' && isPreviousByteDigit) {
+                this.addStop(currentStopId);
+                currentStopId = 0;
+                isPreviousByteDigit = false;
+            } else if (currentByte == '\n') {
+                isLineBreakReached = true;
+                break;
+            } else if (currentByte != '\r') {
+                // ignore carriage return
+                throw new FileFormatException(RouteLineParser.MESSAGE_UNEXPECTED_SYMBOL);
+            }
+        }
+
+        // handle last stop ID in the line
+        if (isPreviousByteDigit) {
+            this.addStop(currentStopId);
+        }
+
+        return isLineBreakReached;
+    }
+
+    /**
+     * Start a new route without parsing (stops are added by addStop)
+     *
+     * @param routeId route ID
+     */
+    void startRoute(int routeId) {
+        this.routeId = routeId;
+        this.stopCount = 0;
+    }
+
+    /**
+     * Add stop to the current route
+     *
+     * @param stopId stop ID
+     */
+    void addStop(int stopId) {
+        if (this.stopCount == this.stops.length) {
+            this.stops = Arrays.copyOf(this.stops, this.stops.length * 2);
+        }
+        this.stops[this.stopCount++] = stopId;
+    }
+
+    /**
+     * Validate the parsed route, sort its stops in natural order and remove duplicate stops
+     * (route should contain at least 2 different stops)
+     */
+    void completeRoute() {
+        if (this.stopCount < 2) {
+            throw new ShortRouteException();
+        }
+
+        // sort all the stops of the route, so duplicate stops are next to each other
+        Arrays.sort(this.stops, 0, this.stopCount);
+        this.parsedStopCount = this.stopCount;
+        int uniqueStopCount = 1;
+        for (int stopIndex = 1; stopIndex < this.stopCount; stopIndex++) {
+            if (this.stops[stopIndex] != this.stops[uniqueStopCount - 1]) {
+                this.stops[uniqueStopCount++] = this.stops[stopIndex];
+            }
+        }
+        this.stopCount = uniqueStopCount;
+        this.duplicateStops = uniqueStopCount < this.parsedStopCount;
+        if (uniqueStopCount < 2) {
+            // route of a single stop repeated several times
+            throw new ShortRouteException();
+        }
+    }
+
+    /**
+     * Validate the parsed route and sort its stops in natural order keeping the original position of every stop.
+     *
+     * Stop IDs are not negative, so stop ID and position are packed into a single long value
+     * and sorted together without any comparator overhead.
+     *
+     * Only the first and the last occurrences of a duplicate stop are kept: direction of travel
+     * is checked between the first occurrence of the departure stop and the last occurrence of the arrival stop
+     * (see DirectionalRouteManager), so the occurrences in between never change the result.
+     */
+    void completeOrderedRoute() {
+        if (this.stopCount < 2) {
+            throw new ShortRouteException();
+        }
+
+        if (this.packedStops.length < this.stopCount) {
+            this.packedStops = new long[this.stops.length];
+            this.positions = new int[this.stops.length];
+        }
+        for (int stopIndex = 0; stopIndex < this.stopCount; stopIndex++) {
+            this.packedStops[stopIndex] = ((long)this.stops[stopIndex] << 32) | stopIndex;
+        }
+        Arrays.sort(this.packedStops, 0, this.stopCount);
+        this.parsedStopCount = this.stopCount;
+        this.duplicateStops = false;
+        int keptStopCount = 0;
+        int uniqueStopCount = 0;
+        for (int stopIndex = 0; stopIndex < this.stopCount; stopIndex++) {
+            long packedStop = this.packedStops[stopIndex];
+            int stopId = (int)(packedStop >>> 32);
+            boolean isFirstOccurrence = stopIndex == 0 || (int)(this.packedStops[stopIndex - 1] >>> 32) != stopId;
+            boolean isLastOccurrence = stopIndex == this.stopCount - 1
+                || (int)(this.packedStops[stopIndex + 1] >>> 32) != stopId;
+            this.duplicateStops |= !isFirstOccurrence;
+            if (isFirstOccurrence) {
+                uniqueStopCount++;
+            }
+            if (isFirstOccurrence || isLastOccurrence) {
+                this.stops[keptStopCount] = stopId;
+                this.positions[keptStopCount] = (int)packedStop;
+                keptStopCount++;
+            }
+        }
+        this.stopCount = keptStopCount;
+        if (uniqueStopCount < 2) {
+            // route of a single stop repeated several times
+            throw new ShortRouteException();
+        }
+        if (
+            this.parsedStopCount > RouteDataLayout.MAX_PACKED_STOP_COUNT
+            && keptStopCount <= RouteDataLayout.MAX_PACKED_STOP_COUNT
+        ) {
+            this.rankPositions();
+        }
+    }
+
+    /**
+     * Check if the completed route contained the same stop more than once
+     *
+     * @return true if there were duplicate stops or false otherwise
+     */
+    boolean hasDuplicateStops() {
+        return this.duplicateStops;
+    }
+
+    /**
+     * Retrieve number of stops of the completed route before duplicate stops were removed
+     *
+     * @return number of parsed stops
+     */
+    int getParsedStopCount() {
+        return this.parsedStopCount;
+    }
+
+    /**
+     * Retrieve route ID of the current line
+     *
+     * @return route ID
+     */
+    int getRouteId() {
+        return this.routeId;
+    }
+
+    /**
+     * Retrieve stop IDs of the current line (only first getStopCount() elements are valid)
+     *
+     * @return stop IDs
+     */
+    int[] getStops() {
+        return this.stops;
+    }
+
+    /**
+     * Retrieve positions of the sorted stops in the current line (valid only after completeOrderedRoute())
+     *
+     * @return zero-based positions (only first getStopCount() elements are valid)
+     */
+    int[] getPositions() {
+        return this.positions;
+    }
+
+    /**
+     * Retrieve number of stops of the current line
+     *
+     * @return number of stops
+     */
+    int getStopCount() {
+        return this.stopCount;
+    }
+
+    /**
+     * Replace positions of the kept stops with their ranks, so they fit into 16 bits once the route becomes short
+     * enough for packed positions (only relative order of the positions matters)
+     */
+    private void rankPositions() {
+        for (int stopIndex = 0; stopIndex < this.stopCount; stopIndex++) {
+            this.packedStops[stopIndex] = ((long)this.positions[stopIndex] << 32) | stopIndex;
+        }
+        Arrays.sort(this.packedStops, 0, this.stopCount);
+        for (int rank = 0; rank < this.stopCount; rank++) {
+            this.positions[(int)this.packedStops[rank]] = rank;
+        }
+    }
+}
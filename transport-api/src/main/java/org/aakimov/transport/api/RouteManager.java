@@ -1,5 +1,8 @@
 package org.aakimov.transport.api;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 /**
  * Route manager.
  *
@@ -7,7 +10,7 @@ package org.aakimov.transport.api;
  *
  * @author aakimov
  */
-public interface RouteManager { //NOSONAR
+public interface RouteManager extends Closeable { //NOSONAR
 
     /**
      * Check if direct route is available between given stops.
@@ -17,4 +20,90 @@ public interface RouteManager { //NOSONAR
      * @return true if direct route is available or false otherwise
      */
     public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId);
+
+    /**
+     * Find IDs of the routes that serve both given stops.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes (in order of route data) or empty array if there is no direct route
+     * @throws UnsupportedOperationException if route manager does not keep route IDs
+     */
+    public default int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        throw new UnsupportedOperationException("Route manager does not support route IDs.");
+    }
+
+    /**
+     * Find IDs of all the routes that serve both given stops.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return IDs of the matching routes (in order of route data) or empty array if there is no direct route
+     * @throws UnsupportedOperationException if route manager does not keep route IDs
+     */
+    public default int[] findDirectRoutes(int departureStopId, int arrivalStopId) {
+        return this.findDirectRoutes(departureStopId, arrivalStopId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Check if direct routes are available between given pairs of stops.
+     *
+     * Default implementation checks every pair separately. Implementations that scan all the routes
+     * per request should override it to share the scan between all the pairs.
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    public default boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        DirectRouteBatch.validate(departureStopIds, arrivalStopIds);
+        boolean[] results = new boolean[departureStopIds.length];
+        for (int pairIndex = 0; pairIndex < results.length; pairIndex++) {
+            results[pairIndex] = this.isDirectRouteAvailable(departureStopIds[pairIndex], arrivalStopIds[pairIndex]);
+        }
+        return results;
+    }
+
+    /**
+     * Find stops to change routes at on the way between given stops.
+     *
+     * Connection with the fewest transfers is returned (any of them if there are several). Direction of travel
+     * is not taken into account, i.e. a route connects any two of its stops in the same way as a direct route.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param maxTransfers maximum number of transfers
+     * @return transfer stop IDs in order of travel (empty array if direct route is available)
+     *     or null if arrival stop cannot be reached with up to the given number of transfers
+     * @throws UnsupportedOperationException if route manager does not support transfers
+     */
+    public default int[] findTransferStops(int departureStopId, int arrivalStopId, int maxTransfers) {
+        throw new UnsupportedOperationException("Route manager does not support transfers.");
+    }
+
+    /**
+     * Retrieve version of the route data.
+     *
+     * Version changes every time the route data is changed (e.g. reloaded or updated), so results that are
+     * computed for one version can be reused until the version changes. Route managers with immutable route data
+     * always return 0. New route data is visible to the queries before the new version is returned.
+     *
+     * @return route data version
+     */
+    public default long getDataVersion() {
+        return 0;
+    }
+
+    /**
+     * Release resources of the route manager (e.g. pool threads).
+     *
+     * Decorators close the route managers they delegate to. Route managers without such resources do nothing.
+     *
+     * @throws IOException if resources cannot be released
+     */
+    @Override
+    public default void close() throws IOException {
+        // nothing to release
+    }
 }
@@ -0,0 +1,121 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+
+/**
+ * Update of a single route (see UpdatableRouteManager).
+ *
+ * Update either puts the route (adds a new route or replaces all the routes with the same ID)
+ * or removes all the routes with the given ID.
+ *
+ * @author aakimov
+ */
+public final class RouteUpdate {
+
+    /**
+     * Route ID
+     */
+    private final int routeId;
+
+    /**
+     * Sorted stop IDs of the route (null if route is removed)
+     */
+    private final int[] stops;
+
+    /**
+     * @param routeId route ID
+     * @param stops sorted stop IDs of the route (null if route is removed)
+     */
+    private RouteUpdate(
+        int routeId,
+        int[] stops
+    ) {
+        this.routeId = routeId;
+        this.stops = stops;
+    }
+
+    /**
+     * Create update that adds a new route or replaces the existing one
+     *
+     * @param routeId route ID
+     * @param stops stop IDs of the route (in any order, duplicate stops are removed as in route data files)
+     * @return route update
+     * @throws IllegalArgumentException if route ID or stop ID is negative or route contains less than 2 different stops
+     */
+    public static RouteUpdate put(int routeId, int[] stops) {
+        RouteUpdate.validateRouteId(routeId);
+        if (stops == null || stops.length < 2) {
+            throw new IllegalArgumentException(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS);
+        }
+
+        int[] sortedStops = stops.clone();
+        Arrays.sort(sortedStops);
+        if (sortedStops[0] < 0) {
+            throw new IllegalArgumentException("Stop ID should not be negative.");
+        }
+        int uniqueStopCount = 1;
+        for (int stopIndex = 1; stopIndex < sortedStops.length; stopIndex++) {
+            if (sortedStops[stopIndex] != sortedStops[uniqueStopCount - 1]) {
+                sortedStops[uniqueStopCount++] = sortedStops[stopIndex];
+            }
+        }
+        if (uniqueStopCount < 2) {
+            throw new IllegalArgumentException(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS);
+        }
+        return new RouteUpdate(
+            routeId,
+            (uniqueStopCount < sortedStops.length) ? Arrays.copyOf(sortedStops, uniqueStopCount) : sortedStops
+        );
+    }
+
+    /**
+     * Create update that removes the route
+     *
+     * @param routeId route ID
+     * @return route update
+     * @throws IllegalArgumentException if route ID is negative
+     */
+    public static RouteUpdate remove(int routeId) {
+        RouteUpdate.validateRouteId(routeId);
+        return new RouteUpdate(routeId, null);
+    }
+
+    /**
+     * Retrieve route ID
+     *
+     * @return route ID
+     */
+    public int getRouteId() {
+        return this.routeId;
+    }
+
+    /**
+     * Check if route is removed
+     *
+     * @return true if route is removed or false if route is added or replaced
+     */
+    public boolean isRemoval() {
+        return this.stops == null;
+    }
+
+    /**
+     * Retrieve sorted stop IDs of the route
+     *
+     * @return stop IDs (null if route is removed)
+     */
+    int[] getStops() {
+        return this.stops;
+    }
+
+    /**
+     * Validate route ID
+     *
+     * @param routeId route ID
+     * @throws IllegalArgumentException if route ID is negative
+     */
+    private static void validateRouteId(int routeId) {
+        if (routeId < 0) {
+            throw new IllegalArgumentException("Route ID should not be negative.");
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Route manager that splits route data into shards and checks them in parallel.
+ *
+ * Every shard is a separate route data array with a contiguous range of routes (of about the same size)
+ * served by its own route manager. Direct route check is fanned out to a dedicated pool: the request thread
+ * and pool threads take shards one by one until a direct route is found or all the shards are checked,
+ * so shards that are not started yet are cancelled by the first hit and the request thread never waits
+ * for a busy pool (it checks the remaining shards itself). The first error of a shard check cancels the remaining
+ * shards and is rethrown by the request thread.
+ *
+ * Fan-out pays off only while there are idle cores. Once the number of concurrent requests reaches
+ * the parallelism, requests check all the shards on the request thread, so throughput under load
+ * stays the same as the one of the serial scan.
+ *
+ * @author aakimov
+ */
+public class ShardedRouteManager implements RouteManager, Closeable {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedRouteManager.class);
+
+    /**
+     * Time after which idle pool threads are stopped (in seconds)
+     */
+    private static final long KEEP_ALIVE_TIME = 60;
+
+    /**
+     * Route managers of the shards (in order of the route data)
+     */
+    private final RouteManager[] shards;
+
+    /**
+     * Maximum number of threads that check shards of a single request (including the request thread)
+     */
+    private final int parallelism;
+
+    /**
+     * Pool that checks shards in parallel with the request thread
+     */
+    private final ThreadPoolExecutor shardExecutor;
+
+    /**
+     * Number of requests that are being served
+     */
+    private final AtomicInteger activeRequestCount = new AtomicInteger();
+
+    /**
+     * @param routeData route data
+     * @param shardCount number of shards
+     * @param parallelism maximum number of threads that check shards of a single request
+     * @param shardFactory factory of the shard route managers (receives route data of a shard)
+     * @throws IllegalArgumentException if number of shards or parallelism is not positive
+     */
+    public ShardedRouteManager(
+        int[] routeData,
+        int shardCount,
+        int parallelism,
+        Function<int[], RouteManager> shardFactory
+    ) {
+        if (shardCount < 1 || parallelism < 1) {
+            throw new IllegalArgumentException("Number of shards and parallelism should be positive.");
+        }
+
+        List<int[]> shardRouteData = ShardedRouteManager.split(routeData, shardCount);
+        this.shards = new RouteManager[shardRouteData.size()];
+        for (int shardIndex = 0; shardIndex < this.shards.length; shardIndex++) {
+            // route data of the shard is released as soon as its route manager is created
+            this.shards[shardIndex] = shardFactory.apply(shardRouteData.set(shardIndex, null));
+        }
+        this.parallelism = Math.max(1, Math.min(parallelism, this.shards.length));
+
+        // request thread checks shards too, so the pool is one thread smaller (it is never used without parallelism)
+        int poolSize = Math.max(1, this.parallelism - 1);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.shardExecutor = new ThreadPoolExecutor(
+            poolSize,
+            poolSize,
+            ShardedRouteManager.KEEP_ALIVE_TIME,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, "route-shard-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        // idle threads are stopped, so replaced (e.g. reloaded) route managers do not keep them
+        this.shardExecutor.allowCoreThreadTimeOut(true);
+        LOGGER.info("Route data is split into {} shards (parallelism {}).", this.shards.length, this.parallelism);
+    }
+
+    /**
+     * Check if direct route is available between given stops.
+     *
+     * Shards are checked in parallel unless the number of concurrent requests reaches the parallelism.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @return true if direct route is available or false otherwise
+     * @throws RuntimeException if a shard check fails (the first failure is rethrown)
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        int activeRequests = this.activeRequestCount.incrementAndGet();
+        try {
+            if (activeRequests >= this.parallelism) {
+                for (RouteManager shard : this.shards) {
+                    if (shard.isDirectRouteAvailable(departureStopId, arrivalStopId)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            ShardQuery shardQuery = new ShardQuery(departureStopId, arrivalStopId);
+            try {
+                for (int workerIndex = 1; workerIndex < this.parallelism; workerIndex++) {
+                    this.shardExecutor.execute(shardQuery::checkShards);
+                }
+            } catch (RejectedExecutionException exception) {
+                // shards that are not taken by the pool are checked by the request thread
+                LOGGER.debug("Shard check is rejected by the pool.", exception);
+            }
+            shardQuery.checkShards();
+            return shardQuery.awaitResult();
+        } finally {
+            this.activeRequestCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Find IDs of the routes that serve both given stops (shards are checked in order of the route data)
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param limit maximum number of route IDs to return
+     * @return IDs of the first matching routes
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        RouteIdCollector routeIdCollector = new RouteIdCollector(limit);
+        for (int shardIndex = 0; shardIndex < this.shards.length && !routeIdCollector.isFull(); shardIndex++) {
+            for (int routeId : this.shards[shardIndex].findDirectRoutes(departureStopId, arrivalStopId, limit)) {
+                if (!routeIdCollector.add(routeId)) {
+                    break;
+                }
+            }
+        }
+        return routeIdCollector.toArray();
+    }
+
+    /**
+     * Check if direct routes are available between given pairs of stops.
+     *
+     * Shards are checked one by one by batch calls of their route managers, every next shard checks
+     * only the pairs that are not resolved yet.
+     *
+     * @param departureStopIds departure stop identifiers
+     * @param arrivalStopIds arrival stop identifiers (same length as departure stop identifiers)
+     * @return flags that show if direct route is available for the corresponding pair of stops
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        DirectRouteBatch.validate(departureStopIds, arrivalStopIds);
+        boolean[] results = new boolean[departureStopIds.length];
+        int[] pendingIndexes = new int[departureStopIds.length];
+        for (int pairIndex = 0; pairIndex < pendingIndexes.length; pairIndex++) {
+            pendingIndexes[pairIndex] = pairIndex;
+        }
+
+        int pendingCount = pendingIndexes.length;
+        for (int shardIndex = 0; shardIndex < this.shards.length && pendingCount > 0; shardIndex++) {
+            int[] pendingDepartureStopIds = new int[pendingCount];
+            int[] pendingArrivalStopIds = new int[pendingCount];
+            for (int pendingIndex = 0; pendingIndex < pendingCount; pendingIndex++) {
+                pendingDepartureStopIds[pendingIndex] = departureStopIds[pendingIndexes[pendingIndex]];
+                pendingArrivalStopIds[pendingIndex] = arrivalStopIds[pendingIndexes[pendingIndex]];
+            }
+            boolean[] shardResults = this.shards[shardIndex].areDirectRoutesAvailable(
+                pendingDepartureStopIds,
+                pendingArrivalStopIds
+            );
+
+            int newPendingCount = 0;
+            for (int pendingIndex = 0; pendingIndex < pendingCount; pendingIndex++) {
+                if (shardResults[pendingIndex]) {
+                    results[pendingIndexes[pendingIndex]] = true;
+                } else {
+                    pendingIndexes[newPendingCount++] = pendingIndexes[pendingIndex];
+                }
+            }
+            pendingCount = newPendingCount;
+        }
+        return results;
+    }
+
+    /**
+     * Retrieve number of shards
+     *
+     * @return shard count
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Stop the pool threads and close route managers of the shards
+     *
+     * @throws IOException if route manager of a shard cannot be closed (all the shards are closed anyway)
+     */
+    @Override
+    public void close() throws IOException {
+        this.shardExecutor.shutdownNow();
+        IOException closeException = null;
+        for (RouteManager shard : this.shards) {
+            try {
+                shard.close();
+            } catch (IOException exception) {
+                if (closeException == null) {
+                    closeException = exception;
+                } else {
+                    closeException.addSuppressed(exception);
+                }
+            }
+        }
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    /**
+     * Split route data into route data arrays of contiguous ranges of routes of about the same size
+     *
+     * @param routeData route data
+     * @param shardCount maximum number of shards
+     * @return route data of the shards (at least one, even if route data is empty)
+     */
+    static List<int[]> split(int[] routeData, int shardCount) {
+        List<int[]> shardRouteData = new ArrayList<>(shardCount);
+        int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+        long targetLength = Math.max(1, (routeData.length - 1L) / shardCount);
+        int shardStartIndex = 1;
+        int shardRouteCount = 0;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            currentRouteDataIndex += routeData[currentRouteDataIndex + 1] + 2;
+            shardRouteCount++;
+            boolean isLastShard = shardRouteData.size() == shardCount - 1;
+            if (
+                routeIndex == routeCount - 1
+                || (!isLastShard && currentRouteDataIndex - shardStartIndex >= targetLength)
+            ) {
+                int[] shard = new int[currentRouteDataIndex - shardStartIndex + 1];
+                shard[0] = shardRouteCount;
+                System.arraycopy(routeData, shardStartIndex, shard, 1, shard.length - 1);
+                shardRouteData.add(shard);
+                shardStartIndex = currentRouteDataIndex;
+                shardRouteCount = 0;
+            }
+        }
+
+        if (shardRouteData.isEmpty()) {
+            shardRouteData.add(new int[0]);
+        }
+        return shardRouteData;
+    }
+
+    /**
+     * Direct route check that is shared by the request thread and the pool threads
+     */
+    private final class ShardQuery {
+
+        /**
+         * Departure stop identifier
+         */
+        private final int departureStopId;
+
+        /**
+         * Arrival stop identifier
+         */
+        private final int arrivalStopId;
+
+        /**
+         * Index of the next shard to check
+         */
+        private final AtomicInteger nextShardIndex = new AtomicInteger();
+
+        /**
+         * Number of checked shards
+         */
+        private final AtomicInteger checkedShardCount = new AtomicInteger();
+
+        /**
+         * Flag that shows if direct route is found
+         */
+        private volatile boolean isFound;
+
+        /**
+         * First failure of a shard check (null if no shard check failed)
+         */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        /**
+         * @param departureStopId departure stop identifier
+         * @param arrivalStopId arrival stop identifier
+         */
+        ShardQuery(
+            int departureStopId,
+            int arrivalStopId
+        ) {
+            this.departureStopId = departureStopId;
+            this.arrivalStopId = arrivalStopId;
+        }
+
+        /**
+         * Check shards one by one until direct route is found, a shard check fails or there are no more shards
+         * (failure is kept for the request thread, so pool threads never throw)
+         */
+        void checkShards() {
+            RouteManager[] currentShards = ShardedRouteManager.this.shards;
+            int shardIndex;
+            while (
+                !this.isFound
+                && this.failure.get() == null
+                && (shardIndex = this.nextShardIndex.getAndIncrement()) < currentShards.length
+            ) {
+                boolean isShardFound = false;
+                boolean isShardFailed = false;
+                try {
+                    isShardFound = currentShards[shardIndex].isDirectRouteAvailable(
+                        this.departureStopId,
+                        this.arrivalStopId
+                    );
+                } catch (RuntimeException | Error exception) {
+                    isShardFailed = true;
+                    this.failure.compareAndSet(null, exception);
+                } finally {
+                    // the last checked shard (or the first found route or failure) wakes up the request thread
+                    if (isShardFound) {
+                        this.isFound = true;
+                    }
+                    if (
+                        this.checkedShardCount.incrementAndGet() == currentShards.length
+                        || isShardFound
+                        || isShardFailed
+                    ) {
+                        synchronized (this) {
+                            this.notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Wait until direct route is found, a shard check fails or all the shards are checked
+         *
+         * @return true if direct route is available or false otherwise
+         * @throws RuntimeException first failure of a shard check (unless direct route is found anyway)
+         */
+        synchronized boolean awaitResult() {
+            boolean isInterrupted = false;
+            while (
+                !this.isFound
+                && this.failure.get() == null
+                && this.checkedShardCount.get() < ShardedRouteManager.this.shards.length
+            ) {
+                try {
+                    this.wait();
+                } catch (InterruptedException exception) {
+                    isInterrupted = true;
+                }
+            }
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+
+            Throwable shardFailure = this.failure.get();
+            if (!this.isFound && shardFailure instanceof Error) {
+                throw (Error)shardFailure;
+            }
+            if (!this.isFound && shardFailure != null) {
+                throw (RuntimeException)shardFailure;
+            }
+            return this.isFound;
+        }
+    }
+}
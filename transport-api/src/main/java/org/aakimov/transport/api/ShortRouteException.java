@@ -0,0 +1,18 @@
+package org.aakimov.transport.api;
+
+/**
+ * Route data file format exception for routes with less than 2 different stops.
+ *
+ * Lets route data readers tell short routes apart from lines that cannot be parsed at all.
+ *
+ * @author aakimov
+ */
+final class ShortRouteException extends FileFormatException {
+
+    /**
+     * Create exception with the standard message (see RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS)
+     */
+    ShortRouteException() {
+        super(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS);
+    }
+}
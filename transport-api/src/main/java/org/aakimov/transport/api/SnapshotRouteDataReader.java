@@ -0,0 +1,194 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Implementation of route data reader that reads binary route data snapshots.
+ *
+ * Besides regular copy of the route data into the heap, snapshot can be memory mapped and used directly
+ * (see BufferRouteManager). Mapped snapshot is served from the page cache, so it does not take any heap
+ * and is shared between all the processes that map the same file.
+ *
+ * @see RouteDataSnapshot
+ * @author aakimov
+ */
+public class SnapshotRouteDataReader implements RouteDataReader {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataReader.class);
+
+    /**
+     * Maximum size of the single mapped segment in bytes
+     */
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * Maximum length of the route data array (maximum array size supported by most of the JVMs)
+     */
+    private static final long MAX_ROUTE_DATA_LENGTH = Integer.MAX_VALUE - 8L;
+
+    /**
+     * Flag that shows if payload checksum should be verified
+     */
+    private final boolean checksumVerified;
+
+    /**
+     * Create reader that verifies payload checksum.
+     */
+    public SnapshotRouteDataReader() {
+        this(true);
+    }
+
+    /**
+     * @param checksumVerified flag that shows if payload checksum should be verified (requires full read of the file)
+     */
+    public SnapshotRouteDataReader(
+        boolean checksumVerified
+    ) {
+        this.checksumVerified = checksumVerified;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] read(Path snapshotPath) {
+        try (FileChannel fileChannel = (FileChannel)Files.newByteChannel(snapshotPath, StandardOpenOption.READ)) {
+            LOGGER.info("Route data snapshot '{}' processing started.", snapshotPath);
+
+            long[] header = RouteDataSnapshot.readHeader(fileChannel);
+            if (header[0] > SnapshotRouteDataReader.MAX_ROUTE_DATA_LENGTH) {
+                throw new FileFormatException("Route data is too large to fit into a single array.");
+            }
+
+            int[] routeData = new int[(int)header[0]];
+            CRC32 checksum = new CRC32();
+            int routeDataIndex = 0;
+            while (routeDataIndex < routeData.length) {
+                long position = RouteDataSnapshot.HEADER_SIZE + (long)Integer.BYTES * routeDataIndex;
+                int length = (int)Math.min(
+                    SnapshotRouteDataReader.MAX_SEGMENT_SIZE / Integer.BYTES,
+                    routeData.length - routeDataIndex
+                );
+                MappedByteBuffer mappedByteBuffer = fileChannel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    position,
+                    (long)Integer.BYTES * length
+                );
+                if (this.checksumVerified) {
+                    checksum.update(mappedByteBuffer.duplicate());
+                }
+                // bulk copy with byte order conversion
+                mappedByteBuffer.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(routeData, routeDataIndex, length);
+                routeDataIndex += length;
+            }
+            this.verifyChecksum(checksum, header[1]);
+
+            LOGGER.info("Route data snapshot '{}' processing finished.", snapshotPath);
+            return routeData;
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data snapshot '{}' cannot be processed. Skipping.", snapshotPath, exception);
+            return new int[0];
+        }
+    }
+
+    /**
+     * Map route data snapshot into memory.
+     *
+     * Route blocks (without leading route count) are returned as a list of read-only buffers.
+     * Every buffer contains whole route blocks only (see BufferRouteManager).
+     *
+     * @param snapshotPath snapshot location
+     * @return mapped route data segments (empty array if snapshot cannot be processed)
+     */
+    public IntBuffer[] map(Path snapshotPath) {
+        try (FileChannel fileChannel = (FileChannel)Files.newByteChannel(snapshotPath, StandardOpenOption.READ)) {
+            LOGGER.info("Route data snapshot '{}' mapping started.", snapshotPath);
+
+            long[] header = RouteDataSnapshot.readHeader(fileChannel);
+            long payloadEnd = RouteDataSnapshot.HEADER_SIZE + (long)Integer.BYTES * header[0];
+            if (header[0] == 0) {
+                throw new FileFormatException("Route data snapshot is empty.");
+            }
+
+            ByteBuffer routeCountBuffer = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            fileChannel.read(routeCountBuffer, RouteDataSnapshot.HEADER_SIZE);
+            int remainingRouteCount = routeCountBuffer.getInt(0);
+
+            List<IntBuffer> segments = new ArrayList<>();
+            long position = RouteDataSnapshot.HEADER_SIZE + Integer.BYTES;
+            while (remainingRouteCount > 0) {
+                IntBuffer segment = fileChannel.map(
+                    FileChannel.MapMode.READ_ONLY,
+                    position,
+                    Math.min(SnapshotRouteDataReader.MAX_SEGMENT_SIZE, payloadEnd - position)
+                ).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+
+                // cut the segment at the end of the last complete route block
+                int segmentLength = 0;
+                while (remainingRouteCount > 0 && segmentLength + 2 <= segment.limit()) {
+                    int blockLength = segment.get(segmentLength + 1) + 2;
+                    if (blockLength < 2 || segmentLength + blockLength > segment.limit()) {
+                        break;
+                    }
+                    segmentLength += blockLength;
+                    remainingRouteCount--;
+                }
+                if (segmentLength == 0) {
+                    throw new FileFormatException("Route data snapshot contains corrupted route blocks.");
+                }
+
+                segment.limit(segmentLength);
+                segments.add(segment.slice());
+                position += (long)Integer.BYTES * segmentLength;
+            }
+            if (position != payloadEnd) {
+                throw new FileFormatException("Route data snapshot contains unexpected data.");
+            }
+
+            CRC32 checksum = new CRC32();
+            if (this.checksumVerified) {
+                for (long checksumPosition = RouteDataSnapshot.HEADER_SIZE; checksumPosition < payloadEnd;) {
+                    long length = Math.min(SnapshotRouteDataReader.MAX_SEGMENT_SIZE, payloadEnd - checksumPosition);
+                    checksum.update(fileChannel.map(FileChannel.MapMode.READ_ONLY, checksumPosition, length));
+                    checksumPosition += length;
+                }
+            }
+            this.verifyChecksum(checksum, header[1]);
+
+            LOGGER.info("Route data snapshot '{}' mapping finished.", snapshotPath);
+            return segments.toArray(new IntBuffer[segments.size()]);
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data snapshot '{}' cannot be mapped. Skipping.", snapshotPath, exception);
+            return new IntBuffer[0];
+        }
+    }
+
+    /**
+     * Compare calculated checksum with the expected one (if checksum verification is enabled)
+     *
+     * @param checksum calculated checksum
+     * @param expectedChecksum expected checksum
+     */
+    private void verifyChecksum(CRC32 checksum, long expectedChecksum) {
+        if (this.checksumVerified && checksum.getValue() != expectedChecksum) {
+            throw new FileFormatException("Route data snapshot checksum does not match.");
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * Inverted stop to route index built from the route data array.
+ *
+ * The index uses compressed sparse row (CSR) layout and consists of plain integer arrays only:
+ *
+ * [stop offsets] - offset of the first posting of the stop (stop ID minus minimal stop ID is used as an index)
+ * [stop routes]  - route indexes (postings) of all the stops, route indexes of each stop are sorted in natural order
+ * [route IDs]    - route ID for every route index
+ *
+ * Stop offsets array is addressed directly by stop ID, so its size depends on the range of stop IDs
+ * (about 4Mb for 1000000 stops). Postings take exactly the same amount of memory as stop IDs of the route data array.
+ *
+ * @author aakimov
+ */
+final class StopRouteIndex {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(StopRouteIndex.class);
+
+    /**
+     * Maximum supported range of stop IDs (maximum array size supported by most of the JVMs)
+     */
+    private static final long MAX_STOP_ID_RANGE = Integer.MAX_VALUE - 8L;
+
+    /**
+     * Minimal stop ID (stop offsets are addressed relative to it)
+     */
+    private final int minStopId;
+
+    /**
+     * Offsets of stop postings (contains one extra element to simplify range calculation)
+     */
+    private final int[] stopOffsets;
+
+    /**
+     * Route indexes of all stops
+     */
+    private final int[] stopRoutes;
+
+    /**
+     * Route IDs addressed by route index
+     */
+    private final int[] routeIds;
+
+    /**
+     * @param minStopId minimal stop ID
+     * @param stopOffsets offsets of stop postings
+     * @param stopRoutes route indexes of all stops
+     * @param routeIds route IDs addressed by route index
+     */
+    private StopRouteIndex(
+        int minStopId,
+        int[] stopOffsets,
+        int[] stopRoutes,
+        int[] routeIds
+    ) {
+        this.minStopId = minStopId;
+        this.stopOffsets = stopOffsets;
+        this.stopRoutes = stopRoutes;
+        this.routeIds = routeIds;
+    }
+
+    /**
+     * Build the index from the route data array.
+     *
+     * Stop ID segments of the route data array are expected to be sorted in natural order
+     * (as provided by MappedRouteDataReader).
+     *
+     * @param routeData route data
+     * @return stop to route index
+     * @throws IllegalArgumentException if the range of stop IDs is too large to be addressed directly
+     */
+    static StopRouteIndex build(int[] routeData) {
+        int routeCount = routeData.length == 0 ? 0 : routeData[0];
+        int[] routeIds = new int[routeCount];
+        if (routeCount == 0) {
+            return new StopRouteIndex(0, new int[1], new int[0], routeIds);
+        }
+
+        // first pass: collect route IDs and the range of stop IDs (stop segments are sorted)
+        int minStopId = Integer.MAX_VALUE;
+        int maxStopId = Integer.MIN_VALUE;
+        int postingCount = 0;
+        int routeDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int stopCount = routeData[routeDataIndex + 1];
+            routeIds[routeIndex] = routeData[routeDataIndex];
+            if (stopCount > 0) {
+                minStopId = Math.min(minStopId, routeData[routeDataIndex + 2]);
+                maxStopId = Math.max(maxStopId, routeData[routeDataIndex + 1 + stopCount]);
+            }
+            postingCount += stopCount;
+            routeDataIndex += stopCount + 2;
+        }
+        if (postingCount == 0) {
+            return new StopRouteIndex(0, new int[1], new int[0], routeIds);
+        }
+
+        long stopIdRange = (long)maxStopId - minStopId + 1;
+        if (stopIdRange > StopRouteIndex.MAX_STOP_ID_RANGE) {
+            throw new IllegalArgumentException("Range of stop IDs is too large to build the stop index.");
+        }
+
+        // second pass: count postings of every stop and turn the counts into offsets
+        int[] stopOffsets = new int[(int)stopIdRange + 1];
+        routeDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int firstStopIndex = routeDataIndex + 2;
+            int nextRouteDataIndex = firstStopIndex + routeData[routeDataIndex + 1];
+            for (int stopIndex = firstStopIndex; stopIndex < nextRouteDataIndex; stopIndex++) {
+                stopOffsets[routeData[stopIndex] - minStopId + 1]++;
+            }
+            routeDataIndex = nextRouteDataIndex;
+        }
+        for (int stopIndex = 1; stopIndex < stopOffsets.length; stopIndex++) {
+            stopOffsets[stopIndex] += stopOffsets[stopIndex - 1];
+        }
+
+        // third pass: fill the postings (route indexes are visited in natural order so postings are sorted)
+        int[] stopRoutes = new int[postingCount];
+        int[] cursors = Arrays.copyOf(stopOffsets, (int)stopIdRange);
+        routeDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int firstStopIndex = routeDataIndex + 2;
+            int nextRouteDataIndex = firstStopIndex + routeData[routeDataIndex + 1];
+            for (int stopIndex = firstStopIndex; stopIndex < nextRouteDataIndex; stopIndex++) {
+                stopRoutes[cursors[routeData[stopIndex] - minStopId]++] = routeIndex;
+            }
+            routeDataIndex = nextRouteDataIndex;
+        }
+
+        StopRouteIndex index = new StopRouteIndex(minStopId, stopOffsets, stopRoutes, routeIds);
+        LOGGER.info(
+            "Stop index for {} routes and {} stop IDs is built. Index size is about {} bytes.",
+            routeCount,
+            stopIdRange,
+            index.getSizeInBytes()
+        );
+        return index;
+    }
+
+    /**
+     * Retrieve minimal stop ID
+     *
+     * @return minimal stop ID
+     */
+    int getMinStopId() {
+        return this.minStopId;
+    }
+
+    /**
+     * Retrieve number of directly addressed stop IDs (starting with the minimal one)
+     *
+     * @return range of stop IDs
+     */
+    int getStopIdRange() {
+        return this.stopOffsets.length - 1;
+    }
+
+    /**
+     * Retrieve number of routes
+     *
+     * @return number of routes
+     */
+    int getRouteCount() {
+        return this.routeIds.length;
+    }
+
+    /**
+     * Retrieve route ID by route index
+     *
+     * @param routeIndex route index
+     * @return route ID
+     */
+    int getRouteId(int routeIndex) {
+        return this.routeIds[routeIndex];
+    }
+
+    /**
+     * Retrieve route IDs addressed by route index
+     *
+     * @return route IDs (must not be modified)
+     */
+    int[] getRouteIds() {
+        return this.routeIds;
+    }
+
+    /**
+     * Retrieve postings array that contains route indexes of all stops
+     *
+     * @return postings array (must not be modified)
+     */
+    int[] getStopRoutes() {
+        return this.stopRoutes;
+    }
+
+    /**
+     * Retrieve index of the first posting of the given stop
+     *
+     * @param stopId stop ID
+     * @return index of the first posting (equal to the end index if stop is unknown)
+     */
+    int getPostingStart(int stopId) {
+        long stopIndex = (long)stopId - this.minStopId;
+        if (stopIndex < 0 || stopIndex >= this.stopOffsets.length - 1) {
+            return 0;
+        }
+        return this.stopOffsets[(int)stopIndex];
+    }
+
+    /**
+     * Retrieve index next to the last posting of the given stop
+     *
+     * @param stopId stop ID
+     * @return index next to the last posting (equal to the start index if stop is unknown)
+     */
+    int getPostingEnd(int stopId) {
+        long stopIndex = (long)stopId - this.minStopId;
+        if (stopIndex < 0 || stopIndex >= this.stopOffsets.length - 1) {
+            return 0;
+        }
+        return this.stopOffsets[(int)stopIndex + 1];
+    }
+
+    /**
+     * Calculate approximate memory footprint of the index
+     *
+     * @return approximate size of the index in bytes
+     */
+    long getSizeInBytes() {
+        return 4L * (this.stopOffsets.length + this.stopRoutes.length + this.routeIds.length);
+    }
+}
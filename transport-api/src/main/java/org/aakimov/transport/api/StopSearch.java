@@ -0,0 +1,123 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+
+/**
+ * Search kernels for the sorted stop ID segments of the route data.
+ *
+ * Every kernel returns the same result as Arrays.binarySearch: index of the stop ID if it is found
+ * (index of any of the equal stop IDs if there are several) or (-(insertion point) - 1) otherwise.
+ *
+ * @author aakimov
+ */
+public enum StopSearch {
+
+    /**
+     * Classic binary search (Arrays.binarySearch)
+     */
+    BINARY {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int search(int[] stops, int fromIndex, int toIndex, int stopId) {
+            return Arrays.binarySearch(stops, fromIndex, toIndex, stopId);
+        }
+    },
+
+    /**
+     * Interpolation search for evenly distributed stop IDs.
+     *
+     * Position of the stop ID is guessed from the first and the last stop IDs of the range, then the range
+     * around the guess is expanded exponentially (galloping) until it contains the stop ID. Generated stop IDs
+     * are evenly distributed, so the guess is usually a few cache lines away from the stop ID, and the range
+     * of up to a cache line is checked by a linear scan without branches. Instead of about 10 dependent reads
+     * of the binary search scattered over the whole stop list it takes a few reads close to each other.
+     * If stop IDs are not evenly distributed, galloping keeps it within about twice the binary search steps.
+     */
+    INTERPOLATION {
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int search(int[] stops, int fromIndex, int toIndex, int stopId) {
+            if (fromIndex >= toIndex) {
+                return -fromIndex - 1;
+            }
+
+            int lastIndex = toIndex - 1;
+            int firstStopId = stops[fromIndex];
+            int lastStopId = stops[lastIndex];
+            if (stopId <= firstStopId) {
+                return (stopId == firstStopId) ? fromIndex : -fromIndex - 1;
+            }
+            if (stopId >= lastStopId) {
+                return (stopId == lastStopId) ? lastIndex : -toIndex - 1;
+            }
+
+            // first stop ID is less and last stop ID is greater than the stop ID, so both loops stop within the range
+            int guessIndex = fromIndex + (int)(
+                ((long)stopId - firstStopId) * (lastIndex - fromIndex) / ((long)lastStopId - firstStopId)
+            );
+            int lowIndex;
+            int highIndex;
+            int step = 1;
+            if (stops[guessIndex] < stopId) {
+                lowIndex = guessIndex;
+                highIndex = guessIndex + 1;
+                while (stops[highIndex] < stopId) {
+                    lowIndex = highIndex;
+                    step <<= 1;
+                    highIndex = Math.min(highIndex + step, lastIndex);
+                }
+            } else {
+                highIndex = guessIndex;
+                lowIndex = guessIndex - 1;
+                while (stops[lowIndex] >= stopId) {
+                    highIndex = lowIndex;
+                    step <<= 1;
+                    lowIndex = Math.max(lowIndex - step, fromIndex);
+                }
+            }
+            return StopSearch.searchBracket(stops, lowIndex, highIndex, stopId);
+        }
+    };
+
+    /**
+     * Number of stop IDs in a cache line (64 bytes)
+     */
+    private static final int BLOCK_LENGTH = 16;
+
+    /**
+     * Search stop ID in the sorted range of the array
+     *
+     * @param stops array that contains sorted stop IDs
+     * @param fromIndex index of the first stop ID of the range (inclusive)
+     * @param toIndex index of the last stop ID of the range (exclusive)
+     * @param stopId stop ID to search
+     * @return index of the stop ID or (-(insertion point) - 1) if there is no such stop ID
+     */
+    public abstract int search(int[] stops, int fromIndex, int toIndex, int stopId);
+
+    /**
+     * Search stop ID between two stop IDs that are known to be less and not less than the stop ID
+     *
+     * @param stops array that contains sorted stop IDs
+     * @param lowIndex index of the stop ID that is less than the stop ID
+     * @param highIndex index of the stop ID that is not less than the stop ID
+     * @param stopId stop ID to search
+     * @return index of the stop ID or (-(insertion point) - 1) if there is no such stop ID
+     */
+    private static int searchBracket(int[] stops, int lowIndex, int highIndex, int stopId) {
+        if (highIndex - lowIndex > StopSearch.BLOCK_LENGTH) {
+            return Arrays.binarySearch(stops, lowIndex + 1, highIndex + 1, stopId);
+        }
+
+        // number of smaller stop IDs is counted without branches, so the loop has no mispredictions
+        int lowerBound = lowIndex + 1;
+        for (int stopIndex = lowIndex + 1; stopIndex < highIndex; stopIndex++) {
+            lowerBound += (stops[stopIndex] < stopId) ? 1 : 0;
+        }
+        return (stops[lowerBound] == stopId) ? lowerBound : -lowerBound - 1;
+    }
+}
@@ -0,0 +1,870 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Implementation of route data reader that parses route data from a stream.
+ *
+ * Route data can come from any channel or input stream (e.g. a pipe or standard input) that cannot be mapped.
+ * Gzip-compressed input is recognized by its magic bytes and decompressed on the fly, so compressed route data
+ * never hits the disk uncompressed. Result is exactly the same as the one of MappedRouteDataReader: lines are
+ * parsed by the same allocation-free parser into the same segmented store.
+ *
+ * Input is read into reusable direct buffers. Lines that cross the buffer boundary are copied into a separate
+ * line buffer, all the other lines are parsed in place. Buffers can be filled by a prefetch thread, so reading
+ * (and decompression) of the next buffer overlaps with parsing of the current one.
+ *
+ * Format errors are handled according to the ingestion policy (see IngestionPolicy), byte offsets of the report
+ * are offsets in the uncompressed route data. Duplicate stops and routes are handled as in MappedRouteDataReader.
+ *
+ * @author aakimov
+ */
+public class StreamingRouteDataReader implements RouteDataReader {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RouteDataReader.class);
+
+    /**
+     * Default size of the read buffer (in bytes)
+     */
+    private static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Number of read buffers used by the prefetch thread
+     */
+    private static final int PREFETCH_BUFFER_COUNT = 4;
+
+    /**
+     * Size of the buffer of the gzip decoder (in bytes)
+     */
+    private static final int GZIP_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * First byte of the gzip magic number
+     */
+    private static final int GZIP_MAGIC_FIRST_BYTE = 0x1F;
+
+    /**
+     * Second byte of the gzip magic number
+     */
+    private static final int GZIP_MAGIC_SECOND_BYTE = 0x8B;
+
+    /**
+     * Size of the read buffer (in bytes)
+     */
+    private final int bufferSize;
+
+    /**
+     * Flag that shows if buffers are filled by a prefetch thread
+     */
+    private final boolean prefetch;
+
+    /**
+     * Policy for route data with format errors
+     */
+    private final IngestionPolicy policy;
+
+    /**
+     * Policy for routes that share the same route ID
+     */
+    private final DuplicateRoutePolicy duplicateRoutePolicy;
+
+    /**
+     * Report of the last read (null if nothing is read yet)
+     */
+    private volatile IngestionReport report;
+
+    /**
+     * Create route data reader that prefetches input in a separate thread.
+     */
+    public StreamingRouteDataReader() {
+        this(IngestionPolicy.STRICT);
+    }
+
+    /**
+     * @param policy policy for route data with format errors
+     */
+    public StreamingRouteDataReader(
+        IngestionPolicy policy
+    ) {
+        this(policy, DuplicateRoutePolicy.KEEP);
+    }
+
+    /**
+     * @param policy policy for route data with format errors
+     * @param duplicateRoutePolicy policy for routes that share the same route ID
+     */
+    public StreamingRouteDataReader(
+        IngestionPolicy policy,
+        DuplicateRoutePolicy duplicateRoutePolicy
+    ) {
+        this(StreamingRouteDataReader.DEFAULT_BUFFER_SIZE, true, policy, duplicateRoutePolicy);
+    }
+
+    /**
+     * @param bufferSize size of the read buffer (in bytes)
+     * @param prefetch flag that shows if buffers should be filled by a prefetch thread
+     */
+    public StreamingRouteDataReader(
+        int bufferSize,
+        boolean prefetch
+    ) {
+        this(bufferSize, prefetch, IngestionPolicy.STRICT);
+    }
+
+    /**
+     * @param bufferSize size of the read buffer (in bytes)
+     * @param prefetch flag that shows if buffers should be filled by a prefetch thread
+     * @param policy policy for route data with format errors
+     */
+    public StreamingRouteDataReader(
+        int bufferSize,
+        boolean prefetch,
+        IngestionPolicy policy
+    ) {
+        this(bufferSize, prefetch, policy, DuplicateRoutePolicy.KEEP);
+    }
+
+    /**
+     * @param bufferSize size of the read buffer (in bytes)
+     * @param prefetch flag that shows if buffers should be filled by a prefetch thread
+     * @param policy policy for route data with format errors
+     * @param duplicateRoutePolicy policy for routes that share the same route ID
+     */
+    public StreamingRouteDataReader(
+        int bufferSize,
+        boolean prefetch,
+        IngestionPolicy policy,
+        DuplicateRoutePolicy duplicateRoutePolicy
+    ) {
+        if (bufferSize < 2) {
+            throw new IllegalArgumentException("Buffer size should be at least 2 bytes.");
+        }
+        this.bufferSize = bufferSize;
+        this.prefetch = prefetch;
+        this.policy = policy;
+        this.duplicateRoutePolicy = duplicateRoutePolicy;
+    }
+
+    /**
+     * Retrieve report of the last read
+     *
+     * @return ingestion report (null if nothing is read yet)
+     */
+    public IngestionReport getReport() {
+        return this.report;
+    }
+
+    /**
+     * Check if route data file is gzip-compressed
+     *
+     * @param routeDataPath route data location
+     * @return true if file starts with the gzip magic number or false otherwise (or if file cannot be read)
+     */
+    public static boolean isCompressed(Path routeDataPath) {
+        if (!Files.isRegularFile(routeDataPath)) {
+            return false;
+        }
+        try (InputStream inputStream = Files.newInputStream(routeDataPath)) {
+            return inputStream.read() == StreamingRouteDataReader.GZIP_MAGIC_FIRST_BYTE
+                && inputStream.read() == StreamingRouteDataReader.GZIP_MAGIC_SECOND_BYTE;
+        } catch (IOException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] read(Path routeDataPath) {
+        IngestionLog ingestionLog = new IngestionLog();
+        try (ReadableByteChannel channel = Files.newByteChannel(routeDataPath, StandardOpenOption.READ)) {
+            LOGGER.info("Route data file '{}' streaming processing started.", routeDataPath);
+
+            int[] routeData = StreamingRouteDataReader.toArray(
+                this.processRouteData(channel, false, RouteDataLayout.SORTED, ingestionLog)
+            );
+
+            LOGGER.info("Route data file '{}' streaming processing finished.", routeDataPath);
+            this.complete("file '" + routeDataPath + "'", ingestionLog);
+            return routeData;
+        } catch (UncheckedIOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception.getCause());
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception.getCause());
+            return new int[0];
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception);
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception);
+            return new int[0];
+        }
+    }
+
+    /**
+     * Read route data from the input stream (the stream is not closed)
+     *
+     * @param inputStream route data stream (plain or gzip-compressed)
+     * @return route data (empty array if stream cannot be processed)
+     */
+    public int[] read(InputStream inputStream) {
+        return this.read(Channels.newChannel(inputStream));
+    }
+
+    /**
+     * Read route data from the channel (the channel is not closed)
+     *
+     * @param channel route data channel (plain or gzip-compressed)
+     * @return route data (empty array if channel cannot be processed)
+     */
+    public int[] read(ReadableByteChannel channel) {
+        IngestionLog ingestionLog = new IngestionLog();
+        try {
+            LOGGER.info("Route data stream processing started.");
+
+            int[] routeData = StreamingRouteDataReader.toArray(
+                this.processRouteData(channel, false, RouteDataLayout.SORTED, ingestionLog)
+            );
+
+            LOGGER.info("Route data stream processing finished.");
+            this.complete("stream", ingestionLog);
+            return routeData;
+        } catch (UncheckedIOException exception) {
+            LOGGER.error("Route data stream cannot be processed. Skipping.", exception.getCause());
+            this.reject("stream", ingestionLog, exception.getCause());
+            return new int[0];
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data stream cannot be processed. Skipping.", exception);
+            this.reject("stream", ingestionLog, exception);
+            return new int[0];
+        }
+    }
+
+    /**
+     * Read route data into segments without stitching them into a single array (see MappedRouteDataReader)
+     *
+     * @param routeDataPath route data location
+     * @param direct flag that shows if segments should be allocated outside of the heap
+     * @return route data segments (empty array if file cannot be processed)
+     */
+    public IntBuffer[] readSegments(Path routeDataPath, boolean direct) {
+        IngestionLog ingestionLog = new IngestionLog();
+        try (ReadableByteChannel channel = Files.newByteChannel(routeDataPath, StandardOpenOption.READ)) {
+            LOGGER.info("Route data file '{}' segmented streaming processing started.", routeDataPath);
+
+            List<IntBuffer> segments = new ArrayList<>();
+            this.processRouteData(channel, direct, RouteDataLayout.SORTED, ingestionLog).moveTo(segments);
+
+            LOGGER.info("Route data file '{}' segmented streaming processing finished.", routeDataPath);
+            this.complete("file '" + routeDataPath + "'", ingestionLog);
+            return segments.toArray(new IntBuffer[segments.size()]);
+        } catch (UncheckedIOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception.getCause());
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception.getCause());
+            return new IntBuffer[0];
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception);
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception);
+            return new IntBuffer[0];
+        }
+    }
+
+    /**
+     * Read route data keeping the original order of the stops (see MappedRouteDataReader)
+     *
+     * @param routeDataPath route data location
+     * @return route data in ORDERED layout (empty array if file cannot be processed)
+     */
+    public int[] readOrdered(Path routeDataPath) {
+        IngestionLog ingestionLog = new IngestionLog();
+        try (ReadableByteChannel channel = Files.newByteChannel(routeDataPath, StandardOpenOption.READ)) {
+            LOGGER.info("Route data file '{}' ordered streaming processing started.", routeDataPath);
+
+            int[] routeData = StreamingRouteDataReader.toArray(
+                this.processRouteData(channel, false, RouteDataLayout.ORDERED, ingestionLog)
+            );
+
+            LOGGER.info("Route data file '{}' ordered streaming processing finished.", routeDataPath);
+            this.complete("file '" + routeDataPath + "'", ingestionLog);
+            return routeData;
+        } catch (UncheckedIOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception.getCause());
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception.getCause());
+            return new int[0];
+        } catch (FileFormatException|IOException exception) {
+            LOGGER.error("Route data file '{}' cannot be processed. Skipping.", routeDataPath, exception);
+            this.reject("file '" + routeDataPath + "'", ingestionLog, exception);
+            return new int[0];
+        }
+    }
+
+    /**
+     * Process route data stream
+     *
+     * @param channel route data channel (plain or gzip-compressed)
+     * @param direct flag that shows if route data should be stored outside of the heap
+     * @param layout layout of the route blocks
+     * @param ingestionLog log of the processed lines
+     * @return parsed routes (from exactly the declared number of lines)
+     * @throws IOException if stream cannot be read
+     */
+    private RouteDataBuffer processRouteData(
+        ReadableByteChannel channel,
+        boolean direct,
+        RouteDataLayout layout,
+        IngestionLog ingestionLog
+    ) throws IOException {
+        try (RouteStream routeStream = new RouteStream(this.openChannel(channel), this.bufferSize, this.prefetch)) {
+            int declaredRouteCount = StreamingRouteDataReader.processRouteCount(routeStream, ingestionLog);
+
+            RouteDataBuffer routeDataBuffer = new RouteDataBuffer(RouteDataBuffer.DEFAULT_SEGMENT_SIZE, direct, layout);
+            RouteLineParser routeLineParser = new RouteLineParser();
+            while (ingestionLog.getLineCount() < declaredRouteCount) {
+                ByteBuffer byteBuffer = routeStream.current();
+                if (byteBuffer == null) {
+                    // stream ends before the declared number of routes
+                    ingestionLog.addError(
+                        ingestionLog.getLineCount(),
+                        routeStream.getOffset(0),
+                        IngestionLog.MESSAGE_MISSING_ROUTES
+                    );
+                    if (this.policy == IngestionPolicy.SKIP_BAD_LINES) {
+                        break;
+                    }
+                    throw new FileFormatException(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS);
+                }
+                int lineStart = byteBuffer.position();
+                long lineOffset = routeStream.getOffset(lineStart);
+                try {
+                    if (!routeLineParser.parseLine(byteBuffer)) {
+                        // line crosses the buffer boundary, so it is parsed once again as a whole (or it is the last)
+                        routeLineParser.parseLine(routeStream.joinLine(lineStart));
+                    }
+
+                    if (layout == RouteDataLayout.ORDERED) {
+                        routeLineParser.completeOrderedRoute();
+                    } else {
+                        routeLineParser.completeRoute();
+                    }
+                } catch (FileFormatException exception) {
+                    if (this.policy != IngestionPolicy.SKIP_BAD_LINES) {
+                        ingestionLog.failLine(lineOffset, exception.getMessage());
+                        throw exception;
+                    }
+                    ingestionLog.skipLine(lineOffset, exception);
+                    routeStream.skipLine();
+                    continue;
+                }
+                routeDataBuffer.appendRoute(
+                    routeLineParser.getRouteId(),
+                    routeLineParser.getStops(),
+                    routeLineParser.getPositions(),
+                    routeLineParser.getStopCount()
+                );
+                ingestionLog.addRoute(
+                    routeLineParser.hasDuplicateStops(),
+                    layout.getBlockLength(routeLineParser.getParsedStopCount())
+                        - layout.getBlockLength(routeLineParser.getStopCount())
+                );
+            }
+            RouteIdDeduplicator.deduplicate(
+                Collections.singletonList(routeDataBuffer),
+                layout,
+                this.duplicateRoutePolicy,
+                ingestionLog
+            );
+            return routeDataBuffer;
+        }
+    }
+
+    /**
+     * Process first line to retrieve the number of routes
+     *
+     * @param routeStream route data stream
+     * @param ingestionLog log of the processed lines
+     * @return declared number of routes
+     * @throws IOException if stream cannot be read
+     */
+    private static int processRouteCount(RouteStream routeStream, IngestionLog ingestionLog) throws IOException {
+        try {
+            ByteBuffer byteBuffer = routeStream.current();
+            if (byteBuffer == null) {
+                throw new FileFormatException("Route data file is empty.");
+            }
+            int lineStart = byteBuffer.position();
+            int declaredRouteCount = RouteLineParser.parseRouteCount(byteBuffer);
+            if (byteBuffer.get(byteBuffer.position() - 1) != '\n') {
+                // first line crosses the buffer boundary
+                declaredRouteCount = RouteLineParser.parseRouteCount(routeStream.joinLine(lineStart));
+            }
+            if (declaredRouteCount == 0) {
+                throw new FileFormatException("Route data file is empty.");
+            }
+            ingestionLog.setDeclaredRouteCount(declaredRouteCount);
+            return declaredRouteCount;
+        } catch (FileFormatException exception) {
+            ingestionLog.addError(-1, 0, exception.getMessage());
+            throw exception;
+        }
+    }
+
+    /**
+     * Save and log report of the loaded route data
+     *
+     * @param routeDataSource description of the route data source
+     * @param ingestionLog log of the processed lines
+     */
+    private void complete(String routeDataSource, IngestionLog ingestionLog) {
+        this.report = ingestionLog.toReport(this.policy, null);
+        IngestionLog.log(routeDataSource, this.report);
+    }
+
+    /**
+     * Save report of the rejected route data
+     *
+     * @param routeDataSource description of the route data source
+     * @param ingestionLog log of the processed lines
+     * @param exception reason of the rejection
+     * @throws IllegalStateException if ingestion policy requires startup failure
+     */
+    private void reject(String routeDataSource, IngestionLog ingestionLog, Exception exception) {
+        this.report = ingestionLog.toReport(this.policy, String.valueOf(exception.getMessage()));
+        if (this.policy == IngestionPolicy.FAIL_STARTUP) {
+            throw new IllegalStateException(
+                "Route data " + routeDataSource + " is rejected: " + this.report,
+                exception
+            );
+        }
+    }
+
+    /**
+     * Wrap the channel with a gzip decoder if it starts with the gzip magic number
+     *
+     * @param channel route data channel
+     * @return channel of the uncompressed route data
+     * @throws IOException if channel cannot be read
+     */
+    private ReadableByteChannel openChannel(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(2);
+        while (header.hasRemaining() && channel.read(header) >= 0) {
+            continue;
+        }
+        header.flip();
+        boolean compressed = header.remaining() == 2
+            && (header.get(0) & 0xFF) == StreamingRouteDataReader.GZIP_MAGIC_FIRST_BYTE
+            && (header.get(1) & 0xFF) == StreamingRouteDataReader.GZIP_MAGIC_SECOND_BYTE;
+
+        // header bytes are already consumed, so they are put back in front of the rest of the channel
+        ReadableByteChannel prefixedChannel = new PrefixedChannel(header, channel);
+        if (compressed) {
+            LOGGER.info("Route data is gzip-compressed.");
+            return Channels.newChannel(
+                new GZIPInputStream(
+                    Channels.newInputStream(prefixedChannel),
+                    StreamingRouteDataReader.GZIP_BUFFER_SIZE
+                )
+            );
+        }
+        return prefixedChannel;
+    }
+
+    /**
+     * Copy parsed routes into the resulting route data array
+     *
+     * @param routeDataBuffer parsed routes
+     * @return route data array
+     */
+    private static int[] toArray(RouteDataBuffer routeDataBuffer) {
+        long routeDataLength = 1 + routeDataBuffer.getLength();
+        if (routeDataLength > MappedRouteDataReader.MAX_ROUTE_DATA_LENGTH) {
+            throw new FileFormatException("Route data is too large to fit into a single array.");
+        }
+
+        int[] routeData = new int[(int)routeDataLength];
+        routeData[0] = routeDataBuffer.getRouteCount();
+        routeDataBuffer.moveTo(routeData, 1);
+        return routeData;
+    }
+
+    /**
+     * Channel that returns the given bytes before the bytes of another channel.
+     *
+     * Closing it does not close another channel, so decoders put on top of it can be closed without closing
+     * the channel of the caller.
+     */
+    private static final class PrefixedChannel implements ReadableByteChannel {
+
+        /**
+         * Bytes returned first
+         */
+        private final ByteBuffer prefix;
+
+        /**
+         * Channel read once the prefix is over
+         */
+        private final ReadableByteChannel channel;
+
+        /**
+         * @param prefix bytes returned first
+         * @param channel channel read once the prefix is over
+         */
+        private PrefixedChannel(ByteBuffer prefix, ReadableByteChannel channel) {
+            this.prefix = prefix;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+            if (!this.prefix.hasRemaining()) {
+                return this.channel.read(target);
+            }
+            int count = 0;
+            while (this.prefix.hasRemaining() && target.hasRemaining()) {
+                target.put(this.prefix.get());
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // channel is closed by its owner
+        }
+    }
+
+    /**
+     * Stream of filled read buffers with support of lines that cross buffer boundaries
+     */
+    private static final class RouteStream implements AutoCloseable {
+
+        /**
+         * Marker of the end of the stream in the queue of filled buffers
+         */
+        private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+        /**
+         * Uncompressed route data channel
+         */
+        private final ReadableByteChannel channel;
+
+        /**
+         * Buffers ready to be filled (prefetch mode only)
+         */
+        private final BlockingQueue<ByteBuffer> emptyBuffers;
+
+        /**
+         * Filled buffers in stream order followed by the end marker (prefetch mode only)
+         */
+        private final BlockingQueue<ByteBuffer> filledBuffers;
+
+        /**
+         * Prefetch thread (null if buffers are filled by the reading thread)
+         */
+        private final Thread prefetchThread;
+
+        /**
+         * Current buffer (null once the stream is over)
+         */
+        private ByteBuffer currentBuffer;
+
+        /**
+         * Buffer of the line that crosses buffer boundaries
+         */
+        private ByteBuffer lineBuffer;
+
+        /**
+         * Read error of the prefetch thread
+         */
+        private volatile IOException error;
+
+        /**
+         * Flag that shows if reading is cancelled
+         */
+        private volatile boolean isClosed;
+
+        /**
+         * Flag that shows if the end of the stream is reached
+         */
+        private boolean isEndReached;
+
+        /**
+         * Stream offset of the first byte of the current buffer
+         */
+        private long bufferOffset;
+
+        /**
+         * @param channel uncompressed route data channel
+         * @param bufferSize size of the read buffer
+         * @param prefetch flag that shows if buffers should be filled by a prefetch thread
+         */
+        private RouteStream(ReadableByteChannel channel, int bufferSize, boolean prefetch) {
+            this.channel = channel;
+            this.lineBuffer = ByteBuffer.allocateDirect(bufferSize);
+            if (!prefetch) {
+                this.emptyBuffers = null;
+                this.filledBuffers = null;
+                this.prefetchThread = null;
+                this.currentBuffer = ByteBuffer.allocateDirect(bufferSize);
+                this.currentBuffer.limit(0);
+                return;
+            }
+
+            this.emptyBuffers = new ArrayBlockingQueue<>(StreamingRouteDataReader.PREFETCH_BUFFER_COUNT);
+            this.filledBuffers = new ArrayBlockingQueue<>(StreamingRouteDataReader.PREFETCH_BUFFER_COUNT + 1);
+            for (int bufferIndex = 0; bufferIndex < StreamingRouteDataReader.PREFETCH_BUFFER_COUNT; bufferIndex++) {
+                this.emptyBuffers.add(ByteBuffer.allocateDirect(bufferSize));
+            }
+            this.prefetchThread = new Thread(this::prefetch, "route-data-prefetch");
+            this.prefetchThread.setDaemon(true);
+            this.prefetchThread.start();
+        }
+
+        /**
+         * Retrieve current buffer positioned at the next unread byte
+         *
+         * @return buffer with remaining bytes or null if the stream is over
+         * @throws IOException if stream cannot be read
+         */
+        private ByteBuffer current() throws IOException {
+            while (!this.isEndReached && (this.currentBuffer == null || !this.currentBuffer.hasRemaining())) {
+                this.currentBuffer = this.next();
+            }
+            return this.isEndReached ? null : this.currentBuffer;
+        }
+
+        /**
+         * Retrieve stream offset of the given position of the current buffer
+         *
+         * @param position position in the current buffer
+         * @return offset in the uncompressed route data
+         */
+        private long getOffset(int position) {
+            return this.bufferOffset + position;
+        }
+
+        /**
+         * Skip the rest of the current line (nothing is skipped if the last consumed byte is a line break)
+         *
+         * @throws IOException if stream cannot be read
+         */
+        private void skipLine() throws IOException {
+            if (this.isEndReached) {
+                return;
+            }
+            int position = this.currentBuffer.position();
+            if (position > 0 && this.currentBuffer.get(position - 1) == '\n') {
+                return;
+            }
+            ByteBuffer byteBuffer;
+            while ((byteBuffer = this.current()) != null) {
+                for (int index = byteBuffer.position(); index < byteBuffer.limit(); index++) {
+                    if (byteBuffer.get(index) == '\n') {
+                        byteBuffer.position(index + 1);
+                        return;
+                    }
+                }
+                byteBuffer.position(byteBuffer.limit());
+            }
+        }
+
+        /**
+         * Collect the line that starts in the current buffer and continues in the next ones
+         *
+         * @param lineStart position of the line start in the current buffer
+         * @return buffer that contains the whole line (or the rest of the stream if it does not end with a line break)
+         * @throws IOException if stream cannot be read
+         */
+        private ByteBuffer joinLine(int lineStart) throws IOException {
+            this.lineBuffer.clear();
+            this.currentBuffer.position(lineStart);
+            this.appendToLine(this.currentBuffer, this.currentBuffer.limit());
+            while (this.current() != null) {
+                ByteBuffer byteBuffer = this.currentBuffer;
+                int lineEnd = byteBuffer.limit();
+                for (int index = byteBuffer.position(); index < byteBuffer.limit(); index++) {
+                    if (byteBuffer.get(index) == '\n') {
+                        lineEnd = index + 1;
+                        break;
+                    }
+                }
+                this.appendToLine(byteBuffer, lineEnd);
+                if (this.lineBuffer.get(this.lineBuffer.position() - 1) == '\n') {
+                    break;
+                }
+            }
+            this.lineBuffer.flip();
+            return this.lineBuffer;
+        }
+
+        /**
+         * Append bytes of the buffer to the line buffer (it grows on demand)
+         *
+         * @param byteBuffer source buffer (positioned at the first byte to append, moved to the end)
+         * @param end position next to the last byte to append
+         */
+        private void appendToLine(ByteBuffer byteBuffer, int end) {
+            int length = end - byteBuffer.position();
+            if (this.lineBuffer.remaining() < length) {
+                long capacity = Math.max(2L * this.lineBuffer.capacity(), (long)this.lineBuffer.position() + length);
+                if (capacity > Integer.MAX_VALUE) {
+                    throw new FileFormatException("Route data line is too long.");
+                }
+                ByteBuffer newLineBuffer = ByteBuffer.allocateDirect((int)capacity);
+                this.lineBuffer.flip();
+                newLineBuffer.put(this.lineBuffer);
+                this.lineBuffer = newLineBuffer;
+            }
+            int limit = byteBuffer.limit();
+            byteBuffer.limit(end);
+            this.lineBuffer.put(byteBuffer);
+            byteBuffer.limit(limit);
+        }
+
+        /**
+         * Retrieve next filled buffer (current buffer is given back to be filled again)
+         *
+         * @return filled buffer (null if the stream is over)
+         * @throws IOException if stream cannot be read
+         */
+        private ByteBuffer next() throws IOException {
+            if (this.prefetchThread == null) {
+                this.bufferOffset += this.currentBuffer.limit();
+                this.currentBuffer.clear();
+                if (RouteStream.fill(this.channel, this.currentBuffer) == 0) {
+                    this.isEndReached = true;
+                }
+                this.currentBuffer.flip();
+                return this.currentBuffer;
+            }
+
+            if (this.currentBuffer != null) {
+                this.bufferOffset += this.currentBuffer.limit();
+                this.emptyBuffers.add(this.currentBuffer);
+            }
+            try {
+                ByteBuffer filledBuffer = this.filledBuffers.take();
+                if (filledBuffer == RouteStream.END_OF_STREAM) {
+                    if (this.error != null) {
+                        throw this.error;
+                    }
+                    this.isEndReached = true;
+                    return null;
+                }
+                return filledBuffer;
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Route data reading is interrupted.", exception);
+            }
+        }
+
+        /**
+         * Fill buffers with the data of the channel until the stream is over or reading is cancelled (prefetch thread).
+         *
+         * Channel is closed by this thread, so the decoder is never closed in the middle of a read.
+         */
+        private void prefetch() {
+            try {
+                while (true) {
+                    ByteBuffer byteBuffer = this.emptyBuffers.take();
+                    if (this.isClosed) {
+                        return;
+                    }
+                    byteBuffer.clear();
+                    int count = RouteStream.fill(this.channel, byteBuffer);
+                    byteBuffer.flip();
+                    if (count == 0) {
+                        break;
+                    }
+                    // queue of filled buffers is large enough to keep all the buffers, so it never blocks
+                    this.filledBuffers.add(byteBuffer);
+                }
+            } catch (IOException exception) {
+                this.error = exception;
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                this.error = new IOException("Route data prefetch is interrupted.", exception);
+            } finally {
+                RouteStream.closeQuietly(this.channel);
+                // reading thread always gets the end marker, so it never waits for a buffer that never comes
+                this.filledBuffers.offer(RouteStream.END_OF_STREAM);
+            }
+        }
+
+        /**
+         * Fill the buffer with the data of the channel
+         *
+         * @param channel channel
+         * @param byteBuffer target buffer
+         * @return number of bytes read (0 if the stream is over)
+         * @throws IOException if stream cannot be read
+         */
+        private static int fill(ReadableByteChannel channel, ByteBuffer byteBuffer) throws IOException {
+            int count = 0;
+            while (byteBuffer.hasRemaining()) {
+                int readCount = channel.read(byteBuffer);
+                if (readCount < 0) {
+                    break;
+                }
+                count += readCount;
+            }
+            return count;
+        }
+
+        /**
+         * Cancel reading (the channel of the caller is not closed).
+         *
+         * Prefetch thread stops as soon as it gets the next empty buffer, so it may read one more buffer
+         * if it is waiting for the data.
+         */
+        @Override
+        public void close() {
+            if (this.prefetchThread == null) {
+                RouteStream.closeQuietly(this.channel);
+                return;
+            }
+            this.isClosed = true;
+            // all the buffers are given back, so the prefetch thread wakes up if it waits for an empty one
+            this.filledBuffers.clear();
+            for (int bufferIndex = 0; bufferIndex < StreamingRouteDataReader.PREFETCH_BUFFER_COUNT; bufferIndex++) {
+                this.emptyBuffers.offer(RouteStream.END_OF_STREAM);
+            }
+        }
+
+        /**
+         * Close the channel ignoring errors
+         *
+         * @param channel channel
+         */
+        private static void closeQuietly(ReadableByteChannel channel) {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                LOGGER.debug("Route data channel cannot be closed.", exception);
+            }
+        }
+    }
+}
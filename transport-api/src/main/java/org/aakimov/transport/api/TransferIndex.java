@@ -0,0 +1,395 @@
+package org.aakimov.transport.api;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Stop to route adjacency of the route data for the connection search with transfers.
+ *
+ * Stop to route direction is the inverted stop index (see StopRouteIndex), route to stop direction is the route
+ * data array itself addressed by route index, so the index takes about the same memory as the route data array.
+ *
+ * Connection is searched by a bidirectional breadth-first search over routes: departure side visits routes
+ * reachable with 0, 1, 2... transfers from the departure stop, arrival side visits routes that reach the arrival
+ * stop with 0, 1, 2... transfers and the side with the smaller frontier is expanded first. The first route
+ * visited by both sides closes a connection with the fewest transfers. Visited stops and routes are kept
+ * in bitsets and frontiers in route index arrays, so a level of the search is a scan of the frontier routes
+ * and the postings of their stops without any allocations.
+ *
+ * @see StopRouteIndex
+ * @author aakimov
+ */
+final class TransferIndex {
+
+    /**
+     * Stop to route index
+     */
+    private final StopRouteIndex stopRouteIndex;
+
+    /**
+     * Route data (stop IDs of the routes)
+     */
+    private final int[] routeData;
+
+    /**
+     * Index of the first stop of every route in the route data
+     */
+    private final int[] routeStopStarts;
+
+    /**
+     * Search states that are not in use (up to one per available processor)
+     */
+    private final ArrayBlockingQueue<SearchState> searchStates = new ArrayBlockingQueue<>(
+        Runtime.getRuntime().availableProcessors()
+    );
+
+    /**
+     * @param routeData route data with sorted stop IDs segments
+     */
+    TransferIndex(
+        int[] routeData
+    ) {
+        this.stopRouteIndex = StopRouteIndex.build(routeData);
+        this.routeData = routeData;
+        this.routeStopStarts = new int[this.stopRouteIndex.getRouteCount()];
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < this.routeStopStarts.length; routeIndex++) {
+            this.routeStopStarts[routeIndex] = currentRouteDataIndex + 2;
+            currentRouteDataIndex += this.routeData[currentRouteDataIndex + 1] + 2;
+        }
+    }
+
+    /**
+     * Find stops to change routes at on the way between given stops
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param maxTransfers maximum number of transfers
+     * @return transfer stop IDs in order of travel (empty array if direct route is available)
+     *     or null if arrival stop cannot be reached with up to the given number of transfers
+     * @throws IllegalArgumentException if maximum number of transfers is negative
+     */
+    int[] findTransferStops(int departureStopId, int arrivalStopId, int maxTransfers) {
+        if (maxTransfers < 0) {
+            throw new IllegalArgumentException("Maximum number of transfers should not be negative.");
+        }
+        if (
+            this.stopRouteIndex.getPostingStart(departureStopId) == this.stopRouteIndex.getPostingEnd(departureStopId)
+            || this.stopRouteIndex.getPostingStart(arrivalStopId) == this.stopRouteIndex.getPostingEnd(arrivalStopId)
+        ) {
+            return null;
+        }
+
+        SearchState searchState = this.searchStates.poll();
+        if (searchState == null) {
+            searchState = new SearchState(this.stopRouteIndex.getStopIdRange(), this.stopRouteIndex.getRouteCount());
+        }
+        try {
+            return this.search(searchState, departureStopId, arrivalStopId, maxTransfers);
+        } finally {
+            searchState.clear();
+            this.searchStates.offer(searchState);
+        }
+    }
+
+    /**
+     * Retrieve number of routes
+     *
+     * @return number of routes
+     */
+    int getRouteCount() {
+        return this.stopRouteIndex.getRouteCount();
+    }
+
+    /**
+     * Run bidirectional search and collect transfer stops of the found connection
+     *
+     * @param searchState search state
+     * @param departureStopId departure stop identifier (served by at least one route)
+     * @param arrivalStopId arrival stop identifier (served by at least one route)
+     * @param maxTransfers maximum number of transfers
+     * @return transfer stop IDs in order of travel or null if there is no connection
+     */
+    private int[] search(SearchState searchState, int departureStopId, int arrivalStopId, int maxTransfers) {
+        SearchSide departureSide = searchState.departureSide;
+        SearchSide arrivalSide = searchState.arrivalSide;
+        this.start(departureSide, departureStopId, arrivalSide);
+        int meetingRouteIndex = this.start(arrivalSide, arrivalStopId, departureSide);
+        for (
+            int transferCount = 0;
+            meetingRouteIndex < 0
+                && transferCount < maxTransfers
+                && departureSide.frontierSize > 0
+                && arrivalSide.frontierSize > 0;
+            transferCount++
+        ) {
+            meetingRouteIndex = (departureSide.frontierSize <= arrivalSide.frontierSize)
+                ? this.expand(departureSide, arrivalSide)
+                : this.expand(arrivalSide, departureSide);
+        }
+        if (meetingRouteIndex < 0) {
+            return null;
+        }
+
+        int departureTransferCount = departureSide.countTransfers(meetingRouteIndex);
+        int[] transferStops = new int[departureTransferCount + arrivalSide.countTransfers(meetingRouteIndex)];
+        int transferIndex = departureTransferCount;
+        for (
+            int routeIndex = meetingRouteIndex;
+            departureSide.parentRoutes[routeIndex] >= 0;
+            routeIndex = departureSide.parentRoutes[routeIndex]
+        ) {
+            transferStops[--transferIndex] = departureSide.parentStops[routeIndex];
+        }
+        transferIndex = departureTransferCount;
+        for (
+            int routeIndex = meetingRouteIndex;
+            arrivalSide.parentRoutes[routeIndex] >= 0;
+            routeIndex = arrivalSide.parentRoutes[routeIndex]
+        ) {
+            transferStops[transferIndex++] = arrivalSide.parentStops[routeIndex];
+        }
+        return transferStops;
+    }
+
+    /**
+     * Visit routes of the first stop of the search side
+     *
+     * @param side search side
+     * @param stopId departure or arrival stop ID
+     * @param otherSide opposite search side
+     * @return index of the route visited by both sides or -1 if there is no such route
+     */
+    private int start(SearchSide side, int stopId, SearchSide otherSide) {
+        SearchSide.set(side.visitedStops, stopId - this.stopRouteIndex.getMinStopId());
+        side.nextFrontierSize = 0;
+        int meetingRouteIndex = this.visitRoutes(side, stopId, -1, otherSide);
+        side.swapFrontiers();
+        return meetingRouteIndex;
+    }
+
+    /**
+     * Visit routes that share a stop with the frontier routes of the search side (one more transfer)
+     *
+     * @param side search side
+     * @param otherSide opposite search side
+     * @return index of the route visited by both sides or -1 if there is no such route
+     */
+    private int expand(SearchSide side, SearchSide otherSide) {
+        int minStopId = this.stopRouteIndex.getMinStopId();
+        side.nextFrontierSize = 0;
+        for (int frontierIndex = 0; frontierIndex < side.frontierSize; frontierIndex++) {
+            int routeIndex = side.frontier[frontierIndex];
+            int firstStopIndex = this.routeStopStarts[routeIndex];
+            int lastStopIndex = firstStopIndex + this.routeData[firstStopIndex - 1];
+            for (int stopIndex = firstStopIndex; stopIndex < lastStopIndex; stopIndex++) {
+                int stopId = this.routeData[stopIndex];
+                if (SearchSide.testAndSet(side.visitedStops, stopId - minStopId)) {
+                    continue;
+                }
+                int meetingRouteIndex = this.visitRoutes(side, stopId, routeIndex, otherSide);
+                if (meetingRouteIndex >= 0) {
+                    return meetingRouteIndex;
+                }
+            }
+        }
+        side.swapFrontiers();
+        return -1;
+    }
+
+    /**
+     * Visit routes of the stop that are not visited yet and add them to the next frontier
+     *
+     * @param side search side
+     * @param stopId stop ID
+     * @param parentRouteIndex index of the route the stop is reached with (-1 for departure and arrival stops)
+     * @param otherSide opposite search side
+     * @return index of the route visited by both sides or -1 if there is no such route
+     */
+    private int visitRoutes(SearchSide side, int stopId, int parentRouteIndex, SearchSide otherSide) {
+        int[] stopRoutes = this.stopRouteIndex.getStopRoutes();
+        int postingStart = this.stopRouteIndex.getPostingStart(stopId);
+        int postingEnd = this.stopRouteIndex.getPostingEnd(stopId);
+        for (int postingIndex = postingStart; postingIndex < postingEnd; postingIndex++) {
+            int routeIndex = stopRoutes[postingIndex];
+            if (SearchSide.testAndSet(side.visitedRoutes, routeIndex)) {
+                continue;
+            }
+            side.parentRoutes[routeIndex] = parentRouteIndex;
+            side.parentStops[routeIndex] = stopId;
+            side.nextFrontier[side.nextFrontierSize++] = routeIndex;
+            if (SearchSide.test(otherSide.visitedRoutes, routeIndex)) {
+                return routeIndex;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scratch space of a single search (reused by the following searches)
+     */
+    private static final class SearchState {
+
+        /**
+         * Search side that starts at the departure stop
+         */
+        private final SearchSide departureSide;
+
+        /**
+         * Search side that starts at the arrival stop
+         */
+        private final SearchSide arrivalSide;
+
+        /**
+         * @param stopIdRange number of directly addressed stop IDs
+         * @param routeCount number of routes
+         */
+        SearchState(
+            int stopIdRange,
+            int routeCount
+        ) {
+            this.departureSide = new SearchSide(stopIdRange, routeCount);
+            this.arrivalSide = new SearchSide(stopIdRange, routeCount);
+        }
+
+        /**
+         * Forget visited stops and routes
+         */
+        void clear() {
+            this.departureSide.clear();
+            this.arrivalSide.clear();
+        }
+    }
+
+    /**
+     * Visited stops and routes of one direction of the search
+     */
+    private static final class SearchSide {
+
+        /**
+         * Visited stops (bit per stop ID minus minimal stop ID)
+         */
+        private final long[] visitedStops;
+
+        /**
+         * Visited routes (bit per route index)
+         */
+        private final long[] visitedRoutes;
+
+        /**
+         * Route the visited route is reached from (-1 for routes of the departure or arrival stop)
+         */
+        private final int[] parentRoutes;
+
+        /**
+         * Stop ID the visited route is reached at
+         */
+        private final int[] parentStops;
+
+        /**
+         * Route indexes of the last visited level
+         */
+        private int[] frontier;
+
+        /**
+         * Number of routes of the last visited level
+         */
+        private int frontierSize;
+
+        /**
+         * Route indexes of the level that is being visited
+         */
+        private int[] nextFrontier;
+
+        /**
+         * Number of routes of the level that is being visited
+         */
+        private int nextFrontierSize;
+
+        /**
+         * @param stopIdRange number of directly addressed stop IDs
+         * @param routeCount number of routes
+         */
+        SearchSide(
+            int stopIdRange,
+            int routeCount
+        ) {
+            this.visitedStops = new long[(stopIdRange + 63) >>> 6];
+            this.visitedRoutes = new long[(routeCount + 63) >>> 6];
+            this.parentRoutes = new int[routeCount];
+            this.parentStops = new int[routeCount];
+            this.frontier = new int[routeCount];
+            this.nextFrontier = new int[routeCount];
+        }
+
+        /**
+         * Make the level that is being visited the last visited one
+         */
+        void swapFrontiers() {
+            int[] currentFrontier = this.frontier;
+            this.frontier = this.nextFrontier;
+            this.frontierSize = this.nextFrontierSize;
+            this.nextFrontier = currentFrontier;
+            this.nextFrontierSize = 0;
+        }
+
+        /**
+         * Count transfers between the start stop and the given visited route
+         *
+         * @param routeIndex visited route index
+         * @return number of transfers
+         */
+        int countTransfers(int routeIndex) {
+            int transferCount = 0;
+            for (int currentRouteIndex = routeIndex; this.parentRoutes[currentRouteIndex] >= 0; transferCount++) {
+                currentRouteIndex = this.parentRoutes[currentRouteIndex];
+            }
+            return transferCount;
+        }
+
+        /**
+         * Forget visited stops and routes (parents and frontiers are valid for visited routes only)
+         */
+        void clear() {
+            Arrays.fill(this.visitedStops, 0);
+            Arrays.fill(this.visitedRoutes, 0);
+            this.frontierSize = 0;
+            this.nextFrontierSize = 0;
+        }
+
+        /**
+         * Check if the bit is set
+         *
+         * @param bits bitset
+         * @param index bit index
+         * @return true if bit is set or false otherwise
+         */
+        static boolean test(long[] bits, int index) {
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        /**
+         * Set the bit
+         *
+         * @param bits bitset
+         * @param index bit index
+         */
+        static void set(long[] bits, int index) {
+            bits[index >>> 6] |= 1L << index;
+        }
+
+        /**
+         * Set the bit and report its previous value
+         *
+         * @param bits bitset
+         * @param index bit index
+         * @return true if bit was already set or false otherwise
+         */
+        static boolean testAndSet(long[] bits, int index) {
+            long word = bits[index >>> 6];
+            long mask = 1L << index;
+            bits[index >>> 6] = word | mask;
+            return (word & mask) != 0;
+        }
+    }
+}
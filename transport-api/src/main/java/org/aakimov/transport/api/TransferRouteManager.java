@@ -0,0 +1,117 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * Route manager decorator that finds connections with transfers.
+ *
+ * Direct route requests are passed to the decorated route manager, connections with transfers are searched
+ * on the stop to route adjacency of the same route data (see TransferIndex). Adjacency keeps a reference
+ * to the route data array and adds an inverted stop index of about the same size, so the route data array
+ * should be shared with the decorated route manager (e.g. MemoryRouteManager) to keep memory footprint low.
+ *
+ * @see TransferIndex
+ * @author aakimov
+ */
+public class TransferRouteManager implements RouteManager {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransferRouteManager.class);
+
+    /**
+     * Decorated route manager
+     */
+    private final RouteManager routeManager;
+
+    /**
+     * Stop to route adjacency
+     */
+    private final TransferIndex transferIndex;
+
+    /**
+     * @param routeManager decorated route manager
+     * @param routeData route data with sorted stop IDs segments (same as the one of the decorated route manager)
+     */
+    public TransferRouteManager(
+        RouteManager routeManager,
+        int[] routeData
+    ) {
+        this.routeManager = routeManager;
+        this.transferIndex = new TransferIndex(routeData);
+        LOGGER.info("Transfer index for {} routes is built.", this.transferIndex.getRouteCount());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        return this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        return this.routeManager.findDirectRoutes(departureStopId, arrivalStopId, limit);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean[] areDirectRoutesAvailable(int[] departureStopIds, int[] arrivalStopIds) {
+        return this.routeManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+    }
+
+    /**
+     * Find stops to change routes at on the way between given stops.
+     *
+     * Routes reachable from both stops are visited level by level (one level per transfer) until a route
+     * is reached from both sides, so the search stops as soon as a connection with the fewest transfers is found.
+     *
+     * @param departureStopId departure stop identifier
+     * @param arrivalStopId arrival stop identifier
+     * @param maxTransfers maximum number of transfers
+     * @return transfer stop IDs in order of travel (empty array if direct route is available)
+     *     or null if arrival stop cannot be reached with up to the given number of transfers
+     * @throws IllegalArgumentException if maximum number of transfers is negative
+     */
+    @Override
+    public int[] findTransferStops(int departureStopId, int arrivalStopId, int maxTransfers) {
+        return this.transferIndex.findTransferStops(departureStopId, arrivalStopId, maxTransfers);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getDataVersion() {
+        return this.routeManager.getDataVersion();
+    }
+
+    /**
+     * Retrieve decorated route manager
+     *
+     * @return route manager that serves direct route requests
+     */
+    public RouteManager getRouteManager() {
+        return this.routeManager;
+    }
+
+    /**
+     * Close decorated route manager
+     *
+     * @throws IOException if decorated route manager cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        this.routeManager.close();
+    }
+}
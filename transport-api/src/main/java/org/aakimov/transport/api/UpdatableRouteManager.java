@@ -0,0 +1,228 @@
+package org.aakimov.transport.api;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory route manager that accepts updates of individual routes.
+ *
+ * Route data is kept in an immutable store (see OverlayRouteStore): the base route data array is shared
+ * between versions of the store, while updated routes are kept in a small overlay. Every batch of updates
+ * creates a new store and publishes it with a single volatile write, so readers never take locks and always
+ * see either all or none of the updates of a batch. Update takes time proportional to the size of the overlay,
+ * which is kept small by compaction.
+ *
+ * Compaction merges the overlay into a new base route data array in the background once the number of
+ * updated routes exceeds the threshold. Updates are not blocked by the compaction: they are recorded
+ * and applied on top of the new base before it is published. Closing the route manager stops the compaction
+ * thread, so updates that follow are kept in the overlay.
+ *
+ * @author aakimov
+ */
+public class UpdatableRouteManager implements RouteManager {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(UpdatableRouteManager.class);
+
+    /**
+     * Default number of updated routes that triggers compaction
+     */
+    private static final int DEFAULT_COMPACTION_THRESHOLD = 1024;
+
+    /**
+     * Number of updated (added, replaced or removed) routes that triggers compaction
+     */
+    private final int compactionThreshold;
+
+    /**
+     * Single-threaded executor that runs compactions
+     */
+    private final ExecutorService compactionExecutor = Executors.newSingleThreadExecutor(
+        runnable -> {
+            Thread thread = new Thread(runnable, "route-data-compaction");
+            thread.setDaemon(true);
+            return thread;
+        }
+    );
+
+    /**
+     * Lock that serializes updates
+     */
+    private final Object updateLock = new Object();
+
+    /**
+     * Current route store
+     */
+    private volatile OverlayRouteStore routeStore;
+
+    /**
+     * Number of applied batches of updates
+     */
+    private volatile long updateCount;
+
+    /**
+     * Updates applied since the start of the running compaction (null if compaction is not running)
+     */
+    private List<RouteUpdate> compactionJournal;
+
+    /**
+     * Flag that shows if background compaction is scheduled but not started yet
+     */
+    private boolean isCompactionScheduled;
+
+    /**
+     * @param routeData route data with sorted stop IDs segments
+     */
+    public UpdatableRouteManager(
+        int[] routeData
+    ) {
+        this(routeData, UpdatableRouteManager.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * @param routeData route data with sorted stop IDs segments
+     * @param compactionThreshold number of updated routes that triggers compaction
+     */
+    UpdatableRouteManager(
+        int[] routeData,
+        int compactionThreshold
+    ) {
+        this.routeStore = OverlayRouteStore.of(routeData);
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+        return this.routeStore.isDirectRouteAvailable(departureStopId, arrivalStopId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+        return this.routeStore.findDirectRoutes(departureStopId, arrivalStopId, limit);
+    }
+
+    /**
+     * Retrieve version of the route data (changes on every batch of updates, compaction keeps it)
+     *
+     * @return route data version
+     */
+    @Override
+    public long getDataVersion() {
+        return this.updateCount;
+    }
+
+    /**
+     * Apply route updates atomically (readers see either all or none of them)
+     *
+     * @param routeUpdates route updates (in order of application)
+     */
+    public void update(List<RouteUpdate> routeUpdates) {
+        if (routeUpdates.isEmpty()) {
+            return;
+        }
+
+        boolean isCompactionRequired;
+        synchronized (this.updateLock) {
+            OverlayRouteStore newRouteStore = this.routeStore.apply(routeUpdates);
+            this.routeStore = newRouteStore;
+            // new route data is published before the new version (see RouteManager.getDataVersion)
+            this.updateCount++;
+            if (this.compactionJournal != null) {
+                this.compactionJournal.addAll(routeUpdates);
+            }
+            isCompactionRequired = this.compactionJournal == null
+                && !this.isCompactionScheduled
+                && newRouteStore.getOverlayRouteCount() + newRouteStore.getMaskedRouteCount()
+                    > this.compactionThreshold;
+            this.isCompactionScheduled |= isCompactionRequired;
+        }
+
+        if (isCompactionRequired) {
+            try {
+                this.compactionExecutor.execute(this::compact);
+            } catch (RejectedExecutionException exception) {
+                // route manager is closed, so updates stay in the overlay
+                synchronized (this.updateLock) {
+                    this.isCompactionScheduled = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Apply single route update
+     *
+     * @param routeUpdate route update
+     */
+    public void update(RouteUpdate routeUpdate) {
+        this.update(Collections.singletonList(routeUpdate));
+    }
+
+    /**
+     * Merge all the updates into the base route data.
+     *
+     * Updates that are applied during the compaction are kept in the overlay of the new store.
+     * Nothing is done if there are no updates or another compaction is running.
+     */
+    public void compact() {
+        OverlayRouteStore sourceRouteStore;
+        synchronized (this.updateLock) {
+            this.isCompactionScheduled = false;
+            sourceRouteStore = this.routeStore;
+            if (
+                this.compactionJournal != null
+                || sourceRouteStore.getOverlayRouteCount() + sourceRouteStore.getMaskedRouteCount() == 0
+            ) {
+                return;
+            }
+            this.compactionJournal = new ArrayList<>();
+        }
+
+        long startTime = System.nanoTime();
+        OverlayRouteStore compactedRouteStore;
+        try {
+            compactedRouteStore = OverlayRouteStore.of(sourceRouteStore.compact());
+        } catch (RuntimeException exception) {
+            synchronized (this.updateLock) {
+                this.compactionJournal = null;
+            }
+            LOGGER.error("Route data cannot be compacted.", exception);
+            return;
+        }
+
+        synchronized (this.updateLock) {
+            this.routeStore = this.compactionJournal.isEmpty()
+                ? compactedRouteStore
+                : compactedRouteStore.apply(this.compactionJournal);
+            this.compactionJournal = null;
+        }
+        LOGGER.info(
+            "Route data is compacted in {} ms.",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+        );
+    }
+
+    /**
+     * Stop the compaction thread once the running compaction (if any) is completed
+     */
+    @Override
+    public void close() {
+        this.compactionExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,72 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BitmapRouteManagerTest {
+
+    private int[] routeData;
+
+    @Before
+    public void setUp() {
+        this.routeData = new int[] {
+            // number of routes
+            3,
+            // route ID followed by the number of stops and sorted stop IDs
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            2, 6, 5, 12, 34, 55, 76, 78,
+            7, 3, 1, 90, 91
+        };
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableCorrectlyIdentifiesDirectRoute() {
+        BitmapRouteManager bitmapRouteManager = new BitmapRouteManager(this.routeData);
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(2, 43));
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(13, 3));
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(5, 55));
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(78, 76));
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(88, 76));
+        assertTrue(bitmapRouteManager.isDirectRouteAvailable(1, 91));
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(2, 12));
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(3, 55));
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(1, 2));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseForUnknownStops() {
+        BitmapRouteManager bitmapRouteManager = new BitmapRouteManager(this.routeData);
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(-1, 2));
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(2, 1000));
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseIfRouteDataIsEmpty() {
+        BitmapRouteManager bitmapRouteManager = new BitmapRouteManager(new int[0]);
+        assertFalse(bitmapRouteManager.isDirectRouteAvailable(100, 200));
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsIdsOfAllMatchingRoutes() {
+        BitmapRouteManager bitmapRouteManager = new BitmapRouteManager(this.routeData);
+        assertArrayEquals(new int[] {1, 2}, bitmapRouteManager.findDirectRoutes(5, 76));
+        assertArrayEquals(new int[] {1, 2}, bitmapRouteManager.findDirectRoutes(76, 34, 10));
+        assertArrayEquals(new int[] {1}, bitmapRouteManager.findDirectRoutes(76, 5, 1));
+        assertArrayEquals(new int[] {1}, bitmapRouteManager.findDirectRoutes(2, 43));
+        assertArrayEquals(new int[0], bitmapRouteManager.findDirectRoutes(5, 76, 0));
+        assertArrayEquals(new int[0], bitmapRouteManager.findDirectRoutes(2, 12));
+        assertArrayEquals(new int[0], bitmapRouteManager.findDirectRoutes(-1, 2));
+        assertArrayEquals(new int[] {7}, bitmapRouteManager.findDirectRoutes(91, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDirectRoutesThrowsExceptionIfLimitIsNegative() {
+        new BitmapRouteManager(this.routeData).findDirectRoutes(5, 76, -1);
+    }
+}
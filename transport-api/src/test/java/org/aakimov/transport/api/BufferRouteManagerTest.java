@@ -0,0 +1,101 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.IntBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BufferRouteManagerTest {
+
+    private IntBuffer[] segments;
+
+    @Before
+    public void setUp() {
+        this.segments = new IntBuffer[] {
+            // route ID followed by the number of stops and sorted stop IDs
+            IntBuffer.wrap(new int[] {
+                1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+                2, 6, 5, 12, 34, 55, 76, 78
+            }),
+            IntBuffer.wrap(new int[] {
+                7, 3, 1, 90, 91
+            })
+        };
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableCorrectlyIdentifiesDirectRoute() {
+        BufferRouteManager bufferRouteManager = new BufferRouteManager(this.segments);
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(2, 43));
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(13, 3));
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(5, 55));
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(78, 76));
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(88, 76));
+        assertTrue(bufferRouteManager.isDirectRouteAvailable(1, 91));
+        assertFalse(bufferRouteManager.isDirectRouteAvailable(2, 12));
+        assertFalse(bufferRouteManager.isDirectRouteAvailable(3, 55));
+        assertFalse(bufferRouteManager.isDirectRouteAvailable(1, 2));
+        assertFalse(bufferRouteManager.isDirectRouteAvailable(-1, 2));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseIfRouteDataIsEmpty() {
+        BufferRouteManager bufferRouteManager = new BufferRouteManager();
+        assertFalse(bufferRouteManager.isDirectRouteAvailable(100, 200));
+    }
+
+    @Test
+    public void testBinarySearchFollowsArraysBinarySearchContract() {
+        IntBuffer buffer = IntBuffer.wrap(new int[] {100, 1, 3, 5, 7, 9});
+        assertEquals(1, BufferRouteManager.binarySearch(buffer, 1, 6, 1));
+        assertEquals(5, BufferRouteManager.binarySearch(buffer, 1, 6, 9));
+        assertEquals(-4, BufferRouteManager.binarySearch(buffer, 1, 6, 4));
+        assertEquals(-2, BufferRouteManager.binarySearch(buffer, 1, 6, 0));
+        assertEquals(-1, BufferRouteManager.binarySearch(buffer, 0, 0, 100));
+    }
+
+    @Test
+    public void testAreDirectRoutesAvailableReturnsSameResultsAsSingleQueries() {
+        BufferRouteManager bufferRouteManager = new BufferRouteManager(this.segments);
+        int[] departureStopIds = {2, 13, 5, 78, 88, 1, 2, 3, 1, -1, 5, 34, 34};
+        int[] arrivalStopIds = {43, 3, 55, 76, 76, 91, 12, 55, 2, 2, 5, 34, 1000};
+        boolean[] results = bufferRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+        assertEquals(departureStopIds.length, results.length);
+        for (int pairIndex = 0; pairIndex < departureStopIds.length; pairIndex++) {
+            assertEquals(
+                bufferRouteManager.isDirectRouteAvailable(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                results[pairIndex]
+            );
+        }
+        assertEquals(0, bufferRouteManager.areDirectRoutesAvailable(new int[0], new int[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAreDirectRoutesAvailableThrowsExceptionIfNumberOfStopsIsDifferent() {
+        new BufferRouteManager(this.segments).areDirectRoutesAvailable(new int[] {1, 2}, new int[] {3});
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsIdsOfAllMatchingRoutes() {
+        BufferRouteManager bufferRouteManager = new BufferRouteManager(this.segments);
+        assertArrayEquals(new int[] {1, 2}, bufferRouteManager.findDirectRoutes(5, 76));
+        assertArrayEquals(new int[] {1, 2}, bufferRouteManager.findDirectRoutes(76, 34, 10));
+        assertArrayEquals(new int[] {1}, bufferRouteManager.findDirectRoutes(76, 5, 1));
+        assertArrayEquals(new int[] {1}, bufferRouteManager.findDirectRoutes(2, 43));
+        assertArrayEquals(new int[0], bufferRouteManager.findDirectRoutes(5, 76, 0));
+        assertArrayEquals(new int[0], bufferRouteManager.findDirectRoutes(2, 12));
+        assertArrayEquals(new int[0], bufferRouteManager.findDirectRoutes(-1, 2));
+        assertArrayEquals(new int[] {7}, bufferRouteManager.findDirectRoutes(91, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDirectRoutesThrowsExceptionIfLimitIsNegative() {
+        new BufferRouteManager(this.segments).findDirectRoutes(5, 76, -1);
+    }
+}
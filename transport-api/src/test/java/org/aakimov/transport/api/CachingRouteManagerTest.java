@@ -0,0 +1,152 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CachingRouteManagerTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        2,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 3, 2, 3, 5,
+        2, 2, 5, 7
+    };
+
+    private static final int[] NEW_ROUTE_DATA = {
+        1,
+        3, 2, 3, 7
+    };
+
+    @Test
+    public void testRepeatedRequestsAreServedFromCache() {
+        CountingRouteManager countingRouteManager = new CountingRouteManager(new MemoryRouteManager(ROUTE_DATA));
+        CachingRouteManager cachingRouteManager = new CachingRouteManager(countingRouteManager, 100);
+
+        for (int requestIndex = 0; requestIndex < 3; requestIndex++) {
+            assertTrue(cachingRouteManager.isDirectRouteAvailable(2, 5));
+            assertFalse(cachingRouteManager.isDirectRouteAvailable(3, 7));
+        }
+        assertEquals(2, countingRouteManager.getRequestCount());
+        assertEquals(4, cachingRouteManager.getHitCount());
+        assertEquals(2, cachingRouteManager.getMissCount());
+        assertEquals(0, cachingRouteManager.getEvictionCount());
+        assertEquals(128, cachingRouteManager.getCapacity());
+        assertArrayEquals(new int[] {1, 2}, cachingRouteManager.findDirectRoutes(5, 5));
+    }
+
+    @Test
+    public void testBatchRequestsUseCachedResultsAndDelegateMisses() {
+        CountingRouteManager countingRouteManager = new CountingRouteManager(new MemoryRouteManager(ROUTE_DATA));
+        CachingRouteManager cachingRouteManager = new CachingRouteManager(countingRouteManager, 100);
+        assertTrue(cachingRouteManager.isDirectRouteAvailable(5, 7));
+
+        assertArrayEquals(
+            new boolean[] {true, false, true},
+            cachingRouteManager.areDirectRoutesAvailable(new int[] {5, 3, 3}, new int[] {7, 7, 2})
+        );
+        assertEquals(3, countingRouteManager.getRequestCount());
+        assertArrayEquals(
+            new boolean[] {true, false, true},
+            cachingRouteManager.areDirectRoutesAvailable(new int[] {5, 3, 3}, new int[] {7, 7, 2})
+        );
+        assertEquals(3, countingRouteManager.getRequestCount());
+        assertEquals(4, cachingRouteManager.getHitCount());
+    }
+
+    @Test
+    public void testCacheSizeIsBoundedAndResultsStayCorrect() {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(ROUTE_DATA);
+        CachingRouteManager cachingRouteManager = new CachingRouteManager(memoryRouteManager, 16);
+        Random random = new Random(13);
+        for (int requestIndex = 0; requestIndex < 5000; requestIndex++) {
+            int departureStopId = random.nextInt(10);
+            int arrivalStopId = random.nextInt(10);
+            assertEquals(
+                memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                cachingRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+            );
+        }
+        assertEquals(16, cachingRouteManager.getCapacity());
+        assertTrue(cachingRouteManager.getEvictionCount() > 0);
+        assertTrue(cachingRouteManager.getHitCount() > 0);
+        assertEquals(5000, cachingRouteManager.getHitCount() + cachingRouteManager.getMissCount());
+    }
+
+    @Test
+    public void testCacheIsInvalidatedByUpdates() {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(ROUTE_DATA);
+        CachingRouteManager cachingRouteManager = new CachingRouteManager(updatableRouteManager, 100);
+        assertFalse(cachingRouteManager.isDirectRouteAvailable(3, 7));
+        assertTrue(cachingRouteManager.isDirectRouteAvailable(2, 5));
+
+        updatableRouteManager.update(RouteUpdate.put(3, new int[] {3, 7}));
+        assertTrue(cachingRouteManager.isDirectRouteAvailable(3, 7));
+        updatableRouteManager.update(RouteUpdate.remove(1));
+        assertFalse(cachingRouteManager.isDirectRouteAvailable(2, 5));
+        assertEquals(0, cachingRouteManager.getHitCount());
+    }
+
+    @Test
+    public void testCacheIsInvalidatedByReload() throws Exception {
+        AtomicInteger loadCount = new AtomicInteger();
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                new MemoryRouteManager(ROUTE_DATA),
+                () -> {
+                    loadCount.incrementAndGet();
+                    return new MemoryRouteManager(NEW_ROUTE_DATA);
+                }
+            )
+        ) {
+            CachingRouteManager cachingRouteManager = new CachingRouteManager(reloadableRouteManager, 100);
+            assertTrue(cachingRouteManager.isDirectRouteAvailable(2, 5));
+            assertFalse(cachingRouteManager.isDirectRouteAvailable(3, 7));
+
+            assertTrue(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            assertEquals(1, loadCount.get());
+            assertFalse(cachingRouteManager.isDirectRouteAvailable(2, 5));
+            assertTrue(cachingRouteManager.isDirectRouteAvailable(3, 7));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testConstructorRejectsNonPositiveSize() {
+        new CachingRouteManager(new MemoryRouteManager(ROUTE_DATA), 0);
+    }
+
+    private static class CountingRouteManager implements RouteManager {
+
+        private final RouteManager routeManager;
+
+        private final AtomicInteger requestCount = new AtomicInteger();
+
+        CountingRouteManager(RouteManager routeManager) {
+            this.routeManager = routeManager;
+        }
+
+        @Override
+        public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+            this.requestCount.incrementAndGet();
+            return this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+        }
+
+        @Override
+        public int[] findDirectRoutes(int departureStopId, int arrivalStopId, int limit) {
+            return this.routeManager.findDirectRoutes(departureStopId, arrivalStopId, limit);
+        }
+
+        int getRequestCount() {
+            return this.requestCount.get();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DirectionalRouteManagerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private int[] routeData;
+
+    @Before
+    public void setUp() {
+        this.routeData = new int[] {
+            // number of routes
+            3,
+            // route 1: 2 13 45 65 76 88 34 3 5 73 9 71 43
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            (7 << 16) | 0, (10 << 16) | 8, (6 << 16) | 1, (2 << 16) | 12, (11 << 16) | 3, (4 << 16) | 9, 5,
+            // route 2: 12 55 34 178 76
+            2, 5, 12, 34, 55, 76, 178,
+            (2 << 16) | 0, (4 << 16) | 1, 3,
+            // route 3 (loop): 20 21 22 20
+            3, 4, 20, 20, 21, 22,
+            (3 << 16) | 0, (2 << 16) | 1
+        };
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableTakesDirectionIntoAccount() {
+        DirectionalRouteManager directionalRouteManager = new DirectionalRouteManager(this.routeData);
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(2, 43));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(43, 2));
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(34, 3));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(3, 34));
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(55, 76));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(76, 55));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(2, 12));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(2, 2));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(100, 2));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableSupportsLoopRoutes() {
+        DirectionalRouteManager directionalRouteManager = new DirectionalRouteManager(this.routeData);
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(20, 22));
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(22, 20));
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(20, 20));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(22, 21));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseIfRouteDataIsEmpty() {
+        DirectionalRouteManager directionalRouteManager = new DirectionalRouteManager(new int[0]);
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(100, 200));
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsRoutesInDirectionOfTravel() {
+        DirectionalRouteManager directionalRouteManager = new DirectionalRouteManager(this.routeData);
+        assertArrayEquals(new int[] {2}, directionalRouteManager.findDirectRoutes(34, 76));
+        assertArrayEquals(new int[] {1}, directionalRouteManager.findDirectRoutes(76, 34));
+        assertArrayEquals(new int[0], directionalRouteManager.findDirectRoutes(76, 34, 0));
+        assertArrayEquals(new int[0], directionalRouteManager.findDirectRoutes(43, 2));
+        assertArrayEquals(new int[] {3}, directionalRouteManager.findDirectRoutes(21, 20));
+        assertArrayEquals(new int[0], new DirectionalRouteManager(new int[0]).findDirectRoutes(1, 2));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableSupportsRoutesWithUnpackedPositions() throws IOException {
+        int stopCount = RouteDataLayout.MAX_PACKED_STOP_COUNT + 10;
+        StringBuilder routeDataBuilder = new StringBuilder("1\n7");
+        for (int stopId = stopCount; stopId > 0; stopId--) {
+            routeDataBuilder.append(' ').append(stopId);
+        }
+        routeDataBuilder.append('\n');
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.UTF_8));
+
+        DirectionalRouteManager directionalRouteManager = new DirectionalRouteManager(
+            new MappedRouteDataReader().readOrdered(routeDataPath)
+        );
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(stopCount, 1));
+        assertTrue(directionalRouteManager.isDirectRouteAvailable(60000, 3));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(1, stopCount));
+        assertFalse(directionalRouteManager.isDirectRouteAvailable(3, 60000));
+    }
+}
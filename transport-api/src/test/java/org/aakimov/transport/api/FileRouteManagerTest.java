@@ -2,6 +2,7 @@ package org.aakimov.transport.api;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -20,4 +21,23 @@ public class FileRouteManagerTest {
         assertFalse(fileRouteManager.isDirectRouteAvailable(3, 55));
         assertFalse(fileRouteManager.isDirectRouteAvailable(2, 12));
     }
+
+    @Test
+    public void testFindDirectRoutesReturnsRouteIdsInFileOrder() {
+        FileRouteManager fileRouteManager = new FileRouteManager(
+            "src/test/resources/org/aakimov/transport/api/route_data_file"
+        );
+
+        assertArrayEquals(new int[] {1, 2}, fileRouteManager.findDirectRoutes(34, 76));
+        assertArrayEquals(new int[] {1}, fileRouteManager.findDirectRoutes(34, 76, 1));
+        assertArrayEquals(new int[0], fileRouteManager.findDirectRoutes(34, 76, 0));
+        assertArrayEquals(new int[] {2}, fileRouteManager.findDirectRoutes(55, 178));
+        assertArrayEquals(new int[0], fileRouteManager.findDirectRoutes(3, 55));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDirectRoutesRejectsNegativeLimit() {
+        new FileRouteManager("src/test/resources/org/aakimov/transport/api/route_data_file")
+            .findDirectRoutes(34, 76, -1);
+    }
 }
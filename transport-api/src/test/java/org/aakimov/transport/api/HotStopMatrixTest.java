@@ -0,0 +1,174 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HotStopMatrixTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        3,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+        2, 6, 5, 12, 34, 55, 76, 78,
+        3, 4, 5, 12, 90, 90
+    };
+
+    @Test
+    public void testSelectsStopsServedByMostRoutes() {
+        HotStopMatrix hotStopMatrix = HotStopMatrix.build(ROUTE_DATA, 4, null, 1);
+        assertEquals(4, hotStopMatrix.getHotStopCount());
+        // 5 is served by 3 routes, 12, 34 and 76 - by 2 routes, the rest (including repeated 90) - by 1 route
+        assertTrue(hotStopMatrix.getHotStopIndex(5) >= 0);
+        assertTrue(hotStopMatrix.getHotStopIndex(12) >= 0);
+        assertTrue(hotStopMatrix.getHotStopIndex(34) >= 0);
+        assertTrue(hotStopMatrix.getHotStopIndex(76) >= 0);
+        assertTrue(hotStopMatrix.getHotStopIndex(2) < 0);
+
+        assertTrue(isConnected(hotStopMatrix, 5, 12));
+        assertTrue(isConnected(hotStopMatrix, 34, 76));
+        assertTrue(isConnected(hotStopMatrix, 12, 76));
+        assertFalse(isConnected(hotStopMatrix, 5, 2));
+        assertEquals(4L * Long.BYTES + 4L * Integer.BYTES, hotStopMatrix.getSize());
+
+        // stops with the same number of routes are selected in order of IDs
+        HotStopMatrix smallHotStopMatrix = HotStopMatrix.build(ROUTE_DATA, 2, null, 1);
+        assertEquals(2, smallHotStopMatrix.getHotStopCount());
+        assertTrue(smallHotStopMatrix.getHotStopIndex(5) >= 0);
+        assertTrue(smallHotStopMatrix.getHotStopIndex(12) >= 0);
+
+        HotStopMatrix allHotStopMatrix = HotStopMatrix.build(ROUTE_DATA, 1000, null, 1);
+        assertEquals(17, allHotStopMatrix.getHotStopCount());
+    }
+
+    @Test
+    public void testUsesGivenStops() {
+        HotStopMatrix hotStopMatrix = HotStopMatrix.build(ROUTE_DATA, 3, new int[] {90, 2, 90, 1000, 5}, 1);
+        assertEquals(3, hotStopMatrix.getHotStopCount());
+        assertTrue(isConnected(hotStopMatrix, 2, 2));
+        assertTrue(isConnected(hotStopMatrix, 90, 90));
+        assertFalse(isConnected(hotStopMatrix, 2, 90));
+        assertFalse(isConnected(hotStopMatrix, 1000, 1000));
+        assertTrue(hotStopMatrix.getHotStopIndex(5) < 0);
+    }
+
+    @Test
+    public void testMemoryRouteManagerReturnsSameResultsWithMatrix() {
+        Random random = new Random(18);
+        int routeCount = 200;
+        int[] routeData = new int[1 + routeCount * 42];
+        routeData[0] = routeCount;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int[] stops = random.ints(40, 0, 500).sorted().toArray();
+            routeData[1 + routeIndex * 42] = routeIndex;
+            routeData[2 + routeIndex * 42] = stops.length;
+            System.arraycopy(stops, 0, routeData, 3 + routeIndex * 42, stops.length);
+        }
+
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(routeData);
+        MemoryRouteManager hotStopRouteManager = new MemoryRouteManager(routeData, StopSearch.BINARY, 0, 100, null);
+        for (int departureStopId = -1; departureStopId < 501; departureStopId++) {
+            for (int arrivalStopId = -1; arrivalStopId < 501; arrivalStopId++) {
+                assertEquals(
+                    memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                    hotStopRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                );
+            }
+            int arrivalStopId = random.nextInt(500);
+            assertArrayEquals(
+                memoryRouteManager.findDirectRoutes(departureStopId, arrivalStopId),
+                hotStopRouteManager.findDirectRoutes(departureStopId, arrivalStopId)
+            );
+        }
+    }
+
+    @Test
+    public void testBatchReturnsSameResultsWithMatrix() {
+        Random random = new Random(18);
+        int routeCount = 200;
+        int[] routeData = new int[1 + routeCount * 42];
+        routeData[0] = routeCount;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int[] stops = random.ints(40, 0, 500).sorted().toArray();
+            routeData[1 + routeIndex * 42] = routeIndex;
+            routeData[2 + routeIndex * 42] = stops.length;
+            System.arraycopy(stops, 0, routeData, 3 + routeIndex * 42, stops.length);
+        }
+
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(routeData);
+        MemoryRouteManager hotStopRouteManager = new MemoryRouteManager(routeData, StopSearch.BINARY, 8, 100, null);
+        for (int batchSize : new int[] {1, 10, 1000}) {
+            int[] departureStopIds = random.ints(batchSize, -1, 501).toArray();
+            int[] arrivalStopIds = random.ints(batchSize, -1, 501).toArray();
+            boolean[] results = hotStopRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+            assertArrayEquals(
+                memoryRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds),
+                results
+            );
+            for (int pairIndex = 0; pairIndex < batchSize; pairIndex++) {
+                assertEquals(
+                    memoryRouteManager.isDirectRouteAvailable(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                    results[pairIndex]
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testParallelBuildReturnsSameMatrix() {
+        Random random = new Random(18);
+        int routeCount = 300;
+        int[] routeData = new int[1 + routeCount * 32];
+        routeData[0] = routeCount;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int[] stops = random.ints(30, 1000, 3000).sorted().toArray();
+            routeData[1 + routeIndex * 32] = routeIndex;
+            routeData[2 + routeIndex * 32] = stops.length;
+            System.arraycopy(stops, 0, routeData, 3 + routeIndex * 32, stops.length);
+        }
+
+        HotStopMatrix serialMatrix = HotStopMatrix.build(routeData, 130, null, 1);
+        HotStopMatrix parallelMatrix = HotStopMatrix.build(routeData, 130, null, 4);
+        assertEquals(130, parallelMatrix.getHotStopCount());
+        for (int departureIndex = 0; departureIndex < 130; departureIndex++) {
+            for (int arrivalIndex = 0; arrivalIndex < 130; arrivalIndex++) {
+                assertEquals(
+                    serialMatrix.isConnected(departureIndex, arrivalIndex),
+                    parallelMatrix.isConnected(departureIndex, arrivalIndex)
+                );
+                assertEquals(
+                    parallelMatrix.isConnected(departureIndex, arrivalIndex),
+                    parallelMatrix.isConnected(arrivalIndex, departureIndex)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRouteDataHasNoHotStops() {
+        assertEquals(0, HotStopMatrix.build(new int[0], 10, null, 2).getHotStopCount());
+        assertEquals(0, HotStopMatrix.build(new int[] {0}, 10, null, 2).getHotStopCount());
+        assertEquals(0, HotStopMatrix.build(new int[] {1, 7, 0}, 10, null, 2).getHotStopCount());
+        assertEquals(0, HotStopMatrix.build(ROUTE_DATA, 1, new int[0], 1).getHotStopCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTooManyHotStops() {
+        HotStopMatrix.build(ROUTE_DATA, HotStopMatrix.MAX_HOT_STOP_COUNT + 1, null, 1);
+    }
+
+    private static boolean isConnected(HotStopMatrix hotStopMatrix, int departureStopId, int arrivalStopId) {
+        int departureHotStopIndex = hotStopMatrix.getHotStopIndex(departureStopId);
+        int arrivalHotStopIndex = hotStopMatrix.getHotStopIndex(arrivalStopId);
+        return departureHotStopIndex >= 0
+            && arrivalHotStopIndex >= 0
+            && hotStopMatrix.isConnected(departureHotStopIndex, arrivalHotStopIndex);
+    }
+}
@@ -0,0 +1,106 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IndexedRouteManagerTest {
+
+    private int[] routeData;
+
+    @Before
+    public void setUp() {
+        this.routeData = new int[] {
+            // number of routes
+            3,
+            // route ID followed by the number of stops and sorted stop IDs
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            2, 6, 5, 12, 34, 55, 76, 78,
+            7, 3, 1, 90, 91
+        };
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableCorrectlyIdentifiesDirectRoute() {
+        IndexedRouteManager indexedRouteManager = new IndexedRouteManager(this.routeData);
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(2, 43));
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(13, 3));
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(5, 55));
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(78, 76));
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(88, 76));
+        assertTrue(indexedRouteManager.isDirectRouteAvailable(1, 91));
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(2, 12));
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(3, 55));
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(1, 2));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseForUnknownStops() {
+        IndexedRouteManager indexedRouteManager = new IndexedRouteManager(this.routeData);
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(-1, 2));
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(2, 1000));
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(Integer.MIN_VALUE, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsFalseIfRouteDataIsEmpty() {
+        IndexedRouteManager indexedRouteManager = new IndexedRouteManager(new int[0]);
+        assertFalse(indexedRouteManager.isDirectRouteAvailable(100, 200));
+    }
+
+    @Test
+    public void testAdvanceFindsFirstElementNotLessThanValue() {
+        int[] values = {1, 3, 5, 7, 9, 11, 13, 15, 17, 19, 21};
+        assertEquals(0, IndexedRouteManager.advance(values, 0, values.length, 0));
+        assertEquals(0, IndexedRouteManager.advance(values, 0, values.length, 1));
+        assertEquals(1, IndexedRouteManager.advance(values, 0, values.length, 2));
+        assertEquals(8, IndexedRouteManager.advance(values, 0, values.length, 17));
+        assertEquals(10, IndexedRouteManager.advance(values, 3, values.length, 20));
+        assertEquals(values.length, IndexedRouteManager.advance(values, 0, values.length, 22));
+        assertEquals(5, IndexedRouteManager.advance(values, 2, 5, 12));
+    }
+
+    @Test
+    public void testAreDirectRoutesAvailableReturnsSameResultsAsSingleQueries() {
+        IndexedRouteManager indexedRouteManager = new IndexedRouteManager(this.routeData);
+        int[] departureStopIds = {2, 13, 5, 78, 88, 1, 2, 3, 1, -1, 5, 34, 34};
+        int[] arrivalStopIds = {43, 3, 55, 76, 76, 91, 12, 55, 2, 2, 5, 34, 1000};
+        boolean[] results = indexedRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+        assertEquals(departureStopIds.length, results.length);
+        for (int pairIndex = 0; pairIndex < departureStopIds.length; pairIndex++) {
+            assertEquals(
+                indexedRouteManager.isDirectRouteAvailable(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                results[pairIndex]
+            );
+        }
+        assertEquals(0, indexedRouteManager.areDirectRoutesAvailable(new int[0], new int[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAreDirectRoutesAvailableThrowsExceptionIfNumberOfStopsIsDifferent() {
+        new IndexedRouteManager(this.routeData).areDirectRoutesAvailable(new int[] {1, 2}, new int[] {3});
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsIdsOfAllMatchingRoutes() {
+        IndexedRouteManager indexedRouteManager = new IndexedRouteManager(this.routeData);
+        assertArrayEquals(new int[] {1, 2}, indexedRouteManager.findDirectRoutes(5, 76));
+        assertArrayEquals(new int[] {1, 2}, indexedRouteManager.findDirectRoutes(76, 34, 10));
+        assertArrayEquals(new int[] {1}, indexedRouteManager.findDirectRoutes(76, 5, 1));
+        assertArrayEquals(new int[] {1}, indexedRouteManager.findDirectRoutes(2, 43));
+        assertArrayEquals(new int[0], indexedRouteManager.findDirectRoutes(5, 76, 0));
+        assertArrayEquals(new int[0], indexedRouteManager.findDirectRoutes(2, 12));
+        assertArrayEquals(new int[0], indexedRouteManager.findDirectRoutes(-1, 2));
+        assertArrayEquals(new int[] {7}, indexedRouteManager.findDirectRoutes(91, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDirectRoutesThrowsExceptionIfLimitIsNegative() {
+        new IndexedRouteManager(this.routeData).findDirectRoutes(5, 76, -1);
+    }
+}
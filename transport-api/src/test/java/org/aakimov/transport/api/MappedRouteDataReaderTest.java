@@ -2,15 +2,62 @@ package org.aakimov.transport.api;
 
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class MappedRouteDataReaderTest {
 
-    private RouteDataReader routeDataLoader;
+    private static final String[] ROUTE_DATA_FILES = {
+        "route_data_file",
+        "empty_route_data_file",
+        "route_data_file_with_corrupted_first_line",
+        "route_data_file_with_corrupted_route_data",
+        "route_data_file_with_wrong_number_of_routes",
+        "route_data_file_with_wrong_number_of_stops"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    static final String LENIENT_ROUTE_DATA = "7\n1 2 3\n2 5\n3 x 4\n4 7 7 8\n\n5 9 10\n";
+
+    static final int[] LENIENT_ROUTE_DATA_CONTENTS = {3, 1, 2, 2, 3, 4, 2, 7, 8, 5, 2, 9, 10};
+
+    static final String DUPLICATE_STOP_ROUTE_DATA = "3\n1 5 3 5 1\n2 6 7 6 8 6\n3 2 9\n";
+
+    static final String DUPLICATE_ONLY_ROUTE_DATA = "3\n1 2 3\n2 7 7\n3 4 4 4\n";
+
+    static final String DUPLICATE_ROUTE_DATA = "4\n1 2 3\n2 4 5\n1 3 6\n1 7 2\n";
+
+    static final int[] DUPLICATE_ROUTE_DATA_MERGED_CONTENTS = {2, 2, 2, 4, 5, 1, 4, 2, 3, 6, 7};
+
+    static final int[] DUPLICATE_ROUTE_DATA_MERGED_ORDERED_CONTENTS = {
+        2,
+        2, 2, 4, 5, (1 << 16) | 0,
+        // stops of the merged route follow each other in file order: 2 3, 3 6, 7 2
+        1, 6, 2, 2, 3, 3, 6, 7, (5 << 16) | 0, (2 << 16) | 1, (4 << 16) | 3
+    };
+
+    private MappedRouteDataReader routeDataLoader;
 
     @Before
     public void setUp() {
@@ -89,4 +136,537 @@ public class MappedRouteDataReaderTest {
             )
         );
     }
+
+    @Test
+    public void testParallelReadReturnsSameDataAsSingleThreadedRead() {
+        for (String routeDataFile : ROUTE_DATA_FILES) {
+            Path routeDataPath = Paths.get("src/test/resources/org/aakimov/transport/api/" + routeDataFile);
+            int[] expectedRouteData = this.routeDataLoader.read(routeDataPath);
+            for (int minChunkSize = 1; minChunkSize < 64; minChunkSize *= 2) {
+                assertArrayEquals(
+                    "Parallel read of '" + routeDataFile + "' should return the same data.",
+                    expectedRouteData,
+                    new MappedRouteDataReader(3, minChunkSize, 1 << 20).read(routeDataPath)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testParallelReadReturnsSameDataForLargeRouteDataFile() throws IOException {
+        Path routeDataPath = this.createRouteDataFile(500, 500, "");
+        int[] expectedRouteData = this.routeDataLoader.read(routeDataPath);
+        assertEquals(500, expectedRouteData[0]);
+        assertArrayEquals(
+            "Parallel read should return the same data.",
+            expectedRouteData,
+            new MappedRouteDataReader(4, 1024, 1 << 20).read(routeDataPath)
+        );
+    }
+
+    @Test
+    public void testParallelReadIgnoresRouteLinesAfterDeclaredNumberOfRoutes() throws IOException {
+        Path routeDataPath = this.createRouteDataFile(200, 300, "some corrupted data\n");
+        int[] expectedRouteData = this.routeDataLoader.read(routeDataPath);
+        assertEquals(200, expectedRouteData[0]);
+        assertArrayEquals(
+            "Parallel read should ignore route lines after the declared number of routes.",
+            expectedRouteData,
+            new MappedRouteDataReader(4, 512, 1 << 20).read(routeDataPath)
+        );
+    }
+
+    @Test
+    public void testWindowedReadReturnsSameDataAsWholeFileRead() {
+        for (String routeDataFile : ROUTE_DATA_FILES) {
+            Path routeDataPath = Paths.get("src/test/resources/org/aakimov/transport/api/" + routeDataFile);
+            int[] expectedRouteData = this.routeDataLoader.read(routeDataPath);
+            for (int windowSize = 1; windowSize < 64; windowSize *= 2) {
+                assertArrayEquals(
+                    "Windowed read of '" + routeDataFile + "' should return the same data.",
+                    expectedRouteData,
+                    new MappedRouteDataReader(1, 1, windowSize).read(routeDataPath)
+                );
+                assertArrayEquals(
+                    "Windowed parallel read of '" + routeDataFile + "' should return the same data.",
+                    expectedRouteData,
+                    new MappedRouteDataReader(3, 8, windowSize).read(routeDataPath)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testReadSupportsRoutesOfAnyLength() throws IOException {
+        StringBuilder routeDataBuilder = new StringBuilder("2\n7");
+        for (int stopId = 5000; stopId > 0; stopId--) {
+            routeDataBuilder.append(' ').append(stopId);
+        }
+        routeDataBuilder.append("\n8 1 2\n");
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.UTF_8));
+
+        int[] routeData = new MappedRouteDataReader(2, 16, 128).read(routeDataPath);
+        assertEquals(1 + 5002 + 4, routeData.length);
+        assertEquals(2, routeData[0]);
+        assertEquals(7, routeData[1]);
+        assertEquals(5000, routeData[2]);
+        assertEquals(1, routeData[3]);
+        assertEquals(5000, routeData[5002]);
+        assertArrayEquals(new int[] {8, 2, 1, 2}, Arrays.copyOfRange(routeData, 5003, 5007));
+        assertArrayEquals(routeData, this.routeDataLoader.read(routeDataPath));
+    }
+
+    @Test
+    public void testWindowedParallelReadReturnsSameDataForLargeRouteDataFile() throws IOException {
+        Path routeDataPath = this.createRouteDataFile(300, 300, "");
+        assertArrayEquals(
+            "Windowed parallel read should return the same data.",
+            this.routeDataLoader.read(routeDataPath),
+            new MappedRouteDataReader(4, 256, 100).read(routeDataPath)
+        );
+    }
+
+    @Test
+    public void testOffHeapReadReturnsSameRouteBlocksAsHeapRead() throws IOException {
+        Path largeRouteDataPath = this.createRouteDataFile(400, 450, "some corrupted data\n");
+        List<Path> routeDataPaths = new ArrayList<>();
+        routeDataPaths.add(largeRouteDataPath);
+        for (String routeDataFile : ROUTE_DATA_FILES) {
+            routeDataPaths.add(Paths.get("src/test/resources/org/aakimov/transport/api/" + routeDataFile));
+        }
+
+        for (Path routeDataPath : routeDataPaths) {
+            int[] expectedRouteData = this.routeDataLoader.read(routeDataPath);
+            int[] expectedRouteBlocks = (expectedRouteData.length == 0)
+                ? expectedRouteData
+                : Arrays.copyOfRange(expectedRouteData, 1, expectedRouteData.length);
+            assertArrayEquals(
+                "Off-heap read of '" + routeDataPath + "' should return the same data.",
+                expectedRouteBlocks,
+                MappedRouteDataReaderTest.concatenate(this.routeDataLoader.readOffHeap(routeDataPath))
+            );
+            assertArrayEquals(
+                "Parallel off-heap read of '" + routeDataPath + "' should return the same data.",
+                expectedRouteBlocks,
+                MappedRouteDataReaderTest.concatenate(new MappedRouteDataReader(4, 64, 100).readOffHeap(routeDataPath))
+            );
+        }
+
+        IntBuffer[] segments = this.routeDataLoader.readOffHeap(largeRouteDataPath);
+        for (IntBuffer segment : segments) {
+            assertTrue("Off-heap segments should be direct.", segment.isDirect());
+        }
+    }
+
+    @Test
+    public void testOrderedReadKeepsPositionsOfSortedStops() {
+        int[] expectedRouteData = {
+            // number of routes
+            2,
+            // route ID followed by the number of stops, sorted stop IDs and their positions packed in pairs
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            (7 << 16) | 0, (10 << 16) | 8, (6 << 16) | 1, (2 << 16) | 12, (11 << 16) | 3, (4 << 16) | 9, 5,
+            2, 6, 5, 12, 34, 55, 76, 178,
+            (1 << 16) | 0, (2 << 16) | 3, (4 << 16) | 5
+        };
+        Path routeDataPath = Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file");
+        assertArrayEquals(
+            "Ordered route data contents should be valid.",
+            expectedRouteData,
+            this.routeDataLoader.readOrdered(routeDataPath)
+        );
+        assertArrayEquals(
+            "Parallel ordered read should return the same data.",
+            expectedRouteData,
+            new MappedRouteDataReader(3, 8, 16).readOrdered(routeDataPath)
+        );
+    }
+
+    @Test
+    public void testOrderedReadReturnsSameStopsAsSortedRead() throws IOException {
+        Path largeRouteDataPath = this.createRouteDataFile(400, 450, "some corrupted data\n");
+        List<Path> routeDataPaths = new ArrayList<>();
+        routeDataPaths.add(largeRouteDataPath);
+        for (String routeDataFile : ROUTE_DATA_FILES) {
+            routeDataPaths.add(Paths.get("src/test/resources/org/aakimov/transport/api/" + routeDataFile));
+        }
+
+        for (Path routeDataPath : routeDataPaths) {
+            int[] routeData = this.routeDataLoader.read(routeDataPath);
+            int[] orderedRouteData = this.routeDataLoader.readOrdered(routeDataPath);
+            assertArrayEquals(
+                "Parallel ordered read of '" + routeDataPath + "' should return the same data.",
+                orderedRouteData,
+                new MappedRouteDataReader(4, 64, 100).readOrdered(routeDataPath)
+            );
+            assertEquals(routeData.length == 0, orderedRouteData.length == 0);
+            if (routeData.length == 0) {
+                continue;
+            }
+
+            int routeDataIndex = 1;
+            int orderedRouteDataIndex = 1;
+            for (int routeIndex = 0; routeIndex < routeData[0]; routeIndex++) {
+                int stopCount = routeData[routeDataIndex + 1];
+                int orderedStopCount = orderedRouteData[orderedRouteDataIndex + 1];
+                assertEquals(routeData[routeDataIndex], orderedRouteData[orderedRouteDataIndex]);
+                // ordered route keeps the first and the last occurrence of every duplicate stop
+                int[] uniqueStops = Arrays.stream(
+                    Arrays.copyOfRange(
+                        orderedRouteData,
+                        orderedRouteDataIndex + 2,
+                        orderedRouteDataIndex + 2 + orderedStopCount
+                    )
+                ).distinct().toArray();
+                assertArrayEquals(
+                    Arrays.copyOfRange(routeData, routeDataIndex + 2, routeDataIndex + stopCount + 2),
+                    uniqueStops
+                );
+                assertTrue(orderedStopCount <= 2 * stopCount);
+                routeDataIndex += RouteDataLayout.SORTED.getBlockLength(stopCount);
+                orderedRouteDataIndex += RouteDataLayout.ORDERED.getBlockLength(orderedStopCount);
+            }
+            assertEquals(orderedRouteData.length, orderedRouteDataIndex);
+        }
+    }
+
+    @Test
+    public void testLenientReadSkipsBadLinesAndReportsThem() throws IOException {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, LENIENT_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(1, IngestionPolicy.SKIP_BAD_LINES);
+        assertNull(routeDataReader.getReport());
+        assertArrayEquals(LENIENT_ROUTE_DATA_CONTENTS, routeDataReader.read(routeDataPath));
+        MappedRouteDataReaderTest.assertLenientReport(routeDataReader.getReport());
+
+        assertArrayEquals(
+            "Windowed parallel lenient read should return the same data.",
+            LENIENT_ROUTE_DATA_CONTENTS,
+            new MappedRouteDataReader(4, 4, 3, IngestionPolicy.SKIP_BAD_LINES).read(routeDataPath)
+        );
+        assertArrayEquals(
+            "Corrupted route line should be skipped.",
+            new int[] {1, 2, 6, 5, 12, 34, 55, 76, 78},
+            new MappedRouteDataReader(1, IngestionPolicy.SKIP_BAD_LINES).read(
+                Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file_with_corrupted_route_data")
+            )
+        );
+    }
+
+    @Test
+    public void testStrictReadReportsLocationOfRejectingError() throws IOException {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, LENIENT_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(1, IngestionPolicy.STRICT);
+        assertEquals(0, routeDataReader.read(routeDataPath).length);
+        IngestionReport report = routeDataReader.getReport();
+        assertTrue(report.isRejected());
+        assertEquals(0, report.getRouteCount());
+        assertEquals(1, report.getErrors().size());
+        assertEquals(3, report.getErrors().get(0).getLineNumber());
+        assertEquals(8, report.getErrors().get(0).getByteOffset());
+        assertEquals(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS, report.getFailure());
+
+        try {
+            new MappedRouteDataReader(4, IngestionPolicy.FAIL_STARTUP).read(routeDataPath);
+            fail("Rejected route data should fail startup.");
+        } catch (IllegalStateException exception) {
+            assertTrue(exception.getCause() instanceof FileFormatException);
+        }
+    }
+
+    @Test
+    public void testParallelLenientReadReturnsSameDataAndReportAsSingleThreadedRead() throws IOException {
+        StringBuilder routeDataBuilder = new StringBuilder().append(3000).append('\n');
+        Random random = new Random(3000);
+        for (int routeId = 0; routeId < 3000; routeId++) {
+            if (routeId % 17 == 0) {
+                routeDataBuilder.append(routeId).append(" corrupted\n");
+                continue;
+            }
+            routeDataBuilder.append(routeId);
+            int stopCount = 1 + random.nextInt(20);
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                routeDataBuilder.append(' ').append(random.nextInt(1000));
+            }
+            routeDataBuilder.append('\n');
+        }
+        routeDataBuilder.append("more corrupted data\n");
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(1, IngestionPolicy.SKIP_BAD_LINES);
+        int[] expectedRouteData = routeDataReader.read(routeDataPath);
+        IngestionReport expectedReport = routeDataReader.getReport();
+        assertEquals(3000, expectedReport.getDeclaredRouteCount());
+        assertEquals(expectedReport.getRouteCount(), expectedRouteData[0]);
+        assertEquals(3000, expectedReport.getRouteCount() + expectedReport.getSkippedLineCount());
+        assertTrue(expectedReport.getShortRouteCount() > 0);
+        assertTrue(expectedReport.getDuplicateStopRouteCount() > 0);
+        assertEquals(IngestionReport.MAX_ERROR_COUNT, expectedReport.getErrors().size());
+        assertFalse(expectedReport.isRejected());
+
+        MappedRouteDataReader parallelRouteDataReader = new MappedRouteDataReader(
+            4,
+            512,
+            1 << 12,
+            IngestionPolicy.SKIP_BAD_LINES
+        );
+        assertArrayEquals(expectedRouteData, parallelRouteDataReader.read(routeDataPath));
+        assertEquals(expectedReport.toString(), parallelRouteDataReader.getReport().toString());
+        assertEquals(
+            expectedReport.getErrors().toString(),
+            parallelRouteDataReader.getReport().getErrors().toString()
+        );
+    }
+
+    @Test
+    public void testDuplicateStopsAreRemovedAndReleasedLengthIsReported() throws IOException {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, DUPLICATE_STOP_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader();
+        assertArrayEquals(
+            new int[] {3, 1, 3, 1, 3, 5, 2, 3, 6, 7, 8, 3, 2, 2, 9},
+            routeDataReader.read(routeDataPath)
+        );
+        assertEquals(2, routeDataReader.getReport().getDuplicateStopRouteCount());
+        assertEquals(3, routeDataReader.getReport().getReleasedLength());
+
+        // only the first and the last occurrences of a duplicate stop are kept
+        assertArrayEquals(
+            new int[] {
+                3,
+                1, 4, 1, 3, 5, 5, (1 << 16) | 3, (2 << 16) | 0,
+                2, 4, 6, 6, 7, 8, (4 << 16) | 0, (3 << 16) | 1,
+                3, 2, 2, 9, (1 << 16) | 0
+            },
+            routeDataReader.readOrdered(routeDataPath)
+        );
+        assertEquals(2, routeDataReader.getReport().getDuplicateStopRouteCount());
+        assertEquals(2, routeDataReader.getReport().getReleasedLength());
+    }
+
+    @Test
+    public void testRoutesOfSingleRepeatedStopAreShortRoutes() throws IOException {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, DUPLICATE_ONLY_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(1, IngestionPolicy.SKIP_BAD_LINES);
+        assertArrayEquals(new int[] {1, 1, 2, 2, 3}, routeDataReader.read(routeDataPath));
+        MappedRouteDataReaderTest.assertDuplicateOnlyReport(routeDataReader.getReport());
+        assertArrayEquals(new int[] {1, 1, 2, 2, 3, (1 << 16) | 0}, routeDataReader.readOrdered(routeDataPath));
+        MappedRouteDataReaderTest.assertDuplicateOnlyReport(routeDataReader.getReport());
+
+        MappedRouteDataReader strictRouteDataReader = new MappedRouteDataReader(1, IngestionPolicy.STRICT);
+        assertEquals(0, strictRouteDataReader.read(routeDataPath).length);
+        assertEquals(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS, strictRouteDataReader.getReport().getFailure());
+        assertEquals(3, strictRouteDataReader.getReport().getErrors().get(0).getLineNumber());
+        assertEquals(0, strictRouteDataReader.readOrdered(routeDataPath).length);
+        assertTrue(strictRouteDataReader.getReport().isRejected());
+    }
+
+    @Test
+    public void testDuplicateRouteIdsAreHandledAccordingToPolicy() throws IOException {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, DUPLICATE_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII));
+
+        for (int parallelism : new int[] {1, 4}) {
+            MappedRouteDataReader keepingRouteDataReader = new MappedRouteDataReader(
+                parallelism,
+                4,
+                3,
+                IngestionPolicy.STRICT,
+                DuplicateRoutePolicy.KEEP
+            );
+            assertArrayEquals(
+                new int[] {4, 1, 2, 2, 3, 2, 2, 4, 5, 1, 2, 3, 6, 1, 2, 2, 7},
+                keepingRouteDataReader.read(routeDataPath)
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(keepingRouteDataReader.getReport(), 4, 0);
+
+            MappedRouteDataReader rejectingRouteDataReader = new MappedRouteDataReader(
+                parallelism,
+                4,
+                3,
+                IngestionPolicy.STRICT,
+                DuplicateRoutePolicy.REJECT
+            );
+            assertArrayEquals(
+                new int[] {2, 1, 2, 2, 3, 2, 2, 4, 5},
+                rejectingRouteDataReader.read(routeDataPath)
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(rejectingRouteDataReader.getReport(), 2, 8);
+
+            MappedRouteDataReader mergingRouteDataReader = new MappedRouteDataReader(
+                parallelism,
+                4,
+                3,
+                IngestionPolicy.STRICT,
+                DuplicateRoutePolicy.MERGE
+            );
+            assertArrayEquals(
+                DUPLICATE_ROUTE_DATA_MERGED_CONTENTS,
+                mergingRouteDataReader.read(routeDataPath)
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(mergingRouteDataReader.getReport(), 2, 6);
+            assertArrayEquals(
+                DUPLICATE_ROUTE_DATA_MERGED_ORDERED_CONTENTS,
+                mergingRouteDataReader.readOrdered(routeDataPath)
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(mergingRouteDataReader.getReport(), 2, 4);
+        }
+    }
+
+    @Test
+    public void testParallelReadHandlesDuplicateRouteIdsAsSingleThreadedRead() throws IOException {
+        StringBuilder routeDataBuilder = new StringBuilder().append(3000).append('\n');
+        Random random = new Random(3000);
+        for (int routeIndex = 0; routeIndex < 3000; routeIndex++) {
+            routeDataBuilder.append(random.nextInt(500));
+            int stopCount = 2 + random.nextInt(20);
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                routeDataBuilder.append(' ').append(random.nextInt(1000));
+            }
+            routeDataBuilder.append('\n');
+        }
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.US_ASCII));
+
+        for (DuplicateRoutePolicy duplicateRoutePolicy : DuplicateRoutePolicy.values()) {
+            MappedRouteDataReader routeDataReader = new MappedRouteDataReader(
+                1,
+                IngestionPolicy.STRICT,
+                duplicateRoutePolicy
+            );
+            MappedRouteDataReader parallelRouteDataReader = new MappedRouteDataReader(
+                4,
+                512,
+                1 << 12,
+                IngestionPolicy.STRICT,
+                duplicateRoutePolicy
+            );
+            int[] expectedRouteData = routeDataReader.read(routeDataPath);
+            assertArrayEquals(expectedRouteData, parallelRouteDataReader.read(routeDataPath));
+            assertEquals(routeDataReader.getReport().toString(), parallelRouteDataReader.getReport().toString());
+            assertArrayEquals(
+                routeDataReader.readOrdered(routeDataPath),
+                parallelRouteDataReader.readOrdered(routeDataPath)
+            );
+            assertEquals(routeDataReader.getReport().toString(), parallelRouteDataReader.getReport().toString());
+
+            IngestionReport report = routeDataReader.getReport();
+            assertEquals(expectedRouteData[0], report.getRouteCount());
+            int removedRouteCount = (duplicateRoutePolicy == DuplicateRoutePolicy.KEEP)
+                ? 0
+                : report.getDuplicateRouteCount();
+            assertEquals(3000 - removedRouteCount, report.getRouteCount());
+            assertTrue(report.getDuplicateRouteCount() > 2000);
+        }
+    }
+
+    @Test
+    public void testParallelLenientReadIgnoresManyBadLinesAfterDeclaredRoutes() throws IOException {
+        StringBuilder routeDataBuilder = new StringBuilder().append(60).append('\n');
+        for (int routeId = 0; routeId < 60; routeId++) {
+            routeDataBuilder.append(routeId).append(' ').append(routeId).append(' ').append(routeId + 1).append('\n');
+        }
+        for (int lineIndex = 0; lineIndex < 200; lineIndex++) {
+            // lines after the declared routes are either corrupted or contain duplicate stops
+            routeDataBuilder.append((lineIndex % 2 == 0) ? "x\n" : "7 8 8 9\n");
+        }
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.US_ASCII));
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(1, IngestionPolicy.SKIP_BAD_LINES);
+        int[] expectedRouteData = routeDataReader.read(routeDataPath);
+        assertEquals(60, expectedRouteData[0]);
+        assertEquals(60, routeDataReader.getReport().getRouteCount());
+        assertEquals(0, routeDataReader.getReport().getSkippedLineCount());
+        assertEquals(0, routeDataReader.getReport().getDuplicateStopRouteCount());
+        assertTrue(routeDataReader.getReport().getErrors().isEmpty());
+
+        for (int minChunkSize = 16; minChunkSize <= 1024; minChunkSize *= 2) {
+            MappedRouteDataReader parallelRouteDataReader = new MappedRouteDataReader(
+                4,
+                minChunkSize,
+                1 << 12,
+                IngestionPolicy.SKIP_BAD_LINES
+            );
+            assertArrayEquals(expectedRouteData, parallelRouteDataReader.read(routeDataPath));
+            assertEquals(routeDataReader.getReport().toString(), parallelRouteDataReader.getReport().toString());
+        }
+    }
+
+    static void assertDuplicateOnlyReport(IngestionReport report) {
+        assertFalse(report.isRejected());
+        assertEquals(1, report.getRouteCount());
+        assertEquals(2, report.getSkippedLineCount());
+        assertEquals(2, report.getShortRouteCount());
+        assertEquals(0, report.getDuplicateStopRouteCount());
+        assertEquals(0, report.getReleasedLength());
+    }
+
+    static void assertDuplicateRouteReport(IngestionReport report, int routeCount, long releasedLength) {
+        assertFalse(report.isRejected());
+        assertEquals(4, report.getDeclaredRouteCount());
+        assertEquals(routeCount, report.getRouteCount());
+        assertEquals(2, report.getDuplicateRouteCount());
+        assertEquals(releasedLength, report.getReleasedLength());
+    }
+
+    static void assertLenientReport(IngestionReport report) {
+        assertEquals(IngestionPolicy.SKIP_BAD_LINES, report.getPolicy());
+        assertFalse(report.isRejected());
+        assertEquals(7, report.getDeclaredRouteCount());
+        assertEquals(3, report.getRouteCount());
+        assertEquals(3, report.getSkippedLineCount());
+        assertEquals(1, report.getShortRouteCount());
+        assertEquals(1, report.getDuplicateStopRouteCount());
+        assertEquals(0, report.getDuplicateRouteCount());
+        assertEquals(1, report.getReleasedLength());
+        assertEquals(
+            "[line 3 (byte 8): " + RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS
+                + ", line 4 (byte 12): " + RouteLineParser.MESSAGE_UNEXPECTED_SYMBOL
+                + ", line 6 (byte 26): " + RouteLineParser.MESSAGE_UNEXPECTED_SYMBOL
+                + ", line 8 (byte 34): " + IngestionLog.MESSAGE_MISSING_ROUTES + "]",
+            report.getErrors().toString()
+        );
+    }
+
+    private static int[] concatenate(IntBuffer[] segments) {
+        int length = 0;
+        for (IntBuffer segment : segments) {
+            length += segment.limit();
+        }
+        int[] routeData = new int[length];
+        int routeDataIndex = 0;
+        for (IntBuffer segment : segments) {
+            for (int index = 0; index < segment.limit(); index++) {
+                routeData[routeDataIndex++] = segment.get(index);
+            }
+        }
+        return routeData;
+    }
+
+    private Path createRouteDataFile(int declaredRouteCount, int routeCount, String suffix) throws IOException {
+        Random random = new Random(routeCount);
+        StringBuilder routeDataBuilder = new StringBuilder().append(declaredRouteCount).append('\n');
+        for (int routeId = 0; routeId < routeCount; routeId++) {
+            routeDataBuilder.append(routeId);
+            int stopCount = 2 + random.nextInt(50);
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                routeDataBuilder.append(' ').append(random.nextInt(1000));
+            }
+            routeDataBuilder.append(routeId % 2 == 0 ? "\n" : "\r\n");
+        }
+        routeDataBuilder.append(suffix);
+
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.UTF_8));
+        return routeDataPath;
+    }
 }
@@ -4,6 +4,8 @@ package org.aakimov.transport.api;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -39,4 +41,42 @@ public class MemoryRouteManagerTest {
         MemoryRouteManager memoryRouteManager = new MemoryRouteManager(new int[0]);
         assertFalse(memoryRouteManager.isDirectRouteAvailable(100, 200));
     }
+
+    @Test
+    public void testAreDirectRoutesAvailableReturnsSameResultsAsSingleQueries() {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(this.routeData);
+        int[] departureStopIds = {2, 13, 5, 78, 88, 1, 2, 3, 1, -1, 5, 34, 34};
+        int[] arrivalStopIds = {43, 3, 55, 76, 76, 91, 12, 55, 2, 2, 5, 34, 1000};
+        boolean[] results = memoryRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+        assertEquals(departureStopIds.length, results.length);
+        for (int pairIndex = 0; pairIndex < departureStopIds.length; pairIndex++) {
+            assertEquals(
+                memoryRouteManager.isDirectRouteAvailable(departureStopIds[pairIndex], arrivalStopIds[pairIndex]),
+                results[pairIndex]
+            );
+        }
+        assertEquals(0, memoryRouteManager.areDirectRoutesAvailable(new int[0], new int[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAreDirectRoutesAvailableThrowsExceptionIfNumberOfStopsIsDifferent() {
+        new MemoryRouteManager(this.routeData).areDirectRoutesAvailable(new int[] {1, 2}, new int[] {3});
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsIdsOfAllMatchingRoutes() {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(this.routeData);
+        assertArrayEquals(new int[] {1, 2}, memoryRouteManager.findDirectRoutes(5, 76));
+        assertArrayEquals(new int[] {1, 2}, memoryRouteManager.findDirectRoutes(76, 34, 10));
+        assertArrayEquals(new int[] {1}, memoryRouteManager.findDirectRoutes(76, 5, 1));
+        assertArrayEquals(new int[] {1}, memoryRouteManager.findDirectRoutes(2, 43));
+        assertArrayEquals(new int[0], memoryRouteManager.findDirectRoutes(5, 76, 0));
+        assertArrayEquals(new int[0], memoryRouteManager.findDirectRoutes(2, 12));
+        assertArrayEquals(new int[0], memoryRouteManager.findDirectRoutes(-1, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFindDirectRoutesThrowsExceptionIfLimitIsNegative() {
+        new MemoryRouteManager(this.routeData).findDirectRoutes(5, 76, -1);
+    }
 }
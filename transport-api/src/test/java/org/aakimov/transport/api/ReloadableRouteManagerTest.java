@@ -0,0 +1,236 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadableRouteManagerTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        2,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 3, 2, 3, 5,
+        2, 2, 5, 7
+    };
+
+    private static final int[] NEW_ROUTE_DATA = {
+        1,
+        3, 2, 3, 7
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testRequestsAreDelegatedToCurrentRouteManager() throws IOException {
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                new MemoryRouteManager(ROUTE_DATA),
+                () -> null
+            )
+        ) {
+            assertTrue(reloadableRouteManager.isDirectRouteAvailable(2, 5));
+            assertFalse(reloadableRouteManager.isDirectRouteAvailable(3, 7));
+            assertArrayEquals(new int[] {1, 2}, reloadableRouteManager.findDirectRoutes(5, 5));
+            assertArrayEquals(
+                new boolean[] {true, false},
+                reloadableRouteManager.areDirectRoutesAvailable(new int[] {5, 3}, new int[] {7, 7})
+            );
+        }
+    }
+
+    @Test
+    public void testReloadSwapsRouteManager() throws Exception {
+        MemoryRouteManager newRouteManager = new MemoryRouteManager(NEW_ROUTE_DATA);
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                new MemoryRouteManager(ROUTE_DATA),
+                () -> newRouteManager
+            )
+        ) {
+            assertTrue(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            assertSame(newRouteManager, reloadableRouteManager.getRouteManager());
+            assertTrue(reloadableRouteManager.isDirectRouteAvailable(3, 7));
+            assertFalse(reloadableRouteManager.isDirectRouteAvailable(2, 5));
+        }
+    }
+
+    @Test
+    public void testFailedReloadKeepsCurrentRouteManager() throws Exception {
+        MemoryRouteManager routeManager = new MemoryRouteManager(ROUTE_DATA);
+        AtomicInteger loadCount = new AtomicInteger();
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                routeManager,
+                () -> {
+                    if (loadCount.incrementAndGet() == 1) {
+                        return null;
+                    }
+                    throw new IllegalStateException("Route data is broken.");
+                }
+            )
+        ) {
+            assertFalse(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            assertFalse(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            assertEquals(2, loadCount.get());
+            assertSame(routeManager, reloadableRouteManager.getRouteManager());
+        }
+    }
+
+    @Test
+    public void testReloadRequestsAreMergedUntilReloadStarts() throws Exception {
+        CountDownLatch reloadStarted = new CountDownLatch(1);
+        CountDownLatch reloadAllowed = new CountDownLatch(1);
+        AtomicInteger loadCount = new AtomicInteger();
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                new MemoryRouteManager(ROUTE_DATA),
+                () -> {
+                    loadCount.incrementAndGet();
+                    reloadStarted.countDown();
+                    try {
+                        reloadAllowed.await();
+                    } catch (InterruptedException exception) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new MemoryRouteManager(NEW_ROUTE_DATA);
+                }
+            )
+        ) {
+            reloadableRouteManager.reload();
+            assertTrue(reloadStarted.await(10, TimeUnit.SECONDS));
+
+            // reload is in progress, so the next ones are merged into a single pending reload
+            CompletableFuture<Boolean> pendingReload = reloadableRouteManager.reload();
+            assertSame(pendingReload, reloadableRouteManager.reload());
+            reloadAllowed.countDown();
+            assertTrue(pendingReload.get(10, TimeUnit.SECONDS));
+            assertEquals(2, loadCount.get());
+        }
+    }
+
+    @Test
+    public void testWatchReloadsChangedRouteDataFile() throws Exception {
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, "1\n1 2 3 5\n".getBytes(StandardCharsets.UTF_8));
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader();
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                new MemoryRouteManager(routeDataReader.read(routeDataPath)),
+                () -> new MemoryRouteManager(routeDataReader.read(routeDataPath)),
+                50
+            )
+        ) {
+            reloadableRouteManager.watch(routeDataPath);
+            assertFalse(reloadableRouteManager.isDirectRouteAvailable(3, 7));
+
+            Path newRouteDataPath = this.temporaryFolder.newFile().toPath();
+            Files.write(newRouteDataPath, "1\n3 2 3 7\n".getBytes(StandardCharsets.UTF_8));
+            Files.move(newRouteDataPath, routeDataPath, StandardCopyOption.REPLACE_EXISTING);
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(30);
+            while (!reloadableRouteManager.isDirectRouteAvailable(3, 7) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertTrue(reloadableRouteManager.isDirectRouteAvailable(3, 7));
+        }
+    }
+
+    @Test
+    public void testReloadFailsAfterClose() throws Exception {
+        ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+            new MemoryRouteManager(ROUTE_DATA),
+            () -> new MemoryRouteManager(NEW_ROUTE_DATA)
+        );
+        reloadableRouteManager.close();
+        assertFalse(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReloadClosesReplacedRouteManager() throws Exception {
+        TrackedRouteManager routeManager = new TrackedRouteManager();
+        TrackedRouteManager newRouteManager = new TrackedRouteManager();
+        ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+            routeManager,
+            () -> newRouteManager
+        );
+        CachingRouteManager cachingRouteManager = new CachingRouteManager(reloadableRouteManager, 16);
+
+        assertTrue(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+        assertTrue(routeManager.isClosed);
+        assertFalse(newRouteManager.isClosed);
+
+        // cache is the outermost decorator, so closing it closes the route manager that is in use
+        cachingRouteManager.close();
+        assertTrue(newRouteManager.isClosed);
+        assertFalse(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testReloadStopsCompactionThreadOfReplacedRouteManager() throws Exception {
+        int[] routeData = {1, 1, 2, 5, 7};
+        UpdatableRouteManager routeManager = new UpdatableRouteManager(routeData, 0);
+        Thread compactionThread = UpdatableRouteManagerTest.startCompactionThread(routeManager);
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                routeManager,
+                () -> new UpdatableRouteManager(routeData)
+            )
+        ) {
+            assertTrue(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            compactionThread.join(10000);
+            assertFalse(compactionThread.isAlive());
+        }
+    }
+
+    @Test
+    public void testReloadThatDoesNotFitIntoHeapKeepsCurrentRouteManager() throws Exception {
+        TrackedRouteManager routeManager = new TrackedRouteManager();
+        try (
+            ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+                routeManager,
+                () -> {
+                    throw new OutOfMemoryError("Java heap space");
+                }
+            )
+        ) {
+            assertFalse(reloadableRouteManager.reload().get(10, TimeUnit.SECONDS));
+            assertSame(routeManager, reloadableRouteManager.getRouteManager());
+            assertFalse(routeManager.isClosed);
+        }
+        assertTrue(routeManager.isClosed);
+    }
+
+    private static final class TrackedRouteManager implements RouteManager {
+
+        private volatile boolean isClosed;
+
+        @Override
+        public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            this.isClosed = true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteBitmapTest {
+
+    @Test
+    public void testContainsReturnsTrueOnlyForPresentValues() {
+        int[] values = {1, 5, 5, 70000, 70001, 70002, 200000};
+        RouteBitmap bitmap = RouteBitmap.of(values, 0, values.length);
+        assertEquals(6, bitmap.getCardinality());
+        for (int value : values) {
+            assertTrue(bitmap.contains(value));
+        }
+        assertFalse(bitmap.contains(0));
+        assertFalse(bitmap.contains(6));
+        assertFalse(bitmap.contains(70003));
+        assertFalse(bitmap.contains(65536 + 1));
+        assertFalse(RouteBitmap.EMPTY.contains(1));
+    }
+
+    @Test
+    public void testRunsAreStoredMoreCompactlyThanArrays() {
+        int[] consecutiveValues = IntStream.range(1000, 4000).toArray();
+        int[] sparseValues = IntStream.range(0, 3000).map(value -> value * 20).toArray();
+        RouteBitmap runBitmap = RouteBitmap.of(consecutiveValues, 0, consecutiveValues.length);
+        RouteBitmap arrayBitmap = RouteBitmap.of(sparseValues, 0, sparseValues.length);
+        assertEquals(3000, runBitmap.getCardinality());
+        assertEquals(3000, arrayBitmap.getCardinality());
+        assertTrue(runBitmap.getSizeInBytes() < 100);
+        assertTrue(arrayBitmap.getSizeInBytes() > 6000);
+    }
+
+    @Test
+    public void testDenseChunksAreLimitedByBitmapSize() {
+        int[] denseValues = IntStream.range(0, 30000).map(value -> value * 2).toArray();
+        RouteBitmap bitmap = RouteBitmap.of(denseValues, 0, denseValues.length);
+        assertEquals(30000, bitmap.getCardinality());
+        assertTrue(bitmap.getSizeInBytes() < 8300);
+        assertTrue(bitmap.contains(59998));
+        assertFalse(bitmap.contains(59999));
+    }
+
+    @Test
+    public void testIntersectsMatchesBruteForceForAllContainerCombinations() {
+        Random random = new Random(42);
+        int[][] valueSets = new int[30][];
+        for (int setIndex = 0; setIndex < valueSets.length; setIndex++) {
+            valueSets[setIndex] = RouteBitmapTest.generateValues(random, setIndex % 3);
+        }
+
+        for (int[] values : valueSets) {
+            RouteBitmap bitmap = RouteBitmap.of(values, 0, values.length);
+            for (int[] otherValues : valueSets) {
+                RouteBitmap otherBitmap = RouteBitmap.of(otherValues, 0, otherValues.length);
+                boolean expected = Arrays.stream(values).anyMatch(value -> Arrays.binarySearch(otherValues, value) >= 0);
+                assertEquals(expected, bitmap.intersects(otherBitmap));
+                assertEquals(expected, otherBitmap.intersects(bitmap));
+            }
+        }
+    }
+
+    @Test
+    public void testCollectIntersectionMatchesBruteForceForAllContainerCombinations() {
+        Random random = new Random(7);
+        int[][] valueSets = new int[15][];
+        for (int setIndex = 0; setIndex < valueSets.length; setIndex++) {
+            valueSets[setIndex] = RouteBitmapTest.generateValues(random, setIndex % 3);
+        }
+        // translation is an identity, so collected values are the values of the bitmaps
+        int[] translation = IntStream.range(0, 200000).toArray();
+
+        for (int[] values : valueSets) {
+            RouteBitmap bitmap = RouteBitmap.of(values, 0, values.length);
+            for (int[] otherValues : valueSets) {
+                RouteBitmap otherBitmap = RouteBitmap.of(otherValues, 0, otherValues.length);
+                int[] expected = Arrays.stream(values)
+                    .distinct()
+                    .filter(value -> Arrays.binarySearch(otherValues, value) >= 0)
+                    .toArray();
+
+                RouteIdCollector collector = new RouteIdCollector(Integer.MAX_VALUE);
+                bitmap.collectIntersection(otherBitmap, translation, collector);
+                assertArrayEquals(expected, collector.toArray());
+
+                RouteIdCollector limitedCollector = new RouteIdCollector(3);
+                otherBitmap.collectIntersection(bitmap, translation, limitedCollector);
+                assertArrayEquals(Arrays.copyOf(expected, Math.min(3, expected.length)), limitedCollector.toArray());
+            }
+        }
+    }
+
+    private static int[] generateValues(Random random, int kind) {
+        int[] values;
+        if (kind == 0) {
+            // sparse values
+            values = random.ints(random.nextInt(200) + 1, 0, 200000).toArray();
+        } else if (kind == 1) {
+            // dense values
+            values = random.ints(20000, 0, 140000).toArray();
+        } else {
+            // long runs
+            int start = random.nextInt(150000);
+            values = IntStream.range(start, start + random.nextInt(20000) + 1).filter(value -> value % 1000 != 0).toArray();
+        }
+        Arrays.sort(values);
+        return values;
+    }
+}
@@ -0,0 +1,125 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RouteFilterTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        2,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+        2, 6, 5, 12, 34, 55, 76, 78
+    };
+
+    @Test
+    public void testFiltersDoNotRejectRouteStops() {
+        RouteFilter routeFilter = RouteFilter.build(ROUTE_DATA, 8);
+        int filterIndex = 0;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < ROUTE_DATA[0]; routeIndex++) {
+            int stopCount = ROUTE_DATA[currentRouteDataIndex + 1];
+            int wordCount = routeFilter.getWordCount(stopCount);
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                long hash = RouteFilter.hash(ROUTE_DATA[currentRouteDataIndex + 2 + stopIndex]);
+                assertTrue(routeFilter.mightContain(filterIndex, wordCount, hash, routeFilter.getMask(hash)));
+            }
+            filterIndex += wordCount;
+            currentRouteDataIndex += stopCount + 2;
+        }
+        assertEquals(filterIndex * (long)Long.BYTES, routeFilter.getSize());
+    }
+
+    @Test
+    public void testFalsePositiveRateDependsOnBitsPerStop() {
+        Random random = new Random(15);
+        int[] stops = new int[1000];
+        for (int stopIndex = 0; stopIndex < stops.length; stopIndex++) {
+            stops[stopIndex] = random.nextInt(1000000);
+        }
+        Arrays.sort(stops);
+        int[] routeData = new int[stops.length + 3];
+        routeData[0] = 1;
+        routeData[2] = stops.length;
+        System.arraycopy(stops, 0, routeData, 3, stops.length);
+
+        double previousRate = 1;
+        for (int bitsPerStop : new int[] {4, 8, 16}) {
+            RouteFilter routeFilter = RouteFilter.build(routeData, bitsPerStop);
+            int wordCount = routeFilter.getWordCount(stops.length);
+            int falsePositiveCount = 0;
+            int missCount = 0;
+            for (int queryIndex = 0; queryIndex < 20000; queryIndex++) {
+                int stopId = random.nextInt(1000000);
+                if (Arrays.binarySearch(stops, stopId) < 0) {
+                    long hash = RouteFilter.hash(stopId);
+                    missCount++;
+                    if (routeFilter.mightContain(0, wordCount, hash, routeFilter.getMask(hash))) {
+                        falsePositiveCount++;
+                    }
+                }
+            }
+            double rate = falsePositiveCount / (double)missCount;
+            assertTrue(rate < previousRate);
+            previousRate = rate;
+        }
+        assertTrue(previousRate < 0.02);
+    }
+
+    @Test
+    public void testFilteredMemoryRouteManagerReturnsSameResults() {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(ROUTE_DATA);
+        for (StopSearch stopSearch : StopSearch.values()) {
+            for (int bitsPerStop : new int[] {1, 8, 64}) {
+                MemoryRouteManager filteredRouteManager = new MemoryRouteManager(ROUTE_DATA, stopSearch, bitsPerStop);
+                for (int departureStopId = 0; departureStopId < 90; departureStopId++) {
+                    for (int arrivalStopId = 0; arrivalStopId < 90; arrivalStopId++) {
+                        assertEquals(
+                            memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                            filteredRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                        );
+                        assertArrayEquals(
+                            memoryRouteManager.findDirectRoutes(departureStopId, arrivalStopId),
+                            filteredRouteManager.findDirectRoutes(departureStopId, arrivalStopId)
+                        );
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFilteredBatchReturnsSameResults() {
+        int[] departureStopIds = new int[90 * 90];
+        int[] arrivalStopIds = new int[90 * 90];
+        for (int pairIndex = 0; pairIndex < departureStopIds.length; pairIndex++) {
+            departureStopIds[pairIndex] = pairIndex / 90;
+            arrivalStopIds[pairIndex] = pairIndex % 90;
+        }
+
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(ROUTE_DATA);
+        boolean[] expectedResults = memoryRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+        for (StopSearch stopSearch : StopSearch.values()) {
+            for (int bitsPerStop : new int[] {1, 8, 64}) {
+                MemoryRouteManager filteredRouteManager = new MemoryRouteManager(ROUTE_DATA, stopSearch, bitsPerStop);
+                assertArrayEquals(
+                    expectedResults,
+                    filteredRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds)
+                );
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBuildRejectsTooManyBitsPerStop() {
+        RouteFilter.build(ROUTE_DATA, 65);
+    }
+}
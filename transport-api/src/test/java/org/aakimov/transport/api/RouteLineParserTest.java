@@ -0,0 +1,73 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class RouteLineParserTest {
+
+    @Test
+    public void testCompleteRouteRemovesDuplicateStops() {
+        RouteLineParser routeLineParser = RouteLineParserTest.parse("5 8 7 8 3 7\n");
+        routeLineParser.completeRoute();
+        assertEquals(5, routeLineParser.getRouteId());
+        assertArrayEquals(new int[] {3, 7, 8}, RouteLineParserTest.getStops(routeLineParser));
+        assertEquals(5, routeLineParser.getParsedStopCount());
+        assertTrue(routeLineParser.hasDuplicateStops());
+
+        routeLineParser = RouteLineParserTest.parse("5 8 3\n");
+        routeLineParser.completeRoute();
+        assertArrayEquals(new int[] {3, 8}, RouteLineParserTest.getStops(routeLineParser));
+        assertFalse(routeLineParser.hasDuplicateStops());
+    }
+
+    @Test
+    public void testCompleteOrderedRouteKeepsFirstAndLastOccurrences() {
+        RouteLineParser routeLineParser = RouteLineParserTest.parse("5 7 8 7 7 3\n");
+        routeLineParser.completeOrderedRoute();
+        assertArrayEquals(new int[] {3, 7, 7, 8}, RouteLineParserTest.getStops(routeLineParser));
+        assertArrayEquals(
+            new int[] {4, 0, 3, 1},
+            Arrays.copyOf(routeLineParser.getPositions(), routeLineParser.getStopCount())
+        );
+        assertEquals(5, routeLineParser.getParsedStopCount());
+        assertTrue(routeLineParser.hasDuplicateStops());
+    }
+
+    @Test
+    public void testRoutesOfSingleRepeatedStopAreRejected() {
+        for (String routeLine : new String[] {"5 7\n", "5 7 7\n", "5 7 7 7 7\n"}) {
+            try {
+                RouteLineParserTest.parse(routeLine).completeRoute();
+                fail("Route '" + routeLine.trim() + "' should be rejected.");
+            } catch (FileFormatException exception) {
+                assertEquals(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS, exception.getMessage());
+            }
+            try {
+                RouteLineParserTest.parse(routeLine).completeOrderedRoute();
+                fail("Ordered route '" + routeLine.trim() + "' should be rejected.");
+            } catch (FileFormatException exception) {
+                assertEquals(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS, exception.getMessage());
+            }
+        }
+    }
+
+    private static RouteLineParser parse(String routeLine) {
+        RouteLineParser routeLineParser = new RouteLineParser();
+        assertTrue(routeLineParser.parseLine(ByteBuffer.wrap(routeLine.getBytes(StandardCharsets.US_ASCII))));
+        return routeLineParser;
+    }
+
+    private static int[] getStops(RouteLineParser routeLineParser) {
+        return Arrays.copyOf(routeLineParser.getStops(), routeLineParser.getStopCount());
+    }
+}
@@ -0,0 +1,264 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ShardedRouteManagerTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        4,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+        2, 6, 5, 12, 34, 55, 76, 78,
+        3, 3, 1, 5, 78,
+        4, 2, 5, 12
+    };
+
+    @Test
+    public void testSplitKeepsAllRoutesInOrder() {
+        for (int shardCount = 1; shardCount <= 6; shardCount++) {
+            List<int[]> shardRouteData = ShardedRouteManager.split(ROUTE_DATA, shardCount);
+            assertTrue(shardRouteData.size() <= Math.min(shardCount, ROUTE_DATA[0]));
+
+            int routeCount = 0;
+            int[] joinedRouteData = new int[ROUTE_DATA.length];
+            int joinedIndex = 1;
+            for (int[] shard : shardRouteData) {
+                assertTrue(shard[0] > 0);
+                routeCount += shard[0];
+                System.arraycopy(shard, 1, joinedRouteData, joinedIndex, shard.length - 1);
+                joinedIndex += shard.length - 1;
+            }
+            joinedRouteData[0] = routeCount;
+            assertArrayEquals(ROUTE_DATA, joinedRouteData);
+        }
+        assertEquals(1, ShardedRouteManager.split(new int[0], 4).size());
+        assertEquals(1, ShardedRouteManager.split(new int[] {0}, 4).size());
+    }
+
+    @Test
+    public void testReturnsSameResultsAsMemoryRouteManager() throws IOException {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(ROUTE_DATA);
+        for (int parallelism = 1; parallelism <= 3; parallelism++) {
+            try (ShardedRouteManager shardedRouteManager = new ShardedRouteManager(
+                ROUTE_DATA,
+                3,
+                parallelism,
+                MemoryRouteManager::new
+            )) {
+                assertEquals(3, shardedRouteManager.getShardCount());
+                int[] departureStopIds = new int[90 * 90];
+                int[] arrivalStopIds = new int[90 * 90];
+                for (int departureStopId = 0; departureStopId < 90; departureStopId++) {
+                    for (int arrivalStopId = 0; arrivalStopId < 90; arrivalStopId++) {
+                        assertEquals(
+                            memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                            shardedRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                        );
+                        assertArrayEquals(
+                            memoryRouteManager.findDirectRoutes(departureStopId, arrivalStopId),
+                            shardedRouteManager.findDirectRoutes(departureStopId, arrivalStopId)
+                        );
+                        assertArrayEquals(
+                            memoryRouteManager.findDirectRoutes(departureStopId, arrivalStopId, 1),
+                            shardedRouteManager.findDirectRoutes(departureStopId, arrivalStopId, 1)
+                        );
+                        departureStopIds[departureStopId * 90 + arrivalStopId] = departureStopId;
+                        arrivalStopIds[departureStopId * 90 + arrivalStopId] = arrivalStopId;
+                    }
+                }
+                assertArrayEquals(
+                    memoryRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds),
+                    shardedRouteManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testFirstFoundRouteCancelsRemainingShards() throws IOException {
+        AtomicInteger checkedShardCount = new AtomicInteger();
+        try (ShardedRouteManager shardedRouteManager = new ShardedRouteManager(
+            ROUTE_DATA,
+            4,
+            1,
+            shardRouteData -> new CountingRouteManager(new MemoryRouteManager(shardRouteData), checkedShardCount)
+        )) {
+            assertEquals(3, shardedRouteManager.getShardCount());
+
+            // route 1 is in the first shard, so other shards are not checked
+            assertTrue(shardedRouteManager.isDirectRouteAvailable(2, 3));
+            assertEquals(1, checkedShardCount.getAndSet(0));
+
+            assertFalse(shardedRouteManager.isDirectRouteAvailable(2, 78));
+            assertEquals(3, checkedShardCount.get());
+        }
+    }
+
+    @Test
+    public void testConcurrentRequestsReturnCorrectResults() throws Exception {
+        Random random = new Random(16);
+        int[] routeData = new int[1 + 64 * 52];
+        routeData[0] = 64;
+        for (int routeIndex = 0; routeIndex < 64; routeIndex++) {
+            int[] stops = new int[50];
+            for (int stopIndex = 0; stopIndex < stops.length; stopIndex++) {
+                stops[stopIndex] = random.nextInt(1000);
+            }
+            Arrays.sort(stops);
+            routeData[1 + routeIndex * 52] = routeIndex;
+            routeData[2 + routeIndex * 52] = stops.length;
+            System.arraycopy(stops, 0, routeData, 3 + routeIndex * 52, stops.length);
+        }
+
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(routeData);
+        ExecutorService requestExecutor = Executors.newFixedThreadPool(4);
+        try (ShardedRouteManager shardedRouteManager = new ShardedRouteManager(
+            routeData,
+            8,
+            3,
+            MemoryRouteManager::new
+        )) {
+            CountDownLatch startLatch = new CountDownLatch(1);
+            Future<?>[] futures = new Future<?>[4];
+            for (int requestThreadIndex = 0; requestThreadIndex < futures.length; requestThreadIndex++) {
+                int seed = requestThreadIndex;
+                futures[requestThreadIndex] = requestExecutor.submit(() -> {
+                    Random requestRandom = new Random(seed);
+                    startLatch.await();
+                    for (int queryIndex = 0; queryIndex < 2000; queryIndex++) {
+                        int departureStopId = requestRandom.nextInt(1000);
+                        int arrivalStopId = requestRandom.nextInt(1000);
+                        assertEquals(
+                            memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                            shardedRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                        );
+                    }
+                    return null;
+                });
+            }
+            startLatch.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShardFailureIsRethrownByRequestThread() throws IOException {
+        AtomicInteger shardCount = new AtomicInteger();
+        try (ShardedRouteManager shardedRouteManager = new ShardedRouteManager(
+            ROUTE_DATA,
+            3,
+            3,
+            shardRouteData -> (shardCount.incrementAndGet() == 3)
+                ? (departureStopId, arrivalStopId) -> {
+                    throw new IllegalStateException("Shard is not available.");
+                }
+                : new MemoryRouteManager(shardRouteData)
+        )) {
+            // route 1 is in the first shard, so the failure does not matter
+            assertTrue(shardedRouteManager.isDirectRouteAvailable(2, 3));
+            for (int requestIndex = 0; requestIndex < 100; requestIndex++) {
+                try {
+                    shardedRouteManager.isDirectRouteAvailable(2, 78);
+                    fail("Shard failure should be rethrown.");
+                } catch (IllegalStateException exception) {
+                    assertEquals("Shard is not available.", exception.getMessage());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCloseClosesShards() throws IOException {
+        List<ClosableRouteManager> shards = new ArrayList<>();
+        ShardedRouteManager shardedRouteManager = new ShardedRouteManager(
+            ROUTE_DATA,
+            3,
+            2,
+            shardRouteData -> {
+                ClosableRouteManager shard = new ClosableRouteManager(new MemoryRouteManager(shardRouteData));
+                shards.add(shard);
+                return shard;
+            }
+        );
+        assertEquals(3, shards.size());
+
+        shardedRouteManager.close();
+        for (ClosableRouteManager shard : shards) {
+            assertTrue(shard.isClosed);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonPositiveShardCount() {
+        new ShardedRouteManager(ROUTE_DATA, 0, 1, MemoryRouteManager::new);
+    }
+
+    /**
+     * Route manager that counts direct route checks
+     */
+    private static final class CountingRouteManager implements RouteManager {
+
+        private final RouteManager routeManager;
+
+        private final AtomicInteger checkCount;
+
+        CountingRouteManager(RouteManager routeManager, AtomicInteger checkCount) {
+            this.routeManager = routeManager;
+            this.checkCount = checkCount;
+        }
+
+        @Override
+        public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+            this.checkCount.incrementAndGet();
+            return this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+        }
+    }
+
+    /**
+     * Route manager that remembers if it is closed
+     */
+    private static final class ClosableRouteManager implements RouteManager {
+
+        private final RouteManager routeManager;
+
+        private boolean isClosed;
+
+        ClosableRouteManager(RouteManager routeManager) {
+            this.routeManager = routeManager;
+        }
+
+        @Override
+        public boolean isDirectRouteAvailable(int departureStopId, int arrivalStopId) {
+            return this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+        }
+
+        @Override
+        public void close() {
+            this.isClosed = true;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotRouteDataReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private int[] routeData;
+
+    @Before
+    public void setUp() {
+        this.routeData = new MappedRouteDataReader().read(
+            Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file")
+        );
+    }
+
+    @Test
+    public void testReadReturnsSameDataAsWrittenSnapshot() throws IOException {
+        Path snapshotPath = this.temporaryFolder.getRoot().toPath().resolve("route_data.snapshot");
+        RouteDataSnapshot.write(this.routeData, snapshotPath);
+
+        assertTrue(RouteDataSnapshot.isSnapshot(snapshotPath));
+        assertEquals(RouteDataSnapshot.HEADER_SIZE + Integer.BYTES * this.routeData.length, Files.size(snapshotPath));
+        assertArrayEquals(this.routeData, new SnapshotRouteDataReader().read(snapshotPath));
+        assertArrayEquals(this.routeData, new SnapshotRouteDataReader(false).read(snapshotPath));
+    }
+
+    @Test
+    public void testMapReturnsRouteBlocksWithoutRouteCount() throws IOException {
+        Path snapshotPath = this.temporaryFolder.getRoot().toPath().resolve("route_data.snapshot");
+        RouteDataSnapshot.write(this.routeData, snapshotPath);
+
+        IntBuffer[] segments = new SnapshotRouteDataReader().map(snapshotPath);
+        assertEquals(1, segments.length);
+        int[] mappedRouteData = new int[segments[0].remaining()];
+        segments[0].get(mappedRouteData);
+        assertArrayEquals(Arrays.copyOfRange(this.routeData, 1, this.routeData.length), mappedRouteData);
+    }
+
+    @Test
+    public void testSnapshotOfRouteDataSegmentsIsSameAsSnapshotOfRouteDataArray() throws IOException {
+        Path arraySnapshotPath = this.temporaryFolder.getRoot().toPath().resolve("array.snapshot");
+        Path segmentSnapshotPath = this.temporaryFolder.getRoot().toPath().resolve("segment.snapshot");
+        RouteDataSnapshot.write(this.routeData, arraySnapshotPath);
+        RouteDataSnapshot.write(
+            new MappedRouteDataReader().readOffHeap(
+                Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file")
+            ),
+            segmentSnapshotPath
+        );
+
+        assertArrayEquals(Files.readAllBytes(arraySnapshotPath), Files.readAllBytes(segmentSnapshotPath));
+    }
+
+    @Test
+    public void testIsSnapshotReturnsFalseForTextRouteDataFile() {
+        assertFalse(RouteDataSnapshot.isSnapshot(
+            Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file")
+        ));
+        assertFalse(RouteDataSnapshot.isSnapshot(
+            Paths.get("src/test/resources/org/aakimov/transport/api/empty_route_data_file")
+        ));
+        assertFalse(RouteDataSnapshot.isSnapshot(
+            this.temporaryFolder.getRoot().toPath().resolve("missing.snapshot")
+        ));
+    }
+
+    @Test
+    public void testReadReturnsEmptyArrayIfSnapshotIsCorrupted() throws IOException {
+        Path snapshotPath = this.temporaryFolder.getRoot().toPath().resolve("route_data.snapshot");
+        RouteDataSnapshot.write(this.routeData, snapshotPath);
+        try (FileChannel fileChannel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            fileChannel.write(ByteBuffer.wrap(new byte[] {0x7F}), RouteDataSnapshot.HEADER_SIZE + 10);
+        }
+
+        assertArrayEquals(new int[0], new SnapshotRouteDataReader().read(snapshotPath));
+        assertEquals(0, new SnapshotRouteDataReader().map(snapshotPath).length);
+        // corruption is not detected if checksum is not verified
+        assertEquals(this.routeData.length, new SnapshotRouteDataReader(false).read(snapshotPath).length);
+    }
+
+    @Test
+    public void testReadReturnsEmptyArrayIfSnapshotIsTruncatedOrInvalid() throws IOException {
+        Path snapshotPath = this.temporaryFolder.getRoot().toPath().resolve("route_data.snapshot");
+        RouteDataSnapshot.write(this.routeData, snapshotPath);
+        try (FileChannel fileChannel = FileChannel.open(snapshotPath, StandardOpenOption.WRITE)) {
+            fileChannel.truncate(fileChannel.size() - Integer.BYTES);
+        }
+
+        assertArrayEquals(new int[0], new SnapshotRouteDataReader().read(snapshotPath));
+        assertArrayEquals(new int[0], new SnapshotRouteDataReader().read(
+            Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file")
+        ));
+        assertEquals(0, new SnapshotRouteDataReader().map(
+            Paths.get("src/test/resources/org/aakimov/transport/api/route_data_file")
+        ).length);
+    }
+}
@@ -0,0 +1,90 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StopSearchTest {
+
+    private static final int[] STOPS = {100, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88, 100};
+
+    @Test
+    public void testSearchReturnsSameResultsAsBinarySearch() {
+        for (StopSearch stopSearch : StopSearch.values()) {
+            for (int stopId = 0; stopId < 90; stopId++) {
+                assertEquals(
+                    Arrays.binarySearch(STOPS, 1, STOPS.length - 1, stopId),
+                    stopSearch.search(STOPS, 1, STOPS.length - 1, stopId)
+                );
+                assertEquals(
+                    Arrays.binarySearch(STOPS, 3, 6, stopId),
+                    stopSearch.search(STOPS, 3, 6, stopId)
+                );
+            }
+            assertEquals(-2, stopSearch.search(STOPS, 1, 1, 5));
+            assertEquals(-2, stopSearch.search(STOPS, 1, STOPS.length - 1, Integer.MIN_VALUE));
+            assertEquals(-15, stopSearch.search(STOPS, 1, STOPS.length - 1, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void testSearchFindsStopsOfRandomRanges() {
+        Random random = new Random(14);
+        for (int rangeIndex = 0; rangeIndex < 2000; rangeIndex++) {
+            // both evenly distributed and clustered stop IDs with duplicates
+            int[] stops = new int[random.nextInt(300)];
+            int maxStopId = (rangeIndex % 2 == 0) ? 1000000 : 50;
+            for (int stopIndex = 0; stopIndex < stops.length; stopIndex++) {
+                stops[stopIndex] = (stopIndex % 7 == 0) ? random.nextInt(5) : random.nextInt(maxStopId);
+            }
+            Arrays.sort(stops);
+
+            for (int queryIndex = 0; queryIndex < 50; queryIndex++) {
+                int stopId = (queryIndex % 2 == 0 && stops.length > 0)
+                    ? stops[random.nextInt(stops.length)]
+                    : random.nextInt(maxStopId + 10) - 5;
+                int expectedIndex = Arrays.binarySearch(stops, stopId);
+                int index = StopSearch.INTERPOLATION.search(stops, 0, stops.length, stopId);
+                if (expectedIndex >= 0) {
+                    assertTrue(index >= 0);
+                    assertEquals(stopId, stops[index]);
+                } else {
+                    assertEquals(expectedIndex, index);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMemoryRouteManagerReturnsSameResultsForAllSearches() {
+        int[] routeData = {
+            // number of routes
+            2,
+            // route ID followed by the number of stops and sorted stop IDs
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            2, 6, 5, 12, 34, 55, 76, 78
+        };
+        MemoryRouteManager binaryRouteManager = new MemoryRouteManager(routeData, StopSearch.BINARY);
+        MemoryRouteManager interpolationRouteManager = new MemoryRouteManager(routeData, StopSearch.INTERPOLATION);
+        for (int departureStopId = 0; departureStopId < 90; departureStopId++) {
+            for (int arrivalStopId = 0; arrivalStopId < 90; arrivalStopId++) {
+                assertEquals(
+                    binaryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                    interpolationRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                );
+                assertEquals(
+                    Arrays.toString(binaryRouteManager.findDirectRoutes(departureStopId, arrivalStopId)),
+                    Arrays.toString(interpolationRouteManager.findDirectRoutes(departureStopId, arrivalStopId))
+                );
+            }
+        }
+        assertTrue(interpolationRouteManager.isDirectRouteAvailable(78, 76));
+        assertFalse(interpolationRouteManager.isDirectRouteAvailable(2, 12));
+    }
+}
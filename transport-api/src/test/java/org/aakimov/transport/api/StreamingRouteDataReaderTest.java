@@ -0,0 +1,332 @@
+package org.aakimov.transport.api;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StreamingRouteDataReaderTest {
+
+    private static final String[] ROUTE_DATA_FILES = {
+        "route_data_file",
+        "empty_route_data_file",
+        "route_data_file_with_corrupted_first_line",
+        "route_data_file_with_corrupted_route_data",
+        "route_data_file_with_wrong_number_of_routes",
+        "route_data_file_with_wrong_number_of_stops"
+    };
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadReturnsSameDataAsMappedRead() throws IOException {
+        List<Path> routeDataPaths = this.getRouteDataPaths();
+        MappedRouteDataReader mappedRouteDataReader = new MappedRouteDataReader();
+        for (Path routeDataPath : routeDataPaths) {
+            int[] expectedRouteData = mappedRouteDataReader.read(routeDataPath);
+            assertArrayEquals(
+                "Streaming read of '" + routeDataPath + "' should return the same data.",
+                expectedRouteData,
+                new StreamingRouteDataReader().read(routeDataPath)
+            );
+            for (int bufferSize = 2; bufferSize < 128; bufferSize *= 2) {
+                assertArrayEquals(
+                    "Streaming read of '" + routeDataPath + "' with small buffers should return the same data.",
+                    expectedRouteData,
+                    new StreamingRouteDataReader(bufferSize, false).read(routeDataPath)
+                );
+                assertArrayEquals(
+                    "Prefetched read of '" + routeDataPath + "' with small buffers should return the same data.",
+                    expectedRouteData,
+                    new StreamingRouteDataReader(bufferSize + 1, true).read(routeDataPath)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testReadDecompressesGzipInput() throws IOException {
+        for (Path routeDataPath : this.getRouteDataPaths()) {
+            int[] expectedRouteData = new MappedRouteDataReader().read(routeDataPath);
+            byte[] compressedRouteData = StreamingRouteDataReaderTest.compress(Files.readAllBytes(routeDataPath));
+            Path compressedRouteDataPath = this.temporaryFolder.newFile().toPath();
+            Files.write(compressedRouteDataPath, compressedRouteData);
+
+            assertTrue(StreamingRouteDataReader.isCompressed(compressedRouteDataPath));
+            assertFalse(StreamingRouteDataReader.isCompressed(routeDataPath));
+            assertArrayEquals(
+                "Streaming read of compressed '" + routeDataPath + "' should return the same data.",
+                expectedRouteData,
+                new StreamingRouteDataReader().read(compressedRouteDataPath)
+            );
+            assertArrayEquals(
+                "Streaming read of compressed '" + routeDataPath + "' with small buffers should return the same data.",
+                expectedRouteData,
+                new StreamingRouteDataReader(7, false).read(new ByteArrayInputStream(compressedRouteData))
+            );
+        }
+    }
+
+    @Test
+    public void testReadDoesNotCloseStreamAndIgnoresDataAfterDeclaredRoutes() {
+        byte[] routeData = "2\n1 3 2 1\n2 5 4\nnot a route\n".getBytes(StandardCharsets.US_ASCII);
+        ByteArrayInputStream inputStream = new ByteArrayInputStream(routeData);
+        ReadableByteChannel channel = Channels.newChannel(inputStream);
+
+        assertArrayEquals(
+            new int[] {2, 1, 3, 1, 2, 3, 2, 2, 4, 5},
+            new StreamingRouteDataReader(4, false).read(channel)
+        );
+        assertTrue("Channel of the caller should stay open.", channel.isOpen());
+        assertArrayEquals(
+            new int[] {2, 1, 3, 1, 2, 3, 2, 2, 4, 5},
+            new StreamingRouteDataReader().read(new ByteArrayInputStream(routeData))
+        );
+    }
+
+    @Test
+    public void testReadReturnsEmptyArrayIfStreamCannotBeRead() {
+        InputStream failingInputStream = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Stream is broken.");
+            }
+        };
+        assertEquals(0, new StreamingRouteDataReader().read(failingInputStream).length);
+        assertEquals(0, new StreamingRouteDataReader(16, false).read(failingInputStream).length);
+    }
+
+    @Test
+    public void testSegmentedAndOrderedReadsReturnSameDataAsMappedReads() throws IOException {
+        MappedRouteDataReader mappedRouteDataReader = new MappedRouteDataReader();
+        for (Path routeDataPath : this.getRouteDataPaths()) {
+            assertArrayEquals(
+                "Ordered streaming read of '" + routeDataPath + "' should return the same data.",
+                mappedRouteDataReader.readOrdered(routeDataPath),
+                new StreamingRouteDataReader(32, true).readOrdered(routeDataPath)
+            );
+            assertArrayEquals(
+                "Segmented streaming read of '" + routeDataPath + "' should return the same data.",
+                StreamingRouteDataReaderTest.concatenate(mappedRouteDataReader.readSegments(routeDataPath, true)),
+                StreamingRouteDataReaderTest.concatenate(
+                    new StreamingRouteDataReader(32, false).readSegments(routeDataPath, true)
+                )
+            );
+        }
+    }
+
+    @Test
+    public void testLenientReadSkipsBadLinesAndReportsThem() throws IOException {
+        byte[] routeData = MappedRouteDataReaderTest.LENIENT_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII);
+        for (int bufferSize = 2; bufferSize < 64; bufferSize++) {
+            for (boolean prefetch : new boolean[] {false, true}) {
+                StreamingRouteDataReader routeDataReader = new StreamingRouteDataReader(
+                    bufferSize,
+                    prefetch,
+                    IngestionPolicy.SKIP_BAD_LINES
+                );
+                assertArrayEquals(
+                    "Lenient read with buffers of " + bufferSize + " bytes should skip bad lines.",
+                    MappedRouteDataReaderTest.LENIENT_ROUTE_DATA_CONTENTS,
+                    routeDataReader.read(new ByteArrayInputStream(routeData))
+                );
+                MappedRouteDataReaderTest.assertLenientReport(routeDataReader.getReport());
+            }
+        }
+
+        StreamingRouteDataReader routeDataReader = new StreamingRouteDataReader(IngestionPolicy.SKIP_BAD_LINES);
+        assertArrayEquals(
+            MappedRouteDataReaderTest.LENIENT_ROUTE_DATA_CONTENTS,
+            routeDataReader.read(new ByteArrayInputStream(StreamingRouteDataReaderTest.compress(routeData)))
+        );
+        MappedRouteDataReaderTest.assertLenientReport(routeDataReader.getReport());
+    }
+
+    @Test
+    public void testStrictReadReportsRejectionAndFailsStartupIfRequired() {
+        byte[] routeData = MappedRouteDataReaderTest.LENIENT_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII);
+        StreamingRouteDataReader routeDataReader = new StreamingRouteDataReader(IngestionPolicy.STRICT);
+        assertEquals(0, routeDataReader.read(new ByteArrayInputStream(routeData)).length);
+        assertTrue(routeDataReader.getReport().isRejected());
+        assertEquals(3, routeDataReader.getReport().getErrors().get(0).getLineNumber());
+        assertEquals(8, routeDataReader.getReport().getErrors().get(0).getByteOffset());
+
+        try {
+            new StreamingRouteDataReader(16, false, IngestionPolicy.FAIL_STARTUP).read(
+                new ByteArrayInputStream(routeData)
+            );
+            fail("Rejected route data should fail startup.");
+        } catch (IllegalStateException exception) {
+            assertTrue(exception.getCause() instanceof FileFormatException);
+        }
+    }
+
+    @Test
+    public void testDuplicateStopsAndRoutesAreHandledAsInMappedReads() {
+        byte[] duplicateStopRouteData = MappedRouteDataReaderTest.DUPLICATE_STOP_ROUTE_DATA
+            .getBytes(StandardCharsets.US_ASCII);
+        StreamingRouteDataReader routeDataReader = new StreamingRouteDataReader(4, false);
+        assertArrayEquals(
+            new int[] {3, 1, 3, 1, 3, 5, 2, 3, 6, 7, 8, 3, 2, 2, 9},
+            routeDataReader.read(new ByteArrayInputStream(duplicateStopRouteData))
+        );
+        assertEquals(2, routeDataReader.getReport().getDuplicateStopRouteCount());
+        assertEquals(3, routeDataReader.getReport().getReleasedLength());
+
+        byte[] duplicateOnlyRouteData = MappedRouteDataReaderTest.DUPLICATE_ONLY_ROUTE_DATA
+            .getBytes(StandardCharsets.US_ASCII);
+        StreamingRouteDataReader lenientRouteDataReader = new StreamingRouteDataReader(
+            4,
+            false,
+            IngestionPolicy.SKIP_BAD_LINES
+        );
+        assertArrayEquals(
+            new int[] {1, 1, 2, 2, 3},
+            lenientRouteDataReader.read(new ByteArrayInputStream(duplicateOnlyRouteData))
+        );
+        MappedRouteDataReaderTest.assertDuplicateOnlyReport(lenientRouteDataReader.getReport());
+
+        byte[] duplicateRouteData = MappedRouteDataReaderTest.DUPLICATE_ROUTE_DATA.getBytes(StandardCharsets.US_ASCII);
+        for (boolean prefetch : new boolean[] {false, true}) {
+            StreamingRouteDataReader rejectingRouteDataReader = new StreamingRouteDataReader(
+                4,
+                prefetch,
+                IngestionPolicy.STRICT,
+                DuplicateRoutePolicy.REJECT
+            );
+            assertArrayEquals(
+                new int[] {2, 1, 2, 2, 3, 2, 2, 4, 5},
+                rejectingRouteDataReader.read(new ByteArrayInputStream(duplicateRouteData))
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(rejectingRouteDataReader.getReport(), 2, 8);
+
+            StreamingRouteDataReader mergingRouteDataReader = new StreamingRouteDataReader(
+                4,
+                prefetch,
+                IngestionPolicy.STRICT,
+                DuplicateRoutePolicy.MERGE
+            );
+            assertArrayEquals(
+                MappedRouteDataReaderTest.DUPLICATE_ROUTE_DATA_MERGED_CONTENTS,
+                mergingRouteDataReader.read(new ByteArrayInputStream(duplicateRouteData))
+            );
+            MappedRouteDataReaderTest.assertDuplicateRouteReport(mergingRouteDataReader.getReport(), 2, 6);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void testReadFailsIfPrefetchThreadIsInterrupted() {
+        StringBuilder routeDataBuilder = new StringBuilder().append(100).append('\n');
+        for (int routeId = 0; routeId < 100; routeId++) {
+            routeDataBuilder.append(routeId).append(" 1 2 3\n");
+        }
+        ByteBuffer routeData = ByteBuffer.wrap(routeDataBuilder.toString().getBytes(StandardCharsets.US_ASCII));
+        Thread readingThread = Thread.currentThread();
+        ReadableByteChannel interruptingChannel = new ReadableByteChannel() {
+            @Override
+            public int read(ByteBuffer target) {
+                if (Thread.currentThread() != readingThread) {
+                    // prefetch thread is interrupted while it fills the buffer
+                    Thread.currentThread().interrupt();
+                }
+                if (!routeData.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(target.remaining(), routeData.remaining());
+                ByteBuffer chunk = routeData.slice();
+                chunk.limit(count);
+                target.put(chunk);
+                routeData.position(routeData.position() + count);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        StreamingRouteDataReader routeDataReader = new StreamingRouteDataReader(16, true);
+        assertEquals(0, routeDataReader.read(interruptingChannel).length);
+        assertTrue(routeDataReader.getReport().isRejected());
+        assertEquals("Route data prefetch is interrupted.", routeDataReader.getReport().getFailure());
+    }
+
+    private List<Path> getRouteDataPaths() throws IOException {
+        List<Path> routeDataPaths = new ArrayList<>();
+        for (String routeDataFile : ROUTE_DATA_FILES) {
+            routeDataPaths.add(Paths.get("src/test/resources/org/aakimov/transport/api/" + routeDataFile));
+        }
+        routeDataPaths.add(this.createRouteDataFile(400, 450, "some corrupted data\n"));
+        return routeDataPaths;
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(byteArrayOutputStream)) {
+            outputStream.write(data);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private static int[] concatenate(IntBuffer[] segments) {
+        int length = 0;
+        for (IntBuffer segment : segments) {
+            length += segment.limit();
+        }
+        int[] routeData = new int[length];
+        int routeDataIndex = 0;
+        for (IntBuffer segment : segments) {
+            for (int index = 0; index < segment.limit(); index++) {
+                routeData[routeDataIndex++] = segment.get(index);
+            }
+        }
+        return routeData;
+    }
+
+    private Path createRouteDataFile(int declaredRouteCount, int routeCount, String suffix) throws IOException {
+        Random random = new Random(routeCount);
+        StringBuilder routeDataBuilder = new StringBuilder().append(declaredRouteCount).append('\n');
+        for (int routeId = 0; routeId < routeCount; routeId++) {
+            routeDataBuilder.append(routeId);
+            int stopCount = 2 + random.nextInt(50);
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                routeDataBuilder.append(' ').append(random.nextInt(1000));
+            }
+            routeDataBuilder.append(routeId % 2 == 0 ? "\n" : "\r\n");
+        }
+        routeDataBuilder.append(suffix);
+
+        Path routeDataPath = this.temporaryFolder.newFile().toPath();
+        Files.write(routeDataPath, routeDataBuilder.toString().getBytes(StandardCharsets.UTF_8));
+        return routeDataPath;
+    }
+}
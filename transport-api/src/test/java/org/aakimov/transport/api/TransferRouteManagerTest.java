@@ -0,0 +1,156 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TransferRouteManagerTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        4,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 3, 1, 2, 3,
+        2, 3, 3, 4, 5,
+        3, 3, 5, 6, 7,
+        4, 2, 8, 9
+    };
+
+    @Test
+    public void testFindsTransferStops() {
+        TransferRouteManager routeManager = new TransferRouteManager(new MemoryRouteManager(ROUTE_DATA), ROUTE_DATA);
+
+        assertArrayEquals(new int[0], routeManager.findTransferStops(1, 3, 0));
+        assertArrayEquals(new int[0], routeManager.findTransferStops(2, 2, 0));
+        assertNull(routeManager.findTransferStops(1, 4, 0));
+        assertArrayEquals(new int[] {3}, routeManager.findTransferStops(1, 4, 1));
+        assertArrayEquals(new int[] {3}, routeManager.findTransferStops(4, 1, 3));
+        assertNull(routeManager.findTransferStops(1, 7, 1));
+        assertArrayEquals(new int[] {3, 5}, routeManager.findTransferStops(1, 7, 2));
+        assertArrayEquals(new int[] {5, 3}, routeManager.findTransferStops(6, 2, 5));
+
+        // stops of the unconnected route and unknown stops are not reachable
+        assertNull(routeManager.findTransferStops(1, 8, 10));
+        assertNull(routeManager.findTransferStops(1, 100, 10));
+        assertNull(routeManager.findTransferStops(-5, 1, 10));
+    }
+
+    @Test
+    public void testPassesDirectRouteRequests() {
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(ROUTE_DATA);
+        TransferRouteManager routeManager = new TransferRouteManager(memoryRouteManager, ROUTE_DATA);
+        assertTrue(routeManager.isDirectRouteAvailable(8, 9));
+        assertArrayEquals(new int[] {2, 3}, routeManager.findDirectRoutes(5, 5));
+        assertArrayEquals(
+            new boolean[] {true, false},
+            routeManager.areDirectRoutesAvailable(new int[] {1, 1}, new int[] {2, 4})
+        );
+        assertEquals(memoryRouteManager, routeManager.getRouteManager());
+    }
+
+    @Test
+    public void testFindsConnectionsWithFewestTransfers() {
+        Random random = new Random(17);
+        int routeCount = 60;
+        int stopCount = 300;
+        int[][] routes = new int[routeCount][];
+        int routeDataLength = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            routes[routeIndex] = random.ints(2 + random.nextInt(6), 0, stopCount).sorted().toArray();
+            routeDataLength += routes[routeIndex].length + 2;
+        }
+        int[] routeData = new int[routeDataLength];
+        routeData[0] = routeCount;
+        int currentRouteDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            routeData[currentRouteDataIndex] = routeIndex;
+            routeData[currentRouteDataIndex + 1] = routes[routeIndex].length;
+            System.arraycopy(routes[routeIndex], 0, routeData, currentRouteDataIndex + 2, routes[routeIndex].length);
+            currentRouteDataIndex += routes[routeIndex].length + 2;
+        }
+
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(routeData);
+        TransferRouteManager routeManager = new TransferRouteManager(memoryRouteManager, routeData);
+        for (int queryIndex = 0; queryIndex < 3000; queryIndex++) {
+            int departureStopId = random.nextInt(stopCount);
+            int arrivalStopId = random.nextInt(stopCount);
+            int expectedTransferCount = countTransfers(routes, departureStopId, arrivalStopId);
+            int maxTransfers = random.nextInt(6);
+            int[] transferStops = routeManager.findTransferStops(departureStopId, arrivalStopId, maxTransfers);
+            if (expectedTransferCount < 0 || expectedTransferCount > maxTransfers) {
+                assertNull(transferStops);
+                continue;
+            }
+
+            assertNotNull(transferStops);
+            assertEquals(expectedTransferCount, transferStops.length);
+            int previousStopId = departureStopId;
+            for (int transferStopId : transferStops) {
+                assertTrue(memoryRouteManager.isDirectRouteAvailable(previousStopId, transferStopId));
+                previousStopId = transferStopId;
+            }
+            assertTrue(memoryRouteManager.isDirectRouteAvailable(previousStopId, arrivalStopId));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNegativeMaxTransfers() {
+        new TransferRouteManager(new MemoryRouteManager(ROUTE_DATA), ROUTE_DATA).findTransferStops(1, 2, -1);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testOtherRouteManagersDoNotSupportTransfers() {
+        new MemoryRouteManager(ROUTE_DATA).findTransferStops(1, 2, 1);
+    }
+
+    /**
+     * Count the fewest transfers between stops by a plain breadth-first search over routes
+     */
+    private static int countTransfers(int[][] routes, int departureStopId, int arrivalStopId) {
+        int[] levels = new int[routes.length];
+        Arrays.fill(levels, -1);
+        for (int routeIndex = 0; routeIndex < routes.length; routeIndex++) {
+            if (Arrays.binarySearch(routes[routeIndex], departureStopId) >= 0) {
+                levels[routeIndex] = 0;
+            }
+        }
+        for (int level = 0; level < routes.length; level++) {
+            boolean hasLevelRoutes = false;
+            for (int routeIndex = 0; routeIndex < routes.length; routeIndex++) {
+                if (levels[routeIndex] != level) {
+                    continue;
+                }
+                hasLevelRoutes = true;
+                if (Arrays.binarySearch(routes[routeIndex], arrivalStopId) >= 0) {
+                    return level;
+                }
+                for (int nextRouteIndex = 0; nextRouteIndex < routes.length; nextRouteIndex++) {
+                    if (levels[nextRouteIndex] < 0 && shareStop(routes[routeIndex], routes[nextRouteIndex])) {
+                        levels[nextRouteIndex] = level + 1;
+                    }
+                }
+            }
+            if (!hasLevelRoutes) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean shareStop(int[] stops, int[] otherStops) {
+        for (int stopId : stops) {
+            if (Arrays.binarySearch(otherStops, stopId) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
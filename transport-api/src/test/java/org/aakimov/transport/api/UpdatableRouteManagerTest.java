@@ -0,0 +1,238 @@
+package org.aakimov.transport.api;
+
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UpdatableRouteManagerTest {
+
+    private int[] routeData;
+
+    @Before
+    public void setUp() {
+        this.routeData = new int[] {
+            // number of routes
+            2,
+            // route ID followed by the number of stops and sorted stop IDs
+            1, 13, 2, 3, 5, 9, 13, 34, 43, 45, 65, 71, 73, 76, 88,
+            2, 6, 5, 12, 34, 55, 76, 78
+        };
+    }
+
+    @Test
+    public void testIsDirectRouteAvailableReturnsSameResultsAsMemoryRouteManagerWithoutUpdates() {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(this.routeData);
+        MemoryRouteManager memoryRouteManager = new MemoryRouteManager(this.routeData);
+        for (int departureStopId = 0; departureStopId < 90; departureStopId++) {
+            for (int arrivalStopId = 0; arrivalStopId < 90; arrivalStopId++) {
+                assertEquals(
+                    memoryRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId),
+                    updatableRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                );
+            }
+        }
+        assertFalse(new UpdatableRouteManager(new int[0]).isDirectRouteAvailable(100, 200));
+    }
+
+    @Test
+    public void testUpdateAddsReplacesAndRemovesRoutes() {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(this.routeData);
+
+        updatableRouteManager.update(RouteUpdate.put(3, new int[] {100, 2, 200}));
+        assertTrue(updatableRouteManager.isDirectRouteAvailable(100, 200));
+        assertArrayEquals(new int[] {1, 3}, updatableRouteManager.findDirectRoutes(2, 2));
+
+        updatableRouteManager.update(RouteUpdate.put(1, new int[] {3, 300}));
+        assertTrue(updatableRouteManager.isDirectRouteAvailable(3, 300));
+        assertFalse(updatableRouteManager.isDirectRouteAvailable(2, 43));
+        assertArrayEquals(new int[] {2}, updatableRouteManager.findDirectRoutes(5, 76));
+
+        updatableRouteManager.update(Arrays.asList(RouteUpdate.remove(2), RouteUpdate.remove(3)));
+        assertFalse(updatableRouteManager.isDirectRouteAvailable(5, 76));
+        assertFalse(updatableRouteManager.isDirectRouteAvailable(100, 200));
+        assertTrue(updatableRouteManager.isDirectRouteAvailable(300, 3));
+
+        updatableRouteManager.update(RouteUpdate.put(2, new int[] {5, 76}));
+        assertArrayEquals(new int[] {2}, updatableRouteManager.findDirectRoutes(5, 76));
+    }
+
+    @Test
+    public void testLastUpdateOfRouteInBatchWins() {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(this.routeData, Integer.MAX_VALUE);
+        updatableRouteManager.update(
+            Arrays.asList(
+                RouteUpdate.put(7, new int[] {5, 100}),
+                RouteUpdate.put(4, new int[] {5, 100}),
+                RouteUpdate.put(7, new int[] {5, 200}),
+                RouteUpdate.remove(4),
+                RouteUpdate.put(3, new int[] {5, 100}),
+                RouteUpdate.remove(9)
+            )
+        );
+
+        assertArrayEquals(new int[] {3}, updatableRouteManager.findDirectRoutes(5, 100));
+        assertArrayEquals(new int[] {7}, updatableRouteManager.findDirectRoutes(5, 200));
+
+        updatableRouteManager.update(Arrays.asList(RouteUpdate.remove(3), RouteUpdate.put(4, new int[] {5, 200})));
+        assertFalse(updatableRouteManager.isDirectRouteAvailable(5, 100));
+        assertArrayEquals(new int[] {4, 7}, updatableRouteManager.findDirectRoutes(5, 200));
+    }
+
+    @Test
+    public void testCompactionKeepsAllTheUpdates() {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(this.routeData, Integer.MAX_VALUE);
+        updatableRouteManager.update(
+            Arrays.asList(
+                RouteUpdate.put(3, new int[] {100, 2, 200}),
+                RouteUpdate.remove(1),
+                RouteUpdate.put(4, new int[] {5, 78})
+            )
+        );
+        updatableRouteManager.compact();
+
+        assertArrayEquals(new int[] {2, 4}, updatableRouteManager.findDirectRoutes(5, 78));
+        assertTrue(updatableRouteManager.isDirectRouteAvailable(2, 200));
+        assertFalse(updatableRouteManager.isDirectRouteAvailable(2, 43));
+
+        updatableRouteManager.update(RouteUpdate.remove(4));
+        assertArrayEquals(new int[] {2}, updatableRouteManager.findDirectRoutes(5, 78));
+    }
+
+    @Test
+    public void testRandomUpdatesMatchRebuiltRouteData() {
+        Random random = new Random(12);
+        Map<Integer, int[]> routes = new LinkedHashMap<>();
+        for (int routeId = 0; routeId < 200; routeId++) {
+            routes.put(routeId, UpdatableRouteManagerTest.createStops(random));
+        }
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(
+            UpdatableRouteManagerTest.buildRouteData(routes),
+            16
+        );
+
+        for (int batchIndex = 0; batchIndex < 100; batchIndex++) {
+            List<RouteUpdate> routeUpdates = new ArrayList<>();
+            int updateCount = 1 + random.nextInt(5);
+            for (int updateIndex = 0; updateIndex < updateCount; updateIndex++) {
+                int routeId = random.nextInt(300);
+                if (random.nextInt(3) == 0) {
+                    routes.remove(routeId);
+                    routeUpdates.add(RouteUpdate.remove(routeId));
+                } else {
+                    int[] stops = UpdatableRouteManagerTest.createStops(random);
+                    routes.remove(routeId);
+                    routes.put(routeId, stops);
+                    routeUpdates.add(RouteUpdate.put(routeId, stops));
+                }
+            }
+            updatableRouteManager.update(routeUpdates);
+            if (batchIndex % 25 == 0) {
+                updatableRouteManager.compact();
+            }
+
+            MemoryRouteManager memoryRouteManager = new MemoryRouteManager(
+                UpdatableRouteManagerTest.buildRouteData(routes)
+            );
+            for (int queryIndex = 0; queryIndex < 50; queryIndex++) {
+                int departureStopId = random.nextInt(100);
+                int arrivalStopId = random.nextInt(100);
+                int[] expectedRouteIds = memoryRouteManager.findDirectRoutes(departureStopId, arrivalStopId);
+                int[] routeIds = updatableRouteManager.findDirectRoutes(departureStopId, arrivalStopId);
+                Arrays.sort(expectedRouteIds);
+                Arrays.sort(routeIds);
+                assertArrayEquals(expectedRouteIds, routeIds);
+                assertEquals(
+                    expectedRouteIds.length > 0,
+                    updatableRouteManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testCloseStopsCompactionThread() throws InterruptedException {
+        UpdatableRouteManager updatableRouteManager = new UpdatableRouteManager(this.routeData, 0);
+        Thread compactionThread = UpdatableRouteManagerTest.startCompactionThread(updatableRouteManager);
+
+        updatableRouteManager.close();
+        compactionThread.join(10000);
+        assertFalse(compactionThread.isAlive());
+
+        // updates are still applied, but they are not compacted any more
+        updatableRouteManager.update(RouteUpdate.put(4, new int[] {7, 8}));
+        assertTrue(updatableRouteManager.isDirectRouteAvailable(7, 8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPutRejectsRoutesWithLessThanTwoStops() {
+        RouteUpdate.put(1, new int[] {5});
+    }
+
+    @Test
+    public void testPutRemovesDuplicateStops() {
+        assertArrayEquals(new int[] {3, 7, 9}, RouteUpdate.put(1, new int[] {9, 7, 3, 7, 9}).getStops());
+        try {
+            RouteUpdate.put(1, new int[] {7, 7});
+            fail("Route of a single repeated stop should be rejected.");
+        } catch (IllegalArgumentException exception) {
+            assertEquals(RouteLineParser.MESSAGE_NOT_ENOUGH_STOPS, exception.getMessage());
+        }
+    }
+
+    static Thread startCompactionThread(UpdatableRouteManager updatableRouteManager) throws InterruptedException {
+        Set<Thread> compactionThreads = UpdatableRouteManagerTest.findCompactionThreads();
+        // zero threshold makes every update start the compaction
+        updatableRouteManager.update(RouteUpdate.put(3, new int[] {100, 200}));
+        for (int attempt = 0; attempt < 1000; attempt++) {
+            Set<Thread> newCompactionThreads = UpdatableRouteManagerTest.findCompactionThreads();
+            newCompactionThreads.removeAll(compactionThreads);
+            if (!newCompactionThreads.isEmpty()) {
+                return newCompactionThreads.iterator().next();
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Compaction thread is not started.");
+    }
+
+    private static Set<Thread> findCompactionThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+            .filter(thread -> "route-data-compaction".equals(thread.getName()))
+            .collect(Collectors.toSet());
+    }
+
+    private static int[] createStops(Random random) {
+        return random.ints(0, 100).distinct().limit(2 + random.nextInt(10)).sorted().toArray();
+    }
+
+    private static int[] buildRouteData(Map<Integer, int[]> routes) {
+        int length = 1;
+        for (int[] stops : routes.values()) {
+            length += stops.length + 2;
+        }
+        int[] routeData = new int[length];
+        routeData[0] = routes.size();
+        int routeDataIndex = 1;
+        for (Map.Entry<Integer, int[]> route : routes.entrySet()) {
+            routeData[routeDataIndex] = route.getKey();
+            routeData[routeDataIndex + 1] = route.getValue().length;
+            System.arraycopy(route.getValue(), 0, routeData, routeDataIndex + 2, route.getValue().length);
+            routeDataIndex += route.getValue().length + 2;
+        }
+        return routeData;
+    }
+}
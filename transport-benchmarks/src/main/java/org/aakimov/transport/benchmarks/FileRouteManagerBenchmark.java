@@ -0,0 +1,128 @@
+package org.aakimov.transport.benchmarks;
+
+import org.aakimov.transport.api.FileRouteManager;
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.aakimov.transport.api.RouteManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Baseline benchmark of the naive route manager that reads route data file per request.
+ *
+ * @author aakimov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileRouteManagerBenchmark {
+
+    /**
+     * Number of pre-generated queries (power of 2)
+     */
+    private static final int QUERY_COUNT = 64;
+
+    /**
+     * Number of routes
+     */
+    @Param({"1000"})
+    private int routeCount;
+
+    /**
+     * Number of stops
+     */
+    @Param({"100000"})
+    private int stopCount;
+
+    /**
+     * Maximum number of stops in one route
+     */
+    @Param({"1000"})
+    private int stopsPerRoute;
+
+    /**
+     * Query workload
+     */
+    @Param({"HIT", "MISS"})
+    private Workload workload;
+
+    /**
+     * Generated route data file
+     */
+    private Path routeDataPath;
+
+    /**
+     * Route manager
+     */
+    private RouteManager routeManager;
+
+    /**
+     * Departure and arrival stop ID pairs
+     */
+    private int[] queries;
+
+    /**
+     * Index of the next query
+     */
+    private int queryIndex;
+
+    /**
+     * Generate route data and queries
+     *
+     * @throws IOException if route data file cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.routeDataPath = RouteDataset.generate(this.routeCount, this.stopCount, this.stopsPerRoute);
+        this.queries = this.workload.createQueries(
+            new MappedRouteDataReader().read(this.routeDataPath),
+            this.stopCount,
+            FileRouteManagerBenchmark.QUERY_COUNT,
+            new Random(RouteDataset.SEED)
+        );
+        this.routeManager = new FileRouteManager(this.routeDataPath.toString());
+    }
+
+    /**
+     * Delete route data file
+     *
+     * @throws IOException if file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        RouteDataset.delete(this.routeDataPath);
+    }
+
+    /**
+     * Perform next query
+     *
+     * @return query result
+     */
+    @Benchmark
+    public boolean isDirectRouteAvailable() {
+        int currentQueryIndex = this.queryIndex;
+        this.queryIndex = (currentQueryIndex + 1) & (FileRouteManagerBenchmark.QUERY_COUNT - 1);
+        return this.routeManager.isDirectRouteAvailable(
+            this.queries[currentQueryIndex * 2],
+            this.queries[currentQueryIndex * 2 + 1]
+        );
+    }
+}
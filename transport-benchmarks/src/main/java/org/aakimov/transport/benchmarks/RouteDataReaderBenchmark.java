@@ -0,0 +1,99 @@
+package org.aakimov.transport.benchmarks;
+
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the route data file parsing.
+ *
+ * @author aakimov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RouteDataReaderBenchmark {
+
+    /**
+     * Number of routes
+     */
+    @Param({"1000", "10000"})
+    private int routeCount;
+
+    /**
+     * Number of stops
+     */
+    @Param({"100000"})
+    private int stopCount;
+
+    /**
+     * Maximum number of stops in one route
+     */
+    @Param({"1000"})
+    private int stopsPerRoute;
+
+    /**
+     * Number of threads used to parse route data file
+     */
+    @Param({"1", "4"})
+    private int parallelism;
+
+    /**
+     * Generated route data file
+     */
+    private Path routeDataPath;
+
+    /**
+     * Route data reader
+     */
+    private MappedRouteDataReader routeDataReader;
+
+    /**
+     * Generate route data file
+     *
+     * @throws IOException if file cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.routeDataPath = RouteDataset.generate(this.routeCount, this.stopCount, this.stopsPerRoute);
+        this.routeDataReader = new MappedRouteDataReader(this.parallelism);
+    }
+
+    /**
+     * Delete route data file
+     *
+     * @throws IOException if file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        RouteDataset.delete(this.routeDataPath);
+    }
+
+    /**
+     * Parse route data file into the heap array
+     *
+     * @return route data
+     */
+    @Benchmark
+    public int[] read() {
+        return this.routeDataReader.read(this.routeDataPath);
+    }
+}
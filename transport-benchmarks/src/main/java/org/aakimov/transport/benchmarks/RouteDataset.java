@@ -0,0 +1,54 @@
+package org.aakimov.transport.benchmarks;
+
+import org.aakimov.transport.generator.RouteDataGenerator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Route data sets used by the benchmarks.
+ *
+ * Data sets are generated with a fixed seed, so every run of the benchmark measures exactly the same data.
+ *
+ * @author aakimov
+ */
+final class RouteDataset {
+
+    /**
+     * Random seed of the generated data sets
+     */
+    static final long SEED = 20170501L;
+
+    /**
+     * Instantiation of this class is not supported.
+     */
+    private RouteDataset() {
+        throw new UnsupportedOperationException("This class should not be instantiated.");
+    }
+
+    /**
+     * Generate temporary route data file
+     *
+     * @param routeCount number of routes
+     * @param stopCount number of stops
+     * @param stopsPerRoute maximum number of stops in one route
+     * @return generated file path
+     * @throws IOException if file cannot be created
+     */
+    static Path generate(int routeCount, int stopCount, int stopsPerRoute) throws IOException {
+        return new RouteDataGenerator(RouteDataset.SEED).generate(routeCount, stopCount, stopsPerRoute);
+    }
+
+    /**
+     * Delete generated route data file
+     *
+     * @param routeDataPath route data file path (ignored if null)
+     * @throws IOException if file cannot be deleted
+     */
+    static void delete(Path routeDataPath) throws IOException {
+        if (routeDataPath != null) {
+            Files.deleteIfExists(routeDataPath);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package org.aakimov.transport.benchmarks;
+
+import org.aakimov.transport.api.BitmapRouteManager;
+import org.aakimov.transport.api.BufferRouteManager;
+import org.aakimov.transport.api.IndexedRouteManager;
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.aakimov.transport.api.ShardedRouteManager;
+import org.aakimov.transport.api.StopSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of the in-memory route managers.
+ *
+ * Every invocation performs a single query from the pre-generated list of queries of the given workload,
+ * so both throughput (-bm thrpt) and latency distribution (-bm sample) can be measured.
+ *
+ * @author aakimov
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RouteManagerBenchmark {
+
+    /**
+     * Number of pre-generated queries (power of 2)
+     */
+    private static final int QUERY_COUNT = 1024;
+
+    /**
+     * Available route manager implementations
+     */
+    public enum RouteManagerType {
+
+        /**
+         * MemoryRouteManager
+         */
+        MEMORY,
+
+        /**
+         * MemoryRouteManager with interpolation search
+         */
+        MEMORY_INTERPOLATION,
+
+        /**
+         * MemoryRouteManager with route filters (8 bits per stop)
+         */
+        MEMORY_FILTER,
+
+        /**
+         * ShardedRouteManager of MemoryRouteManager shards (4 shards per available processor)
+         */
+        MEMORY_SHARDED,
+
+        /**
+         * IndexedRouteManager
+         */
+        INDEXED,
+
+        /**
+         * BitmapRouteManager
+         */
+        BITMAP,
+
+        /**
+         * BufferRouteManager on top of the off-heap route data
+         */
+        OFF_HEAP
+    }
+
+    /**
+     * Number of routes
+     */
+    @Param({"1000", "10000"})
+    private int routeCount;
+
+    /**
+     * Number of stops
+     */
+    @Param({"100000"})
+    private int stopCount;
+
+    /**
+     * Maximum number of stops in one route
+     */
+    @Param({"1000"})
+    private int stopsPerRoute;
+
+    /**
+     * Route manager implementation
+     */
+    @Param({"MEMORY", "MEMORY_INTERPOLATION", "MEMORY_FILTER", "MEMORY_SHARDED", "INDEXED", "BITMAP", "OFF_HEAP"})
+    private RouteManagerType routeManagerType;
+
+    /**
+     * Query workload
+     */
+    @Param({"HIT", "MISS", "WORST"})
+    private Workload workload;
+
+    /**
+     * Route manager
+     */
+    private RouteManager routeManager;
+
+    /**
+     * Departure and arrival stop ID pairs
+     */
+    private int[] queries;
+
+    /**
+     * Index of the next query
+     */
+    private int queryIndex;
+
+    /**
+     * Generate route data and queries
+     *
+     * @throws IOException if route data file cannot be created
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Path routeDataPath = RouteDataset.generate(this.routeCount, this.stopCount, this.stopsPerRoute);
+        try {
+            MappedRouteDataReader routeDataReader = new MappedRouteDataReader();
+            int[] routeData = routeDataReader.read(routeDataPath);
+            this.queries = this.workload.createQueries(
+                routeData,
+                this.stopCount,
+                RouteManagerBenchmark.QUERY_COUNT,
+                new Random(RouteDataset.SEED)
+            );
+
+            switch (this.routeManagerType) {
+                case INDEXED:
+                    this.routeManager = new IndexedRouteManager(routeData);
+                    break;
+                case BITMAP:
+                    this.routeManager = new BitmapRouteManager(routeData);
+                    break;
+                case MEMORY_INTERPOLATION:
+                    this.routeManager = new MemoryRouteManager(routeData, StopSearch.INTERPOLATION);
+                    break;
+                case MEMORY_FILTER:
+                    this.routeManager = new MemoryRouteManager(routeData, StopSearch.BINARY, 8);
+                    break;
+                case MEMORY_SHARDED:
+                    int processorCount = Runtime.getRuntime().availableProcessors();
+                    this.routeManager = new ShardedRouteManager(
+                        routeData,
+                        processorCount * 4,
+                        processorCount,
+                        MemoryRouteManager::new
+                    );
+                    break;
+                case OFF_HEAP:
+                    this.routeManager = new BufferRouteManager(routeDataReader.readOffHeap(routeDataPath));
+                    break;
+                case MEMORY:
+                default:
+                    this.routeManager = new MemoryRouteManager(routeData);
+                    break;
+            }
+        } finally {
+            RouteDataset.delete(routeDataPath);
+        }
+    }
+
+    /**
+     * Stop threads of the route manager
+     *
+     * @throws IOException if route manager cannot be closed
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (this.routeManager instanceof Closeable) {
+            ((Closeable)this.routeManager).close();
+        }
+    }
+
+    /**
+     * Perform next query
+     *
+     * @return query result
+     */
+    @Benchmark
+    public boolean isDirectRouteAvailable() {
+        int currentQueryIndex = this.queryIndex;
+        this.queryIndex = (currentQueryIndex + 1) & (RouteManagerBenchmark.QUERY_COUNT - 1);
+        return this.routeManager.isDirectRouteAvailable(
+            this.queries[currentQueryIndex * 2],
+            this.queries[currentQueryIndex * 2 + 1]
+        );
+    }
+}
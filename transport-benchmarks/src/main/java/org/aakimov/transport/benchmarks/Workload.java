@@ -0,0 +1,146 @@
+package org.aakimov.transport.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Query workloads of the route manager benchmarks.
+ *
+ * Every workload creates a list of queries in form of the array of departure and arrival stop ID pairs:
+ * [departure stop ID1][arrival stop ID1][departure stop ID2][arrival stop ID2]...
+ *
+ * @author aakimov
+ */
+public enum Workload {
+
+    /**
+     * Both stops are taken from the same random route (direct route is always available)
+     */
+    HIT {
+        @Override
+        void createQuery(int[] routeData, int[] routeOffsets, int stopCount, Random random, int[] query) {
+            int routeOffset = routeOffsets[random.nextInt(routeOffsets.length)];
+            Workload.pickStops(routeData, routeOffset, random, query);
+        }
+    },
+
+    /**
+     * Stops are not present in the route data (direct route is never available)
+     */
+    MISS {
+        @Override
+        void createQuery(int[] routeData, int[] routeOffsets, int stopCount, Random random, int[] query) {
+            query[0] = stopCount + random.nextInt(stopCount);
+            query[1] = stopCount + random.nextInt(stopCount);
+        }
+    },
+
+    /**
+     * Both stops are taken from the last route and are not connected by any other route
+     * (sequential search has to check every route)
+     */
+    WORST {
+        @Override
+        void createQuery(int[] routeData, int[] routeOffsets, int stopCount, Random random, int[] query) {
+            int lastRouteOffset = routeOffsets[routeOffsets.length - 1];
+            for (int attempt = 0; attempt < Workload.MAX_ATTEMPTS; attempt++) {
+                Workload.pickStops(routeData, lastRouteOffset, random, query);
+                if (!Workload.isConnectedBefore(routeData, routeOffsets, routeOffsets.length - 1, query)) {
+                    return;
+                }
+            }
+        }
+    };
+
+    /**
+     * Maximum number of attempts to find a pair of stops that is served by the last route only
+     */
+    private static final int MAX_ATTEMPTS = 64;
+
+    /**
+     * Create the given number of queries
+     *
+     * @param routeData route data (see MappedRouteDataReader)
+     * @param stopCount number of stops used to generate route data
+     * @param queryCount number of queries
+     * @param random random instance
+     * @return departure and arrival stop ID pairs
+     */
+    int[] createQueries(int[] routeData, int stopCount, int queryCount, Random random) {
+        int[] routeOffsets = Workload.findRouteOffsets(routeData);
+        int[] queries = new int[queryCount * 2];
+        int[] query = new int[2];
+        for (int queryIndex = 0; queryIndex < queryCount; queryIndex++) {
+            this.createQuery(routeData, routeOffsets, stopCount, random, query);
+            queries[queryIndex * 2] = query[0];
+            queries[queryIndex * 2 + 1] = query[1];
+        }
+        return queries;
+    }
+
+    /**
+     * Create single query
+     *
+     * @param routeData route data
+     * @param routeOffsets offsets of the route blocks in the route data
+     * @param stopCount number of stops used to generate route data
+     * @param random random instance
+     * @param query target array for the departure and arrival stop IDs
+     */
+    abstract void createQuery(int[] routeData, int[] routeOffsets, int stopCount, Random random, int[] query);
+
+    /**
+     * Find offsets of all the route blocks
+     *
+     * @param routeData route data
+     * @return route block offsets
+     */
+    private static int[] findRouteOffsets(int[] routeData) {
+        int[] routeOffsets = new int[routeData[0]];
+        int routeDataIndex = 1;
+        for (int routeIndex = 0; routeIndex < routeOffsets.length; routeIndex++) {
+            routeOffsets[routeIndex] = routeDataIndex;
+            routeDataIndex += routeData[routeDataIndex + 1] + 2;
+        }
+        return routeOffsets;
+    }
+
+    /**
+     * Pick two random stops of the route in random order
+     *
+     * @param routeData route data
+     * @param routeOffset offset of the route block
+     * @param random random instance
+     * @param query target array for the departure and arrival stop IDs
+     */
+    private static void pickStops(int[] routeData, int routeOffset, Random random, int[] query) {
+        int stopCount = routeData[routeOffset + 1];
+        int firstStopIndex = random.nextInt(stopCount);
+        int secondStopIndex = (firstStopIndex + 1 + random.nextInt(stopCount - 1)) % stopCount;
+        query[0] = routeData[routeOffset + 2 + firstStopIndex];
+        query[1] = routeData[routeOffset + 2 + secondStopIndex];
+    }
+
+    /**
+     * Check if both stops of the query are served by any of the first routes
+     *
+     * @param routeData route data
+     * @param routeOffsets offsets of the route blocks
+     * @param routeCount number of first routes to check
+     * @param query departure and arrival stop IDs
+     * @return true if stops are connected or false otherwise
+     */
+    private static boolean isConnectedBefore(int[] routeData, int[] routeOffsets, int routeCount, int[] query) {
+        for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+            int firstStopIndex = routeOffsets[routeIndex] + 2;
+            int nextRouteDataIndex = firstStopIndex + routeData[routeOffsets[routeIndex] + 1];
+            if (
+                Arrays.binarySearch(routeData, firstStopIndex, nextRouteDataIndex, query[0]) >= 0
+                && Arrays.binarySearch(routeData, firstStopIndex, nextRouteDataIndex, query[1]) >= 0
+            ) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,14 +1,21 @@
 package org.aakimov.transport.generator;
 
+import org.aakimov.transport.api.MappedRouteDataReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Console application for route data generation.
  *
+ * Also generates query traces for route data ("trace" mode) and replays them against a running service
+ * ("replay" mode).
+ *
  * This class uses native java's logger to avoid unnecessary dependencies on third-party libraries
  * in order to be simple and small ;)
  *
@@ -34,36 +41,87 @@ public class Application {
      * @param args application arguments
      */
     public static void main(String... args) {
+        if (args.length >= 1 && "trace".equals(args[0])) {
+            Application.generateTrace(args);
+            return;
+        }
+        if (args.length >= 1 && "replay".equals(args[0])) {
+            Application.replayTrace(args);
+            return;
+        }
+
         int routeCount = 100000;
         int stopCount = 1000000;
         int stopsPerRoute = 1000;
+        int minStopsPerRoute = stopsPerRoute;
+        double stopPopularityExponent = 0;
+        long seed = System.nanoTime();
+        Path filePath = null;
 
-        LOGGER.info("Possible arguments: <route_count> <stop_count> <stops_per_route>");
+        LOGGER.info(
+            "Possible arguments: <route_count> <stop_count> <stops_per_route> "
+                + "[<min_stops_per_route> [<stop_popularity_exponent> [<seed> [<output_file>]]]], "
+                + "trace <route_data_file> <query_count> <output_file> "
+                + "[<hit_ratio> [<stop_popularity_exponent> [<rate> [<burst_factor> [<burst_fraction> [<seed>]]]]]] "
+                + "or replay <trace_file> [<base_url> [closed|open [<concurrency>]]]"
+        );
 
         if (args.length >= 3) {
             try {
                 routeCount = Math.abs(Integer.parseInt(args[0]));
                 stopCount = Math.abs(Integer.parseInt(args[1]));
                 stopsPerRoute = Math.abs(Integer.parseInt(args[2]));
+                minStopsPerRoute = (args.length >= 4) ? Math.abs(Integer.parseInt(args[3])) : stopsPerRoute;
+                stopPopularityExponent = (args.length >= 5) ? Math.abs(Double.parseDouble(args[4])) : 0;
+                seed = (args.length >= 6) ? Long.parseLong(args[5]) : seed;
+                filePath = (args.length >= 7) ? Paths.get(args[6]) : null;
             } catch (NumberFormatException exception) {
                 LOGGER.warn(
-                    "Provided arguments are invalid. Expected 3 positive integers. Falling back to default settings.",
+                    "Provided arguments are invalid. Expected positive numbers. Falling back to default settings.",
                     exception
                 );
+                routeCount = 100000;
+                stopCount = 1000000;
+                stopsPerRoute = 1000;
+                minStopsPerRoute = stopsPerRoute;
+                stopPopularityExponent = 0;
             }
         }
 
         LOGGER.info(
-            "Generating route data for {} routes, {} stops and {} stops per route...",
+            "Generating route data for {} routes, {} stops and {}-{} stops per route (stop popularity exponent {}, "
+                + "seed {})...",
             routeCount,
             stopCount,
-            stopsPerRoute
+            Math.min(minStopsPerRoute, stopsPerRoute),
+            stopsPerRoute,
+            stopPopularityExponent,
+            seed
         );
 
         try {
-            RouteDataGenerator routeDataGenerator = new RouteDataGenerator();
-            Path filePath = routeDataGenerator.generate(routeCount, stopCount, stopsPerRoute);
-            LOGGER.info("Generated file: {}", filePath);
+            RouteDataGenerator routeDataGenerator = new RouteDataGenerator(
+                seed,
+                Runtime.getRuntime().availableProcessors(),
+                stopPopularityExponent
+            );
+            if (filePath == null) {
+                filePath = Files.createTempFile("routes", ".tmp");
+            }
+            long startTime = System.nanoTime();
+            routeDataGenerator.generate(
+                filePath,
+                routeCount,
+                stopCount,
+                Math.min(minStopsPerRoute, stopsPerRoute),
+                stopsPerRoute
+            );
+            LOGGER.info(
+                "Generated file: {} ({} bytes in {} ms)",
+                filePath,
+                Files.size(filePath),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+            );
         } catch (IOException exception) {
             LOGGER.error(
                 "Unable to generate route data file.",
@@ -72,4 +130,90 @@ public class Application {
             System.exit(1);
         }
     }
+
+    /**
+     * Generate query trace for route data.
+     *
+     * Arguments: trace &lt;route_data_file&gt; &lt;query_count&gt; &lt;output_file&gt; [&lt;hit_ratio&gt;
+     * [&lt;stop_popularity_exponent&gt; [&lt;rate&gt; [&lt;burst_factor&gt; [&lt;burst_fraction&gt; [&lt;seed&gt;]]]]]]
+     *
+     * @param args application arguments
+     */
+    private static void generateTrace(String... args) {
+        if (args.length < 4) {
+            LOGGER.error("Route data file, number of queries and output file are required in trace mode.");
+            System.exit(1);
+        }
+        try {
+            Path routeDataPath = Paths.get(args[1]);
+            int queryCount = Integer.parseInt(args[2]);
+            Path tracePath = Paths.get(args[3]);
+            double hitRatio = (args.length >= 5) ? Double.parseDouble(args[4]) : 0.5;
+            double stopPopularityExponent = (args.length >= 6) ? Double.parseDouble(args[5]) : 1;
+            double rate = (args.length >= 7) ? Double.parseDouble(args[6]) : 1000;
+            double burstFactor = (args.length >= 8) ? Double.parseDouble(args[7]) : 1;
+            double burstFraction = (args.length >= 9) ? Double.parseDouble(args[8]) : 0;
+            long seed = (args.length >= 10) ? Long.parseLong(args[9]) : System.nanoTime();
+
+            LOGGER.info(
+                "Generating {} queries (hit ratio {}, stop popularity exponent {}, rate {}/s, burst factor {}, "
+                    + "burst fraction {}, seed {})...",
+                queryCount,
+                hitRatio,
+                stopPopularityExponent,
+                rate,
+                burstFactor,
+                burstFraction,
+                seed
+            );
+            int[] routeData = new MappedRouteDataReader().read(routeDataPath);
+            long startTime = System.nanoTime();
+            new QueryTraceGenerator(seed, hitRatio, stopPopularityExponent, rate, burstFactor, burstFraction)
+                .generate(routeData, tracePath, queryCount);
+            LOGGER.info(
+                "Generated trace: {} ({} bytes in {} ms)",
+                tracePath,
+                Files.size(tracePath),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime)
+            );
+        } catch (IllegalArgumentException exception) {
+            LOGGER.error("Provided arguments are invalid.", exception);
+            System.exit(1);
+        } catch (IOException exception) {
+            LOGGER.error("Unable to generate query trace.", exception);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Replay query trace against a running service and report latency and throughput.
+     *
+     * Arguments: replay &lt;trace_file&gt; [&lt;base_url&gt; [closed|open [&lt;concurrency&gt;]]]
+     *
+     * @param args application arguments
+     */
+    private static void replayTrace(String... args) {
+        if (args.length < 2) {
+            LOGGER.error("Trace file is required in replay mode.");
+            System.exit(1);
+        }
+        try {
+            Path tracePath = Paths.get(args[1]);
+            String baseUrl = (args.length >= 3) ? args[2] : "http://localhost:8080";
+            boolean openLoop = (args.length >= 4) && "open".equals(args[3]);
+            int concurrency = (args.length >= 5) ? Integer.parseInt(args[4]) : (openLoop ? 64 : 1);
+
+            LoadReport report = new LoadDriver(baseUrl, concurrency, openLoop).replay(tracePath);
+            LOGGER.info("Replay finished:{}{}", System.lineSeparator(), report);
+            if (report.getErrorCount() > 0) {
+                System.exit(2);
+            }
+        } catch (IllegalArgumentException exception) {
+            LOGGER.error("Provided arguments are invalid.", exception);
+            System.exit(1);
+        } catch (IOException exception) {
+            LOGGER.error("Unable to replay query trace.", exception);
+            System.exit(1);
+        }
+    }
 }
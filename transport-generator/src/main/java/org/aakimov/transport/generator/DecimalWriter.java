@@ -0,0 +1,55 @@
+package org.aakimov.transport.generator;
+
+/**
+ * Writer of decimal values into byte buffers (route data lines, query traces and HTTP requests).
+ *
+ * Digits are written right to left straight into the buffer, so values are written without any strings.
+ *
+ * @author aakimov
+ */
+final class DecimalWriter {
+
+    /**
+     * Utility class should not be instantiated
+     */
+    private DecimalWriter() {
+        throw new UnsupportedOperationException("This class should not be instantiated.");
+    }
+
+    /**
+     * Count bytes taken by a decimal value
+     *
+     * @param value value
+     * @return number of bytes including the sign
+     */
+    static int getLength(long value) {
+        int length = (value < 0) ? 2 : 1;
+        for (long remainder = value / 10; remainder != 0; remainder /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Write decimal value into the buffer
+     *
+     * @param buffer buffer
+     * @param position position to write at
+     * @param value value
+     * @return position that follows the value
+     */
+    static int write(byte[] buffer, int position, long value) {
+        // digits are taken from the negative value, so Long.MIN_VALUE does not overflow
+        long negativeValue = (value < 0) ? value : -value;
+        if (value < 0) {
+            buffer[position] = '-';
+        }
+        int endPosition = position + DecimalWriter.getLength(value);
+        int digitPosition = endPosition;
+        do {
+            buffer[--digitPosition] = (byte)('0' - negativeValue % 10);
+            negativeValue /= 10;
+        } while (negativeValue != 0);
+        return endPosition;
+    }
+}
@@ -0,0 +1,281 @@
+package org.aakimov.transport.generator;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keep-alive HTTP/1.1 connection that sends direct route queries.
+ *
+ * Minimal client of the load driver: request is encoded into a reusable buffer, response body is read and dropped
+ * (both fixed length and chunked bodies are supported), connection is reopened if the server closes it.
+ * Not thread-safe.
+ *
+ * @author aakimov
+ */
+class HttpClientConnection implements Closeable {
+
+    /**
+     * Size of the request and response line buffers
+     */
+    private static final int BUFFER_SIZE = 1024;
+
+    /**
+     * Connect and read timeout (in milliseconds)
+     */
+    private static final int TIMEOUT = 30_000;
+
+    /**
+     * Request line fragment that precedes departure stop ID (after the base path)
+     */
+    private static final byte[] DEPARTURE_STOP_ID_PREFIX = "/api/direct?dep_sid=".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Request line fragment that precedes arrival stop ID
+     */
+    private static final byte[] ARRIVAL_STOP_ID_PREFIX = "&arr_sid=".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Server address
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * Request line fragment that precedes the path ("GET " followed by the base path)
+     */
+    private final byte[] requestPrefix;
+
+    /**
+     * Request fragment that follows the query (protocol and headers)
+     */
+    private final byte[] requestSuffix;
+
+    /**
+     * Request buffer
+     */
+    private final byte[] requestBuffer = new byte[HttpClientConnection.BUFFER_SIZE];
+
+    /**
+     * Response line buffer
+     */
+    private final byte[] lineBuffer = new byte[HttpClientConnection.BUFFER_SIZE];
+
+    /**
+     * Socket (null if connection is not open)
+     */
+    private Socket socket;
+
+    /**
+     * Socket input
+     */
+    private InputStream inputStream;
+
+    /**
+     * Socket output
+     */
+    private OutputStream outputStream;
+
+    /**
+     * @param host server host
+     * @param port server port
+     * @param basePath path that precedes /api (empty if the application is deployed at the root)
+     */
+    HttpClientConnection(
+        String host,
+        int port,
+        String basePath
+    ) {
+        this.address = new InetSocketAddress(host, port);
+        this.requestPrefix = ("GET " + basePath).getBytes(StandardCharsets.US_ASCII);
+        this.requestSuffix = (" HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n\r\n")
+            .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Send direct route query and read the response
+     *
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @return response status code
+     * @throws IOException if request fails (connection is closed then, so the next request opens a new one)
+     */
+    int sendDirectRouteQuery(int departureStopId, int arrivalStopId) throws IOException {
+        byte[] buffer = this.requestBuffer;
+        int length = HttpClientConnection.writeBytes(buffer, 0, this.requestPrefix);
+        length = HttpClientConnection.writeBytes(buffer, length, HttpClientConnection.DEPARTURE_STOP_ID_PREFIX);
+        length = DecimalWriter.write(buffer, length, departureStopId);
+        length = HttpClientConnection.writeBytes(buffer, length, HttpClientConnection.ARRIVAL_STOP_ID_PREFIX);
+        length = DecimalWriter.write(buffer, length, arrivalStopId);
+        length = HttpClientConnection.writeBytes(buffer, length, this.requestSuffix);
+
+        try {
+            if (this.socket == null) {
+                this.open();
+            }
+            this.outputStream.write(buffer, 0, length);
+            this.outputStream.flush();
+            return this.readResponse();
+        } catch (IOException exception) {
+            this.close();
+            throw exception;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.socket != null) {
+            try {
+                this.socket.close();
+            } catch (IOException exception) {
+                // connection is dropped anyway
+            }
+            this.socket = null;
+        }
+    }
+
+    /**
+     * Open connection
+     *
+     * @throws IOException if connection cannot be opened
+     */
+    private void open() throws IOException {
+        Socket newSocket = new Socket();
+        newSocket.setTcpNoDelay(true);
+        newSocket.setSoTimeout(HttpClientConnection.TIMEOUT);
+        newSocket.connect(this.address, HttpClientConnection.TIMEOUT);
+        this.socket = newSocket;
+        this.inputStream = new BufferedInputStream(newSocket.getInputStream(), HttpClientConnection.BUFFER_SIZE * 8);
+        this.outputStream = newSocket.getOutputStream();
+    }
+
+    /**
+     * Read response and drop its body
+     *
+     * @return response status code
+     * @throws IOException if response cannot be read
+     */
+    private int readResponse() throws IOException {
+        int lineLength = this.readLine();
+        // status line is "HTTP/1.1 200 OK"
+        if (lineLength < 12) {
+            throw new IOException("Malformed response status line.");
+        }
+        byte[] line = this.lineBuffer;
+        int statusCode = (line[9] - '0') * 100 + (line[10] - '0') * 10 + (line[11] - '0');
+
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean connectionClosed = false;
+        for (lineLength = this.readLine(); lineLength > 0; lineLength = this.readLine()) {
+            String header = new String(this.lineBuffer, 0, lineLength, StandardCharsets.US_ASCII).toLowerCase();
+            if (header.startsWith("content-length:")) {
+                contentLength = Long.parseLong(header.substring(15).trim());
+            } else if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+                chunked = true;
+            } else if (header.startsWith("connection:") && header.contains("close")) {
+                connectionClosed = true;
+            }
+        }
+
+        if (chunked) {
+            for (long chunkSize = this.readChunkSize(); chunkSize > 0; chunkSize = this.readChunkSize()) {
+                this.skip(chunkSize);
+                this.readLine();
+            }
+            // trailers end with an empty line
+            while (this.readLine() > 0) {
+                continue;
+            }
+        } else if (contentLength >= 0) {
+            this.skip(contentLength);
+        } else {
+            connectionClosed = true;
+        }
+
+        if (connectionClosed) {
+            this.close();
+        }
+        return statusCode;
+    }
+
+    /**
+     * Read size line of the next chunk
+     *
+     * @return chunk size
+     * @throws IOException if line cannot be read
+     */
+    private long readChunkSize() throws IOException {
+        int lineLength = this.readLine();
+        long chunkSize = 0;
+        for (int index = 0; index < lineLength; index++) {
+            int digit = Character.digit(this.lineBuffer[index], 16);
+            if (digit < 0) {
+                break;
+            }
+            chunkSize = chunkSize * 16 + digit;
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Read line without the line break into the line buffer (the rest of a long line is dropped)
+     *
+     * @return line length
+     * @throws IOException if line cannot be read
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        while (true) {
+            int nextByte = this.inputStream.read();
+            if (nextByte < 0) {
+                throw new EOFException("Connection is closed by the server.");
+            }
+            if (nextByte == '\n') {
+                return (length > 0 && this.lineBuffer[length - 1] == '\r') ? length - 1 : length;
+            }
+            if (length < this.lineBuffer.length) {
+                this.lineBuffer[length++] = (byte)nextByte;
+            }
+        }
+    }
+
+    /**
+     * Skip bytes of the response
+     *
+     * @param byteCount number of bytes
+     * @throws IOException if bytes cannot be read
+     */
+    private void skip(long byteCount) throws IOException {
+        long remainingCount = byteCount;
+        while (remainingCount > 0) {
+            int readCount = this.inputStream.read(
+                this.lineBuffer,
+                0,
+                (int)Math.min(remainingCount, this.lineBuffer.length)
+            );
+            if (readCount < 0) {
+                throw new EOFException("Connection is closed by the server.");
+            }
+            remainingCount -= readCount;
+        }
+    }
+
+    /**
+     * Copy bytes into the buffer
+     *
+     * @param buffer buffer
+     * @param position position to write at
+     * @param bytes bytes
+     * @return position that follows the bytes
+     */
+    private static int writeBytes(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+}
@@ -0,0 +1,161 @@
+package org.aakimov.transport.generator;
+
+/**
+ * Latency histogram.
+ *
+ * Log-linear buckets in the spirit of HdrHistogram: values below 2048 have their own buckets, larger values
+ * share buckets of the same relative width (1/1024 of the value), so percentiles are reported with 3 significant
+ * digits for any value. Recording is a couple of shifts and an increment, histograms of the threads are merged
+ * once the run is over. Not thread-safe.
+ *
+ * @author aakimov
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of bits in the linear part of a bucket index
+     */
+    private static final int SUB_BUCKET_BITS = 10;
+
+    /**
+     * Number of values with their own buckets
+     */
+    private static final int LINEAR_VALUE_COUNT = 2 << LatencyHistogram.SUB_BUCKET_BITS;
+
+    /**
+     * Largest value that is recorded as is (larger values are recorded as this one, about 4.8 hours in microseconds)
+     */
+    static final long MAX_VALUE = (1L << 44) - 1;
+
+    /**
+     * Number of recorded values in every bucket
+     */
+    private final long[] counts;
+
+    /**
+     * Number of recorded values
+     */
+    private long totalCount;
+
+    /**
+     * Sum of the recorded values
+     */
+    private long totalValue;
+
+    /**
+     * Largest recorded value
+     */
+    private long maxValue;
+
+    public LatencyHistogram() {
+        this.counts = new long[LatencyHistogram.getBucketIndex(LatencyHistogram.MAX_VALUE) + 1];
+    }
+
+    /**
+     * Record value
+     *
+     * @param value non-negative value (e.g. latency in microseconds)
+     */
+    public void record(long value) {
+        long clampedValue = Math.min(Math.max(value, 0), LatencyHistogram.MAX_VALUE);
+        this.counts[LatencyHistogram.getBucketIndex(clampedValue)]++;
+        this.totalCount++;
+        this.totalValue += clampedValue;
+        this.maxValue = Math.max(this.maxValue, clampedValue);
+    }
+
+    /**
+     * Add all the values of another histogram
+     *
+     * @param histogram histogram
+     */
+    public void add(LatencyHistogram histogram) {
+        for (int bucketIndex = 0; bucketIndex < this.counts.length; bucketIndex++) {
+            this.counts[bucketIndex] += histogram.counts[bucketIndex];
+        }
+        this.totalCount += histogram.totalCount;
+        this.totalValue += histogram.totalValue;
+        this.maxValue = Math.max(this.maxValue, histogram.maxValue);
+    }
+
+    /**
+     * Retrieve number of recorded values
+     *
+     * @return number of values
+     */
+    public long getTotalCount() {
+        return this.totalCount;
+    }
+
+    /**
+     * Retrieve largest recorded value
+     *
+     * @return largest value (0 if histogram is empty)
+     */
+    public long getMaxValue() {
+        return this.maxValue;
+    }
+
+    /**
+     * Retrieve mean of the recorded values
+     *
+     * @return mean value (0 if histogram is empty)
+     */
+    public double getMean() {
+        return (this.totalCount == 0) ? 0 : (double)this.totalValue / this.totalCount;
+    }
+
+    /**
+     * Retrieve value at the given percentile.
+     *
+     * Reported value is the largest one of the bucket, so the share of the recorded values that do not exceed it
+     * is at least the given percentile.
+     *
+     * @param percentile percentile (from 0 to 100)
+     * @return value at the percentile (0 if histogram is empty)
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.totalCount == 0) {
+            return 0;
+        }
+        long targetCount = Math.max(1, (long)Math.ceil(Math.min(percentile, 100) / 100 * this.totalCount));
+        long cumulativeCount = 0;
+        for (int bucketIndex = 0; bucketIndex < this.counts.length; bucketIndex++) {
+            cumulativeCount += this.counts[bucketIndex];
+            if (cumulativeCount >= targetCount) {
+                return Math.min(LatencyHistogram.getHighestValue(bucketIndex), this.maxValue);
+            }
+        }
+        return this.maxValue;
+    }
+
+    /**
+     * Find bucket of the value
+     *
+     * @param value non-negative value
+     * @return bucket index
+     */
+    static int getBucketIndex(long value) {
+        if (value < LatencyHistogram.LINEAR_VALUE_COUNT) {
+            return (int)value;
+        }
+        // value is shifted so that it keeps 11 significant bits, buckets of every shift follow each other
+        int shift = 63 - Long.numberOfLeadingZeros(value) - LatencyHistogram.SUB_BUCKET_BITS;
+        return (shift << LatencyHistogram.SUB_BUCKET_BITS) + (int)(value >>> shift);
+    }
+
+    /**
+     * Find the largest value of the bucket
+     *
+     * @param bucketIndex bucket index
+     * @return largest value that is recorded into the bucket
+     */
+    static long getHighestValue(int bucketIndex) {
+        if (bucketIndex < LatencyHistogram.LINEAR_VALUE_COUNT) {
+            return bucketIndex;
+        }
+        int shift = (bucketIndex >>> LatencyHistogram.SUB_BUCKET_BITS) - 1;
+        long lowestValue = (long)(bucketIndex - (shift << LatencyHistogram.SUB_BUCKET_BITS)) << shift;
+        return lowestValue + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,300 @@
+package org.aakimov.transport.generator;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load driver that replays a query trace against the direct route endpoint.
+ *
+ * Every worker thread keeps its own keep-alive connection and latency histogram, queries are claimed in order
+ * of the trace. Closed loop sends the next query as soon as the previous one is answered and measures service time.
+ * Open loop sends every query at its arrival time and measures latency from that time, so queueing delay is not
+ * hidden when the server falls behind (no coordinated omission).
+ *
+ * @author aakimov
+ */
+public class LoadDriver {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadDriver.class.getCanonicalName());
+
+    /**
+     * Server host
+     */
+    private final String host;
+
+    /**
+     * Server port
+     */
+    private final int port;
+
+    /**
+     * Path that precedes /api
+     */
+    private final String basePath;
+
+    /**
+     * Number of worker threads (connections)
+     */
+    private final int concurrency;
+
+    /**
+     * Flag that shows if queries are sent at their arrival times
+     */
+    private final boolean openLoop;
+
+    /**
+     * @param baseUrl base URL of the service (e.g. http://localhost:8080)
+     * @param concurrency number of worker threads (connections)
+     * @param openLoop true if queries are sent at their arrival times or false if they are sent back to back
+     */
+    public LoadDriver(
+        String baseUrl,
+        int concurrency,
+        boolean openLoop
+    ) {
+        URI uri = URI.create(baseUrl);
+        if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            throw new IllegalArgumentException("Base URL should be an absolute http URL.");
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency should be a positive number.");
+        }
+        this.host = uri.getHost();
+        this.port = (uri.getPort() < 0) ? 80 : uri.getPort();
+        String path = (uri.getRawPath() == null) ? "" : uri.getRawPath();
+        this.basePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        this.concurrency = concurrency;
+        this.openLoop = openLoop;
+    }
+
+    /**
+     * Replay query trace
+     *
+     * @param tracePath trace file path
+     * @return replay report
+     * @throws IOException if trace cannot be read
+     */
+    public LoadReport replay(Path tracePath) throws IOException {
+        QueryTrace trace = LoadDriver.readTrace(tracePath);
+        LOGGER.info(
+            "Replaying {} queries against {}:{} ({} loop, concurrency {})...",
+            trace.times.length,
+            this.host,
+            this.port,
+            this.openLoop ? "open" : "closed",
+            this.concurrency
+        );
+
+        AtomicInteger nextQueryIndex = new AtomicInteger();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(
+            this.concurrency,
+            runnable -> {
+                Thread thread = new Thread(runnable, "load-driver-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        );
+        try {
+            long startTime = System.nanoTime();
+            List<Future<Worker>> futures = new ArrayList<>(this.concurrency);
+            for (int workerIndex = 0; workerIndex < this.concurrency; workerIndex++) {
+                futures.add(executor.submit(new Worker(trace, nextQueryIndex, startTime)));
+            }
+
+            LatencyHistogram histogram = new LatencyHistogram();
+            long errorCount = 0;
+            for (Future<Worker> future : futures) {
+                Worker worker = future.get();
+                histogram.add(worker.histogram);
+                errorCount += worker.errorCount;
+            }
+            return new LoadReport(trace.times.length, errorCount, System.nanoTime() - startTime, histogram);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Replay is interrupted.", exception);
+        } catch (ExecutionException exception) {
+            throw new IOException("Replay failed.", exception.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Read query trace
+     *
+     * @param tracePath trace file path
+     * @return query trace
+     * @throws IOException if trace cannot be read or is malformed
+     */
+    static QueryTrace readTrace(Path tracePath) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(tracePath, StandardCharsets.US_ASCII)) {
+            String line = reader.readLine();
+            try {
+                int queryCount = (line == null) ? 0 : Integer.parseInt(line.trim());
+                if (queryCount < 0) {
+                    throw new IOException("Number of queries should not be negative.");
+                }
+                QueryTrace trace = new QueryTrace(queryCount);
+                for (int queryIndex = 0; queryIndex < queryCount; queryIndex++) {
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new IOException("Trace has fewer queries than declared.");
+                    }
+                    String[] values = line.trim().split(" +");
+                    if (values.length != 3) {
+                        throw new IOException("Malformed trace line: " + line);
+                    }
+                    trace.times[queryIndex] = Long.parseLong(values[0]);
+                    trace.departureStopIds[queryIndex] = Integer.parseInt(values[1]);
+                    trace.arrivalStopIds[queryIndex] = Integer.parseInt(values[2]);
+                }
+                return trace;
+            } catch (NumberFormatException exception) {
+                throw new IOException("Malformed trace line: " + line, exception);
+            }
+        }
+    }
+
+    /**
+     * Queries of a trace.
+     */
+    static final class QueryTrace {
+
+        /**
+         * Arrival times (in microseconds from the start of the trace)
+         */
+        final long[] times;
+
+        /**
+         * Departure stop IDs
+         */
+        final int[] departureStopIds;
+
+        /**
+         * Arrival stop IDs
+         */
+        final int[] arrivalStopIds;
+
+        /**
+         * @param queryCount number of queries
+         */
+        QueryTrace(
+            int queryCount
+        ) {
+            this.times = new long[queryCount];
+            this.departureStopIds = new int[queryCount];
+            this.arrivalStopIds = new int[queryCount];
+        }
+    }
+
+    /**
+     * Worker that sends claimed queries through its own connection.
+     */
+    private final class Worker implements Callable<Worker> {
+
+        /**
+         * Replayed trace
+         */
+        private final QueryTrace trace;
+
+        /**
+         * Index of the next query to claim (shared by the workers)
+         */
+        private final AtomicInteger nextQueryIndex;
+
+        /**
+         * Start of the replay (in nanoseconds of System.nanoTime())
+         */
+        private final long startTime;
+
+        /**
+         * Latency histogram of the successful queries (in microseconds)
+         */
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        /**
+         * Number of failed queries
+         */
+        private long errorCount;
+
+        /**
+         * @param trace replayed trace
+         * @param nextQueryIndex index of the next query to claim
+         * @param startTime start of the replay
+         */
+        Worker(
+            QueryTrace trace,
+            AtomicInteger nextQueryIndex,
+            long startTime
+        ) {
+            this.trace = trace;
+            this.nextQueryIndex = nextQueryIndex;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public Worker call() {
+            try (
+                HttpClientConnection connection = new HttpClientConnection(
+                    LoadDriver.this.host,
+                    LoadDriver.this.port,
+                    LoadDriver.this.basePath
+                )
+            ) {
+                for (
+                    int queryIndex = this.nextQueryIndex.getAndIncrement();
+                    queryIndex < this.trace.times.length;
+                    queryIndex = this.nextQueryIndex.getAndIncrement()
+                ) {
+                    long sendTime = System.nanoTime();
+                    if (LoadDriver.this.openLoop) {
+                        sendTime = this.startTime + TimeUnit.MICROSECONDS.toNanos(this.trace.times[queryIndex]);
+                        long delay = sendTime - System.nanoTime();
+                        while (delay > 0) {
+                            LockSupport.parkNanos(delay);
+                            delay = sendTime - System.nanoTime();
+                        }
+                    }
+
+                    int statusCode;
+                    try {
+                        statusCode = connection.sendDirectRouteQuery(
+                            this.trace.departureStopIds[queryIndex],
+                            this.trace.arrivalStopIds[queryIndex]
+                        );
+                    } catch (IOException exception) {
+                        LOGGER.debug("Query {} failed.", queryIndex, exception);
+                        statusCode = -1;
+                    }
+                    if (statusCode == 200) {
+                        this.histogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sendTime));
+                    } else {
+                        this.errorCount++;
+                    }
+                }
+            }
+            return this;
+        }
+    }
+}
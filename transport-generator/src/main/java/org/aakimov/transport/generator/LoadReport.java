@@ -0,0 +1,136 @@
+package org.aakimov.transport.generator;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a trace replay: number of queries, errors, elapsed time and latency histogram (in microseconds).
+ *
+ * @author aakimov
+ */
+public class LoadReport {
+
+    /**
+     * Percentiles listed in the report
+     */
+    private static final double[] PERCENTILES = {50, 75, 90, 99, 99.9, 99.99};
+
+    /**
+     * Number of replayed queries
+     */
+    private final long queryCount;
+
+    /**
+     * Number of failed queries (I/O errors and responses with a status other than 200)
+     */
+    private final long errorCount;
+
+    /**
+     * Replay duration (in nanoseconds)
+     */
+    private final long elapsedTime;
+
+    /**
+     * Latency histogram of the successful queries (in microseconds)
+     */
+    private final LatencyHistogram histogram;
+
+    /**
+     * @param queryCount number of replayed queries
+     * @param errorCount number of failed queries
+     * @param elapsedTime replay duration (in nanoseconds)
+     * @param histogram latency histogram of the successful queries (in microseconds)
+     */
+    public LoadReport(
+        long queryCount,
+        long errorCount,
+        long elapsedTime,
+        LatencyHistogram histogram
+    ) {
+        this.queryCount = queryCount;
+        this.errorCount = errorCount;
+        this.elapsedTime = elapsedTime;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Retrieve number of replayed queries
+     *
+     * @return number of queries
+     */
+    public long getQueryCount() {
+        return this.queryCount;
+    }
+
+    /**
+     * Retrieve number of failed queries
+     *
+     * @return number of failed queries
+     */
+    public long getErrorCount() {
+        return this.errorCount;
+    }
+
+    /**
+     * Retrieve replay duration
+     *
+     * @return duration (in nanoseconds)
+     */
+    public long getElapsedTime() {
+        return this.elapsedTime;
+    }
+
+    /**
+     * Retrieve latency histogram of the successful queries
+     *
+     * @return histogram (in microseconds)
+     */
+    public LatencyHistogram getHistogram() {
+        return this.histogram;
+    }
+
+    /**
+     * Retrieve achieved throughput
+     *
+     * @return number of queries per second
+     */
+    public double getThroughput() {
+        return (this.elapsedTime == 0) ? 0 : this.queryCount * (double)TimeUnit.SECONDS.toNanos(1) / this.elapsedTime;
+    }
+
+    /**
+     * Format report as a table of percentiles
+     *
+     * @return report text
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(
+            String.format(
+                Locale.ROOT,
+                "queries: %d, errors: %d, elapsed: %d ms, throughput: %.1f req/s%n",
+                this.queryCount,
+                this.errorCount,
+                TimeUnit.NANOSECONDS.toMillis(this.elapsedTime),
+                this.getThroughput()
+            )
+        );
+        builder.append(String.format(Locale.ROOT, "latency (us): mean %.1f%n", this.histogram.getMean()));
+        for (double percentile : LoadReport.PERCENTILES) {
+            String label = (percentile == Math.rint(percentile))
+                ? String.valueOf((long)percentile)
+                : String.valueOf(percentile);
+            builder.append(
+                String.format(
+                    Locale.ROOT,
+                    "  p%-6s %12d%n",
+                    label,
+                    this.histogram.getValueAtPercentile(percentile)
+                )
+            );
+        }
+        builder.append(String.format(Locale.ROOT, "  max     %12d", this.histogram.getMaxValue()));
+        return builder.toString();
+    }
+}
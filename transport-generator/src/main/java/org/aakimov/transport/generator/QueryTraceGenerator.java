@@ -0,0 +1,441 @@
+package org.aakimov.transport.generator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Query trace generator.
+ *
+ * Produces direct route queries for the given route data with the configured share of connected pairs (hits),
+ * stop popularity skew and arrival process. Stops are ranked by the number of routes that serve them and picked
+ * by a Zipf distribution over the ranks, so busy stops are queried the most. Hit takes a popular departure stop
+ * and another stop of one of its routes, miss takes two popular stops that are not connected by any route.
+ * Queries arrive as a Poisson process that alternates between normal and burst periods (exponentially distributed
+ * with the given share of the time spent in bursts), so the trace can drive open-loop load.
+ *
+ * Trace file starts with the number of queries followed by one query per line: arrival time (in microseconds from
+ * the start of the trace), departure stop ID and arrival stop ID separated by spaces.
+ *
+ * @author aakimov
+ */
+public class QueryTraceGenerator {
+
+    /**
+     * Mean duration of a burst period (in microseconds)
+     */
+    static final double BURST_DURATION = 1_000_000;
+
+    /**
+     * Maximum number of attempts to pick a pair of stops of the requested kind before falling back
+     */
+    private static final int MAX_PICK_ATTEMPTS = 100;
+
+    /**
+     * Random seed (generators with the same seed produce the same trace for the same route data)
+     */
+    private final long seed;
+
+    /**
+     * Share of queries between connected stops
+     */
+    private final double hitRatio;
+
+    /**
+     * Exponent of the Zipf distribution of stop popularity (0 means that all the stops are equally popular)
+     */
+    private final double stopPopularityExponent;
+
+    /**
+     * Average number of queries per second (0 means that all the queries arrive at once)
+     */
+    private final double rate;
+
+    /**
+     * Ratio of the query rate during bursts to the average one (1 means no bursts)
+     */
+    private final double burstFactor;
+
+    /**
+     * Share of the time spent in bursts
+     */
+    private final double burstFraction;
+
+    /**
+     * @param seed random seed (generators with the same seed produce the same trace for the same route data)
+     * @param hitRatio share of queries between connected stops (from 0 to 1)
+     * @param stopPopularityExponent exponent of the Zipf distribution of stop popularity (0 means that all the stops
+     *     are equally popular)
+     * @param rate average number of queries per second (0 means that all the queries arrive at once)
+     * @param burstFactor ratio of the query rate during bursts to the average one (1 means no bursts)
+     * @param burstFraction share of the time spent in bursts (burst factor times burst fraction cannot exceed 1)
+     */
+    public QueryTraceGenerator(
+        long seed,
+        double hitRatio,
+        double stopPopularityExponent,
+        double rate,
+        double burstFactor,
+        double burstFraction
+    ) {
+        if (!(hitRatio >= 0 && hitRatio <= 1)) {
+            throw new IllegalArgumentException("Hit ratio should be between 0 and 1.");
+        }
+        if (!(stopPopularityExponent >= 0) || !(rate >= 0)) {
+            throw new IllegalArgumentException("Stop popularity exponent and rate should not be negative.");
+        }
+        if (!(burstFactor >= 1) || !(burstFraction >= 0 && burstFraction < 1) || burstFactor * burstFraction > 1) {
+            throw new IllegalArgumentException(
+                "Burst factor should be at least 1 and burst fraction should be less than its inverse."
+            );
+        }
+        this.seed = seed;
+        this.hitRatio = hitRatio;
+        this.stopPopularityExponent = stopPopularityExponent;
+        this.rate = rate;
+        this.burstFactor = burstFactor;
+        this.burstFraction = burstFraction;
+    }
+
+    /**
+     * Generate query trace file
+     *
+     * @param routeData route data with sorted stops
+     * @param tracePath trace file path (replaced if it exists)
+     * @param queryCount number of queries
+     * @throws IOException if trace cannot be written
+     */
+    public void generate(int[] routeData, Path tracePath, int queryCount) throws IOException {
+        if (queryCount < 0) {
+            throw new IllegalArgumentException("Number of queries should not be negative.");
+        }
+        StopIndex stopIndex = new StopIndex(routeData);
+        if (stopIndex.stopIds.length == 0 && queryCount > 0) {
+            throw new IllegalArgumentException("Route data does not have any stops.");
+        }
+
+        SplittableRandom random = new SplittableRandom(this.seed);
+        ZipfDistribution stopDistribution = (this.stopPopularityExponent > 0 && stopIndex.stopIds.length > 0)
+            ? new ZipfDistribution(stopIndex.stopIds.length, this.stopPopularityExponent)
+            : null;
+        ArrivalProcess arrivalProcess = new ArrivalProcess(random);
+        int[] query = new int[2];
+        byte[] line = new byte[64];
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(tracePath), 1 << 16)) {
+            int lineLength = DecimalWriter.write(line, 0, queryCount);
+            line[lineLength++] = '\n';
+            outputStream.write(line, 0, lineLength);
+            for (int queryIndex = 0; queryIndex < queryCount; queryIndex++) {
+                boolean hit = random.nextDouble() < this.hitRatio;
+                if (!hit || !stopIndex.pickConnectedStops(random, stopDistribution, query)) {
+                    stopIndex.pickUnconnectedStops(random, stopDistribution, query);
+                }
+
+                lineLength = DecimalWriter.write(line, 0, arrivalProcess.next());
+                line[lineLength++] = ' ';
+                lineLength = DecimalWriter.write(line, lineLength, query[0]);
+                line[lineLength++] = ' ';
+                lineLength = DecimalWriter.write(line, lineLength, query[1]);
+                line[lineLength++] = '\n';
+                outputStream.write(line, 0, lineLength);
+            }
+        }
+    }
+
+    /**
+     * Arrival process of the queries.
+     *
+     * Poisson process which rate switches between the normal and the burst one, so the average rate is kept.
+     */
+    private final class ArrivalProcess {
+
+        /**
+         * Random generator of the trace
+         */
+        private final SplittableRandom random;
+
+        /**
+         * Query rate during normal periods (per microsecond)
+         */
+        private final double normalRate;
+
+        /**
+         * Query rate during bursts (per microsecond)
+         */
+        private final double burstRate;
+
+        /**
+         * Arrival time of the last query (in microseconds)
+         */
+        private double time;
+
+        /**
+         * End of the current period (in microseconds)
+         */
+        private double periodEnd;
+
+        /**
+         * Flag that shows if current period is a burst
+         */
+        private boolean burst;
+
+        /**
+         * @param random random generator of the trace
+         */
+        ArrivalProcess(
+            SplittableRandom random
+        ) {
+            this.random = random;
+            double averageRate = QueryTraceGenerator.this.rate / 1_000_000;
+            double fraction = QueryTraceGenerator.this.burstFraction;
+            double factor = QueryTraceGenerator.this.burstFactor;
+            this.burstRate = averageRate * factor;
+            this.normalRate = averageRate * (1 - fraction * factor) / (1 - fraction);
+            this.periodEnd = this.nextPeriodLength();
+        }
+
+        /**
+         * Retrieve arrival time of the next query
+         *
+         * @return arrival time (in microseconds from the start of the trace)
+         */
+        long next() {
+            if (QueryTraceGenerator.this.rate == 0) {
+                return 0;
+            }
+            while (true) {
+                double currentRate = this.burst ? this.burstRate : this.normalRate;
+                // arrivals are memoryless, so the gap that crosses the end of the period is simply drawn again
+                double gap = (currentRate > 0)
+                    ? -Math.log(1 - this.random.nextDouble()) / currentRate
+                    : Double.MAX_VALUE;
+                if (
+                    this.time + gap <= this.periodEnd
+                    || QueryTraceGenerator.this.burstFraction == 0
+                    || QueryTraceGenerator.this.burstFactor == 1
+                ) {
+                    this.time += gap;
+                    return (long)this.time;
+                }
+                this.time = this.periodEnd;
+                this.burst = !this.burst;
+                this.periodEnd += this.nextPeriodLength();
+            }
+        }
+
+        /**
+         * Draw length of the current period
+         *
+         * @return period length (in microseconds)
+         */
+        private double nextPeriodLength() {
+            double fraction = QueryTraceGenerator.this.burstFraction;
+            double meanLength = this.burst
+                ? QueryTraceGenerator.BURST_DURATION
+                : QueryTraceGenerator.BURST_DURATION * (1 - fraction) / Math.max(fraction, Double.MIN_VALUE);
+            return -Math.log(1 - this.random.nextDouble()) * meanLength;
+        }
+    }
+
+    /**
+     * Index of stops and the routes that serve them.
+     */
+    private static final class StopIndex {
+
+        /**
+         * Route data with sorted stops
+         */
+        private final int[] routeData;
+
+        /**
+         * Stop IDs in order of popularity (stops served by the most routes go first)
+         */
+        private final int[] stopIds;
+
+        /**
+         * Start of the routes of every stop (in order of popularity) in the route offsets, the last one is the end
+         */
+        private final int[] stopRouteStarts;
+
+        /**
+         * Offsets of the stop count of the routes that serve every stop (grouped by stops)
+         */
+        private final int[] stopRouteOffsets;
+
+        /**
+         * @param routeData route data with sorted stops
+         */
+        StopIndex(
+            int[] routeData
+        ) {
+            this.routeData = routeData;
+            int routeCount = (routeData.length == 0) ? 0 : routeData[0];
+
+            int[] sortedStopIds = StopIndex.collectStopIds(routeData, routeCount);
+            int stopCount = sortedStopIds.length;
+            int[] routeCounts = new int[stopCount];
+            int offset = 1;
+            for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+                int routeStopCount = routeData[offset + 1];
+                for (int stopIndex = 0; stopIndex < routeStopCount; stopIndex++) {
+                    int stopId = routeData[offset + 2 + stopIndex];
+                    // repeated stops of a route are adjacent, they are counted once
+                    if (stopIndex == 0 || routeData[offset + 1 + stopIndex] != stopId) {
+                        routeCounts[Arrays.binarySearch(sortedStopIds, stopId)]++;
+                    }
+                }
+                offset += routeStopCount + 2;
+            }
+
+            // route counts are packed into the high bits (inverted, so busy stops go first), one sort orders both
+            long[] packedStops = new long[stopCount];
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                packedStops[stopIndex] = ((long)(Integer.MAX_VALUE - routeCounts[stopIndex]) << 32) | stopIndex;
+            }
+            Arrays.sort(packedStops);
+
+            this.stopIds = new int[stopCount];
+            int[] popularityRanks = new int[stopCount];
+            this.stopRouteStarts = new int[stopCount + 1];
+            for (int rank = 0; rank < stopCount; rank++) {
+                int stopIndex = (int)packedStops[rank];
+                this.stopIds[rank] = sortedStopIds[stopIndex];
+                popularityRanks[stopIndex] = rank;
+                this.stopRouteStarts[rank + 1] = this.stopRouteStarts[rank] + routeCounts[stopIndex];
+            }
+
+            this.stopRouteOffsets = new int[this.stopRouteStarts[stopCount]];
+            int[] nextRoutePositions = Arrays.copyOf(this.stopRouteStarts, stopCount);
+            offset = 1;
+            for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+                int routeStopCount = routeData[offset + 1];
+                for (int stopIndex = 0; stopIndex < routeStopCount; stopIndex++) {
+                    int stopId = routeData[offset + 2 + stopIndex];
+                    if (stopIndex == 0 || routeData[offset + 1 + stopIndex] != stopId) {
+                        int rank = popularityRanks[Arrays.binarySearch(sortedStopIds, stopId)];
+                        this.stopRouteOffsets[nextRoutePositions[rank]++] = offset + 1;
+                    }
+                }
+                offset += routeStopCount + 2;
+            }
+        }
+
+        /**
+         * Collect distinct stop IDs of the route data
+         *
+         * @param routeData route data with sorted stops
+         * @param routeCount number of routes
+         * @return sorted stop IDs
+         */
+        private static int[] collectStopIds(int[] routeData, int routeCount) {
+            int[] stopIds = new int[Math.max(0, routeData.length - 1 - 2 * routeCount)];
+            int stopCount = 0;
+            int offset = 1;
+            for (int routeIndex = 0; routeIndex < routeCount; routeIndex++) {
+                int routeStopCount = routeData[offset + 1];
+                System.arraycopy(routeData, offset + 2, stopIds, stopCount, routeStopCount);
+                stopCount += routeStopCount;
+                offset += routeStopCount + 2;
+            }
+            Arrays.sort(stopIds, 0, stopCount);
+            int distinctCount = 0;
+            for (int stopIndex = 0; stopIndex < stopCount; stopIndex++) {
+                if (distinctCount == 0 || stopIds[distinctCount - 1] != stopIds[stopIndex]) {
+                    stopIds[distinctCount++] = stopIds[stopIndex];
+                }
+            }
+            return Arrays.copyOf(stopIds, distinctCount);
+        }
+
+        /**
+         * Pick popularity rank of a stop
+         *
+         * @param random random generator
+         * @param stopDistribution distribution of stop popularity (null if all the stops are equally popular)
+         * @return popularity rank
+         */
+        private int pickStopRank(SplittableRandom random, ZipfDistribution stopDistribution) {
+            return (stopDistribution == null) ? random.nextInt(this.stopIds.length) : stopDistribution.sample(random);
+        }
+
+        /**
+         * Pick two different stops served by the same route
+         *
+         * @param random random generator
+         * @param stopDistribution distribution of stop popularity (null if all the stops are equally popular)
+         * @param query departure and arrival stop IDs
+         * @return true if stops are picked or false if there are no routes with two stops
+         */
+        boolean pickConnectedStops(SplittableRandom random, ZipfDistribution stopDistribution, int[] query) {
+            for (int attempt = 0; attempt < QueryTraceGenerator.MAX_PICK_ATTEMPTS; attempt++) {
+                int rank = this.pickStopRank(random, stopDistribution);
+                int routeStart = this.stopRouteStarts[rank];
+                int routeOffset = this.stopRouteOffsets[
+                    routeStart + random.nextInt(this.stopRouteStarts[rank + 1] - routeStart)
+                ];
+                int routeStopCount = this.routeData[routeOffset];
+                int arrivalStopId = this.routeData[routeOffset + 1 + random.nextInt(routeStopCount)];
+                if (arrivalStopId != this.stopIds[rank]) {
+                    query[0] = this.stopIds[rank];
+                    query[1] = arrivalStopId;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Pick two different stops that are not served by the same route.
+         *
+         * Stop that is not served by any route is used as the arrival one if such stops cannot be found.
+         *
+         * @param random random generator
+         * @param stopDistribution distribution of stop popularity (null if all the stops are equally popular)
+         * @param query departure and arrival stop IDs
+         */
+        void pickUnconnectedStops(SplittableRandom random, ZipfDistribution stopDistribution, int[] query) {
+            for (int attempt = 0; attempt < QueryTraceGenerator.MAX_PICK_ATTEMPTS; attempt++) {
+                int departureRank = this.pickStopRank(random, stopDistribution);
+                int arrivalRank = this.pickStopRank(random, stopDistribution);
+                if (departureRank != arrivalRank && !this.isConnected(departureRank, this.stopIds[arrivalRank])) {
+                    query[0] = this.stopIds[departureRank];
+                    query[1] = this.stopIds[arrivalRank];
+                    return;
+                }
+            }
+            int largestStopId = this.stopIds[this.stopIds.length - 1];
+            query[0] = this.stopIds[this.pickStopRank(random, stopDistribution)];
+            query[1] = (largestStopId == Integer.MAX_VALUE) ? -1 : Math.max(largestStopId + 1, 0);
+        }
+
+        /**
+         * Check if stops are served by the same route
+         *
+         * @param departureRank popularity rank of the departure stop
+         * @param arrivalStopId arrival stop ID
+         * @return true if stops are connected or false otherwise
+         */
+        private boolean isConnected(int departureRank, int arrivalStopId) {
+            for (int position = this.stopRouteStarts[departureRank];
+                position < this.stopRouteStarts[departureRank + 1]; position++) {
+                int routeOffset = this.stopRouteOffsets[position];
+                int routeStopsStart = routeOffset + 1;
+                if (
+                    Arrays.binarySearch(
+                        this.routeData,
+                        routeStopsStart,
+                        routeStopsStart + this.routeData[routeOffset],
+                        arrivalStopId
+                    ) >= 0
+                ) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
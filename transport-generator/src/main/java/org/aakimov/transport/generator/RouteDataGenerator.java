@@ -1,31 +1,103 @@
 package org.aakimov.transport.generator;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
-import java.util.LinkedHashSet;
-import java.util.Random;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Route data generator.
  *
- * Can be used to generate route data file of any size.
+ * Can be used to generate route data file of any size. Routes are split into chunks of a fixed size that are
+ * generated by parallel workers: every chunk has its own random generator seeded by the generator seed and
+ * the chunk index, so the same seed produces the same file for any parallelism. Digits are encoded straight into
+ * the byte buffer of the worker and the chunk is written through the file channel at its own offset as soon as
+ * the size of the previous chunk is known, so only one chunk per worker is kept in memory.
  *
  * @author aakimov
  */
 public class RouteDataGenerator {
 
     /**
-     * Random instance to generate stop IDs
+     * Approximate size of a chunk of routes generated by a single task (in bytes)
      */
-    private final Random random;
+    private static final int CHUNK_SIZE = 4 << 20;
+
+    /**
+     * Maximum size of the chunk buffer (in bytes)
+     */
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Multiplier that spreads chunk indexes over the seed space (golden ratio)
+     */
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Maximum number of digits in a decimal int value
+     */
+    private static final int MAX_INT_DIGIT_COUNT = 10;
+
+    /**
+     * Random seed (generators with the same seed produce the same route data)
+     */
+    private final long seed;
+
+    /**
+     * Number of threads that generate routes
+     */
+    private final int parallelism;
+
+    /**
+     * Exponent of the Zipf distribution of stop popularity (0 means that all the stops are equally popular)
+     */
+    private final double stopPopularityExponent;
 
     public RouteDataGenerator() {
-        this.random = new Random();
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * @param seed random seed (generators with the same seed produce the same route data)
+     */
+    public RouteDataGenerator(
+        long seed
+    ) {
+        this(seed, Runtime.getRuntime().availableProcessors(), 0);
+    }
+
+    /**
+     * @param seed random seed (generators with the same seed produce the same route data for any parallelism)
+     * @param parallelism number of threads that generate routes
+     * @param stopPopularityExponent exponent of the Zipf distribution of stop popularity, stop with ID k is picked
+     *     proportionally to 1 / (k + 1)^exponent (0 means that all the stops are equally popular)
+     */
+    public RouteDataGenerator(
+        long seed,
+        int parallelism,
+        double stopPopularityExponent
+    ) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism should be a positive number.");
+        }
+        if (!(stopPopularityExponent >= 0)) {
+            throw new IllegalArgumentException("Stop popularity exponent should not be negative.");
+        }
+        this.seed = seed;
+        this.parallelism = parallelism;
+        this.stopPopularityExponent = stopPopularityExponent;
     }
 
     /**
@@ -39,38 +111,272 @@ public class RouteDataGenerator {
      */
     public Path generate(int routeCount, int stopCount, int stopsPerRoute) throws IOException {
         Path filePath = Files.createTempFile("routes", ".tmp");
-        try(
-            BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8, StandardOpenOption.WRITE)
+        this.generate(filePath, routeCount, stopCount, stopsPerRoute, stopsPerRoute);
+        return filePath;
+    }
+
+    /**
+     * Generate route data file.
+     *
+     * Every route picks a random number of stops between the given bounds, repeated stops are dropped,
+     * so the route may have fewer stops than it picked.
+     *
+     * @param filePath route data file path (replaced if it exists)
+     * @param routeCount number of routes
+     * @param stopCount number of stops
+     * @param minStopsPerRoute minimum number of stops picked by one route
+     * @param maxStopsPerRoute maximum number of stops picked by one route
+     * @throws IOException if file cannot be written
+     */
+    public void generate(
+        Path filePath,
+        int routeCount,
+        int stopCount,
+        int minStopsPerRoute,
+        int maxStopsPerRoute
+    ) throws IOException {
+        if (routeCount < 0 || stopCount < 1 || minStopsPerRoute < 1 || maxStopsPerRoute < minStopsPerRoute) {
+            throw new IllegalArgumentException(
+                "Expected non-negative route count, positive stop count and stops per route bounds."
+            );
+        }
+
+        long maxRouteLineSize = DecimalWriter.getLength(Math.max(0, routeCount - 1)) + 1
+            + (long)maxStopsPerRoute * (1 + DecimalWriter.getLength(stopCount - 1));
+        if (maxRouteLineSize > RouteDataGenerator.MAX_BUFFER_SIZE) {
+            throw new IllegalArgumentException("Route line is too long to fit into a single buffer.");
+        }
+        int maxRouteSize = (int)maxRouteLineSize;
+        int routesPerChunk = Math.max(1, RouteDataGenerator.CHUNK_SIZE / maxRouteSize);
+        int chunkCount = (int)(((long)routeCount + routesPerChunk - 1) / routesPerChunk);
+        ZipfDistribution stopDistribution = (this.stopPopularityExponent > 0)
+            ? new ZipfDistribution(stopCount, this.stopPopularityExponent)
+            : null;
+
+        try (
+            FileChannel fileChannel = FileChannel.open(
+                filePath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING
+            )
         ) {
-            writer.write(String.valueOf(routeCount));
-            writer.newLine();
-            for (int routeId = 0; routeId < routeCount; routeId++) {
-                writer.write(String.valueOf(routeId));
-                for (Integer stopId : this.generateStopsForRoute(stopCount, stopsPerRoute)) {
-                    writer.write(" ");
-                    writer.write(stopId.toString());
+            byte[] header = new byte[RouteDataGenerator.MAX_INT_DIGIT_COUNT + 1];
+            int headerSize = DecimalWriter.write(header, 0, routeCount);
+            header[headerSize++] = '\n';
+            RouteDataGenerator.write(fileChannel, ByteBuffer.wrap(header, 0, headerSize), 0);
+
+            // end offset of every chunk is published as soon as the chunk is encoded, so the next one can be written
+            List<CompletableFuture<Long>> chunkEnds = new ArrayList<>(chunkCount + 1);
+            chunkEnds.add(CompletableFuture.completedFuture((long)headerSize));
+            for (int chunkIndex = 0; chunkIndex < chunkCount; chunkIndex++) {
+                chunkEnds.add(new CompletableFuture<>());
+            }
+            AtomicInteger nextChunkIndex = new AtomicInteger();
+            Runnable worker = () -> {
+                ChunkEncoder chunkEncoder = new ChunkEncoder(
+                    routesPerChunk * maxRouteSize,
+                    maxStopsPerRoute,
+                    stopCount,
+                    stopDistribution
+                );
+                // chunks are taken in order, so every chunk waits only for the chunks that are already taken
+                int chunkIndex = nextChunkIndex.getAndIncrement();
+                while (chunkIndex < chunkCount) {
+                    CompletableFuture<Long> chunkEnd = chunkEnds.get(chunkIndex + 1);
+                    try {
+                        int firstRouteId = chunkIndex * routesPerChunk;
+                        int size = chunkEncoder.encode(
+                            new SplittableRandom(this.seed + chunkIndex * RouteDataGenerator.SEED_INCREMENT),
+                            firstRouteId,
+                            (int)Math.min(routeCount, (long)firstRouteId + routesPerChunk),
+                            minStopsPerRoute,
+                            maxStopsPerRoute
+                        );
+                        long chunkStart = chunkEnds.get(chunkIndex).join();
+                        chunkEnd.complete(chunkStart + size);
+                        ByteBuffer chunkBuffer = ByteBuffer.wrap(chunkEncoder.buffer, 0, size);
+                        RouteDataGenerator.write(fileChannel, chunkBuffer, chunkStart);
+                    } catch (IOException exception) {
+                        chunkEnd.completeExceptionally(exception);
+                        throw new UncheckedIOException(exception);
+                    } catch (RuntimeException | Error exception) {
+                        chunkEnd.completeExceptionally(exception);
+                        throw exception;
+                    }
+                    chunkIndex = nextChunkIndex.getAndIncrement();
                 }
-                writer.newLine();
+            };
+
+            ForkJoinPool forkJoinPool = new ForkJoinPool(this.parallelism);
+            try {
+                List<ForkJoinTask<?>> workerTasks = new ArrayList<>(this.parallelism);
+                for (int workerIndex = 0; workerIndex < Math.min(this.parallelism, chunkCount); workerIndex++) {
+                    workerTasks.add(forkJoinPool.submit(worker));
+                }
+                for (ForkJoinTask<?> workerTask : workerTasks) {
+                    workerTask.join();
+                }
+            } catch (RuntimeException exception) {
+                // failure of one worker is passed to the workers that wait for its chunks
+                for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+                    if (cause instanceof IOException) {
+                        throw (IOException)cause;
+                    }
+                }
+                throw exception;
+            } finally {
+                forkJoinPool.shutdown();
             }
         }
+    }
 
-        return filePath;
+    /**
+     * Write the whole buffer at the given position of the file
+     *
+     * @param fileChannel file channel
+     * @param buffer buffer
+     * @param position file position
+     * @throws IOException if buffer cannot be written
+     */
+    private static void write(FileChannel fileChannel, ByteBuffer buffer, long position) throws IOException {
+        long currentPosition = position;
+        while (buffer.hasRemaining()) {
+            currentPosition += fileChannel.write(buffer, currentPosition);
+        }
     }
 
     /**
-     * Generate set of stops.
+     * Encoder of route chunks.
      *
-     * @param stopCount number of stops
-     * @param stopsPerRoute maximum number of stops in one route
-     * @return set of stop IDs
+     * Keeps the buffer of the worker and the set of stops of the current route, which are reused for all the chunks.
      */
-    private Set<Integer> generateStopsForRoute(int stopCount, int stopsPerRoute) {
-        Set<Integer> stops = new LinkedHashSet<>();
-        for (int index = 0; index < stopsPerRoute; index++) {
-            stops.add(this.random.nextInt(stopCount));
+    private static final class ChunkEncoder {
+
+        /**
+         * Encoded route lines of the current chunk
+         */
+        private final byte[] buffer;
+
+        /**
+         * Number of stops
+         */
+        private final int stopCount;
+
+        /**
+         * Distribution of stop popularity (null if all the stops are equally popular)
+         */
+        private final ZipfDistribution stopDistribution;
+
+        /**
+         * Open addressing hash table of the stops of the current route
+         */
+        private final int[] stopTable;
+
+        /**
+         * Route marks of the stop table slots (slot is occupied if it is marked with the current route mark)
+         */
+        private final int[] stopTableMarks;
+
+        /**
+         * Shift that takes the stop table index from the high bits of the stop hash
+         */
+        private final int stopTableShift;
+
+        /**
+         * Mark of the current route
+         */
+        private int routeMark;
+
+        /**
+         * @param bufferSize size of the buffer that fits a chunk
+         * @param maxStopsPerRoute maximum number of stops picked by one route
+         * @param stopCount number of stops
+         * @param stopDistribution distribution of stop popularity (null if all the stops are equally popular)
+         */
+        ChunkEncoder(
+            int bufferSize,
+            int maxStopsPerRoute,
+            int stopCount,
+            ZipfDistribution stopDistribution
+        ) {
+            this.buffer = new byte[bufferSize];
+            this.stopCount = stopCount;
+            this.stopDistribution = stopDistribution;
+            int tableSize = Integer.highestOneBit(Math.max(1, maxStopsPerRoute)) << 2;
+            this.stopTable = new int[tableSize];
+            this.stopTableMarks = new int[tableSize];
+            this.stopTableShift = Integer.numberOfLeadingZeros(tableSize - 1);
         }
 
-        return stops;
-    }
+        /**
+         * Encode route lines of the chunk into the buffer
+         *
+         * @param random random generator of the chunk
+         * @param firstRouteId ID of the first route of the chunk
+         * @param endRouteId ID that follows the last route of the chunk
+         * @param minStopsPerRoute minimum number of stops picked by one route
+         * @param maxStopsPerRoute maximum number of stops picked by one route
+         * @return number of encoded bytes
+         */
+        int encode(
+            SplittableRandom random,
+            int firstRouteId,
+            int endRouteId,
+            int minStopsPerRoute,
+            int maxStopsPerRoute
+        ) {
+            int position = 0;
+            for (int routeId = firstRouteId; routeId < endRouteId; routeId++) {
+                position = DecimalWriter.write(this.buffer, position, routeId);
+                int pickCount = (minStopsPerRoute == maxStopsPerRoute)
+                    ? maxStopsPerRoute
+                    : random.nextInt(minStopsPerRoute, maxStopsPerRoute + 1);
+                this.nextRoute();
+                for (int pickIndex = 0; pickIndex < pickCount; pickIndex++) {
+                    int stopId = (this.stopDistribution == null)
+                        ? random.nextInt(this.stopCount)
+                        : this.stopDistribution.sample(random);
+                    if (this.addStop(stopId)) {
+                        this.buffer[position++] = ' ';
+                        position = DecimalWriter.write(this.buffer, position, stopId);
+                    }
+                }
+                this.buffer[position++] = '\n';
+            }
+            return position;
+        }
+
+        /**
+         * Clear the set of stops of the current route
+         */
+        private void nextRoute() {
+            this.routeMark++;
+            if (this.routeMark == 0) {
+                // marks wrapped around, so stale marks may look current
+                Arrays.fill(this.stopTableMarks, 0);
+                this.routeMark = 1;
+            }
+        }
 
+        /**
+         * Add stop to the set of stops of the current route
+         *
+         * @param stopId stop ID
+         * @return true if stop was added or false if route already has it
+         */
+        private boolean addStop(int stopId) {
+            int mask = this.stopTable.length - 1;
+            int slot = ((stopId * 0x9E3779B9) >>> this.stopTableShift) & mask;
+            while (this.stopTableMarks[slot] == this.routeMark) {
+                if (this.stopTable[slot] == stopId) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            this.stopTableMarks[slot] = this.routeMark;
+            this.stopTable[slot] = stopId;
+            return true;
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package org.aakimov.transport.generator;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipf distribution over a range of ranks.
+ *
+ * Rank k (starting from 0) is sampled with probability proportional to 1 / (k + 1)^exponent by the
+ * rejection-inversion method (W. Hormann, G. Derflinger, "Rejection-inversion to generate variates from monotone
+ * discrete distributions"), so no tables are built and a sample takes constant expected time for any range.
+ *
+ * @author aakimov
+ */
+final class ZipfDistribution {
+
+    /**
+     * Threshold below which helper functions use Taylor series instead of the library ones
+     */
+    private static final double TAYLOR_THRESHOLD = 1e-8;
+
+    /**
+     * Number of ranks
+     */
+    private final int rankCount;
+
+    /**
+     * Exponent of the distribution
+     */
+    private final double exponent;
+
+    /**
+     * Integral of the hat function at the lower bound of the first rank minus one
+     */
+    private final double hIntegralX1;
+
+    /**
+     * Integral of the hat function at the upper bound of the last rank
+     */
+    private final double hIntegralRankCount;
+
+    /**
+     * Acceptance threshold of the samples that are close to their rank
+     */
+    private final double acceptanceThreshold;
+
+    /**
+     * @param rankCount number of ranks
+     * @param exponent exponent of the distribution (positive)
+     */
+    ZipfDistribution(
+        int rankCount,
+        double exponent
+    ) {
+        if (rankCount < 1) {
+            throw new IllegalArgumentException("Number of ranks should be a positive number.");
+        }
+        if (!(exponent > 0)) {
+            throw new IllegalArgumentException("Exponent should be a positive number.");
+        }
+        this.rankCount = rankCount;
+        this.exponent = exponent;
+        this.hIntegralX1 = this.hIntegral(1.5) - 1;
+        this.hIntegralRankCount = this.hIntegral(rankCount + 0.5);
+        this.acceptanceThreshold = 2 - this.hIntegralInverse(this.hIntegral(2.5) - this.h(2));
+    }
+
+    /**
+     * Sample rank
+     *
+     * @param random random generator
+     * @return rank from 0 (the most probable one) to the number of ranks (exclusive)
+     */
+    int sample(SplittableRandom random) {
+        while (true) {
+            double u = this.hIntegralRankCount + random.nextDouble() * (this.hIntegralX1 - this.hIntegralRankCount);
+            double x = this.hIntegralInverse(u);
+            int k = (int)(x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > this.rankCount) {
+                k = this.rankCount;
+            }
+            if (k - x <= this.acceptanceThreshold || u >= this.hIntegral(k + 0.5) - this.h(k)) {
+                return k - 1;
+            }
+        }
+    }
+
+    /**
+     * Hat function
+     *
+     * @param x argument
+     * @return x^(-exponent)
+     */
+    private double h(double x) {
+        return Math.exp(-this.exponent * Math.log(x));
+    }
+
+    /**
+     * Integral of the hat function
+     *
+     * @param x argument
+     * @return (x^(1 - exponent) - 1) / (1 - exponent) (log(x) if exponent is 1)
+     */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return ZipfDistribution.expm1DividedByX((1 - this.exponent) * logX) * logX;
+    }
+
+    /**
+     * Inverse of the hat function integral
+     *
+     * @param x argument
+     * @return value which hat function integral equals to the argument
+     */
+    private double hIntegralInverse(double x) {
+        double t = Math.max(-1, x * (1 - this.exponent));
+        return Math.exp(ZipfDistribution.log1pDividedByX(t) * x);
+    }
+
+    /**
+     * Compute log(1 + x) / x that is accurate near 0
+     *
+     * @param x argument
+     * @return log(1 + x) / x (1 at 0)
+     */
+    private static double log1pDividedByX(double x) {
+        if (Math.abs(x) > ZipfDistribution.TAYLOR_THRESHOLD) {
+            return Math.log1p(x) / x;
+        }
+        return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /**
+     * Compute (exp(x) - 1) / x that is accurate near 0
+     *
+     * @param x argument
+     * @return (exp(x) - 1) / x (1 at 0)
+     */
+    private static double expm1DividedByX(double x) {
+        if (Math.abs(x) > ZipfDistribution.TAYLOR_THRESHOLD) {
+            return Math.expm1(x) / x;
+        }
+        return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+}
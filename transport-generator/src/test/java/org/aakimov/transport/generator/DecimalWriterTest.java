@@ -0,0 +1,27 @@
+package org.aakimov.transport.generator;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class DecimalWriterTest {
+
+    @Test
+    public void testWritesSameDigitsAsString() {
+        long[] values = {
+            0, 7, -1, 9, 10, -10, 99, 100, 12345, -2048,
+            Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE
+        };
+        byte[] buffer = new byte[32];
+        for (long value : values) {
+            buffer[0] = ' ';
+            int endPosition = DecimalWriter.write(buffer, 1, value);
+            String expectedText = String.valueOf(value);
+            assertEquals(expectedText.length(), DecimalWriter.getLength(value));
+            assertEquals(1 + expectedText.length(), endPosition);
+            assertEquals(" " + expectedText, new String(buffer, 0, endPosition, StandardCharsets.US_ASCII));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package org.aakimov.transport.generator;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverAllValuesWithRelativeWidthLimit() {
+        // values below 2048 have their own buckets
+        for (long value = 0; value < 2048; value++) {
+            assertEquals(value, LatencyHistogram.getBucketIndex(value));
+            assertEquals(value, LatencyHistogram.getHighestValue((int)value));
+        }
+
+        // every bucket starts right after the previous one and is not wider than 1/1024 of its values
+        int lastBucketIndex = LatencyHistogram.getBucketIndex(LatencyHistogram.MAX_VALUE);
+        for (int bucketIndex = 2048; bucketIndex <= lastBucketIndex; bucketIndex++) {
+            long lowestValue = LatencyHistogram.getHighestValue(bucketIndex - 1) + 1;
+            long highestValue = LatencyHistogram.getHighestValue(bucketIndex);
+            assertEquals(bucketIndex, LatencyHistogram.getBucketIndex(lowestValue));
+            assertEquals(bucketIndex, LatencyHistogram.getBucketIndex(highestValue));
+            assertTrue(highestValue - lowestValue + 1 <= Math.max(1, lowestValue >>> 10));
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.getHighestValue(lastBucketIndex));
+    }
+
+    @Test
+    public void testPercentilesAreReportedWithThreeSignificantDigits() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100000, histogram.getTotalCount());
+        assertEquals(50000.5, histogram.getMean(), 0);
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(1000, histogram.getValueAtPercentile(1));
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exactValue = (long)Math.ceil(percentile / 100 * 100000);
+            long value = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + value, value >= exactValue && value <= exactValue + exactValue / 1024);
+        }
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+        assertEquals(100000, histogram.getMaxValue());
+    }
+
+    @Test
+    public void testValuesOutsideRangeAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(0, histogram.getMean(), 0);
+
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+        assertEquals(LatencyHistogram.MAX_VALUE, histogram.getMaxValue());
+    }
+
+    @Test
+    public void testAddMergesHistograms() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        LatencyHistogram otherHistogram = new LatencyHistogram();
+        for (long value = 0; value < 1000; value++) {
+            histogram.record(value);
+            otherHistogram.record(value + 1000);
+        }
+        histogram.add(otherHistogram);
+
+        assertEquals(2000, histogram.getTotalCount());
+        assertEquals(1999, histogram.getMaxValue());
+        assertEquals(999.5, histogram.getMean(), 0);
+        assertEquals(999, histogram.getValueAtPercentile(50));
+    }
+}
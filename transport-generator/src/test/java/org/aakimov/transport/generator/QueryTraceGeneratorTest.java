@@ -0,0 +1,98 @@
+package org.aakimov.transport.generator;
+
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueryTraceGeneratorTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        4,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 4, 1, 2, 3, 4,
+        2, 3, 3, 5, 8,
+        3, 2, 10, 11,
+        4, 3, 12, 13, 14
+    };
+
+    private static final int QUERY_COUNT = 2000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameSeedProducesSameTrace() throws IOException {
+        Path tracePath = this.generate(new QueryTraceGenerator(11, 0.5, 1, 1000, 4, 0.1));
+        Path sameTracePath = this.generate(new QueryTraceGenerator(11, 0.5, 1, 1000, 4, 0.1));
+        Path otherTracePath = this.generate(new QueryTraceGenerator(12, 0.5, 1, 1000, 4, 0.1));
+
+        assertArrayEquals(Files.readAllBytes(tracePath), Files.readAllBytes(sameTracePath));
+        assertFalse(Arrays.equals(Files.readAllBytes(tracePath), Files.readAllBytes(otherTracePath)));
+    }
+
+    @Test
+    public void testHitRatioControlsConnectedQueries() throws IOException {
+        RouteManager routeManager = new MemoryRouteManager(ROUTE_DATA);
+        for (double hitRatio : new double[] {0, 1}) {
+            List<String> lines = Files.readAllLines(
+                this.generate(new QueryTraceGenerator(5, hitRatio, 1, 1000, 1, 0)),
+                StandardCharsets.US_ASCII
+            );
+            assertEquals(String.valueOf(QUERY_COUNT), lines.get(0));
+            assertEquals(QUERY_COUNT + 1, lines.size());
+
+            long previousTime = 0;
+            for (String line : lines.subList(1, lines.size())) {
+                String[] fields = line.split(" ");
+                assertEquals(3, fields.length);
+                long time = Long.parseLong(fields[0]);
+                assertTrue(time >= previousTime);
+                previousTime = time;
+                assertEquals(
+                    line,
+                    hitRatio == 1,
+                    routeManager.isDirectRouteAvailable(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]))
+                );
+            }
+            // 1000 queries per second on average
+            assertEquals(2.0, previousTime / 1e6, 0.25);
+        }
+    }
+
+    @Test
+    public void testQueriesArriveAtOnceWithoutRate() throws IOException {
+        List<String> lines = Files.readAllLines(
+            this.generate(new QueryTraceGenerator(3, 0.5, 0, 0, 1, 0)),
+            StandardCharsets.US_ASCII
+        );
+        for (String line : lines.subList(1, lines.size())) {
+            assertTrue(line, line.startsWith("0 "));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBurstsCannotExceedAverageRate() {
+        new QueryTraceGenerator(1, 0.5, 1, 1000, 4, 0.5);
+    }
+
+    private Path generate(QueryTraceGenerator queryTraceGenerator) throws IOException {
+        Path tracePath = this.temporaryFolder.newFile().toPath();
+        queryTraceGenerator.generate(ROUTE_DATA, tracePath, QUERY_COUNT);
+        return tracePath;
+    }
+}
@@ -0,0 +1,88 @@
+package org.aakimov.transport.generator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteDataGeneratorTest {
+
+    // up to 419 routes of 2000 stops fit into one chunk, so the routes are split into 5 chunks
+    private static final int ROUTE_COUNT = 1700;
+
+    private static final int STOP_COUNT = 2000;
+
+    private static final int MAX_STOPS_PER_ROUTE = 2000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSameSeedProducesSameRouteDataForAnyParallelism() throws IOException {
+        for (double stopPopularityExponent : new double[] {0, 1}) {
+            byte[] routeData = this.generate(new RouteDataGenerator(7, 1, stopPopularityExponent));
+            for (int parallelism : new int[] {2, 4}) {
+                assertArrayEquals(
+                    "parallelism " + parallelism + ", exponent " + stopPopularityExponent,
+                    routeData,
+                    this.generate(new RouteDataGenerator(7, parallelism, stopPopularityExponent))
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testDifferentSeedsProduceDifferentRouteData() throws IOException {
+        assertFalse(
+            Arrays.equals(
+                this.generate(new RouteDataGenerator(7, 2, 0)),
+                this.generate(new RouteDataGenerator(8, 2, 0))
+            )
+        );
+    }
+
+    @Test
+    public void testRoutesHaveDistinctStopsInRange() throws IOException {
+        Path filePath = this.temporaryFolder.newFile().toPath();
+        new RouteDataGenerator(7, 4, 1).generate(filePath, ROUTE_COUNT, STOP_COUNT, 1, MAX_STOPS_PER_ROUTE);
+
+        List<String> lines = Files.readAllLines(filePath, StandardCharsets.US_ASCII);
+        assertEquals(String.valueOf(ROUTE_COUNT), lines.get(0));
+        assertEquals(ROUTE_COUNT + 1, lines.size());
+        for (int routeIndex = 0; routeIndex < ROUTE_COUNT; routeIndex++) {
+            String[] fields = lines.get(routeIndex + 1).split(" ");
+            assertEquals(String.valueOf(routeIndex), fields[0]);
+            assertTrue(fields.length >= 2 && fields.length <= MAX_STOPS_PER_ROUTE + 1);
+            Set<Integer> stopIds = new HashSet<>();
+            for (int fieldIndex = 1; fieldIndex < fields.length; fieldIndex++) {
+                int stopId = Integer.parseInt(fields[fieldIndex]);
+                assertTrue(stopId >= 0 && stopId < STOP_COUNT);
+                assertTrue(stopIds.add(stopId));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelismShouldBePositive() {
+        new RouteDataGenerator(7, 0, 0);
+    }
+
+    private byte[] generate(RouteDataGenerator routeDataGenerator) throws IOException {
+        Path filePath = this.temporaryFolder.newFile().toPath();
+        routeDataGenerator.generate(filePath, ROUTE_COUNT, STOP_COUNT, 1, MAX_STOPS_PER_ROUTE);
+        return Files.readAllBytes(filePath);
+    }
+}
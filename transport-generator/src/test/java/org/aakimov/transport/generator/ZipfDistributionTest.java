@@ -0,0 +1,62 @@
+package org.aakimov.transport.generator;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ZipfDistributionTest {
+
+    private static final int SAMPLE_COUNT = 200000;
+
+    @Test
+    public void testRankFrequenciesFollowZipfLaw() {
+        for (double exponent : new double[] {0.5, 1, 2}) {
+            int rankCount = 20;
+            ZipfDistribution distribution = new ZipfDistribution(rankCount, exponent);
+            SplittableRandom random = new SplittableRandom(42);
+            int[] rankCounts = new int[rankCount];
+            for (int sampleIndex = 0; sampleIndex < SAMPLE_COUNT; sampleIndex++) {
+                rankCounts[distribution.sample(random)]++;
+            }
+
+            double normalization = 0;
+            for (int rank = 0; rank < rankCount; rank++) {
+                normalization += Math.pow(rank + 1, -exponent);
+            }
+            for (int rank = 0; rank < rankCount; rank++) {
+                double expectedFrequency = Math.pow(rank + 1, -exponent) / normalization;
+                double frequency = (double)rankCounts[rank] / SAMPLE_COUNT;
+                assertEquals("exponent " + exponent + ", rank " + rank, expectedFrequency, frequency, 0.005);
+            }
+        }
+    }
+
+    @Test
+    public void testSamplesDependOnSeedOnly() {
+        ZipfDistribution distribution = new ZipfDistribution(1000000, 1.1);
+        SplittableRandom random = new SplittableRandom(7);
+        SplittableRandom sameRandom = new SplittableRandom(7);
+        for (int sampleIndex = 0; sampleIndex < 10000; sampleIndex++) {
+            int rank = distribution.sample(random);
+            assertEquals(rank, new ZipfDistribution(1000000, 1.1).sample(sameRandom));
+            assertTrue(rank >= 0 && rank < 1000000);
+        }
+    }
+
+    @Test
+    public void testSingleRankIsAlwaysSampled() {
+        ZipfDistribution distribution = new ZipfDistribution(1, 3);
+        SplittableRandom random = new SplittableRandom(1);
+        for (int sampleIndex = 0; sampleIndex < 1000; sampleIndex++) {
+            assertEquals(0, distribution.sample(random));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExponentShouldBePositive() {
+        new ZipfDistribution(10, 0);
+    }
+}
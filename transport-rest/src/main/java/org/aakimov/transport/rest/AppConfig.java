@@ -1,13 +1,39 @@
 package org.aakimov.transport.rest;
 
+import org.aakimov.transport.api.BitmapRouteManager;
+import org.aakimov.transport.api.BufferRouteManager;
+import org.aakimov.transport.api.CachingRouteManager;
+import org.aakimov.transport.api.DirectionalRouteManager;
+import org.aakimov.transport.api.IndexedRouteManager;
+import org.aakimov.transport.api.IngestionReport;
 import org.aakimov.transport.api.MappedRouteDataReader;
 import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.ReloadableRouteManager;
+import org.aakimov.transport.api.RouteDataSnapshot;
 import org.aakimov.transport.api.RouteManager;
+import org.aakimov.transport.api.ShardedRouteManager;
+import org.aakimov.transport.api.SnapshotRouteDataReader;
+import org.aakimov.transport.api.StreamingRouteDataReader;
+import org.aakimov.transport.api.StopSearch;
+import org.aakimov.transport.api.TransferRouteManager;
+import org.aakimov.transport.api.UpdatableRouteManager;
+import org.aakimov.transport.rest.handlers.DirectRouteHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.undertow.UndertowEmbeddedServletContainerFactory;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Spring application configuration.
@@ -15,22 +41,410 @@ import java.nio.file.Paths;
  * @author aakimov
  */
 @Configuration
+@EnableConfigurationProperties(TransportProperties.class)
 public class AppConfig {
 
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(AppConfig.class);
+
+    /**
+     * Extension of the binary snapshot that is written next to the route data file
+     */
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    /**
+     * Report of the last route data read (see GET /api/admin/ingestion)
+     *
+     * @return holder of the ingestion report (empty if route data is loaded from a snapshot)
+     */
+    @Bean
+    public AtomicReference<IngestionReport> getIngestionReport() {
+        return new AtomicReference<>();
+    }
+
     @Bean
     public RouteManager getRouteManager(
-        ApplicationArguments arguments
+        ApplicationArguments arguments,
+        TransportProperties properties,
+        AtomicReference<IngestionReport> ingestionReport
     ) {
         if (arguments.getNonOptionArgs().isEmpty()) {
             throw new IllegalArgumentException("Route data file is not provided.");
         }
 
-        int[] routeData = new MappedRouteDataReader().read(
-            Paths.get(arguments.getNonOptionArgs().get(0))
+        if (properties.isTransfersEnabled() && properties.isUpdatesEnabled()) {
+            LOGGER.warn("Transfer search is not available together with route updates.");
+        }
+        if (properties.isUpdatesEnabled()) {
+            AppConfig.checkUpdateSettings(properties);
+        }
+
+        Path routeDataPath = Paths.get(arguments.getNonOptionArgs().get(0));
+        RouteManager routeManager = AppConfig.loadRouteManager(routeDataPath, properties, false, ingestionReport);
+        if (properties.isReloadEnabled() || properties.isReloadWatch()) {
+            routeManager = AppConfig.createReloadableRouteManager(
+                routeManager,
+                routeDataPath,
+                properties,
+                ingestionReport
+            );
+        }
+        // cache is the outermost decorator, so reloads and updates change the data version it checks
+        return (properties.getCacheSize() > 0)
+            ? new CachingRouteManager(routeManager, properties.getCacheSize())
+            : routeManager;
+    }
+
+    /**
+     * Put direct route handler in front of the servlet stack of the embedded Undertow server if it is enabled.
+     *
+     * Route manager is looked up when the server starts, so route data is not loaded by the customizer itself.
+     *
+     * @param routeManagerProvider route manager provider
+     * @param properties application settings
+     * @return embedded server customizer
+     */
+    @Bean
+    public EmbeddedServletContainerCustomizer getDirectRouteHandlerCustomizer(
+        ObjectProvider<RouteManager> routeManagerProvider,
+        TransportProperties properties
+    ) {
+        return container -> {
+            if (!properties.isDirectHandlerEnabled()) {
+                return;
+            }
+            if (!(container instanceof UndertowEmbeddedServletContainerFactory)) {
+                LOGGER.warn("Direct route handler is available with the embedded Undertow server only.");
+                return;
+            }
+            ((UndertowEmbeddedServletContainerFactory)container).addDeploymentInfoCustomizers(
+                deploymentInfo -> deploymentInfo.addInitialHandlerChainWrapper(
+                    next -> new DirectRouteHandler(
+                        routeManagerProvider.getObject(),
+                        next,
+                        properties.isDirectHandlerDispatch()
+                    )
+                )
+            );
+        };
+    }
+
+    /**
+     * Warn about settings that are ignored when route updates are enabled
+     * (updatable route manager is a memory route manager with the default stop search and without filters,
+     * hot stops and shards)
+     *
+     * @param properties application settings
+     */
+    private static void checkUpdateSettings(TransportProperties properties) {
+        if (properties.getRouteManager() != TransportProperties.RouteManagerType.MEMORY) {
+            LOGGER.warn("Route updates are available with the memory route manager only.");
+            return;
+        }
+        if (properties.getStopSearch() != StopSearch.BINARY) {
+            LOGGER.warn("Stop search '{}' is not available together with route updates.", properties.getStopSearch());
+        }
+        if (properties.getFilterBitsPerStop() > 0) {
+            LOGGER.warn("Route filter is not available together with route updates.");
+        }
+        if (properties.getHotStopCount() > 0) {
+            LOGGER.warn("Hot stops are not available together with route updates.");
+        }
+        if (properties.getShardCount() > 0) {
+            LOGGER.warn("Shards are not available together with route updates.");
+        }
+    }
+
+    /**
+     * Wrap route manager, so route data can be reloaded at runtime
+     *
+     * @param routeManager initial route manager
+     * @param routeDataPath route data file location
+     * @param properties application settings
+     * @param ingestionReport holder of the ingestion report
+     * @return reloadable route manager
+     */
+    private static ReloadableRouteManager createReloadableRouteManager(
+        RouteManager routeManager,
+        Path routeDataPath,
+        TransportProperties properties,
+        AtomicReference<IngestionReport> ingestionReport
+    ) {
+        ReloadableRouteManager reloadableRouteManager = new ReloadableRouteManager(
+            routeManager,
+            () -> AppConfig.loadRouteManager(routeDataPath, properties, true, ingestionReport)
         );
+        if (properties.isReloadWatch()) {
+            try {
+                reloadableRouteManager.watch(routeDataPath);
+            } catch (IOException exception) {
+                LOGGER.warn("Route data file '{}' cannot be watched.", routeDataPath, exception);
+            }
+        }
+        return reloadableRouteManager;
+    }
 
-        return new MemoryRouteManager(
-            routeData
+    /**
+     * Load route data and create configured route manager.
+     *
+     * On reload route data that cannot be loaded is reported with null (so the current route data is kept)
+     * and in-memory route data is kept in parse segments instead of a single array, so the new route data
+     * takes its own size only while the current route data is still in use. Other route managers are built
+     * on a single route data array, so their reload peak is the current route manager, the parsed array
+     * and the structures of the new route manager (indexes, bitmaps, filters or shard copies). Reload
+     * that does not fit into the heap keeps the current route data and the replaced route manager is closed
+     * (see ReloadableRouteManager).
+     *
+     * Gzip-compressed files and files that cannot be mapped (e.g. pipes like /dev/stdin) are parsed as streams.
+     * Report of the read is published even if route data is rejected (it is empty if a snapshot is used).
+     *
+     * @param routeDataPath route data file location
+     * @param properties application settings
+     * @param reload flag that shows if route data is reloaded
+     * @param ingestionReport holder of the ingestion report
+     * @return route manager or null if route data cannot be reloaded
+     */
+    private static RouteManager loadRouteManager(
+        Path routeDataPath,
+        TransportProperties properties,
+        boolean reload,
+        AtomicReference<IngestionReport> ingestionReport
+    ) {
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(
+            properties.getReaderParallelism(),
+            properties.getIngestionPolicy(),
+            properties.getDuplicateRoutePolicy()
         );
+        StreamingRouteDataReader streamingRouteDataReader = (
+            !Files.isRegularFile(routeDataPath) || StreamingRouteDataReader.isCompressed(routeDataPath)
+        )
+            ? new StreamingRouteDataReader(properties.getIngestionPolicy(), properties.getDuplicateRoutePolicy())
+            : null;
+        try {
+            return AppConfig.readRouteManager(
+                routeDataPath,
+                properties,
+                reload,
+                routeDataReader,
+                streamingRouteDataReader
+            );
+        } finally {
+            ingestionReport.set(
+                (streamingRouteDataReader != null)
+                    ? streamingRouteDataReader.getReport()
+                    : routeDataReader.getReport()
+            );
+        }
+    }
+
+    /**
+     * Read route data using the given readers and create configured route manager
+     *
+     * @param routeDataPath route data file location
+     * @param properties application settings
+     * @param reload flag that shows if route data is reloaded
+     * @param routeDataReader reader of the route data files that can be mapped
+     * @param streamingRouteDataReader reader of the compressed route data and pipes (null if file can be mapped)
+     * @return route manager or null if route data cannot be reloaded
+     */
+    private static RouteManager readRouteManager(
+        Path routeDataPath,
+        TransportProperties properties,
+        boolean reload,
+        MappedRouteDataReader routeDataReader,
+        StreamingRouteDataReader streamingRouteDataReader
+    ) {
+        if (properties.getRouteManager() == TransportProperties.RouteManagerType.DIRECTIONAL) {
+            // snapshots keep sorted stops only, so original stop order is always parsed from the route data file
+            int[] routeData = (streamingRouteDataReader != null)
+                ? streamingRouteDataReader.readOrdered(routeDataPath)
+                : routeDataReader.readOrdered(routeDataPath);
+            return (reload && routeData.length == 0)
+                ? null
+                : new DirectionalRouteManager(
+                    routeData
+                );
+        }
+
+        Path snapshotPath = AppConfig.findSnapshot(routeDataPath);
+        if (snapshotPath != null) {
+            SnapshotRouteDataReader snapshotReader = new SnapshotRouteDataReader(properties.isSnapshotVerified());
+            if (
+                AppConfig.isBufferSupported(properties)
+                || properties.getRouteManager() == TransportProperties.RouteManagerType.OFF_HEAP
+            ) {
+                // snapshot is used directly from the page cache without copying it into the heap
+                IntBuffer[] segments = snapshotReader.map(snapshotPath);
+                return (reload && segments.length == 0)
+                    ? null
+                    : new BufferRouteManager(
+                        segments
+                    );
+            }
+            int[] routeData = snapshotReader.read(snapshotPath);
+            return (reload && routeData.length == 0) ? null : AppConfig.createRouteManager(properties, routeData);
+        }
+
+        Path newSnapshotPath = AppConfig.getSiblingSnapshotPath(routeDataPath);
+        if (
+            properties.getRouteManager() == TransportProperties.RouteManagerType.OFF_HEAP
+            || (reload && AppConfig.isBufferSupported(properties))
+        ) {
+            boolean direct = properties.getRouteManager() == TransportProperties.RouteManagerType.OFF_HEAP;
+            IntBuffer[] segments = (streamingRouteDataReader != null)
+                ? streamingRouteDataReader.readSegments(routeDataPath, direct)
+                : routeDataReader.readSegments(routeDataPath, direct);
+            if (properties.isSnapshotWrite() && segments.length > 0) {
+                try {
+                    RouteDataSnapshot.write(segments, newSnapshotPath);
+                } catch (IOException exception) {
+                    LOGGER.warn("Route data snapshot cannot be written.", exception);
+                }
+            }
+            return (reload && segments.length == 0)
+                ? null
+                : new BufferRouteManager(
+                    segments
+                );
+        }
+
+        int[] routeData = (streamingRouteDataReader != null)
+            ? streamingRouteDataReader.read(routeDataPath)
+            : routeDataReader.read(routeDataPath);
+        if (properties.isSnapshotWrite() && routeData.length > 0) {
+            try {
+                RouteDataSnapshot.write(routeData, newSnapshotPath);
+            } catch (IOException exception) {
+                LOGGER.warn("Route data snapshot cannot be written.", exception);
+            }
+        }
+        return (reload && routeData.length == 0) ? null : AppConfig.createRouteManager(properties, routeData);
+    }
+
+    /**
+     * Find binary snapshot of the route data.
+     *
+     * Route data file itself can be a snapshot. Otherwise snapshot written next to the route data file
+     * is used if it is not older than the route data file.
+     *
+     * @param routeDataPath route data file location
+     * @return snapshot location or null if snapshot is not available
+     */
+    private static Path findSnapshot(Path routeDataPath) {
+        if (RouteDataSnapshot.isSnapshot(routeDataPath)) {
+            return routeDataPath;
+        }
+
+        Path snapshotPath = AppConfig.getSiblingSnapshotPath(routeDataPath);
+        try {
+            if (
+                RouteDataSnapshot.isSnapshot(snapshotPath)
+                && (
+                    !Files.exists(routeDataPath)
+                    || Files.getLastModifiedTime(snapshotPath).compareTo(Files.getLastModifiedTime(routeDataPath)) >= 0
+                )
+            ) {
+                return snapshotPath;
+            }
+        } catch (IOException exception) {
+            LOGGER.warn("Route data snapshot '{}' cannot be checked.", snapshotPath, exception);
+        }
+        return null;
+    }
+
+    /**
+     * Retrieve location of the snapshot written next to the route data file
+     *
+     * @param routeDataPath route data file location
+     * @return snapshot location
+     */
+    private static Path getSiblingSnapshotPath(Path routeDataPath) {
+        return routeDataPath.resolveSibling(routeDataPath.getFileName() + AppConfig.SNAPSHOT_EXTENSION);
+    }
+
+    /**
+     * Check if configured in-memory route manager can be replaced with the one that uses route data buffers
+     * (memory route manager with the default stop search and without updates, filters, hot stops, shards and transfers)
+     *
+     * @param properties application settings
+     * @return true if route data buffers can be used or false otherwise
+     */
+    private static boolean isBufferSupported(TransportProperties properties) {
+        return properties.getRouteManager() == TransportProperties.RouteManagerType.MEMORY
+            && !properties.isUpdatesEnabled()
+            && properties.getStopSearch() == StopSearch.BINARY
+            && properties.getFilterBitsPerStop() == 0
+            && properties.getHotStopCount() == 0
+            && properties.getShardCount() == 0
+            && !properties.isTransfersEnabled();
+    }
+
+    /**
+     * Create configured route manager for the given route data.
+     *
+     * Transfer search keeps the route data array, so it is not available together with route updates.
+     *
+     * @param properties application settings
+     * @param routeData route data
+     * @return route manager
+     */
+    private static RouteManager createRouteManager(TransportProperties properties, int[] routeData) {
+        if (properties.isTransfersEnabled() && !properties.isUpdatesEnabled()) {
+            return new TransferRouteManager(
+                AppConfig.createDirectRouteManager(properties, routeData),
+                routeData
+            );
+        }
+        return AppConfig.createDirectRouteManager(properties, routeData);
+    }
+
+    /**
+     * Create configured route manager that serves direct route requests for the given route data
+     *
+     * @param properties application settings
+     * @param routeData route data
+     * @return route manager
+     */
+    private static RouteManager createDirectRouteManager(TransportProperties properties, int[] routeData) {
+        switch (properties.getRouteManager()) {
+            case BITMAP:
+                return new BitmapRouteManager(
+                    routeData
+                );
+            case INDEXED:
+                return new IndexedRouteManager(
+                    routeData
+                );
+            case MEMORY:
+            default:
+                if (properties.isUpdatesEnabled()) {
+                    return new UpdatableRouteManager(
+                        routeData
+                    );
+                }
+                if (properties.getShardCount() > 0) {
+                    return new ShardedRouteManager(
+                        routeData,
+                        properties.getShardCount(),
+                        properties.getShardParallelism(),
+                        shardRouteData -> new MemoryRouteManager(
+                            shardRouteData,
+                            properties.getStopSearch(),
+                            properties.getFilterBitsPerStop(),
+                            properties.getHotStopCount(),
+                            properties.getHotStops()
+                        )
+                    );
+                }
+                return new MemoryRouteManager(
+                    routeData,
+                    properties.getStopSearch(),
+                    properties.getFilterBitsPerStop(),
+                    properties.getHotStopCount(),
+                    properties.getHotStops()
+                );
+        }
     }
 }
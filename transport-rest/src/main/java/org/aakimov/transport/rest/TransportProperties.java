@@ -0,0 +1,448 @@
+package org.aakimov.transport.rest;
+
+import org.aakimov.transport.api.DuplicateRoutePolicy;
+import org.aakimov.transport.api.IngestionPolicy;
+import org.aakimov.transport.api.StopSearch;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Transport application settings.
+ *
+ * Settings can be provided using standard Spring Boot property sources (e.g. --transport.route-manager=indexed).
+ *
+ * @author aakimov
+ */
+@ConfigurationProperties(prefix = "transport")
+public class TransportProperties {
+
+    /**
+     * Available route manager implementations
+     */
+    public enum RouteManagerType {
+
+        /**
+         * Binary search in sorted stop segments of the route data array (lowest memory footprint)
+         */
+        MEMORY,
+
+        /**
+         * Inverted stop to route index
+         */
+        INDEXED,
+
+        /**
+         * Compressed route bitmaps per stop
+         */
+        BITMAP,
+
+        /**
+         * Binary search in sorted stop segments stored outside of the heap (direct buffers or mapped snapshot)
+         */
+        OFF_HEAP,
+
+        /**
+         * Binary search in sorted stop segments that keep original stop positions (departure must precede arrival)
+         */
+        DIRECTIONAL
+    }
+
+    /**
+     * Route manager implementation to use
+     */
+    private RouteManagerType routeManager = RouteManagerType.MEMORY;
+
+    /**
+     * Search kernel for the stop segments of the in-memory route data (memory route manager only)
+     */
+    private StopSearch stopSearch = StopSearch.BINARY;
+
+    /**
+     * Number of Bloom filter bits per stop of the in-memory route data (0 disables filters, memory route manager only)
+     */
+    private int filterBitsPerStop;
+
+    /**
+     * Number of hot stops with precomputed direct connectivity (0 disables the matrix, memory route manager only)
+     */
+    private int hotStopCount;
+
+    /**
+     * Hot stop IDs in order of priority (stops served by the most routes are selected if not set)
+     */
+    private int[] hotStops;
+
+    /**
+     * Number of shards of the in-memory route data checked in parallel (0 disables sharding, memory route manager only)
+     */
+    private int shardCount;
+
+    /**
+     * Maximum number of threads that check shards of a single request
+     */
+    private int shardParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of threads used to parse route data file (1 means single-threaded parsing)
+     */
+    private int readerParallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Policy for route data files with format errors
+     */
+    private IngestionPolicy ingestionPolicy = IngestionPolicy.STRICT;
+
+    /**
+     * Policy for routes that share the same route ID
+     */
+    private DuplicateRoutePolicy duplicateRoutePolicy = DuplicateRoutePolicy.KEEP;
+
+    /**
+     * Flag that shows if binary snapshot should be written next to the parsed route data file
+     */
+    private boolean snapshotWrite;
+
+    /**
+     * Flag that shows if checksum of the binary snapshot should be verified on startup
+     */
+    private boolean snapshotVerified;
+
+    /**
+     * Flag that shows if route data can be reloaded at runtime (see POST /api/admin/reload)
+     */
+    private boolean reloadEnabled;
+
+    /**
+     * Flag that shows if route data should be reloaded once the route data file is changed
+     */
+    private boolean reloadWatch;
+
+    /**
+     * Flag that shows if individual routes can be updated at runtime (memory route manager only)
+     */
+    private boolean updatesEnabled;
+
+    /**
+     * Maximum number of cached results of the direct route checks (0 disables the cache)
+     */
+    private int cacheSize;
+
+    /**
+     * Flag that shows if connections with transfers can be searched (in-memory route data without updates only)
+     */
+    private boolean transfersEnabled;
+
+    /**
+     * Flag that shows if direct route requests are served by the Undertow handler in front of the servlet stack
+     */
+    private boolean directHandlerEnabled;
+
+    /**
+     * Flag that shows if the Undertow handler dispatches direct route requests from the I/O thread to a worker thread
+     * (only route managers that look route data up rather than scan it may keep requests on the I/O thread)
+     */
+    private boolean directHandlerDispatch = true;
+
+    /**
+     * Retrieve route manager implementation to use
+     *
+     * @return route manager type
+     */
+    public RouteManagerType getRouteManager() {
+        return this.routeManager;
+    }
+
+    /**
+     * @param routeManager route manager implementation to use
+     */
+    public void setRouteManager(RouteManagerType routeManager) {
+        this.routeManager = routeManager;
+    }
+
+    /**
+     * Retrieve search kernel for the stop segments of the in-memory route data
+     *
+     * @return stop search kernel
+     */
+    public StopSearch getStopSearch() {
+        return this.stopSearch;
+    }
+
+    /**
+     * @param stopSearch search kernel for the stop segments of the in-memory route data
+     */
+    public void setStopSearch(StopSearch stopSearch) {
+        this.stopSearch = stopSearch;
+    }
+
+    /**
+     * Retrieve number of Bloom filter bits per stop of the in-memory route data
+     *
+     * @return number of bits per stop (0 if filters are disabled)
+     */
+    public int getFilterBitsPerStop() {
+        return this.filterBitsPerStop;
+    }
+
+    /**
+     * @param filterBitsPerStop number of Bloom filter bits per stop of the in-memory route data (0 disables filters)
+     */
+    public void setFilterBitsPerStop(int filterBitsPerStop) {
+        this.filterBitsPerStop = filterBitsPerStop;
+    }
+
+    /**
+     * Retrieve number of hot stops with precomputed direct connectivity
+     *
+     * @return number of hot stops (0 if the matrix is disabled)
+     */
+    public int getHotStopCount() {
+        return this.hotStopCount;
+    }
+
+    /**
+     * @param hotStopCount number of hot stops with precomputed direct connectivity (0 disables the matrix)
+     */
+    public void setHotStopCount(int hotStopCount) {
+        this.hotStopCount = hotStopCount;
+    }
+
+    /**
+     * Retrieve hot stop IDs
+     *
+     * @return hot stop IDs in order of priority or null if the stops served by the most routes are selected
+     */
+    public int[] getHotStops() {
+        return this.hotStops;
+    }
+
+    /**
+     * @param hotStops hot stop IDs in order of priority
+     */
+    public void setHotStops(int[] hotStops) {
+        this.hotStops = hotStops;
+    }
+
+    /**
+     * Retrieve number of shards of the in-memory route data
+     *
+     * @return number of shards (0 if sharding is disabled)
+     */
+    public int getShardCount() {
+        return this.shardCount;
+    }
+
+    /**
+     * @param shardCount number of shards of the in-memory route data (0 disables sharding)
+     */
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Retrieve maximum number of threads that check shards of a single request
+     *
+     * @return shard parallelism
+     */
+    public int getShardParallelism() {
+        return this.shardParallelism;
+    }
+
+    /**
+     * @param shardParallelism maximum number of threads that check shards of a single request
+     */
+    public void setShardParallelism(int shardParallelism) {
+        this.shardParallelism = shardParallelism;
+    }
+
+    /**
+     * Retrieve number of threads used to parse route data file
+     *
+     * @return reader parallelism
+     */
+    public int getReaderParallelism() {
+        return this.readerParallelism;
+    }
+
+    /**
+     * @param readerParallelism number of threads used to parse route data file
+     */
+    public void setReaderParallelism(int readerParallelism) {
+        this.readerParallelism = readerParallelism;
+    }
+
+    /**
+     * Retrieve policy for route data files with format errors
+     *
+     * @return ingestion policy
+     */
+    public IngestionPolicy getIngestionPolicy() {
+        return this.ingestionPolicy;
+    }
+
+    /**
+     * @param ingestionPolicy policy for route data files with format errors
+     */
+    public void setIngestionPolicy(IngestionPolicy ingestionPolicy) {
+        this.ingestionPolicy = ingestionPolicy;
+    }
+
+    /**
+     * Retrieve policy for routes that share the same route ID
+     *
+     * @return duplicate route policy
+     */
+    public DuplicateRoutePolicy getDuplicateRoutePolicy() {
+        return this.duplicateRoutePolicy;
+    }
+
+    /**
+     * @param duplicateRoutePolicy policy for routes that share the same route ID
+     */
+    public void setDuplicateRoutePolicy(DuplicateRoutePolicy duplicateRoutePolicy) {
+        this.duplicateRoutePolicy = duplicateRoutePolicy;
+    }
+
+    /**
+     * Check if binary snapshot should be written next to the parsed route data file
+     *
+     * @return true if snapshot should be written or false otherwise
+     */
+    public boolean isSnapshotWrite() {
+        return this.snapshotWrite;
+    }
+
+    /**
+     * @param snapshotWrite flag that shows if binary snapshot should be written next to the parsed route data file
+     */
+    public void setSnapshotWrite(boolean snapshotWrite) {
+        this.snapshotWrite = snapshotWrite;
+    }
+
+    /**
+     * Check if checksum of the binary snapshot should be verified on startup
+     *
+     * @return true if checksum should be verified or false otherwise
+     */
+    public boolean isSnapshotVerified() {
+        return this.snapshotVerified;
+    }
+
+    /**
+     * @param snapshotVerified flag that shows if checksum of the binary snapshot should be verified on startup
+     */
+    public void setSnapshotVerified(boolean snapshotVerified) {
+        this.snapshotVerified = snapshotVerified;
+    }
+
+    /**
+     * Check if route data can be reloaded at runtime
+     *
+     * @return true if route data can be reloaded or false otherwise
+     */
+    public boolean isReloadEnabled() {
+        return this.reloadEnabled;
+    }
+
+    /**
+     * @param reloadEnabled flag that shows if route data can be reloaded at runtime
+     */
+    public void setReloadEnabled(boolean reloadEnabled) {
+        this.reloadEnabled = reloadEnabled;
+    }
+
+    /**
+     * Check if route data should be reloaded once the route data file is changed
+     *
+     * @return true if route data file should be watched or false otherwise
+     */
+    public boolean isReloadWatch() {
+        return this.reloadWatch;
+    }
+
+    /**
+     * @param reloadWatch flag that shows if route data should be reloaded once the route data file is changed
+     */
+    public void setReloadWatch(boolean reloadWatch) {
+        this.reloadWatch = reloadWatch;
+    }
+
+    /**
+     * Check if individual routes can be updated at runtime
+     *
+     * @return true if route updates are enabled or false otherwise
+     */
+    public boolean isUpdatesEnabled() {
+        return this.updatesEnabled;
+    }
+
+    /**
+     * @param updatesEnabled flag that shows if individual routes can be updated at runtime
+     */
+    public void setUpdatesEnabled(boolean updatesEnabled) {
+        this.updatesEnabled = updatesEnabled;
+    }
+
+    /**
+     * Retrieve maximum number of cached results of the direct route checks
+     *
+     * @return cache size (0 if cache is disabled)
+     */
+    public int getCacheSize() {
+        return this.cacheSize;
+    }
+
+    /**
+     * @param cacheSize maximum number of cached results of the direct route checks (0 disables the cache)
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Check if connections with transfers can be searched
+     *
+     * @return true if transfers are enabled or false otherwise
+     */
+    public boolean isTransfersEnabled() {
+        return this.transfersEnabled;
+    }
+
+    /**
+     * @param transfersEnabled flag that shows if connections with transfers can be searched
+     */
+    public void setTransfersEnabled(boolean transfersEnabled) {
+        this.transfersEnabled = transfersEnabled;
+    }
+
+    /**
+     * Check if direct route requests are served by the Undertow handler in front of the servlet stack
+     *
+     * @return true if the handler is enabled or false otherwise
+     */
+    public boolean isDirectHandlerEnabled() {
+        return this.directHandlerEnabled;
+    }
+
+    /**
+     * @param directHandlerEnabled flag that shows if direct route requests are served by the Undertow handler
+     */
+    public void setDirectHandlerEnabled(boolean directHandlerEnabled) {
+        this.directHandlerEnabled = directHandlerEnabled;
+    }
+
+    /**
+     * Check if the Undertow handler dispatches direct route requests from the I/O thread to a worker thread
+     *
+     * @return true if requests are dispatched or false if they are served on the I/O thread
+     */
+    public boolean isDirectHandlerDispatch() {
+        return this.directHandlerDispatch;
+    }
+
+    /**
+     * @param directHandlerDispatch flag that shows if direct route requests are dispatched to a worker thread
+     */
+    public void setDirectHandlerDispatch(boolean directHandlerDispatch) {
+        this.directHandlerDispatch = directHandlerDispatch;
+    }
+}
@@ -1,12 +1,32 @@
 package org.aakimov.transport.rest.controllers;
 
+import org.aakimov.transport.api.CachingRouteManager;
+import org.aakimov.transport.api.IngestionReport;
+import org.aakimov.transport.api.ReloadableRouteManager;
 import org.aakimov.transport.api.RouteManager;
-import org.aakimov.transport.rest.entities.DirectRoute;
+import org.aakimov.transport.api.RouteUpdate;
+import org.aakimov.transport.api.TransferRouteManager;
+import org.aakimov.transport.api.UpdatableRouteManager;
+import org.aakimov.transport.rest.entities.CacheStatistics;
+import org.aakimov.transport.rest.entities.DirectRouteDetails;
+import org.aakimov.transport.rest.entities.DirectRouteJsonWriter;
+import org.aakimov.transport.rest.entities.DirectRouteQuery;
+import org.aakimov.transport.rest.entities.IngestionError;
+import org.aakimov.transport.rest.entities.IngestionSummary;
+import org.aakimov.transport.rest.entities.RouteChange;
+import org.aakimov.transport.rest.entities.TransferConnection;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.inject.Inject;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Route manager controller.
@@ -19,27 +39,51 @@ import javax.inject.Inject;
 @RequestMapping(value = "/api")
 public class RouteManagerController {
 
+    /**
+     * Size of the buffer used to stream batch responses
+     */
+    private static final int BATCH_BUFFER_SIZE = 8192;
+
+    /**
+     * Direct route response buffer of the current thread (response output stream copies it before returning)
+     */
+    private static final ThreadLocal<byte[]> DIRECT_ROUTE_BUFFER = ThreadLocal.withInitial(
+        () -> new byte[DirectRouteJsonWriter.MAX_LENGTH]
+    );
+
     /**
      * Route manager
      */
     private final RouteManager routeManager;
 
+    /**
+     * Report of the last route data read
+     */
+    private final AtomicReference<IngestionReport> ingestionReport;
+
     /**
      * @param routeManager route manager
+     * @param ingestionReport holder of the report of the last route data read
      */
     @Inject
     public RouteManagerController(
-        RouteManager routeManager
+        RouteManager routeManager,
+        AtomicReference<IngestionReport> ingestionReport
     ) {
         this.routeManager = routeManager;
+        this.ingestionReport = ingestionReport;
     }
 
     /**
-     * Find direct route between two stops represented by given IDs
+     * Find direct route between two stops represented by given IDs.
+     *
+     * Response is written by {@link DirectRouteJsonWriter} straight into the response, so the request does not
+     * create a direct route entity or go through Jackson.
      *
      * @param departureStopId departure stop ID
      * @param arrivalStopId arrival stop ID
-     * @return response object that represent direct route between two stops
+     * @param response HTTP response to write direct route to
+     * @throws IOException if response cannot be written
      */
     @RequestMapping(
         value = "/direct",
@@ -47,18 +91,269 @@ public class RouteManagerController {
         params = {"dep_sid", "arr_sid"},
         produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
     )
+    public void findDirectRoute(
+        @RequestParam(name = "dep_sid") int departureStopId,
+        @RequestParam(name = "arr_sid") int arrivalStopId,
+        HttpServletResponse response
+    ) throws IOException {
+        boolean directRouteAvailable = this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId);
+        byte[] buffer = RouteManagerController.DIRECT_ROUTE_BUFFER.get();
+        int length = DirectRouteJsonWriter.write(buffer, 0, departureStopId, arrivalStopId, directRouteAvailable);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setContentLength(length);
+        response.getOutputStream().write(buffer, 0, length);
+    }
+
+    /**
+     * Find IDs of the routes that serve both stops represented by given IDs
+     *
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param limit maximum number of route IDs to return (all the routes by default)
+     * @return response object that represent direct route between two stops with IDs of the matching routes
+     */
+    @RequestMapping(
+        value = "/direct/routes",
+        method = RequestMethod.GET,
+        params = {"dep_sid", "arr_sid"},
+        produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
+    )
     @ResponseBody
-    public DirectRoute findDirectRoute(
+    public DirectRouteDetails findDirectRouteDetails(
         @RequestParam(name = "dep_sid") int departureStopId,
-        @RequestParam(name = "arr_sid") int arrivalStopId
+        @RequestParam(name = "arr_sid") int arrivalStopId,
+        @RequestParam(name = "limit", required = false, defaultValue = "2147483647") int limit
     ) {
-        return new DirectRoute(
+        return new DirectRouteDetails(
             departureStopId,
             arrivalStopId,
-            this.routeManager.isDirectRouteAvailable(departureStopId, arrivalStopId)
+            this.routeManager.findDirectRoutes(departureStopId, arrivalStopId, limit)
         );
     }
 
+    /**
+     * Find connection with the fewest transfers between two stops represented by given IDs
+     *
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param maxTransfers maximum number of transfers (1 by default)
+     * @return response object that represents connection between two stops with the stops to change routes at
+     */
+    @RequestMapping(
+        value = "/transfer",
+        method = RequestMethod.GET,
+        params = {"dep_sid", "arr_sid"},
+        produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
+    )
+    @ResponseBody
+    public TransferConnection findTransferConnection(
+        @RequestParam(name = "dep_sid") int departureStopId,
+        @RequestParam(name = "arr_sid") int arrivalStopId,
+        @RequestParam(name = "max_transfers", required = false, defaultValue = "1") int maxTransfers
+    ) {
+        return new TransferConnection(
+            departureStopId,
+            arrivalStopId,
+            this.routeManager.findTransferStops(departureStopId, arrivalStopId, maxTransfers)
+        );
+    }
+
+    /**
+     * Find direct routes for all the given pairs of stops.
+     *
+     * All the pairs are resolved by a single batch call of the route manager and results are streamed back
+     * as a JSON array of direct routes (in the order of the request).
+     *
+     * @param directRouteQueries pairs of departure and arrival stop IDs
+     * @return response body that streams direct routes
+     */
+    @RequestMapping(
+        value = "/direct/batch",
+        method = RequestMethod.POST,
+        consumes = {MediaType.APPLICATION_JSON_VALUE},
+        produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
+    )
+    public ResponseEntity<StreamingResponseBody> findDirectRoutes(
+        @RequestBody List<DirectRouteQuery> directRouteQueries
+    ) {
+        int[] departureStopIds = new int[directRouteQueries.size()];
+        int[] arrivalStopIds = new int[directRouteQueries.size()];
+        for (int queryIndex = 0; queryIndex < departureStopIds.length; queryIndex++) {
+            DirectRouteQuery directRouteQuery = directRouteQueries.get(queryIndex);
+            departureStopIds[queryIndex] = directRouteQuery.getDepartureStopId();
+            arrivalStopIds[queryIndex] = directRouteQuery.getArrivalStopId();
+        }
+        boolean[] results = this.routeManager.areDirectRoutesAvailable(departureStopIds, arrivalStopIds);
+
+        StreamingResponseBody responseBody = outputStream -> {
+            // direct routes are written into the buffer that is passed to the response as soon as it is full
+            byte[] buffer = new byte[RouteManagerController.BATCH_BUFFER_SIZE];
+            int position = 0;
+            buffer[position++] = '[';
+            for (int queryIndex = 0; queryIndex < results.length; queryIndex++) {
+                // room for the separator, direct route and closing bracket
+                if (position + DirectRouteJsonWriter.MAX_LENGTH + 2 > buffer.length) {
+                    outputStream.write(buffer, 0, position);
+                    position = 0;
+                }
+                if (queryIndex > 0) {
+                    buffer[position++] = ',';
+                }
+                position = DirectRouteJsonWriter.write(
+                    buffer,
+                    position,
+                    departureStopIds[queryIndex],
+                    arrivalStopIds[queryIndex],
+                    results[queryIndex]
+                );
+            }
+            buffer[position++] = ']';
+            outputStream.write(buffer, 0, position);
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON_UTF8)
+            .body(responseBody);
+    }
+
+    /**
+     * Reload route data in the background.
+     *
+     * Requests are served using the current route data until the new one is loaded.
+     *
+     * @return empty response with "accepted" status
+     */
+    @RequestMapping(
+        value = "/admin/reload",
+        method = RequestMethod.POST
+    )
+    public ResponseEntity<Void> reloadRouteData() {
+        ReloadableRouteManager reloadableRouteManager = this.findRouteManager(ReloadableRouteManager.class);
+        if (reloadableRouteManager == null) {
+            throw new UnsupportedOperationException("Route data reload is not enabled.");
+        }
+        reloadableRouteManager.reload();
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Add, replace or remove routes without reloading the route data.
+     *
+     * All the changes are applied atomically (requests see either all or none of them).
+     *
+     * @param routeChanges routes to add or replace (with stops) or to remove (without stops)
+     * @return empty response with "no content" status
+     */
+    @RequestMapping(
+        value = "/admin/routes",
+        method = RequestMethod.POST,
+        consumes = {MediaType.APPLICATION_JSON_VALUE}
+    )
+    public ResponseEntity<Void> updateRoutes(
+        @RequestBody List<RouteChange> routeChanges
+    ) {
+        UpdatableRouteManager updatableRouteManager = this.findRouteManager(UpdatableRouteManager.class);
+        if (updatableRouteManager == null) {
+            throw new UnsupportedOperationException("Route updates are not enabled.");
+        }
+
+        List<RouteUpdate> routeUpdates = new ArrayList<>(routeChanges.size());
+        for (RouteChange routeChange : routeChanges) {
+            routeUpdates.add(
+                (routeChange.getStops() == null)
+                    ? RouteUpdate.remove(routeChange.getRouteId())
+                    : RouteUpdate.put(routeChange.getRouteId(), routeChange.getStops())
+            );
+        }
+        updatableRouteManager.update(routeUpdates);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Retrieve counters of the query result cache
+     *
+     * @return response object that represents cache statistics
+     */
+    @RequestMapping(
+        value = "/admin/cache",
+        method = RequestMethod.GET,
+        produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
+    )
+    @ResponseBody
+    public CacheStatistics getCacheStatistics() {
+        CachingRouteManager cachingRouteManager = this.findRouteManager(CachingRouteManager.class);
+        if (cachingRouteManager == null) {
+            throw new UnsupportedOperationException("Query result cache is not enabled.");
+        }
+        return new CacheStatistics(
+            cachingRouteManager.getCapacity(),
+            cachingRouteManager.getHitCount(),
+            cachingRouteManager.getMissCount(),
+            cachingRouteManager.getEvictionCount()
+        );
+    }
+
+    /**
+     * Retrieve report of the last route data read (loaded routes, skipped lines and first format errors)
+     *
+     * @return response object that represents ingestion summary
+     */
+    @RequestMapping(
+        value = "/admin/ingestion",
+        method = RequestMethod.GET,
+        produces = {MediaType.APPLICATION_JSON_UTF8_VALUE}
+    )
+    @ResponseBody
+    public IngestionSummary getIngestionSummary() {
+        IngestionReport report = this.ingestionReport.get();
+        if (report == null) {
+            throw new UnsupportedOperationException("Ingestion report is not available for route data snapshots.");
+        }
+
+        List<IngestionError> errors = new ArrayList<>(report.getErrors().size());
+        for (IngestionReport.IngestionError error : report.getErrors()) {
+            errors.add(new IngestionError(error.getLineNumber(), error.getByteOffset(), error.getMessage()));
+        }
+        return new IngestionSummary(
+            report.getPolicy().name(),
+            report.getDeclaredRouteCount(),
+            report.getRouteCount(),
+            report.getSkippedLineCount(),
+            report.getShortRouteCount(),
+            report.getDuplicateStopRouteCount(),
+            report.getDuplicateRouteCount(),
+            report.getReleasedLength(),
+            errors,
+            report.getFailure()
+        );
+    }
+
+    /**
+     * Find route manager of the given type among the configured route manager and the ones it decorates
+     *
+     * @param routeManagerClass route manager type
+     * @param <T> route manager type
+     * @return route manager or null if there is no route manager of the given type
+     */
+    private <T extends RouteManager> T findRouteManager(Class<T> routeManagerClass) {
+        RouteManager currentRouteManager = this.routeManager;
+        while (currentRouteManager != null) {
+            if (routeManagerClass.isInstance(currentRouteManager)) {
+                return routeManagerClass.cast(currentRouteManager);
+            }
+            if (currentRouteManager instanceof CachingRouteManager) {
+                currentRouteManager = ((CachingRouteManager)currentRouteManager).getRouteManager();
+            } else if (currentRouteManager instanceof ReloadableRouteManager) {
+                currentRouteManager = ((ReloadableRouteManager)currentRouteManager).getRouteManager();
+            } else if (currentRouteManager instanceof TransferRouteManager) {
+                currentRouteManager = ((TransferRouteManager)currentRouteManager).getRouteManager();
+            } else {
+                currentRouteManager = null;
+            }
+        }
+        return null;
+    }
+
     /**
      * Custom exception handler for bad request scenarios.
      */
@@ -70,4 +365,28 @@ public class RouteManagerController {
     public void handleInvalidRequestParameters() {
         // do nothing
     }
+
+    /**
+     * Custom exception handler for requests with invalid parameter values (e.g. negative limit).
+     */
+    @ResponseStatus(
+        value= HttpStatus.BAD_REQUEST,
+        reason="Invalid request parameters."
+    )
+    @ExceptionHandler({IllegalArgumentException.class})
+    public void handleInvalidRequestArguments() {
+        // do nothing
+    }
+
+    /**
+     * Custom exception handler for operations that are not supported by the configured route manager.
+     */
+    @ResponseStatus(
+        value= HttpStatus.NOT_IMPLEMENTED,
+        reason="Operation is not supported by the configured route manager."
+    )
+    @ExceptionHandler({UnsupportedOperationException.class})
+    public void handleUnsupportedOperation() {
+        // do nothing
+    }
 }
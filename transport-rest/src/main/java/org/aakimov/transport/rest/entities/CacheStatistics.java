@@ -0,0 +1,94 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Cache statistics entity.
+ *
+ * Represents counters of the query result cache.
+ *
+ * @author aakimov
+ */
+public class CacheStatistics {
+
+    /**
+     * Maximum number of cached results
+     */
+    @JsonProperty("capacity")
+    private final int capacity;
+
+    /**
+     * Number of cache hits
+     */
+    @JsonProperty("hit_count")
+    private final long hitCount;
+
+    /**
+     * Number of cache misses
+     */
+    @JsonProperty("miss_count")
+    private final long missCount;
+
+    /**
+     * Number of evicted results
+     */
+    @JsonProperty("eviction_count")
+    private final long evictionCount;
+
+    /**
+     * @param capacity maximum number of cached results
+     * @param hitCount number of cache hits
+     * @param missCount number of cache misses
+     * @param evictionCount number of evicted results
+     */
+    @JsonCreator
+    public CacheStatistics(
+        @JsonProperty(value = "capacity", required = true) int capacity,
+        @JsonProperty(value = "hit_count", required = true) long hitCount,
+        @JsonProperty(value = "miss_count", required = true) long missCount,
+        @JsonProperty(value = "eviction_count", required = true) long evictionCount
+    ) {
+        this.capacity = capacity;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    /**
+     * Retrieve maximum number of cached results
+     *
+     * @return cache capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Retrieve number of cache hits
+     *
+     * @return number of hits
+     */
+    public long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * Retrieve number of cache misses
+     *
+     * @return number of misses
+     */
+    public long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * Retrieve number of evicted results
+     *
+     * @return number of evictions
+     */
+    public long getEvictionCount() {
+        return this.evictionCount;
+    }
+}
@@ -0,0 +1,60 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Direct route details entity.
+ *
+ * Represents direct route between two stops together with IDs of the routes that serve both stops.
+ *
+ * @author aakimov
+ */
+public class DirectRouteDetails extends DirectRoute {
+
+    /**
+     * IDs of the routes that serve both stops
+     */
+    @JsonProperty("route_ids")
+    private final int[] routeIds;
+
+    /**
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param routeIds IDs of the routes that serve both stops
+     */
+    public DirectRouteDetails(
+        int departureStopId,
+        int arrivalStopId,
+        int[] routeIds
+    ) {
+        this(departureStopId, arrivalStopId, routeIds.length > 0, routeIds);
+    }
+
+    /**
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param directRouteAvailable flag that shows if direct route is available
+     * @param routeIds IDs of the routes that serve both stops
+     */
+    @JsonCreator
+    public DirectRouteDetails(
+        @JsonProperty(value = "dep_sid", required = true) int departureStopId,
+        @JsonProperty(value = "arr_sid", required = true) int arrivalStopId,
+        @JsonProperty(value = "direct_bus_route", required = true) boolean directRouteAvailable,
+        @JsonProperty(value = "route_ids", required = true) int[] routeIds
+    ) {
+        super(departureStopId, arrivalStopId, directRouteAvailable);
+        this.routeIds = routeIds;
+    }
+
+    /**
+     * Retrieve IDs of the routes that serve both stops
+     *
+     * @return route IDs
+     */
+    public int[] getRouteIds() {
+        return this.routeIds;
+    }
+}
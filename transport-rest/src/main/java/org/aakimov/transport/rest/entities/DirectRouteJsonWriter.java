@@ -0,0 +1,164 @@
+package org.aakimov.transport.rest.entities;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON writer of direct routes.
+ *
+ * Writes the same bytes as Jackson does for {@link DirectRoute} straight into a byte buffer: field names are cached
+ * template fragments and stop IDs are written digit by digit, so nothing is created per route.
+ *
+ * @author aakimov
+ */
+public final class DirectRouteJsonWriter {
+
+    /**
+     * Template fragment that precedes departure stop ID
+     */
+    private static final byte[] DEPARTURE_STOP_ID_PREFIX = "{\"dep_sid\":".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Template fragment that precedes arrival stop ID
+     */
+    private static final byte[] ARRIVAL_STOP_ID_PREFIX = ",\"arr_sid\":".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Template fragment that follows arrival stop ID if direct route is available
+     */
+    private static final byte[] AVAILABLE_SUFFIX = ",\"direct_bus_route\":true}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Template fragment that follows arrival stop ID if direct route is not available
+     */
+    private static final byte[] UNAVAILABLE_SUFFIX = ",\"direct_bus_route\":false}".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Maximum number of bytes taken by a single direct route
+     */
+    public static final int MAX_LENGTH = DirectRouteJsonWriter.getLength(Integer.MIN_VALUE, Integer.MIN_VALUE, false);
+
+    /**
+     * Instantiation of this class is not supported.
+     */
+    private DirectRouteJsonWriter() {
+        throw new UnsupportedOperationException("This class should not be instantiated.");
+    }
+
+    /**
+     * Write direct route into a new array of the exact size
+     *
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param directRouteAvailable flag that shows if direct route is available
+     * @return JSON bytes
+     */
+    public static byte[] write(int departureStopId, int arrivalStopId, boolean directRouteAvailable) {
+        byte[] buffer = new byte[DirectRouteJsonWriter.getLength(departureStopId, arrivalStopId, directRouteAvailable)];
+        DirectRouteJsonWriter.write(buffer, 0, departureStopId, arrivalStopId, directRouteAvailable);
+        return buffer;
+    }
+
+    /**
+     * Write direct route into the buffer
+     *
+     * @param buffer buffer with at least {@link #MAX_LENGTH} bytes available from the position
+     * @param position position to write at
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param directRouteAvailable flag that shows if direct route is available
+     * @return position that follows the direct route
+     */
+    public static int write(
+        byte[] buffer,
+        int position,
+        int departureStopId,
+        int arrivalStopId,
+        boolean directRouteAvailable
+    ) {
+        int currentPosition = DirectRouteJsonWriter.writeBytes(
+            buffer,
+            position,
+            DirectRouteJsonWriter.DEPARTURE_STOP_ID_PREFIX
+        );
+        currentPosition = DirectRouteJsonWriter.writeInt(buffer, currentPosition, departureStopId);
+        currentPosition = DirectRouteJsonWriter.writeBytes(
+            buffer,
+            currentPosition,
+            DirectRouteJsonWriter.ARRIVAL_STOP_ID_PREFIX
+        );
+        currentPosition = DirectRouteJsonWriter.writeInt(buffer, currentPosition, arrivalStopId);
+        return DirectRouteJsonWriter.writeBytes(
+            buffer,
+            currentPosition,
+            directRouteAvailable ? DirectRouteJsonWriter.AVAILABLE_SUFFIX : DirectRouteJsonWriter.UNAVAILABLE_SUFFIX
+        );
+    }
+
+    /**
+     * Count bytes taken by a direct route
+     *
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param directRouteAvailable flag that shows if direct route is available
+     * @return number of bytes
+     */
+    public static int getLength(int departureStopId, int arrivalStopId, boolean directRouteAvailable) {
+        return DirectRouteJsonWriter.DEPARTURE_STOP_ID_PREFIX.length
+            + DirectRouteJsonWriter.getIntLength(departureStopId)
+            + DirectRouteJsonWriter.ARRIVAL_STOP_ID_PREFIX.length
+            + DirectRouteJsonWriter.getIntLength(arrivalStopId)
+            + (directRouteAvailable
+                ? DirectRouteJsonWriter.AVAILABLE_SUFFIX.length
+                : DirectRouteJsonWriter.UNAVAILABLE_SUFFIX.length);
+    }
+
+    /**
+     * Count bytes taken by a decimal value
+     *
+     * @param value value
+     * @return number of bytes including the sign
+     */
+    private static int getIntLength(int value) {
+        int length = (value < 0) ? 2 : 1;
+        for (int remainder = value / 10; remainder != 0; remainder /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Copy template fragment into the buffer
+     *
+     * @param buffer buffer
+     * @param position position to write at
+     * @param bytes template fragment
+     * @return position that follows the fragment
+     */
+    private static int writeBytes(byte[] buffer, int position, byte[] bytes) {
+        System.arraycopy(bytes, 0, buffer, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    /**
+     * Write decimal value into the buffer
+     *
+     * @param buffer buffer
+     * @param position position to write at
+     * @param value value
+     * @return position that follows the value
+     */
+    private static int writeInt(byte[] buffer, int position, int value) {
+        // digits are taken from the negative value, so Integer.MIN_VALUE does not overflow
+        int negativeValue = (value < 0) ? value : -value;
+        if (value < 0) {
+            buffer[position] = '-';
+        }
+        int endPosition = position + DirectRouteJsonWriter.getIntLength(value);
+        int digitPosition = endPosition;
+        do {
+            buffer[--digitPosition] = (byte)('0' - negativeValue % 10);
+            negativeValue /= 10;
+        } while (negativeValue != 0);
+        return endPosition;
+    }
+}
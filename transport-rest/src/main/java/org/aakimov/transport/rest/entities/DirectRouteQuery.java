@@ -0,0 +1,58 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Direct route query entity.
+ *
+ * Represents a pair of stops of the batch direct route request.
+ *
+ * @author aakimov
+ */
+public class DirectRouteQuery {
+
+    /**
+     * Departure stop ID
+     */
+    @JsonProperty("dep_sid")
+    private final int departureStopId;
+
+    /**
+     * Arrival stop ID
+     */
+    @JsonProperty("arr_sid")
+    private final int arrivalStopId;
+
+    /**
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     */
+    @JsonCreator
+    public DirectRouteQuery(
+        @JsonProperty(value = "dep_sid", required = true) int departureStopId,
+        @JsonProperty(value = "arr_sid", required = true) int arrivalStopId
+    ) {
+        this.departureStopId = departureStopId;
+        this.arrivalStopId = arrivalStopId;
+    }
+
+    /**
+     * Retrieve departure stop ID
+     *
+     * @return departure stop ID
+     */
+    public int getDepartureStopId() {
+        return this.departureStopId;
+    }
+
+    /**
+     * Retrieve arrival stop ID
+     *
+     * @return arrival stop ID
+     */
+    public int getArrivalStopId() {
+        return this.arrivalStopId;
+    }
+}
@@ -0,0 +1,76 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Ingestion error entity.
+ *
+ * Represents format error of a route data line.
+ *
+ * @author aakimov
+ */
+public class IngestionError {
+
+    /**
+     * Line number (starting from 1)
+     */
+    @JsonProperty("line_number")
+    private final long lineNumber;
+
+    /**
+     * Offset of the line start (in bytes of the uncompressed route data)
+     */
+    @JsonProperty("byte_offset")
+    private final long byteOffset;
+
+    /**
+     * Error message
+     */
+    @JsonProperty("message")
+    private final String message;
+
+    /**
+     * @param lineNumber line number (starting from 1)
+     * @param byteOffset offset of the line start (in bytes)
+     * @param message error message
+     */
+    @JsonCreator
+    public IngestionError(
+        @JsonProperty(value = "line_number", required = true) long lineNumber,
+        @JsonProperty(value = "byte_offset", required = true) long byteOffset,
+        @JsonProperty(value = "message", required = true) String message
+    ) {
+        this.lineNumber = lineNumber;
+        this.byteOffset = byteOffset;
+        this.message = message;
+    }
+
+    /**
+     * Retrieve line number
+     *
+     * @return line number (starting from 1)
+     */
+    public long getLineNumber() {
+        return this.lineNumber;
+    }
+
+    /**
+     * Retrieve offset of the line start
+     *
+     * @return offset (in bytes)
+     */
+    public long getByteOffset() {
+        return this.byteOffset;
+    }
+
+    /**
+     * Retrieve error message
+     *
+     * @return error message
+     */
+    public String getMessage() {
+        return this.message;
+    }
+}
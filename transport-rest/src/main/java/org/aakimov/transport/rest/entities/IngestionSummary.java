@@ -0,0 +1,205 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Ingestion summary entity.
+ *
+ * Represents report of the last route data read: numbers of loaded routes and skipped lines
+ * together with the locations of the first format errors.
+ *
+ * @author aakimov
+ */
+public class IngestionSummary {
+
+    /**
+     * Policy used to read route data
+     */
+    @JsonProperty("policy")
+    private final String policy;
+
+    /**
+     * Number of routes declared in the first line
+     */
+    @JsonProperty("declared_route_count")
+    private final int declaredRouteCount;
+
+    /**
+     * Number of loaded routes
+     */
+    @JsonProperty("route_count")
+    private final int routeCount;
+
+    /**
+     * Number of skipped lines
+     */
+    @JsonProperty("skipped_line_count")
+    private final int skippedLineCount;
+
+    /**
+     * Number of skipped routes with less than 2 stops
+     */
+    @JsonProperty("short_route_count")
+    private final int shortRouteCount;
+
+    /**
+     * Number of loaded routes with duplicate stops
+     */
+    @JsonProperty("duplicate_stop_route_count")
+    private final int duplicateStopRouteCount;
+
+    /**
+     * Number of routes with route ID of one of the previous routes
+     */
+    @JsonProperty("duplicate_route_count")
+    private final int duplicateRouteCount;
+
+    /**
+     * Number of integers released by removal of duplicate stops and duplicate routes
+     */
+    @JsonProperty("released_length")
+    private final long releasedLength;
+
+    /**
+     * First format errors in order of lines
+     */
+    @JsonProperty("errors")
+    private final List<IngestionError> errors;
+
+    /**
+     * Reason of the route data rejection (null if route data is loaded)
+     */
+    @JsonProperty("failure")
+    private final String failure;
+
+    /**
+     * @param policy policy used to read route data
+     * @param declaredRouteCount number of routes declared in the first line
+     * @param routeCount number of loaded routes
+     * @param skippedLineCount number of skipped lines
+     * @param shortRouteCount number of skipped routes with less than 2 stops
+     * @param duplicateStopRouteCount number of loaded routes with duplicate stops
+     * @param duplicateRouteCount number of routes with route ID of one of the previous routes
+     * @param releasedLength number of integers released by removal of duplicate stops and duplicate routes
+     * @param errors first format errors in order of lines
+     * @param failure reason of the route data rejection (null if route data is loaded)
+     */
+    @JsonCreator
+    public IngestionSummary(
+        @JsonProperty(value = "policy", required = true) String policy,
+        @JsonProperty(value = "declared_route_count", required = true) int declaredRouteCount,
+        @JsonProperty(value = "route_count", required = true) int routeCount,
+        @JsonProperty(value = "skipped_line_count", required = true) int skippedLineCount,
+        @JsonProperty(value = "short_route_count", required = true) int shortRouteCount,
+        @JsonProperty(value = "duplicate_stop_route_count", required = true) int duplicateStopRouteCount,
+        @JsonProperty(value = "duplicate_route_count", required = true) int duplicateRouteCount,
+        @JsonProperty(value = "released_length", required = true) long releasedLength,
+        @JsonProperty(value = "errors", required = true) List<IngestionError> errors,
+        @JsonProperty(value = "failure") String failure
+    ) {
+        this.policy = policy;
+        this.declaredRouteCount = declaredRouteCount;
+        this.routeCount = routeCount;
+        this.skippedLineCount = skippedLineCount;
+        this.shortRouteCount = shortRouteCount;
+        this.duplicateStopRouteCount = duplicateStopRouteCount;
+        this.duplicateRouteCount = duplicateRouteCount;
+        this.releasedLength = releasedLength;
+        this.errors = errors;
+        this.failure = failure;
+    }
+
+    /**
+     * Retrieve policy used to read route data
+     *
+     * @return ingestion policy
+     */
+    public String getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Retrieve number of routes declared in the first line
+     *
+     * @return number of declared routes
+     */
+    public int getDeclaredRouteCount() {
+        return this.declaredRouteCount;
+    }
+
+    /**
+     * Retrieve number of loaded routes
+     *
+     * @return number of routes
+     */
+    public int getRouteCount() {
+        return this.routeCount;
+    }
+
+    /**
+     * Retrieve number of skipped lines
+     *
+     * @return number of skipped lines
+     */
+    public int getSkippedLineCount() {
+        return this.skippedLineCount;
+    }
+
+    /**
+     * Retrieve number of skipped routes with less than 2 stops
+     *
+     * @return number of short routes
+     */
+    public int getShortRouteCount() {
+        return this.shortRouteCount;
+    }
+
+    /**
+     * Retrieve number of loaded routes with duplicate stops
+     *
+     * @return number of routes with duplicate stops
+     */
+    public int getDuplicateStopRouteCount() {
+        return this.duplicateStopRouteCount;
+    }
+
+    /**
+     * Retrieve number of routes with route ID of one of the previous routes
+     *
+     * @return number of duplicate routes
+     */
+    public int getDuplicateRouteCount() {
+        return this.duplicateRouteCount;
+    }
+
+    /**
+     * Retrieve number of integers released by removal of duplicate stops and duplicate routes
+     *
+     * @return number of released integers
+     */
+    public long getReleasedLength() {
+        return this.releasedLength;
+    }
+
+    /**
+     * Retrieve first format errors
+     *
+     * @return format errors in order of lines
+     */
+    public List<IngestionError> getErrors() {
+        return this.errors;
+    }
+
+    /**
+     * Retrieve reason of the route data rejection
+     *
+     * @return error message (null if route data is loaded)
+     */
+    public String getFailure() {
+        return this.failure;
+    }
+}
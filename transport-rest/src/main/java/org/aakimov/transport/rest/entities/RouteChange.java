@@ -0,0 +1,59 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Route change entity.
+ *
+ * Represents a single route of the route update request: route with stops is added or replaced,
+ * route without stops is removed.
+ *
+ * @author aakimov
+ */
+public class RouteChange {
+
+    /**
+     * Route ID
+     */
+    @JsonProperty("route_id")
+    private final int routeId;
+
+    /**
+     * Stop IDs of the route (null if route is removed)
+     */
+    @JsonProperty("stops")
+    private final int[] stops;
+
+    /**
+     * @param routeId route ID
+     * @param stops stop IDs of the route (null if route is removed)
+     */
+    @JsonCreator
+    public RouteChange(
+        @JsonProperty(value = "route_id", required = true) int routeId,
+        @JsonProperty(value = "stops") int[] stops
+    ) {
+        this.routeId = routeId;
+        this.stops = stops;
+    }
+
+    /**
+     * Retrieve route ID
+     *
+     * @return route ID
+     */
+    public int getRouteId() {
+        return this.routeId;
+    }
+
+    /**
+     * Retrieve stop IDs of the route
+     *
+     * @return stop IDs (null if route is removed)
+     */
+    public int[] getStops() {
+        return this.stops;
+    }
+}
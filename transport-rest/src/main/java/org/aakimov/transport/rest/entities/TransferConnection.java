@@ -0,0 +1,112 @@
+package org.aakimov.transport.rest.entities;
+
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Transfer connection entity.
+ *
+ * Represents connection between two stops with the stops to change routes at.
+ *
+ * @author aakimov
+ */
+public class TransferConnection {
+
+    /**
+     * Departure stop ID
+     */
+    @JsonProperty("dep_sid")
+    private final int departureStopId;
+
+    /**
+     * Arrival stop ID
+     */
+    @JsonProperty("arr_sid")
+    private final int arrivalStopId;
+
+    /**
+     * Flag that shows if arrival stop can be reached with up to the requested number of transfers
+     */
+    @JsonProperty("connection_available")
+    private final boolean connectionAvailable;
+
+    /**
+     * IDs of the stops to change routes at in order of travel
+     */
+    @JsonProperty("transfer_stops")
+    private final int[] transferStops;
+
+    /**
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param transferStops IDs of the stops to change routes at or null if there is no connection
+     */
+    public TransferConnection(
+        int departureStopId,
+        int arrivalStopId,
+        int[] transferStops
+    ) {
+        this(
+            departureStopId,
+            arrivalStopId,
+            transferStops != null,
+            (transferStops == null) ? new int[0] : transferStops
+        );
+    }
+
+    /**
+     * @param departureStopId departure stop ID
+     * @param arrivalStopId arrival stop ID
+     * @param connectionAvailable flag that shows if arrival stop can be reached
+     * @param transferStops IDs of the stops to change routes at
+     */
+    @JsonCreator
+    public TransferConnection(
+        @JsonProperty(value = "dep_sid", required = true) int departureStopId,
+        @JsonProperty(value = "arr_sid", required = true) int arrivalStopId,
+        @JsonProperty(value = "connection_available", required = true) boolean connectionAvailable,
+        @JsonProperty(value = "transfer_stops", required = true) int[] transferStops
+    ) {
+        this.departureStopId = departureStopId;
+        this.arrivalStopId = arrivalStopId;
+        this.connectionAvailable = connectionAvailable;
+        this.transferStops = transferStops;
+    }
+
+    /**
+     * Retrieve departure stop ID
+     *
+     * @return departure stop ID
+     */
+    public int getDepartureStopId() {
+        return this.departureStopId;
+    }
+
+    /**
+     * Retrieve arrival stop ID
+     *
+     * @return arrival stop ID
+     */
+    public int getArrivalStopId() {
+        return this.arrivalStopId;
+    }
+
+    /**
+     * Check if arrival stop can be reached with up to the requested number of transfers
+     *
+     * @return true if connection is available or false otherwise
+     */
+    public boolean isConnectionAvailable() {
+        return this.connectionAvailable;
+    }
+
+    /**
+     * Retrieve IDs of the stops to change routes at
+     *
+     * @return transfer stop IDs in order of travel (empty if there is a direct route or no connection)
+     */
+    public int[] getTransferStops() {
+        return this.transferStops;
+    }
+}
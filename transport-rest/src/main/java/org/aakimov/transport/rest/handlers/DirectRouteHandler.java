@@ -0,0 +1,265 @@
+package org.aakimov.transport.rest.handlers;
+
+import io.undertow.connector.PooledByteBuffer;
+import io.undertow.io.IoCallback;
+import io.undertow.io.Sender;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import io.undertow.util.StatusCodes;
+import org.aakimov.transport.api.RouteManager;
+import org.aakimov.transport.rest.entities.DirectRouteJsonWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Undertow handler of direct route requests.
+ *
+ * Serves GET /api/direct before the request reaches the servlet stack: stop IDs are parsed from the raw query string
+ * and response is written by {@link DirectRouteJsonWriter} into a buffer of the current thread and copied into
+ * a buffer of the connection pool, so a request does not allocate response bytes (the pooled buffer is returned
+ * once the response is sent). Requests are dispatched to a worker thread unless dispatch is disabled, which suits only
+ * route managers that look route data up (route managers that scan route data hold the I/O thread for milliseconds
+ * and stall all its connections). Route manager errors get the status codes of the controller. Any other request
+ * as well as a request with missing, repeated or malformed stop IDs is passed to the next handler, so error
+ * responses stay the same.
+ *
+ * @author aakimov
+ */
+public class DirectRouteHandler implements HttpHandler {
+
+    /**
+     * Logger instance
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectRouteHandler.class);
+
+    /**
+     * Path of direct route requests
+     */
+    static final String DIRECT_PATH = "/api/direct";
+
+    /**
+     * Name of the departure stop ID parameter
+     */
+    private static final String DEPARTURE_STOP_ID_PARAMETER = "dep_sid";
+
+    /**
+     * Name of the arrival stop ID parameter
+     */
+    private static final String ARRIVAL_STOP_ID_PARAMETER = "arr_sid";
+
+    /**
+     * Maximum number of digits in a decimal int value
+     */
+    private static final int MAX_INT_DIGIT_COUNT = 10;
+
+    /**
+     * Direct route response buffer of the current thread (it is copied into a pooled buffer before sending)
+     */
+    private static final ThreadLocal<byte[]> DIRECT_ROUTE_BUFFER = ThreadLocal.withInitial(
+        () -> new byte[DirectRouteJsonWriter.MAX_LENGTH]
+    );
+
+    /**
+     * Route manager
+     */
+    private final RouteManager routeManager;
+
+    /**
+     * Handler of the requests that are not served by this handler
+     */
+    private final HttpHandler next;
+
+    /**
+     * Flag that shows if requests are dispatched from the I/O thread to a worker thread
+     */
+    private final boolean dispatchEnabled;
+
+    /**
+     * @param routeManager route manager
+     * @param next handler of the requests that are not served by this handler
+     * @param dispatchEnabled flag that shows if requests are dispatched from the I/O thread to a worker thread
+     */
+    public DirectRouteHandler(
+        RouteManager routeManager,
+        HttpHandler next,
+        boolean dispatchEnabled
+    ) {
+        this.routeManager = routeManager;
+        this.next = next;
+        this.dispatchEnabled = dispatchEnabled;
+    }
+
+    @Override
+    public void handleRequest(HttpServerExchange exchange) throws Exception {
+        if (
+            !Methods.GET.equals(exchange.getRequestMethod())
+            || !DirectRouteHandler.DIRECT_PATH.equals(exchange.getRelativePath())
+        ) {
+            this.next.handleRequest(exchange);
+            return;
+        }
+
+        String queryString = exchange.getQueryString();
+        long departureStopId = DirectRouteHandler.parseParameter(
+            queryString,
+            DirectRouteHandler.DEPARTURE_STOP_ID_PARAMETER
+        );
+        long arrivalStopId = DirectRouteHandler.parseParameter(
+            queryString,
+            DirectRouteHandler.ARRIVAL_STOP_ID_PARAMETER
+        );
+        if (departureStopId == Long.MIN_VALUE || arrivalStopId == Long.MIN_VALUE) {
+            this.next.handleRequest(exchange);
+            return;
+        }
+
+        if (this.dispatchEnabled && exchange.isInIoThread()) {
+            exchange.dispatch(this);
+            return;
+        }
+
+        boolean directRouteAvailable;
+        try {
+            directRouteAvailable = this.routeManager.isDirectRouteAvailable((int)departureStopId, (int)arrivalStopId);
+        } catch (RuntimeException exception) {
+            exchange.setStatusCode(DirectRouteHandler.getErrorStatusCode(exception));
+            if (exchange.getStatusCode() == StatusCodes.INTERNAL_SERVER_ERROR) {
+                LOGGER.error("Direct route request '{}' cannot be served.", exchange.getQueryString(), exception);
+            }
+            exchange.endExchange();
+            return;
+        }
+        byte[] buffer = DirectRouteHandler.DIRECT_ROUTE_BUFFER.get();
+        int length = DirectRouteJsonWriter.write(
+            buffer,
+            0,
+            (int)departureStopId,
+            (int)arrivalStopId,
+            directRouteAvailable
+        );
+        // sender may complete the write later, so the response is sent from a pooled buffer of the connection
+        PooledByteBuffer pooledBuffer = exchange.getConnection().getByteBufferPool().allocate();
+        ByteBuffer responseBuffer = pooledBuffer.getBuffer();
+        responseBuffer.clear();
+        responseBuffer.put(buffer, 0, length).flip();
+        exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, MediaType.APPLICATION_JSON_UTF8_VALUE);
+        exchange.getResponseHeaders().put(Headers.CONTENT_LENGTH, length);
+        exchange.getResponseSender().send(responseBuffer, new PooledBufferCallback(pooledBuffer));
+    }
+
+    /**
+     * Map route manager error to the status code of the same error in the controller
+     *
+     * @param exception route manager error
+     * @return HTTP status code
+     */
+    private static int getErrorStatusCode(RuntimeException exception) {
+        if (exception instanceof IllegalArgumentException) {
+            return StatusCodes.BAD_REQUEST;
+        }
+        if (exception instanceof UnsupportedOperationException) {
+            return StatusCodes.NOT_IMPLEMENTED;
+        }
+        return StatusCodes.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Find int parameter in the raw query string.
+     *
+     * Only plain decimal values are accepted, everything else (including encoded and repeated values) is reported
+     * as malformed, so the request is left to the servlet stack.
+     *
+     * @param queryString raw query string
+     * @param name parameter name
+     * @return parameter value or Long.MIN_VALUE if parameter is missing or malformed
+     */
+    static long parseParameter(String queryString, String name) {
+        long value = Long.MIN_VALUE;
+        int parameterStart = 0;
+        while (parameterStart < queryString.length()) {
+            int parameterEnd = queryString.indexOf('&', parameterStart);
+            if (parameterEnd < 0) {
+                parameterEnd = queryString.length();
+            }
+            int valueStart = parameterStart + name.length() + 1;
+            if (
+                valueStart <= parameterEnd
+                && queryString.startsWith(name, parameterStart)
+                && queryString.charAt(valueStart - 1) == '='
+            ) {
+                if (value != Long.MIN_VALUE) {
+                    return Long.MIN_VALUE;
+                }
+                value = DirectRouteHandler.parseInt(queryString, valueStart, parameterEnd);
+                if (value == Long.MIN_VALUE) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            parameterStart = parameterEnd + 1;
+        }
+        return value;
+    }
+
+    /**
+     * Parse decimal int value
+     *
+     * @param text text that contains the value
+     * @param start index of the first character of the value
+     * @param end index that follows the last character of the value
+     * @return value or Long.MIN_VALUE if value is empty, malformed or does not fit into int
+     */
+    private static long parseInt(String text, int start, int end) {
+        boolean negative = start < end && text.charAt(start) == '-';
+        int digitStart = negative ? start + 1 : start;
+        if (digitStart == end || end - digitStart > DirectRouteHandler.MAX_INT_DIGIT_COUNT) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (int index = digitStart; index < end; index++) {
+            char character = text.charAt(index);
+            if (character < '0' || character > '9') {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + (character - '0');
+        }
+        value = negative ? -value : value;
+        return (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * Callback that returns the pooled response buffer and ends the exchange once the response is sent
+     */
+    private static final class PooledBufferCallback implements IoCallback {
+
+        /**
+         * Pooled buffer of the response
+         */
+        private final PooledByteBuffer pooledBuffer;
+
+        /**
+         * @param pooledBuffer pooled buffer of the response
+         */
+        private PooledBufferCallback(PooledByteBuffer pooledBuffer) {
+            this.pooledBuffer = pooledBuffer;
+        }
+
+        @Override
+        public void onComplete(HttpServerExchange exchange, Sender sender) {
+            this.pooledBuffer.close();
+            IoCallback.END_EXCHANGE.onComplete(exchange, sender);
+        }
+
+        @Override
+        public void onException(HttpServerExchange exchange, Sender sender, IOException exception) {
+            this.pooledBuffer.close();
+            IoCallback.END_EXCHANGE.onException(exchange, sender, exception);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.aakimov.transport.rest.controllers;
+
+import org.aakimov.transport.api.CachingRouteManager;
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(locations="classpath:test.properties")
+public class RouteManagerControllerCacheTest {
+
+    @Configuration
+    @ComponentScan(
+        basePackages = "org.aakimov.transport.rest",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class)
+    )
+    static class TestConfig {
+
+        @Bean
+        public RouteManager getRouteManager() {
+            int[] routeData = new MappedRouteDataReader().read(
+                Paths.get("src/test/resources/org/aakimov/transport/rest/controllers/route_data_file")
+            );
+
+            return new CachingRouteManager(
+                new MemoryRouteManager(
+                    routeData
+                ),
+                1024
+            );
+        }
+    }
+
+    private static final String API_DIRECT_URL = "/api/direct";
+
+    private static final String API_ADMIN_CACHE_URL = "/api/admin/cache";
+
+    private static final String DEPARTURE_ID_PARAM_NAME = "dep_sid";
+
+    private static final String ARRIVAL_ID_PARAM_NAME = "arr_sid";
+
+    @Inject
+    private WebApplicationContext webApplicationContext;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(this.webApplicationContext).build();
+    }
+
+    @Test
+    public void testGetCacheStatisticsReturnsCounters() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "2")
+            .param(ARRIVAL_ID_PARAM_NAME, "43");
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(jsonPath("$.direct_bus_route", is(true)));
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(jsonPath("$.direct_bus_route", is(true)));
+
+        this.mockMvc.perform(MockMvcRequestBuilders.get(API_ADMIN_CACHE_URL))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.capacity", is(1024)))
+            .andExpect(jsonPath("$.hit_count", greaterThan(0)))
+            .andExpect(jsonPath("$.miss_count", greaterThan(0)));
+    }
+}
@@ -0,0 +1,99 @@
+package org.aakimov.transport.rest.controllers;
+
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.ReloadableRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(locations="classpath:test.properties")
+public class RouteManagerControllerReloadTest {
+
+    @Configuration
+    @ComponentScan(
+        basePackages = "org.aakimov.transport.rest",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class)
+    )
+    static class TestConfig {
+
+        @Bean
+        public RouteManager getRouteManager() {
+            return new ReloadableRouteManager(
+                TestConfig.loadRouteManager(),
+                TestConfig::loadRouteManager
+            );
+        }
+
+        private static RouteManager loadRouteManager() {
+            int[] routeData = new MappedRouteDataReader().read(
+                Paths.get("src/test/resources/org/aakimov/transport/rest/controllers/route_data_file")
+            );
+
+            return new MemoryRouteManager(
+                routeData
+            );
+        }
+    }
+
+    private static final String API_DIRECT_URL = "/api/direct";
+
+    private static final String API_ADMIN_RELOAD_URL = "/api/admin/reload";
+
+    private static final String DEPARTURE_ID_PARAM_NAME = "dep_sid";
+
+    private static final String ARRIVAL_ID_PARAM_NAME = "arr_sid";
+
+    @Inject
+    private WebApplicationContext webApplicationContext;
+
+    @Inject
+    private RouteManager routeManager;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(this.webApplicationContext).build();
+    }
+
+    @Test
+    public void testReloadRouteDataKeepsServingRequests() throws Exception { //NOSONAR
+        this.mockMvc.perform(MockMvcRequestBuilders.post(API_ADMIN_RELOAD_URL))
+            .andExpect(status().isAccepted());
+        // wait for the reload to make sure that the new route data is used
+        ((ReloadableRouteManager)this.routeManager)
+            .reload()
+            .get(10, TimeUnit.SECONDS);
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "5")
+            .param(ARRIVAL_ID_PARAM_NAME, "78");
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.direct_bus_route", is(true)));
+    }
+}
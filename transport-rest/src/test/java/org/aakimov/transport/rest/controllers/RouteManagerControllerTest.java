@@ -1,19 +1,25 @@
 package org.aakimov.transport.rest.controllers;
 
+import org.aakimov.transport.api.DuplicateRoutePolicy;
+import org.aakimov.transport.api.IngestionPolicy;
+import org.aakimov.transport.api.IngestionReport;
 import org.aakimov.transport.api.MappedRouteDataReader;
 import org.aakimov.transport.api.MemoryRouteManager;
 import org.aakimov.transport.api.RouteManager;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.boot.context.TypeExcludeFilter;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
@@ -21,8 +27,10 @@ import org.springframework.web.context.WebApplicationContext;
 
 import javax.inject.Inject;
 import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @RunWith(SpringRunner.class)
@@ -31,7 +39,10 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 public class RouteManagerControllerTest {
 
     @Configuration
-    @ComponentScan(basePackages = "org.aakimov.transport.rest")
+    @ComponentScan(
+        basePackages = "org.aakimov.transport.rest",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class)
+    )
     static class TestConfig {
 
         @Bean
@@ -48,6 +59,20 @@ public class RouteManagerControllerTest {
 
     private static final String API_DIRECT_URL = "/api/direct";
 
+    private static final String API_DIRECT_ROUTES_URL = "/api/direct/routes";
+
+    private static final String API_DIRECT_BATCH_URL = "/api/direct/batch";
+
+    private static final String API_TRANSFER_URL = "/api/transfer";
+
+    private static final String API_ADMIN_RELOAD_URL = "/api/admin/reload";
+
+    private static final String API_ADMIN_ROUTES_URL = "/api/admin/routes";
+
+    private static final String API_ADMIN_CACHE_URL = "/api/admin/cache";
+
+    private static final String API_ADMIN_INGESTION_URL = "/api/admin/ingestion";
+
     private static final String DEPARTURE_ID_PARAM_NAME = "dep_sid";
 
     private static final String ARRIVAL_ID_PARAM_NAME = "arr_sid";
@@ -55,6 +80,9 @@ public class RouteManagerControllerTest {
     @Inject
     private WebApplicationContext webApplicationContext;
 
+    @Inject
+    private AtomicReference<IngestionReport> ingestionReport;
+
     private MockMvc mockMvc;
 
     @Before
@@ -96,6 +124,18 @@ public class RouteManagerControllerTest {
             .andExpect(jsonPath("$.direct_bus_route", is(false)));
     }
 
+    @Test
+    public void testFindDirectRouteWritesSameJsonAsEntity() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "5")
+            .param(ARRIVAL_ID_PARAM_NAME, "-78");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isOk())
+            .andExpect(header().string("Content-Length", "52"))
+            .andExpect(content().string("{\"dep_sid\":5,\"arr_sid\":-78,\"direct_bus_route\":false}"));
+    }
+
     @Test
     public void testFindDirectRouteReturnsBadRequestStatusCodeIfParametersAreInvalid() throws Exception { //NOSONAR
         String departureStopId = "some_wrong_value";
@@ -108,4 +148,171 @@ public class RouteManagerControllerTest {
         this.mockMvc.perform(requestBuilder)
             .andExpect(status().isBadRequest());
     }
+
+    @Test
+    public void testFindDirectRoutesReturnsResultsForAllPairsInRequestOrder() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.post(API_DIRECT_BATCH_URL)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"dep_sid\": 5, \"arr_sid\": 78}, {\"dep_sid\": -1, \"arr_sid\": -2}, {\"dep_sid\": 2, \"arr_sid\": 43}]");
+
+        MvcResult mvcResult = this.mockMvc.perform(requestBuilder)
+            .andExpect(request().asyncStarted())
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+            .andReturn();
+
+        // response body is streamed asynchronously
+        mvcResult.getAsyncResult();
+        jsonPath("$.length()", is(3)).match(mvcResult);
+        jsonPath("$[0].dep_sid", is(5)).match(mvcResult);
+        jsonPath("$[0].arr_sid", is(78)).match(mvcResult);
+        jsonPath("$[0].direct_bus_route", is(true)).match(mvcResult);
+        jsonPath("$[1].dep_sid", is(-1)).match(mvcResult);
+        jsonPath("$[1].direct_bus_route", is(false)).match(mvcResult);
+        jsonPath("$[2].arr_sid", is(43)).match(mvcResult);
+        jsonPath("$[2].direct_bus_route", is(true)).match(mvcResult);
+    }
+
+    @Test
+    public void testFindDirectRoutesStreamsBatchesLargerThanBuffer() throws Exception { //NOSONAR
+        StringBuilder requestBody = new StringBuilder("[");
+        StringBuilder expectedResponseBody = new StringBuilder("[");
+        for (int queryIndex = 0; queryIndex < 1000; queryIndex++) {
+            String separator = (queryIndex > 0) ? "," : "";
+            boolean available = queryIndex % 2 == 0;
+            int arrivalStopId = available ? 78 : -queryIndex;
+            requestBody.append(separator)
+                .append("{\"dep_sid\":5,\"arr_sid\":").append(arrivalStopId).append('}');
+            expectedResponseBody.append(separator)
+                .append("{\"dep_sid\":5,\"arr_sid\":").append(arrivalStopId)
+                .append(",\"direct_bus_route\":").append(available).append('}');
+        }
+        requestBody.append(']');
+        expectedResponseBody.append(']');
+
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.post(API_DIRECT_BATCH_URL)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(requestBody.toString());
+
+        MvcResult mvcResult = this.mockMvc.perform(requestBuilder)
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mvcResult.getAsyncResult();
+        content().string(expectedResponseBody.toString()).match(mvcResult);
+    }
+
+    @Test
+    public void testFindDirectRoutesReturnsBadRequestStatusCodeIfPairIsIncomplete() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.post(API_DIRECT_BATCH_URL)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content("[{\"dep_sid\": 5}]");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindDirectRouteDetailsReturnsIdsOfMatchingRoutes() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_ROUTES_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "5")
+            .param(ARRIVAL_ID_PARAM_NAME, "76");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+            .andExpect(jsonPath("$.dep_sid", is(5)))
+            .andExpect(jsonPath("$.arr_sid", is(76)))
+            .andExpect(jsonPath("$.direct_bus_route", is(true)))
+            .andExpect(jsonPath("$.route_ids.length()", is(2)))
+            .andExpect(jsonPath("$.route_ids[0]", is(1)))
+            .andExpect(jsonPath("$.route_ids[1]", is(2)));
+
+        this.mockMvc.perform(requestBuilder.param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.route_ids.length()", is(1)))
+            .andExpect(jsonPath("$.route_ids[0]", is(1)));
+    }
+
+    @Test
+    public void testFindDirectRouteDetailsReturnsEmptyListIfRouteDoesNotExist() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_ROUTES_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "-1")
+            .param(ARRIVAL_ID_PARAM_NAME, "76");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.direct_bus_route", is(false)))
+            .andExpect(jsonPath("$.route_ids.length()", is(0)));
+    }
+
+    @Test
+    public void testFindDirectRouteDetailsReturnsBadRequestStatusCodeIfLimitIsNegative() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_DIRECT_ROUTES_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "5")
+            .param(ARRIVAL_ID_PARAM_NAME, "76")
+            .param("limit", "-1");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testFindTransferConnectionReturnsNotImplementedIfTransfersAreNotEnabled() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_TRANSFER_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "2")
+            .param(ARRIVAL_ID_PARAM_NAME, "12");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isNotImplemented());
+    }
+
+    @Test
+    public void testAdminEndpointsReturnNotImplementedIfDecoratorsAreNotEnabled() throws Exception { //NOSONAR
+        this.mockMvc.perform(MockMvcRequestBuilders.post(API_ADMIN_RELOAD_URL))
+            .andExpect(status().isNotImplemented());
+        this.mockMvc.perform(
+            MockMvcRequestBuilders.post(API_ADMIN_ROUTES_URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"route_id\": 100}]")
+        )
+            .andExpect(status().isNotImplemented());
+        this.mockMvc.perform(MockMvcRequestBuilders.get(API_ADMIN_CACHE_URL))
+            .andExpect(status().isNotImplemented());
+    }
+
+    @Test
+    public void testGetIngestionSummaryReturnsReportOfLastRead() throws Exception { //NOSONAR
+        this.ingestionReport.set(null);
+        this.mockMvc.perform(MockMvcRequestBuilders.get(API_ADMIN_INGESTION_URL))
+            .andExpect(status().isNotImplemented());
+
+        MappedRouteDataReader routeDataReader = new MappedRouteDataReader(
+            1,
+            IngestionPolicy.SKIP_BAD_LINES,
+            DuplicateRoutePolicy.REJECT
+        );
+        routeDataReader.read(
+            Paths.get("src/test/resources/org/aakimov/transport/rest/controllers/route_data_file_with_bad_lines")
+        );
+        this.ingestionReport.set(routeDataReader.getReport());
+        try {
+            this.mockMvc.perform(MockMvcRequestBuilders.get(API_ADMIN_INGESTION_URL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.policy", is("SKIP_BAD_LINES")))
+                .andExpect(jsonPath("$.declared_route_count", is(4)))
+                .andExpect(jsonPath("$.route_count", is(2)))
+                .andExpect(jsonPath("$.skipped_line_count", is(1)))
+                .andExpect(jsonPath("$.short_route_count", is(0)))
+                .andExpect(jsonPath("$.duplicate_stop_route_count", is(1)))
+                .andExpect(jsonPath("$.duplicate_route_count", is(1)))
+                .andExpect(jsonPath("$.released_length", is(5)))
+                .andExpect(jsonPath("$.errors[0].line_number", is(3)))
+                .andExpect(jsonPath("$.errors[0].byte_offset", is(12)))
+                .andExpect(jsonPath("$.failure", nullValue()));
+        } finally {
+            this.ingestionReport.set(null);
+        }
+    }
 }
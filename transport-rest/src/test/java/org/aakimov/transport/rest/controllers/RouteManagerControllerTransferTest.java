@@ -0,0 +1,105 @@
+package org.aakimov.transport.rest.controllers;
+
+import org.aakimov.transport.api.MappedRouteDataReader;
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.aakimov.transport.api.TransferRouteManager;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.inject.Inject;
+import java.nio.file.Paths;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@TestPropertySource(locations="classpath:test.properties")
+public class RouteManagerControllerTransferTest {
+
+    @Configuration
+    @ComponentScan(
+        basePackages = "org.aakimov.transport.rest",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.CUSTOM, classes = TypeExcludeFilter.class)
+    )
+    static class TestConfig {
+
+        @Bean
+        public RouteManager getRouteManager() {
+            int[] routeData = new MappedRouteDataReader().read(
+                Paths.get("src/test/resources/org/aakimov/transport/rest/controllers/route_data_file")
+            );
+
+            return new TransferRouteManager(
+                new MemoryRouteManager(
+                    routeData
+                ),
+                routeData
+            );
+        }
+    }
+
+    private static final String API_TRANSFER_URL = "/api/transfer";
+
+    private static final String DEPARTURE_ID_PARAM_NAME = "dep_sid";
+
+    private static final String ARRIVAL_ID_PARAM_NAME = "arr_sid";
+
+    @Inject
+    private WebApplicationContext webApplicationContext;
+
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        this.mockMvc = MockMvcBuilders.webAppContextSetup(this.webApplicationContext).build();
+    }
+
+    @Test
+    public void testFindTransferConnectionReturnsTransferStops() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_TRANSFER_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "2")
+            .param(ARRIVAL_ID_PARAM_NAME, "12");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8))
+            .andExpect(jsonPath("$.dep_sid", is(2)))
+            .andExpect(jsonPath("$.arr_sid", is(12)))
+            .andExpect(jsonPath("$.connection_available", is(true)))
+            .andExpect(jsonPath("$.transfer_stops", contains(5)));
+        this.mockMvc.perform(requestBuilder.param("max_transfers", "0"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.connection_available", is(false)))
+            .andExpect(jsonPath("$.transfer_stops", empty()));
+    }
+
+    @Test
+    public void testFindTransferConnectionReturnsBadRequestIfMaxTransfersIsNegative() throws Exception { //NOSONAR
+        MockHttpServletRequestBuilder requestBuilder = MockMvcRequestBuilders.get(API_TRANSFER_URL)
+            .param(DEPARTURE_ID_PARAM_NAME, "2")
+            .param(ARRIVAL_ID_PARAM_NAME, "12")
+            .param("max_transfers", "-1");
+
+        this.mockMvc.perform(requestBuilder)
+            .andExpect(status().isBadRequest());
+    }
+}
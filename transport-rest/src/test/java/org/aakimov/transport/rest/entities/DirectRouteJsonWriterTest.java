@@ -0,0 +1,51 @@
+package org.aakimov.transport.rest.entities;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DirectRouteJsonWriterTest {
+
+    private static final int[] STOP_IDS = {0, 3, 5, 7, 9, 10, -1, -10, 123456789, Integer.MAX_VALUE, Integer.MIN_VALUE};
+
+    @Test
+    public void testWritesSameBytesAsJackson() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (int departureStopId : STOP_IDS) {
+            for (int arrivalStopId : STOP_IDS) {
+                for (boolean directRouteAvailable : new boolean[] {true, false}) {
+                    byte[] expected = objectMapper.writeValueAsBytes(
+                        new DirectRoute(departureStopId, arrivalStopId, directRouteAvailable)
+                    );
+                    assertArrayEquals(
+                        expected,
+                        DirectRouteJsonWriter.write(departureStopId, arrivalStopId, directRouteAvailable)
+                    );
+                    assertEquals(
+                        expected.length,
+                        DirectRouteJsonWriter.getLength(departureStopId, arrivalStopId, directRouteAvailable)
+                    );
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWritesIntoBufferAtPosition() throws IOException {
+        byte[] expected = new ObjectMapper().writeValueAsBytes(
+            new DirectRoute(Integer.MIN_VALUE, Integer.MIN_VALUE, false)
+        );
+        assertEquals(expected.length, DirectRouteJsonWriter.MAX_LENGTH);
+
+        byte[] buffer = new byte[DirectRouteJsonWriter.MAX_LENGTH + 7];
+        int position = DirectRouteJsonWriter.write(buffer, 7, Integer.MIN_VALUE, Integer.MIN_VALUE, false);
+        assertEquals(buffer.length, position);
+        assertArrayEquals(expected, Arrays.copyOfRange(buffer, 7, position));
+        assertEquals(0, buffer[6]);
+    }
+}
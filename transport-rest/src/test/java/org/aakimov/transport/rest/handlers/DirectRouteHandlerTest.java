@@ -0,0 +1,175 @@
+package org.aakimov.transport.rest.handlers;
+
+import io.undertow.Undertow;
+import io.undertow.util.StatusCodes;
+import org.aakimov.transport.api.MemoryRouteManager;
+import org.aakimov.transport.api.RouteManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class DirectRouteHandlerTest {
+
+    private static final int[] ROUTE_DATA = {
+        // number of routes
+        2,
+        // route ID followed by the number of stops and sorted stop IDs
+        1, 3, 3, 4, 5,
+        2, 2, 0, 7
+    };
+
+    private static final String NEXT_RESPONSE = "next";
+
+    private final RouteManager routeManager = new MemoryRouteManager(ROUTE_DATA);
+
+    private Undertow server;
+
+    private String baseUrl;
+
+    @Before
+    public void setUp() {
+        this.startServer(this.routeManager, false);
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop();
+    }
+
+    @Test
+    public void testParsesQueryParameters() {
+        assertEquals(3L, DirectRouteHandler.parseParameter("dep_sid=3&arr_sid=4", "dep_sid"));
+        assertEquals(4L, DirectRouteHandler.parseParameter("dep_sid=3&arr_sid=4", "arr_sid"));
+        assertEquals(-12L, DirectRouteHandler.parseParameter("x=1&&dep_sid=-12", "dep_sid"));
+        assertEquals(5L, DirectRouteHandler.parseParameter("old_dep_sid=1&dep_sid=5&dep_sidx=2", "dep_sid"));
+        assertEquals(
+            (long)Integer.MIN_VALUE,
+            DirectRouteHandler.parseParameter("dep_sid=-2147483648", "dep_sid")
+        );
+
+        String[] malformedQueryStrings = {
+            "", "dep_sid", "dep_sid=", "dep_sid=-", "dep_sid=+1", "dep_sid=1a", "dep_sid=%31", "dep_sid=1&dep_sid=2",
+            "dep_sid=2147483648", "dep_sid=99999999999", "arr_sid=1"
+        };
+        for (String queryString : malformedQueryStrings) {
+            assertEquals(queryString, Long.MIN_VALUE, DirectRouteHandler.parseParameter(queryString, "dep_sid"));
+        }
+    }
+
+    @Test
+    public void testServesDirectRouteRequests() throws IOException {
+        this.assertResponse(
+            "/api/direct?dep_sid=3&arr_sid=5",
+            StatusCodes.OK,
+            "{\"dep_sid\":3,\"arr_sid\":5,\"direct_bus_route\":true}"
+        );
+        this.assertResponse(
+            "/api/direct?arr_sid=7&dep_sid=3",
+            StatusCodes.OK,
+            "{\"dep_sid\":3,\"arr_sid\":7,\"direct_bus_route\":false}"
+        );
+
+        this.server.stop();
+        this.startServer(this.routeManager, true);
+        this.assertResponse(
+            "/api/direct?dep_sid=0&arr_sid=7",
+            StatusCodes.OK,
+            "{\"dep_sid\":0,\"arr_sid\":7,\"direct_bus_route\":true}"
+        );
+    }
+
+    @Test
+    public void testReusesResponseBuffersAcrossRequests() throws IOException {
+        for (int requestIndex = 0; requestIndex < 200; requestIndex++) {
+            boolean available = requestIndex % 2 == 0;
+            int departureStopId = available ? 3 : Integer.MIN_VALUE;
+            this.assertResponse(
+                "/api/direct?dep_sid=" + departureStopId + "&arr_sid=5",
+                StatusCodes.OK,
+                "{\"dep_sid\":" + departureStopId + ",\"arr_sid\":5,\"direct_bus_route\":" + available + "}"
+            );
+        }
+    }
+
+    @Test
+    public void testPassesOtherRequests() throws IOException {
+        this.assertResponse("/api/direct?dep_sid=3", StatusCodes.NOT_FOUND, NEXT_RESPONSE);
+        this.assertResponse("/api/direct?dep_sid=3&arr_sid=x", StatusCodes.NOT_FOUND, NEXT_RESPONSE);
+        this.assertResponse("/api/direct/routes?dep_sid=3&arr_sid=5", StatusCodes.NOT_FOUND, NEXT_RESPONSE);
+        this.assertResponse("/api/transfer?dep_sid=3&arr_sid=5", StatusCodes.NOT_FOUND, NEXT_RESPONSE);
+    }
+
+    @Test
+    public void testRouteManagerErrorsGetControllerStatusCodes() throws IOException {
+        this.server.stop();
+        this.startServer(
+            (departureStopId, arrivalStopId) -> {
+                if (departureStopId == 1) {
+                    throw new IllegalArgumentException("Invalid stop ID.");
+                }
+                if (departureStopId == 2) {
+                    throw new UnsupportedOperationException("Not supported.");
+                }
+                throw new IllegalStateException("Route data is not available.");
+            },
+            true
+        );
+        this.assertResponse("/api/direct?dep_sid=1&arr_sid=5", StatusCodes.BAD_REQUEST, "");
+        this.assertResponse("/api/direct?dep_sid=2&arr_sid=5", StatusCodes.NOT_IMPLEMENTED, "");
+        this.assertResponse("/api/direct?dep_sid=3&arr_sid=5", StatusCodes.INTERNAL_SERVER_ERROR, "");
+    }
+
+    private void startServer(RouteManager routeManager, boolean dispatchEnabled) {
+        this.server = Undertow.builder()
+            .addHttpListener(0, "localhost")
+            .setHandler(
+                new DirectRouteHandler(
+                    routeManager,
+                    exchange -> exchange.setStatusCode(StatusCodes.NOT_FOUND)
+                        .getResponseSender()
+                        .send(NEXT_RESPONSE),
+                    dispatchEnabled
+                )
+            )
+            .build();
+        this.server.start();
+        InetSocketAddress address = (InetSocketAddress)this.server.getListenerInfo().get(0).getAddress();
+        this.baseUrl = "http://localhost:" + address.getPort();
+    }
+
+    private void assertResponse(String path, int expectedStatusCode, String expectedBody) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)new URL(this.baseUrl + path).openConnection();
+        try {
+            assertEquals(expectedStatusCode, connection.getResponseCode());
+            InputStream inputStream = (expectedStatusCode == StatusCodes.OK)
+                ? connection.getInputStream()
+                : connection.getErrorStream();
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            // error stream is missing if error response has no body
+            if (inputStream != null) {
+                byte[] buffer = new byte[256];
+                for (int length = inputStream.read(buffer); length >= 0; length = inputStream.read(buffer)) {
+                    body.write(buffer, 0, length);
+                }
+                inputStream.close();
+            }
+            assertEquals(expectedBody, new String(body.toByteArray(), StandardCharsets.UTF_8));
+            if (expectedStatusCode == StatusCodes.OK) {
+                assertEquals("application/json;charset=UTF-8", connection.getContentType());
+                assertEquals(body.size(), connection.getContentLength());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}